@@ -0,0 +1,188 @@
+package com.example.campusexpensemanager.utils;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.campusexpensemanager.models.Expense;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.campusexpensemanager.utils.DatabaseHelper.FILTER_ANY;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks with EXPLAIN QUERY PLAN that the expense and budget queries issued by
+ * DatabaseHelper are answered from an index and never fall back to a full SCAN.
+ * The SQL comes from DatabaseHelper's own QUERY_* constants and *Sql builders,
+ * so the plans checked are those of the statements the app actually runs.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseQueryPlanTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = DatabaseHelper.getInstance(appContext).getReadableDatabase();
+    }
+
+    @Test
+    public void getExpensesByUser_usesIndex() {
+        assertNoScan(DatabaseHelper.QUERY_EXPENSES_BY_USER, "1");
+    }
+
+    @Test
+    public void getExpenseColumns_usesIndex() {
+        assertNoScan(DatabaseHelper.QUERY_EXPENSE_COLUMNS, "1");
+    }
+
+    @Test
+    public void getExpenseById_usesPrimaryKey() {
+        assertNoScan(DatabaseHelper.QUERY_EXPENSE_BY_ID, "1");
+    }
+
+    @Test
+    public void getExpensesByDateRange_usesIndex() {
+        assertFilterNoScan(0, NOW, FILTER_ANY, FILTER_ANY, FILTER_ANY);
+    }
+
+    @Test
+    public void getExpensesByType_usesIndex() {
+        assertFilterNoScan(Long.MIN_VALUE, Long.MAX_VALUE, Expense.TYPE_INCOME, FILTER_ANY, FILTER_ANY);
+    }
+
+    @Test
+    public void getExpensesByFilter_typeAndRange_usesIndex() {
+        assertFilterNoScan(0, NOW, Expense.TYPE_EXPENSE, FILTER_ANY, FILTER_ANY);
+    }
+
+    @Test
+    public void getExpensesByFilter_categoryAndRange_usesIndex() {
+        assertFilterNoScan(0, NOW, Expense.TYPE_EXPENSE, 2, FILTER_ANY);
+        assertFilterNoScan(0, NOW, FILTER_ANY, 2, FILTER_ANY);
+    }
+
+    @Test
+    public void getExpensesByFilter_currency_usesIndex() {
+        assertFilterNoScan(0, NOW, FILTER_ANY, FILTER_ANY, 2);
+    }
+
+    @Test
+    public void getDueRecurrences_usesNextDueIndex() {
+        assertNoScan(DatabaseHelper.QUERY_DUE_RECURRENCES, String.valueOf(NOW));
+    }
+
+    @Test
+    public void getNextRecurrenceDue_usesNextDueIndex() {
+        assertNoScan(DatabaseHelper.QUERY_NEXT_RECURRENCE_DUE);
+    }
+
+    @Test
+    public void getBudgetsByUser_usesIndex() {
+        assertNoScan(DatabaseHelper.QUERY_BUDGETS_BY_USER, "1");
+    }
+
+    @Test
+    public void budgetSpentTrigger_findsBudgetsByPeriodEnd() {
+        // Thân trigger ngoài trigger: NEW.col -> tham số :col (để trống, chỉ cần plan)
+        String body = DatabaseHelper.budgetSpentAdjustSql("NEW", "+");
+        assertNoScan(body.substring(0, body.length() - 1).replace("NEW.", ":"));
+    }
+
+    @Test
+    public void getBudgetAlertChanges_readsOnlyActiveBudgets() {
+        List<String> args = new ArrayList<>();
+        assertNoScan(DatabaseHelper.budgetAlertChangesSql(1, NOW, args), args);
+    }
+
+    @Test
+    public void getTransactionSummary_usesIndex() {
+        assertNoScan(DatabaseHelper.QUERY_TRANSACTION_SUMMARY, "1", "0", String.valueOf(NOW));
+    }
+
+    @Test
+    public void getTotalInVND_usesIndex() {
+        List<String> args = new ArrayList<>();
+        assertNoScan(DatabaseHelper.totalInVndSql(1, 0, NOW, Expense.TYPE_EXPENSE, 2, args), args);
+        args.clear();
+        assertNoScan(DatabaseHelper.totalInVndSql(1, 0, NOW, FILTER_ANY, FILTER_ANY, args), args);
+    }
+
+    @Test
+    public void getMonthlySummary_usesRollupKey() {
+        assertNoScan(DatabaseHelper.QUERY_MONTHLY_SUMMARY, "1", "202401", "202412");
+    }
+
+    @Test
+    public void getExpensePage_usesKeysetOnIndex() {
+        List<String> args = new ArrayList<>();
+        assertNoScan(DatabaseHelper.expensePageSql(1, FILTER_ANY, FILTER_ANY, null, NOW, 42, 30, args), args);
+        args.clear();
+        assertNoScan(DatabaseHelper.expensePageSql(1, Expense.TYPE_INCOME, FILTER_ANY, null, NOW, 42, 30, args),
+                args);
+        args.clear();
+        assertNoScan(DatabaseHelper.expensePageSql(1, FILTER_ANY, FILTER_ANY, "com", NOW, 42, 30, args), args);
+    }
+
+    @Test
+    public void countExpenses_usesIndex() {
+        List<String> args = new ArrayList<>();
+        assertNoScan(DatabaseHelper.countExpensesSql(1, Expense.TYPE_EXPENSE, 2, null, args), args);
+    }
+
+    @Test
+    public void queryExpensesForExport_usesIndex() {
+        assertNoScan(DatabaseHelper.QUERY_EXPENSES_FOR_EXPORT, "1", "0", String.valueOf(NOW));
+    }
+
+    @Test
+    public void searchExpenseIds_usesFullTextIndex() {
+        assertNoScan(DatabaseHelper.QUERY_SEARCH_EXPENSE_IDS, "\"com*\"", "1");
+    }
+
+    @Test
+    public void countExpensesWithFingerprint_usesIndex() {
+        assertNoScan(DatabaseHelper.QUERY_COUNT_BY_FINGERPRINT, "1", "42");
+    }
+
+    private void assertFilterNoScan(long startDate, long endDate, int type, int categoryId, int currencyId) {
+        List<String> args = new ArrayList<>();
+        assertNoScan(DatabaseHelper.expensesByFilterSql(1, startDate, endDate, type, categoryId, currencyId, args),
+                args);
+    }
+
+    private void assertNoScan(String sql, List<String> args) {
+        assertNoScan(sql, args.toArray(new String[0]));
+    }
+
+    /**
+     * Fail if any step of the query plan is a full table scan
+     */
+    private void assertNoScan(String sql, String... args) {
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        try {
+            int detailIndex = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                String detail = cursor.getString(detailIndex);
+                // FTS MATCH is answered by the virtual table's own index
+                if (detail.startsWith("SCAN") && !detail.contains("VIRTUAL TABLE INDEX")) {
+                    fail("Full scan in plan for [" + sql + "]: " + detail);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.campusexpensemanager.utils;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.campusexpensemanager.models.BudgetStatus;
+import com.example.campusexpensemanager.models.Expense;
+import com.example.campusexpensemanager.models.RecurrenceRule;
+import com.example.campusexpensemanager.models.TransactionSummary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Calendar;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Creates a database with the v3 schema (the first released one) and opens it with the current
+ * DatabaseHelper, so every onUpgrade step runs in order on real old data: amounts become minor
+ * units, the rollup and budget counters are computed, and the triggers work afterwards.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseUpgradeTest {
+
+    private static final String TEST_DATABASE = "CampusExpense-upgrade-test.db";
+
+    // Schema và dữ liệu mặc định của onCreate ở v3
+    private static final String[] SCHEMA_V3 = {
+            "CREATE TABLE users(id INTEGER PRIMARY KEY AUTOINCREMENT,email TEXT UNIQUE NOT NULL,"
+                    + "password_hash TEXT NOT NULL,name TEXT NOT NULL,address TEXT,phone TEXT,avatar_path TEXT,"
+                    + "dark_mode_enabled INTEGER DEFAULT 0,default_currency_id INTEGER DEFAULT 1,"
+                    + "created_at INTEGER NOT NULL)",
+            "CREATE TABLE categories(id INTEGER PRIMARY KEY AUTOINCREMENT,name TEXT NOT NULL,icon_resource TEXT)",
+            "CREATE TABLE currencies(id INTEGER PRIMARY KEY AUTOINCREMENT,code TEXT UNIQUE NOT NULL,"
+                    + "rate_to_vnd REAL DEFAULT 1,symbol TEXT NOT NULL)",
+            "CREATE TABLE expenses(id INTEGER PRIMARY KEY AUTOINCREMENT,user_id INTEGER NOT NULL,"
+                    + "category_id INTEGER NOT NULL,currency_id INTEGER DEFAULT 1,amount REAL NOT NULL,"
+                    + "date INTEGER NOT NULL,description TEXT,receipt_path TEXT,type INTEGER DEFAULT 0,"
+                    + "is_recurring INTEGER DEFAULT 0,recurrence_period TEXT,next_occurrence_date INTEGER DEFAULT 0,"
+                    + "created_at INTEGER NOT NULL,"
+                    + "FOREIGN KEY(user_id) REFERENCES users(id) ON DELETE CASCADE,"
+                    + "FOREIGN KEY(category_id) REFERENCES categories(id),"
+                    + "FOREIGN KEY(currency_id) REFERENCES currencies(id))",
+            "CREATE TABLE budgets(id INTEGER PRIMARY KEY AUTOINCREMENT,user_id INTEGER NOT NULL,"
+                    + "category_id INTEGER DEFAULT 0,amount REAL NOT NULL,period_start INTEGER NOT NULL,"
+                    + "period_end INTEGER NOT NULL,created_at INTEGER NOT NULL,"
+                    + "FOREIGN KEY(user_id) REFERENCES users(id) ON DELETE CASCADE,"
+                    + "FOREIGN KEY(category_id) REFERENCES categories(id))",
+            "INSERT INTO categories(name,icon_resource) VALUES('Food & Dining','ic_food'),"
+                    + "('Transportation','ic_transport'),('Study & Books','ic_study'),"
+                    + "('Entertainment','ic_entertainment'),('Shopping','ic_shopping'),('Healthcare','ic_health'),"
+                    + "('Utilities','ic_utilities'),('Housing','ic_housing'),('Personal Care','ic_personal'),"
+                    + "('Others','ic_others')",
+            "INSERT INTO currencies(code,rate_to_vnd,symbol) VALUES('VND',1.0,'đ'),('USD',25000.0,'$')"
+    };
+
+    private static final int FOOD = 1;
+    private static final int HOUSING = 8;
+    private static final int OTHERS = 10;
+    private static final int USD = 2;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private long date;
+    private int yearMonth;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DATABASE);
+
+        Calendar c = Calendar.getInstance();
+        c.clear();
+        c.set(2023, Calendar.NOVEMBER, 15, 12, 0);
+        date = c.getTimeInMillis();
+        yearMonth = DatabaseHelper.toYearMonth(date);
+        c.set(2023, Calendar.NOVEMBER, 1, 0, 0);
+        long periodStart = c.getTimeInMillis();
+        c.set(2023, Calendar.NOVEMBER, 30, 23, 59);
+        long periodEnd = c.getTimeInMillis();
+
+        SQLiteDatabase old = context.openOrCreateDatabase(TEST_DATABASE, Context.MODE_PRIVATE, null);
+        for (String sql : SCHEMA_V3) {
+            old.execSQL(sql);
+        }
+        old.execSQL("INSERT INTO users(email,password_hash,name,created_at) VALUES('a@example.com','x','A',0)");
+        old.execSQL("INSERT INTO expenses(user_id,category_id,currency_id,amount,date,description,type,created_at)"
+                + " VALUES(1," + FOOD + ",1,45000," + date + ",'Cà phê',0,0)");
+        old.execSQL("INSERT INTO expenses(user_id,category_id,currency_id,amount,date,description,type,"
+                + "is_recurring,recurrence_period,next_occurrence_date,created_at)"
+                + " VALUES(1," + HOUSING + "," + USD + ",12.5," + date + ",'Rent',0,1,'Monthly',"
+                + (date + 30 * 86_400_000L) + ",0)");
+        old.execSQL("INSERT INTO expenses(user_id,category_id,currency_id,amount,date,description,type,created_at)"
+                + " VALUES(1," + OTHERS + ",1,1000000," + date + ",'Salary',1,0)");
+        old.execSQL("INSERT INTO budgets(user_id,category_id,amount,period_start,period_end,created_at)"
+                + " VALUES(1,0,5000000," + periodStart + "," + periodEnd + ",0)");
+        old.setVersion(3);
+        old.close();
+
+        dbHelper = new DatabaseHelper(context, TEST_DATABASE);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(TEST_DATABASE);
+    }
+
+    @Test
+    public void upgradeFromV3_keepsDataAndRebuildsDerivedTables() {
+        assertEquals(DatabaseHelper.DATABASE_VERSION, dbHelper.getWritableDatabase().getVersion());
+
+        // 12.50 USD -> 1250 cent, 312500 VND
+        Expense rent = dbHelper.getExpenseById(2);
+        assertEquals(1250, rent.getAmount());
+        RecurrenceRule rule = rent.getRecurrence();
+        assertNotNull(rule);
+        assertEquals(RecurrenceRule.UNIT_MONTH, rule.getUnit());
+
+        TransactionSummary summary = dbHelper.getMonthlySummary(1, yearMonth, yearMonth);
+        assertEquals(45000 + 312500, summary.getTotalExpense());
+        assertEquals(1000000, summary.getTotalIncome());
+
+        List<BudgetStatus> budgets = dbHelper.getBudgetStatuses(1);
+        assertEquals(1, budgets.size());
+        assertEquals(45000 + 312500, budgets.get(0).getSpent());
+
+        assertArrayEquals(new int[]{2}, dbHelper.searchExpenseIds(1, "rent"));
+        assertTrue(dbHelper.getDataVersion() > 0);
+    }
+
+    @Test
+    public void upgradeFromV3_triggersRunOnNewWrites() {
+        long version = dbHelper.getDataVersion();
+        dbHelper.insertExpense(new Expense(0, 1, FOOD, 1, 5000, date, "Bánh mì", null, date, Expense.TYPE_EXPENSE));
+
+        assertEquals(45000 + 312500 + 5000, dbHelper.getMonthlySummary(1, yearMonth, yearMonth).getTotalExpense());
+        assertEquals(45000 + 312500 + 5000, dbHelper.getBudgetStatuses(1).get(0).getSpent());
+        assertEquals(1, dbHelper.searchExpenseIds(1, "banh").length);
+        assertTrue(dbHelper.getDataVersion() > version);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.campusexpensemanager.utils;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.campusexpensemanager.models.Expense;
+import com.example.campusexpensemanager.models.TransactionSummary;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times arbitrary date-range reports over 10 years of daily transactions: ExpenseColumns.summarize
+ * (DayTotalsIndex for whole days) against the per-row loop the report used to run over every
+ * transaction in the range, and checks both give the same totals. Timings are only logged;
+ * DayTotalsIndexTest checks the totals on a smaller data set in the unit test run.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DayTotalsIndexBenchmarkTest {
+
+    private static final String TAG = "DayTotalsBenchmark";
+
+    private static final long DAY = 86_400_000L;
+    private static final int YEARS = 10;
+    private static final int PER_DAY = 8;
+    private static final int CATEGORIES = 12;
+    private static final int QUERIES = 2_000;
+
+    private static final long[] RATES = {0, Money.VND_RATE, Money.rateOf(25_431.5)};
+    private static final int[] SCALES = {0, 1, 100};
+
+    @Test
+    public void tenYearsOfDailyData_indexVsLoop() {
+        Random random = new Random(3);
+        int days = YEARS * 365;
+        int rows = days * PER_DAY;
+        long[] dates = new long[rows];
+        long[] amounts = new long[rows];
+        int[] categoryIds = new int[rows];
+        int[] currencyIds = new int[rows];
+        int[] types = new int[rows];
+
+        ExpenseColumns columns = new ExpenseColumns(rows);
+        columns.setRates(1, RATES, SCALES);
+        long start = 1_400_000_000_000L;
+        for (int i = 0; i < rows; i++) {
+            dates[i] = start + (i / PER_DAY) * DAY + (i % PER_DAY) * (DAY / PER_DAY);
+            currencyIds[i] = random.nextInt(5) == 0 ? 2 : 1;
+            amounts[i] = currencyIds[i] == 2 ? 1 + random.nextInt(9_999) : 1_000 + random.nextInt(500_000);
+            categoryIds[i] = random.nextInt(CATEGORIES);
+            types[i] = random.nextInt(5) == 0 ? Expense.TYPE_INCOME : Expense.TYPE_EXPENSE;
+            columns.append(i + 1, dates[i], amounts[i], categoryIds[i], currencyIds[i], types[i]);
+        }
+
+        long[] from = new long[QUERIES];
+        long[] to = new long[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            long a = start + (long) (random.nextDouble() * days * DAY);
+            long b = start + (long) (random.nextDouble() * days * DAY);
+            from[q] = Math.min(a, b);
+            to[q] = Math.max(a, b);
+        }
+
+        // Lần đầu dựng index; tính riêng
+        long buildStart = System.nanoTime();
+        columns.summarize(from[0], to[0]);
+        long buildNanos = System.nanoTime() - buildStart;
+
+        long indexChecksum = 0;
+        long indexStart = System.nanoTime();
+        for (int q = 0; q < QUERIES; q++) {
+            TransactionSummary summary = columns.summarize(from[q], to[q]);
+            indexChecksum += summary.getTotalExpense() + summary.getTotalIncome() + summary.getTopCategoryTotal();
+        }
+        long indexNanos = System.nanoTime() - indexStart;
+
+        long loopChecksum = 0;
+        long[] categoryTotals = new long[CATEGORIES];
+        long loopStart = System.nanoTime();
+        for (int q = 0; q < QUERIES; q++) {
+            // Cách cũ: duyệt mọi giao dịch trong khoảng, quy đổi và cộng theo category
+            long income = 0;
+            long expense = 0;
+            Arrays.fill(categoryTotals, 0);
+            for (int i = 0; i < rows; i++) {
+                if (dates[i] < from[q] || dates[i] > to[q]) {
+                    continue;
+                }
+                long vnd = Money.toVnd(amounts[i], SCALES[currencyIds[i]], RATES[currencyIds[i]]);
+                if (types[i] == Expense.TYPE_INCOME) {
+                    income += vnd;
+                } else {
+                    expense += vnd;
+                    categoryTotals[categoryIds[i]] += vnd;
+                }
+            }
+            long top = 0;
+            for (long total : categoryTotals) {
+                top = Math.max(top, total);
+            }
+            loopChecksum += expense + income + top;
+        }
+        long loopNanos = System.nanoTime() - loopStart;
+
+        Log.i(TAG, rows + " rows over " + days + " days, " + QUERIES + " ranges: index build "
+                + buildNanos / 1_000_000 + " ms, index " + indexNanos / QUERIES / 1_000 + " us/query, loop "
+                + loopNanos / QUERIES / 1_000 + " us/query");
+        assertEquals(loopChecksum, indexChecksum);
+    }
+}
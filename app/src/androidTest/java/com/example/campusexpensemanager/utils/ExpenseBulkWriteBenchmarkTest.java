@@ -0,0 +1,128 @@
+package com.example.campusexpensemanager.utils;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.campusexpensemanager.models.Expense;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Logs the time of 10k expense writes one call at a time (one transaction and one SQL compile
+ * each) against the batch API (one compiled statement in one transaction), and checks that the
+ * batch insert, update and delete touch exactly the rows they were given. Timings are only
+ * logged: they vary too much across devices and emulators to assert on.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ExpenseBulkWriteBenchmarkTest {
+
+    private static final String TAG = "BulkWriteBenchmark";
+    // User không tồn tại, chỉ dùng cho test
+    private static final int TEST_USER_ID = 999_998;
+    private static final int ROW_COUNT = 10_000;
+
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        dbHelper = DatabaseHelper.getInstance(appContext);
+        deleteTestRows();
+    }
+
+    @After
+    public void tearDown() {
+        deleteTestRows();
+    }
+
+    @Test
+    public void insert_perCallVsBatched() {
+        List<Expense> single = testExpenses("Single");
+        long start = System.nanoTime();
+        for (Expense expense : single) {
+            assertNotEquals(-1, dbHelper.insertExpense(expense));
+        }
+        long perCallMs = (System.nanoTime() - start) / 1_000_000;
+        deleteTestRows();
+
+        List<Expense> batched = testExpenses("Batched");
+        start = System.nanoTime();
+        int[] ids = dbHelper.insertExpenses(batched);
+        long batchedMs = (System.nanoTime() - start) / 1_000_000;
+        Log.i(TAG, ROW_COUNT + " inserts: per call " + perCallMs + "ms, batched " + batchedMs + "ms");
+
+        assertEquals(ROW_COUNT, ids.length);
+        assertEquals(ROW_COUNT, countTestRows());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], batched.get(i).getId());
+        }
+    }
+
+    @Test
+    public void updateAndDelete_batched() {
+        List<Expense> expenses = testExpenses("Before");
+        int[] ids = dbHelper.insertExpenses(expenses);
+
+        for (Expense expense : expenses) {
+            expense.setAmount(expense.getAmount() + 1);
+            expense.setDescription("After");
+        }
+        long start = System.nanoTime();
+        assertEquals(ROW_COUNT, dbHelper.updateExpenses(expenses));
+        long updateMs = (System.nanoTime() - start) / 1_000_000;
+        Expense first = dbHelper.getExpenseById(ids[0]);
+        assertEquals("After", first.getDescription());
+        assertEquals(expenses.get(0).getAmount(), first.getAmount());
+
+        // Xoá một nửa, kèm một ID không tồn tại
+        int[] half = new int[ROW_COUNT / 2 + 1];
+        for (int i = 0; i < ROW_COUNT / 2; i++) {
+            half[i] = ids[i * 2];
+        }
+        half[ROW_COUNT / 2] = -1;
+        start = System.nanoTime();
+        assertEquals(ROW_COUNT / 2, dbHelper.deleteExpenses(half));
+        long deleteMs = (System.nanoTime() - start) / 1_000_000;
+        Log.i(TAG, ROW_COUNT + " updates in " + updateMs + "ms, " + ROW_COUNT / 2 + " deletes in " + deleteMs + "ms");
+
+        assertEquals(ROW_COUNT / 2, countTestRows());
+        assertNull(dbHelper.getExpenseById(ids[0]));
+        assertEquals("After", dbHelper.getExpenseById(ids[1]).getDescription());
+    }
+
+    private static List<Expense> testExpenses(String description) {
+        long now = System.currentTimeMillis();
+        List<Expense> expenses = new ArrayList<>(ROW_COUNT);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            expenses.add(new Expense(0, TEST_USER_ID, 1, 1, 10_000 + i, now - i * 60_000L,
+                    description + " " + i, null, now, Expense.TYPE_EXPENSE));
+        }
+        return expenses;
+    }
+
+    private int countTestRows() {
+        return (int) DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(),
+                "expenses", "user_id=?", new String[]{String.valueOf(TEST_USER_ID)});
+    }
+
+    private void deleteTestRows() {
+        String[] args = {String.valueOf(TEST_USER_ID)};
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.delete("expenses", "user_id=?", args);
+    }
+}
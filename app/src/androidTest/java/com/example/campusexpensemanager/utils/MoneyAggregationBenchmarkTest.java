@@ -0,0 +1,108 @@
+package com.example.campusexpensemanager.utils;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times per-category VND totals over 1M rows computed the old way (double amounts and
+ * rates, boxed into a HashMap<Integer, Double>) against Money on long minor units, and checks
+ * that the long totals are exact. Timings are only logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MoneyAggregationBenchmarkTest {
+
+    private static final String TAG = "MoneyBenchmark";
+    private static final int ROWS = 1_000_000;
+    private static final int CATEGORIES = 12;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    // 0: VND, 1: USD (25 431.5 VND/USD)
+    private static final int[] MINOR_SCALE = {1, 100};
+    private static final long[] RATE = {Money.VND_RATE, Money.rateOf(25_431.5)};
+
+    private final int[] category = new int[ROWS];
+    private final int[] currency = new int[ROWS];
+    private final long[] minor = new long[ROWS];
+    private final double[] major = new double[ROWS];
+
+    public MoneyAggregationBenchmarkTest() {
+        Random random = new Random(42);
+        for (int i = 0; i < ROWS; i++) {
+            category[i] = random.nextInt(CATEGORIES);
+            currency[i] = random.nextInt(4) == 0 ? 1 : 0;
+            // VND: 1 000 - 500 000 đ; USD: 0.01 - 99.99 $
+            minor[i] = currency[i] == 0 ? 1_000 + random.nextInt(499_001) : 1 + random.nextInt(9_999);
+            major[i] = Money.toMajor(minor[i], MINOR_SCALE[currency[i]]);
+        }
+    }
+
+    @Test
+    public void longMinorUnits_vs_doubleBoxing() {
+        long[] longTotals = null;
+        Map<Integer, Double> doubleTotals = null;
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            longTotals = sumLong();
+            doubleTotals = sumDoubleBoxed();
+        }
+
+        long longNanos = 0;
+        long doubleNanos = 0;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            longTotals = sumLong();
+            longNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            doubleTotals = sumDoubleBoxed();
+            doubleNanos += System.nanoTime() - start;
+        }
+        Log.i(TAG, "Aggregating " + ROWS + " rows: long " + longNanos / MEASURED_RUNS / 1_000_000
+                + " ms, double+boxing " + doubleNanos / MEASURED_RUNS / 1_000_000 + " ms");
+
+        // Tổng long phải bằng đúng tổng từng dòng đã làm tròn (không phụ thuộc thứ tự cộng)
+        long[] expected = new long[CATEGORIES];
+        for (int i = ROWS - 1; i >= 0; i--) {
+            expected[category[i]] += Money.toVnd(minor[i], MINOR_SCALE[currency[i]], RATE[currency[i]]);
+        }
+        long longGrandTotal = 0;
+        double doubleGrandTotal = 0;
+        for (int c = 0; c < CATEGORIES; c++) {
+            assertEquals(expected[c], longTotals[c]);
+            longGrandTotal += longTotals[c];
+            doubleGrandTotal += doubleTotals.get(c);
+        }
+        Log.i(TAG, "Grand total: long " + longGrandTotal + " đ, double " + doubleGrandTotal + " đ");
+    }
+
+    private long[] sumLong() {
+        long[] totals = new long[CATEGORIES];
+        for (int i = 0; i < ROWS; i++) {
+            int cur = currency[i];
+            totals[category[i]] += Money.toVnd(minor[i], MINOR_SCALE[cur], RATE[cur]);
+        }
+        return totals;
+    }
+
+    // Cách cũ: amount * rate bằng double, cộng dồn vào Map có boxing
+    private Map<Integer, Double> sumDoubleBoxed() {
+        double[] rates = {1.0, 25_431.5};
+        Map<Integer, Double> totals = new HashMap<>();
+        for (int i = 0; i < ROWS; i++) {
+            double vnd = major[i] * rates[currency[i]];
+            Double current = totals.get(category[i]);
+            totals.put(category[i], current == null ? vnd : current + vnd);
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.campusexpensemanager.workers;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.campusexpensemanager.models.Expense;
+import com.example.campusexpensemanager.models.RecurrenceRule;
+import com.example.campusexpensemanager.utils.DatabaseHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Times the catch-up run of RecurringExpenseWorker over thousands of overdue monthly rules
+ * and checks that replaying the same occurrences inserts nothing.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecurringExpenseBenchmarkTest {
+
+    private static final String TAG = "RecurringBenchmark";
+    // User không tồn tại, chỉ dùng cho test
+    private static final int TEST_USER_ID = 999_999;
+    private static final int RULE_COUNT = 2000;
+    private static final int MISSED_MONTHS = 6;
+
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        dbHelper = DatabaseHelper.getInstance(appContext);
+        deleteTestRows();
+    }
+
+    @After
+    public void tearDown() {
+        deleteTestRows();
+    }
+
+    @Test
+    public void catchUp_thousandsOfRules() {
+        Calendar c = Calendar.getInstance();
+        long now = c.getTimeInMillis();
+        c.add(Calendar.MONTH, -MISSED_MONTHS);
+        c.add(Calendar.DAY_OF_YEAR, -1);
+        long anchorDate = c.getTimeInMillis();
+
+        insertRules(anchorDate);
+
+        List<Expense> templates = testTemplates(dbHelper.getDueRecurrences(now));
+        assertEquals(RULE_COUNT, templates.size());
+
+        long start = System.nanoTime();
+        List<Expense> occurrences = RecurringExpenseWorker.expandOccurrences(templates, now);
+        List<RecurrenceRule> rules = new ArrayList<>();
+        for (Expense template : templates) {
+            rules.add(template.getRecurrence());
+        }
+        List<Expense> inserted = dbHelper.insertRecurringOccurrences(occurrences, rules);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        Log.i(TAG, RULE_COUNT + " rules, " + inserted.size() + " occurrences in " + elapsedMs + "ms");
+
+        assertEquals(RULE_COUNT * MISSED_MONTHS, inserted.size());
+        for (RecurrenceRule rule : rules) {
+            assertTrue(rule.getNextDue() > now);
+        }
+        assertTrue(testTemplates(dbHelper.getDueRecurrences(now)).isEmpty());
+
+        // Chạy lại cùng các lần lặp (VD: job bị kill sau khi commit) không được tạo bản sao
+        assertEquals(0, dbHelper.insertRecurringOccurrences(occurrences, rules).size());
+    }
+
+    private void insertRules(long anchorDate) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < RULE_COUNT; i++) {
+                Expense template = new Expense(0, TEST_USER_ID, 1, 1, 10_000 + i, anchorDate,
+                        "Benchmark rule " + i, null, anchorDate, Expense.TYPE_EXPENSE);
+                template.setRecurrence(RecurrenceRule.every(1, RecurrenceRule.UNIT_MONTH, anchorDate, 0, 0));
+                dbHelper.insertExpense(template);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static List<Expense> testTemplates(List<Expense> due) {
+        List<Expense> templates = new ArrayList<>();
+        for (Expense expense : due) {
+            if (expense.getUserId() == TEST_USER_ID) {
+                templates.add(expense);
+            }
+        }
+        return templates;
+    }
+
+    private void deleteTestRows() {
+        String[] args = {String.valueOf(TEST_USER_ID)};
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.delete("recurrence_rules", "user_id=?", args);
+        db.delete("expenses", "user_id=?", args);
+    }
+}
@@ -2,40 +2,53 @@ package com.example.campusexpensemanager;
 
 import android.app.Application;
 
-import androidx.work.ExistingPeriodicWorkPolicy;
-import androidx.work.PeriodicWorkRequest;
 import androidx.work.WorkManager;
 
+import com.example.campusexpensemanager.utils.DatabaseHelper;
+import com.example.campusexpensemanager.utils.ExpenseRepository;
+import com.example.campusexpensemanager.utils.InvalidationTracker;
+import com.example.campusexpensemanager.utils.NotificationHelper;
+import com.example.campusexpensemanager.workers.BudgetAlertWorker;
 import com.example.campusexpensemanager.workers.RecurringExpenseWorker;
 
-import java.util.concurrent.TimeUnit;
-
 /**
  * Lớp Application tùy chỉnh để khởi tạo các tác vụ nền
- * như RecurringExpenseWorker.
+ * như RecurringExpenseWorker và BudgetAlertWorker.
  */
 public class MainApplication extends Application {
 
     @Override
     public void onCreate() {
         super.onCreate();
+        // Tạo kênh thông báo một lần; các worker chỉ post
+        NotificationHelper.createChannels(this);
         // Lên lịch cho tác vụ kiểm tra chi phí lặp lại
         setupRecurringWork();
+        // Kiểm tra ngưỡng budget sau mỗi lần ghi
+        setupBudgetAlerts();
+    }
+
+    private void setupBudgetAlerts() {
+        InvalidationTracker tracker = DatabaseHelper.getInstance(this).getInvalidationTracker();
+        InvalidationTracker.Observer observer = change -> BudgetAlertWorker.enqueue(this, change.getUserId());
+
+        // Expense đổi -> spent_vnd đổi; budget đổi số tiền/kỳ -> ngưỡng có thể đổi
+        // Currencies đổi tỷ giá -> spent_vnd của mọi user được tính lại (báo qua TABLE_BUDGETS)
+        tracker.addObserver(InvalidationTracker.TABLE_EXPENSES, InvalidationTracker.ALL_USERS, observer);
+        tracker.addObserver(InvalidationTracker.TABLE_BUDGETS, InvalidationTracker.ALL_USERS, observer);
     }
 
     private void setupRecurringWork() {
-        // Tạo một yêu cầu chạy định kỳ mỗi 1 ngày
-        PeriodicWorkRequest recurringWorkRequest =
-                new PeriodicWorkRequest.Builder(RecurringExpenseWorker.class, 1, TimeUnit.DAYS)
-                        // Có thể thêm Constraints (ví dụ: chỉ chạy khi có mạng)
-                        // .setConstraints(Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build())
-                        .build();
-
-        // Đăng ký tác vụ với WorkManager, đảm bảo chỉ có 1 tác vụ duy nhất
-        WorkManager.getInstance(this).enqueueUniquePeriodicWork(
-                "RecurringExpenseJob", // Tên duy nhất cho tác vụ
-                ExistingPeriodicWorkPolicy.KEEP, // Giữ lại tác vụ cũ nếu đã tồn tại
-                recurringWorkRequest
-        );
+        // Bỏ tác vụ quét định kỳ 1 ngày của bản cũ; worker giờ chạy đúng lúc rule sớm nhất đến hạn
+        WorkManager.getInstance(this).cancelUniqueWork("RecurringExpenseJob");
+
+        ExpenseRepository repository = ExpenseRepository.getInstance(this);
+        Runnable reschedule = () -> repository.read(DatabaseHelper::getNextRecurrenceDue,
+                nextDue -> RecurringExpenseWorker.schedule(this, nextDue));
+
+        // Thêm/sửa/xoá rule -> hẹn lại theo next_due sớm nhất
+        repository.getInvalidationTracker().addObserver(InvalidationTracker.TABLE_RECURRENCE_RULES,
+                InvalidationTracker.ALL_USERS, change -> reschedule.run());
+        reschedule.run();
     }
-}
\ No newline at end of file
+}
@@ -30,15 +30,16 @@ import com.example.campusexpensemanager.R;
 import com.example.campusexpensemanager.models.Category;
 import com.example.campusexpensemanager.models.Currency;
 import com.example.campusexpensemanager.models.Expense;
+import com.example.campusexpensemanager.models.RecurrenceRule;
 import com.example.campusexpensemanager.utils.CurrencyHelper;
 import com.example.campusexpensemanager.utils.DatabaseHelper;
+import com.example.campusexpensemanager.utils.ExpenseRepository;
 import com.example.campusexpensemanager.utils.SessionManager;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 
 import java.io.File;
-import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.List;
@@ -68,6 +69,7 @@ public class AddExpenseActivity extends BaseActivity {
     private CurrencyHelper currencyHelper;
 
     private DatabaseHelper dbHelper;
+    private ExpenseRepository repository;
 
     private List<Category> categories;
     private Calendar selectedDateTime;
@@ -82,6 +84,7 @@ public class AddExpenseActivity extends BaseActivity {
 
         // ... (Initialize helpers, Check auth, Initialize date/time)
         dbHelper = DatabaseHelper.getInstance(this);
+        repository = ExpenseRepository.getInstance(this);
         currencyHelper = CurrencyHelper.getInstance(this);
 
         if (!sessionManager.isLoggedIn()) {
@@ -184,11 +187,10 @@ public class AddExpenseActivity extends BaseActivity {
 
     // **SPRINT 5: Hàm mới để setup spinner lặp lại**
     private void setupRecurringSpinner() {
-        String[] periods = {"Weekly", "Monthly", "Yearly"};
         ArrayAdapter<String> adapter = new ArrayAdapter<>(
                 this,
                 android.R.layout.simple_spinner_item,
-                periods
+                RecurrenceRule.PRESET_LABELS
         );
         adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         spinnerRecurrencePeriod.setAdapter(adapter);
@@ -323,9 +325,14 @@ public class AddExpenseActivity extends BaseActivity {
             tilAmount.setError(getString(R.string.error_empty_field));
             return;
         }
-        double amount;
+        // **SPRINT 6: Lấy Currency ID** (số tiền lưu theo đơn vị nhỏ của currency này)
+        Currency selectedCurrency = (Currency) spinnerCurrency.getSelectedItem();
+        int currencyId = (selectedCurrency != null) ? selectedCurrency.getId() : 1; // Mặc định là 1 (VND)
+        int minorScale = (selectedCurrency != null) ? selectedCurrency.getMinorScale() : Money.VND_SCALE;
+
+        long amount;
         try {
-            amount = Double.parseDouble(amountStr);
+            amount = Money.parse(amountStr, minorScale);
         } catch (NumberFormatException e) {
             tilAmount.setError("Invalid amount");
             return;
@@ -353,10 +360,6 @@ public class AddExpenseActivity extends BaseActivity {
         int transactionType = rgTransactionType.getCheckedRadioButtonId() == R.id.rb_income ?
                 Expense.TYPE_INCOME : Expense.TYPE_EXPENSE;
 
-        // **SPRINT 6: Lấy Currency ID**
-        Currency selectedCurrency = (Currency) spinnerCurrency.getSelectedItem();
-        int currencyId = (selectedCurrency != null) ? selectedCurrency.getId() : 1; // Mặc định là 1 (VND)
-
         // Create expense object
         Expense expense = new Expense(userId, categoryId, amount, dateTime, description, transactionType);
         expense.setCurrencyId(currencyId);
@@ -364,43 +367,37 @@ public class AddExpenseActivity extends BaseActivity {
 
         // **SPRINT 5: Xử lý Recurring**
         if (cbRecurring.isChecked()) {
-            String period = spinnerRecurrencePeriod.getSelectedItem().toString();
-            Calendar nextOccurrenceCal = (Calendar) selectedDateTime.clone();
-
-            switch (period) {
-                case "Weekly":
-                    nextOccurrenceCal.add(Calendar.DAY_OF_YEAR, 7);
-                    break;
-                case "Monthly":
-                    nextOccurrenceCal.add(Calendar.MONTH, 1);
-                    break;
-                case "Yearly":
-                    nextOccurrenceCal.add(Calendar.YEAR, 1);
-                    break;
-            }
-
-            expense.setRecurring(true);
-            expense.setRecurrencePeriod(period);
-            expense.setNextOccurrenceDate(nextOccurrenceCal.getTimeInMillis());
+            // Lần lặp đầu tiên tính từ ngày ĐÃ CHỌN; rule được lưu cùng transaction với expense
+            expense.setRecurrence(RecurrenceRule.fromPreset(
+                    spinnerRecurrencePeriod.getSelectedItemPosition(), dateTime));
         }
 
-        // Insert into database
-        long expenseId = dbHelper.insertExpense(expense);
-
-        if (expenseId != -1) {
-            NumberFormat currencyFormat = NumberFormat.getInstance(new Locale("vi", "VN"));
-            String formattedAmount = currencyHelper.formatAmount(amount, currencyId);
+        // Insert into database (background writer thread), tránh bấm lưu 2 lần
+        fabSave.setEnabled(false);
+        repository.insertExpense(expense, new ExpenseRepository.Callback<Long>() {
+            @Override
+            public void onResult(Long expenseId) {
+                if (expenseId != -1) {
+                    String formattedAmount = currencyHelper.formatAmount(amount, currencyId);
+
+                    // Cập nhật Toast
+                    String message = (transactionType == Expense.TYPE_INCOME ? "Income" : "Expense") + " added: " + formattedAmount;
+                    if (expense.isRecurring()) {
+                        message += " (Recurring " + expense.getRecurrence().getLabel() + ")";
+                    }
+                    Toast.makeText(AddExpenseActivity.this, message, Toast.LENGTH_SHORT).show();
 
-            // Cập nhật Toast
-            String message = (transactionType == Expense.TYPE_INCOME ? "Income" : "Expense") + " added: " + formattedAmount;
-            if (expense.isRecurring()) {
-                message += " (Recurring " + expense.getRecurrencePeriod() + ")";
+                    finish();
+                } else {
+                    onError(null);
+                }
             }
-            Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
 
-            finish();
-        } else {
-            Toast.makeText(this, "Failed to add transaction", Toast.LENGTH_SHORT).show();
-        }
+            @Override
+            public void onError(Exception e) {
+                fabSave.setEnabled(true);
+                Toast.makeText(AddExpenseActivity.this, "Failed to add transaction", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 }
\ No newline at end of file
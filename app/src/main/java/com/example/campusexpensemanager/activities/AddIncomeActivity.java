@@ -15,6 +15,7 @@ import com.example.campusexpensemanager.models.Category;
 import com.example.campusexpensemanager.models.Expense;
 import com.example.campusexpensemanager.utils.CurrencyHelper;
 import com.example.campusexpensemanager.utils.DatabaseHelper;
+import com.example.campusexpensemanager.utils.Money;
 import com.example.campusexpensemanager.utils.SessionManager;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.textfield.TextInputEditText;
@@ -169,9 +170,9 @@ public class AddIncomeActivity extends BaseActivity {
             return;
         }
 
-        double amount;
+        long amount;
         try {
-            amount = Double.parseDouble(amountStr);
+            amount = Money.parse(amountStr, Money.VND_SCALE);
         } catch (NumberFormatException e) {
             tilAmount.setError("Invalid amount");
             return;
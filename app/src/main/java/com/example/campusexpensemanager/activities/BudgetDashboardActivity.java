@@ -1,9 +1,6 @@
 package com.example.campusexpensemanager.activities;
 
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
 import android.content.Intent;
-import android.os.Build;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.LinearLayout;
@@ -11,15 +8,18 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import com.example.campusexpensemanager.BaseActivity;
-import androidx.core.app.NotificationCompat;
 import androidx.core.content.ContextCompat;
 
 import com.example.campusexpensemanager.R;
 import com.example.campusexpensemanager.models.Budget;
+import com.example.campusexpensemanager.models.BudgetStatus;
 import com.example.campusexpensemanager.models.Category;
-import com.example.campusexpensemanager.models.Expense;
+import com.example.campusexpensemanager.utils.CategoryRegistry;
 import com.example.campusexpensemanager.utils.CurrencyHelper;
 import com.example.campusexpensemanager.utils.DatabaseHelper;
+import com.example.campusexpensemanager.utils.ExpenseRepository;
+import com.example.campusexpensemanager.utils.InvalidationTracker;
+import com.example.campusexpensemanager.utils.LiveQuery;
 import com.example.campusexpensemanager.utils.SessionManager;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
@@ -30,23 +30,26 @@ import java.util.List;
 import java.util.Locale;
 
 /**
- * BudgetDashboardActivity shows budget progress with predictions and alerts
+ * BudgetDashboardActivity shows budget progress with predictions
+ * Threshold alerts are sent by BudgetAlertWorker, not while this screen renders.
  */
 public class BudgetDashboardActivity extends BaseActivity {
 
-    private static final String CHANNEL_ID = "budget_alerts";
-    private static final int NOTIFICATION_ID = 1001;
-
     private LinearLayout budgetContainer;
     private TextView tvEmptyState;
     private FloatingActionButton fabAddBudget;
 
     private DatabaseHelper dbHelper;
+    private ExpenseRepository repository;
+    private CategoryRegistry categoryRegistry;
     private CurrencyHelper currencyHelper;
 
     private NumberFormat currencyFormat;
     private SimpleDateFormat dateFormat;
 
+    // Budgets + số đã chi, chạy lại khi budgets hoặc expenses của user thay đổi
+    private LiveQuery<List<BudgetStatus>> budgetQuery;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -54,6 +57,8 @@ public class BudgetDashboardActivity extends BaseActivity {
 
         // Initialize helpers
         dbHelper = DatabaseHelper.getInstance(this);
+        repository = ExpenseRepository.getInstance(this);
+        categoryRegistry = CategoryRegistry.getInstance(this);
         currencyHelper = CurrencyHelper.getInstance(this);
 
         // Check authentication
@@ -69,9 +74,6 @@ public class BudgetDashboardActivity extends BaseActivity {
         // Initialize views
         initializeViews();
 
-        // Create notification channel
-        createNotificationChannel();
-
         // Load budgets
         loadBudgets();
 
@@ -97,7 +99,20 @@ public class BudgetDashboardActivity extends BaseActivity {
      */
     private void loadBudgets() {
         int userId = sessionManager.getUserId();
-        List<Budget> budgets = dbHelper.getBudgetsByUser(userId);
+        String[] tables = {InvalidationTracker.TABLE_BUDGETS, InvalidationTracker.TABLE_EXPENSES};
+
+        // Số đã chi đọc từ cột spent_vnd (không query lại expenses cho từng budget)
+        budgetQuery = repository.observe(userId, tables, db -> {
+            List<BudgetStatus> statuses = db.getBudgetStatuses(userId);
+            // Nạp cache category trên background thread luôn
+            for (BudgetStatus status : statuses) {
+                categoryRegistry.get(status.getBudget().getCategoryId());
+            }
+            return statuses;
+        }, this::showBudgets);
+    }
+
+    private void showBudgets(List<BudgetStatus> budgets) {
 
         // Clear existing views
         budgetContainer.removeAllViews();
@@ -110,8 +125,9 @@ public class BudgetDashboardActivity extends BaseActivity {
             budgetContainer.setVisibility(View.VISIBLE);
 
             // Create card for each budget
-            for (Budget budget : budgets) {
-                View budgetCard = createBudgetCard(budget);
+            for (BudgetStatus status : budgets) {
+                Budget budget = status.getBudget();
+                View budgetCard = createBudgetCard(budget, status.getSpent());
 
                 // Add click listener to navigate to EditBudgetActivity
                 budgetCard.setOnClickListener(v -> {
@@ -128,7 +144,7 @@ public class BudgetDashboardActivity extends BaseActivity {
     /**
      * Create budget card with progress and prediction
      */
-    private View createBudgetCard(Budget budget) {
+    private View createBudgetCard(Budget budget, long spent) {
         View cardView = getLayoutInflater().inflate(R.layout.item_budget_dashboard, budgetContainer, false);
 
         // Get views
@@ -143,16 +159,14 @@ public class BudgetDashboardActivity extends BaseActivity {
         // Get category name
         String categoryName = "Total Budget";
         if (budget.getCategoryId() > 0) {
-            Category category = dbHelper.getCategoryById(budget.getCategoryId());
+            Category category = categoryRegistry.get(budget.getCategoryId());
             if (category != null) {
                 categoryName = category.getName();
             }
         }
         tvCategoryName.setText(categoryName);
 
-        // Calculate spent amount
-        double spent = calculateSpent(budget);
-        double remaining = budget.getAmount() - spent;
+        long remaining = budget.calculateRemaining(spent);
         double percentageSpent = budget.calculatePercentageSpent(spent);
 
         // Format amounts
@@ -192,39 +206,13 @@ public class BudgetDashboardActivity extends BaseActivity {
             tvPrediction.setVisibility(View.GONE);
         }
 
-        // Check for low budget alert
-        if (percentageSpent > 80) {
-            sendBudgetAlert(categoryName, remaining);
-        }
-
         return cardView;
     }
 
-    /**
-     * Calculate spent amount for budget
-     */
-    private double calculateSpent(Budget budget) {
-        List<Expense> allExpenses = dbHelper.getExpensesByUser(budget.getUserId());
-
-        double total = 0;
-        for (Expense expense : allExpenses) {
-            if (expense.getDate() >= budget.getPeriodStart() &&
-                    expense.getDate() <= budget.getPeriodEnd()) {
-
-                if (budget.getCategoryId() == 0 ||
-                        expense.getCategoryId() == budget.getCategoryId()) {
-                    total += expense.getAmount();
-                }
-            }
-        }
-
-        return total;
-    }
-
     /**
      * Calculate simple rule-based prediction
      */
-    private String calculatePrediction(Budget budget, double spent) {
+    private String calculatePrediction(Budget budget, long spent) {
         long currentTime = System.currentTimeMillis();
 
         // Check if period has started
@@ -248,8 +236,8 @@ public class BudgetDashboardActivity extends BaseActivity {
             return "";
         }
 
-        // Calculate daily average
-        double dailyAverage = spent / daysElapsed;
+        // Calculate daily average (ước lượng, số thực là đủ)
+        double dailyAverage = (double) spent / daysElapsed;
 
         // Predict total spending
         double predictedTotal = spent + (dailyAverage * daysRemaining);
@@ -263,50 +251,11 @@ public class BudgetDashboardActivity extends BaseActivity {
         }
     }
 
-    /**
-     * Send local notification for low budget
-     */
-    private void sendBudgetAlert(String categoryName, double remaining) {
-        NotificationManager notificationManager =
-                (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
-
-        String title = "Budget Alert: " + categoryName;
-        String message = "Only " + currencyFormat.format(remaining) + "đ remaining!";
-
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
-                .setSmallIcon(R.drawable.ic_wallet)
-                .setContentTitle(title)
-                .setContentText(message)
-                .setPriority(NotificationCompat.PRIORITY_HIGH)
-                .setAutoCancel(true);
-
-        if (notificationManager != null) {
-            notificationManager.notify(NOTIFICATION_ID, builder.build());
-        }
-    }
-
-    /**
-     * Create notification channel for Android 8.0+
-     */
-    private void createNotificationChannel() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            CharSequence name = "Budget Alerts";
-            String description = "Notifications for low budget warnings";
-            int importance = NotificationManager.IMPORTANCE_HIGH;
-
-            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, name, importance);
-            channel.setDescription(description);
-
-            NotificationManager notificationManager = getSystemService(NotificationManager.class);
-            if (notificationManager != null) {
-                notificationManager.createNotificationChannel(channel);
-            }
-        }
-    }
-
     @Override
-    protected void onResume() {
-        super.onResume();
-        loadBudgets();
+    protected void onDestroy() {
+        super.onDestroy();
+        if (budgetQuery != null) {
+            budgetQuery.close();
+        }
     }
 }
\ No newline at end of file
@@ -14,6 +14,7 @@ import com.example.campusexpensemanager.R;
 import com.example.campusexpensemanager.models.Budget;
 import com.example.campusexpensemanager.models.Category;
 import com.example.campusexpensemanager.utils.DatabaseHelper;
+import com.example.campusexpensemanager.utils.Money;
 import com.example.campusexpensemanager.utils.SessionManager;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputEditText;
@@ -197,9 +198,9 @@ public class EditBudgetActivity extends BaseActivity {
             return;
         }
 
-        double amount;
+        long amount;
         try {
-            amount = Double.parseDouble(amountStr);
+            amount = Money.parse(amountStr, Money.VND_SCALE);
         } catch (NumberFormatException e) {
             tilAmount.setError("Invalid amount");
             return;
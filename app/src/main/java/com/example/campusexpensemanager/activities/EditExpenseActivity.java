@@ -21,8 +21,10 @@ import com.example.campusexpensemanager.R;
 import com.example.campusexpensemanager.models.Category;
 import com.example.campusexpensemanager.models.Currency;
 import com.example.campusexpensemanager.models.Expense;
+import com.example.campusexpensemanager.models.RecurrenceRule;
 import com.example.campusexpensemanager.utils.CurrencyHelper;
 import com.example.campusexpensemanager.utils.DatabaseHelper;
+import com.example.campusexpensemanager.utils.Money;
 import com.example.campusexpensemanager.utils.SessionManager;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.snackbar.Snackbar;
@@ -139,14 +141,11 @@ public class EditExpenseActivity extends BaseActivity {
      * Load expense from database
      */
     private void loadExpense(int expenseId) {
-        // Query database for expense
-        List<Expense> allExpenses = dbHelper.getExpensesByUser(sessionManager.getUserId());
+        // Query database for expense (by primary key)
+        Expense expense = dbHelper.getExpenseById(expenseId);
 
-        for (Expense expense : allExpenses) {
-            if (expense.getId() == expenseId) {
-                currentExpense = expense;
-                break;
-            }
+        if (expense != null && expense.getUserId() == sessionManager.getUserId()) {
+            currentExpense = expense;
         }
 
         if (currentExpense == null) {
@@ -172,11 +171,10 @@ public class EditExpenseActivity extends BaseActivity {
 
     // **SPRINT 5: Thêm hàm setup recurring
     private void setupRecurringSpinner() {
-        String[] periods = {"Weekly", "Monthly", "Yearly"};
         recurrenceAdapter = new ArrayAdapter<>(
                 this,
                 android.R.layout.simple_spinner_item,
-                periods
+                RecurrenceRule.PRESET_LABELS
         );
         recurrenceAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         spinnerRecurrencePeriod.setAdapter(recurrenceAdapter);
@@ -205,7 +203,8 @@ public class EditExpenseActivity extends BaseActivity {
      */
     private void prefillForm() {
         // Amount
-        etAmount.setText(String.valueOf(currentExpense.getAmount()));
+        etAmount.setText(Money.toPlainString(currentExpense.getAmount(),
+                currencyHelper.getMinorScale(currentExpense.getCurrencyId())));
 
         // Category
         for (int i = 0; i < categories.size(); i++) {
@@ -238,11 +237,14 @@ public class EditExpenseActivity extends BaseActivity {
             rgTransactionType.check(R.id.rb_expense);
         }
 
-        cbRecurring.setChecked(currentExpense.isRecurring());
-        if (currentExpense.isRecurring()) {
+        RecurrenceRule recurrence = currentExpense.getRecurrence();
+        cbRecurring.setChecked(recurrence != null);
+        if (recurrence != null) {
             spinnerRecurrencePeriod.setVisibility(View.VISIBLE);
-            int periodPosition = recurrenceAdapter.getPosition(currentExpense.getRecurrencePeriod());
-            spinnerRecurrencePeriod.setSelection(periodPosition);
+            int periodPosition = recurrence.getPreset();
+            if (periodPosition >= 0) {
+                spinnerRecurrencePeriod.setSelection(periodPosition);
+            }
         } else {
             spinnerRecurrencePeriod.setVisibility(View.GONE);
         }
@@ -335,9 +337,13 @@ public class EditExpenseActivity extends BaseActivity {
             return;
         }
 
-        double amount;
+        Currency selectedCurrency = (Currency) spinnerCurrency.getSelectedItem();
+        int currencyId = (selectedCurrency != null) ? selectedCurrency.getId() : 1;
+        int minorScale = (selectedCurrency != null) ? selectedCurrency.getMinorScale() : Money.VND_SCALE;
+
+        long amount;
         try {
-            amount = Double.parseDouble(amountStr);
+            amount = Money.parse(amountStr, minorScale);
         } catch (NumberFormatException e) {
             tilAmount.setError("Invalid amount");
             return;
@@ -356,9 +362,6 @@ public class EditExpenseActivity extends BaseActivity {
             return;
         }
 
-        Currency selectedCurrency = (Currency) spinnerCurrency.getSelectedItem();
-        int currencyId = (selectedCurrency != null) ? selectedCurrency.getId() : 1;
-
         // Update expense object
         Category selectedCategory = (Category) spinnerCategory.getSelectedItem();
         currentExpense.setAmount(amount);
@@ -373,33 +376,13 @@ public class EditExpenseActivity extends BaseActivity {
         currentExpense.setType(transactionType);
 
         if (cbRecurring.isChecked()) {
-            String period = spinnerRecurrencePeriod.getSelectedItem().toString();
-            Calendar nextOccurrenceCal = (Calendar) selectedDateTime.clone();
-
-            // Tính toán ngày tiếp theo dựa trên ngày ĐÃ CHỌN (không phải ngày hiện tại)
-            switch (period) {
-                case "Weekly":
-                    nextOccurrenceCal.add(Calendar.DAY_OF_YEAR, 7);
-                    break;
-                case "Monthly":
-                    nextOccurrenceCal.add(Calendar.MONTH, 1);
-                    break;
-                case "Yearly":
-                    nextOccurrenceCal.add(Calendar.YEAR, 1);
-                    break;
-            }
-
-            currentExpense.setRecurring(true);
-            currentExpense.setRecurrencePeriod(period);
-            // Chỉ cập nhật ngày tiếp theo nếu nó khác
-            // (logic phức tạp "update one vs all" có thể cần ở đây, hiện tại đang update rule)
-            currentExpense.setNextOccurrenceDate(nextOccurrenceCal.getTimeInMillis());
-
+            // Tính từ ngày ĐÃ CHỌN (không phải ngày hiện tại); cùng chu kỳ và ngày thì
+            // updateExpense giữ nguyên rule cũ, các lần lặp đã sinh không bị tính lại
+            currentExpense.setRecurrence(RecurrenceRule.fromPreset(
+                    spinnerRecurrencePeriod.getSelectedItemPosition(), selectedDateTime.getTimeInMillis()));
         } else {
             // Tắt lặp lại
-            currentExpense.setRecurring(false);
-            currentExpense.setRecurrencePeriod(null);
-            currentExpense.setNextOccurrenceDate(0);
+            currentExpense.setRecurrence(null);
         }
 
         // Update in database
@@ -441,10 +424,10 @@ public class EditExpenseActivity extends BaseActivity {
                 currentExpense.getReceiptPath(),
                 currentExpense.getCreatedAt(),
                 currentExpense.getType(),
-                currentExpense.isRecurring(),
-                currentExpense.getRecurrencePeriod(),
-                currentExpense.getNextOccurrenceDate()
+                currentExpense.isRecurring()
         );
+        // Hoàn tác sẽ tạo lại rule (cùng ngày gốc nên không sinh trùng)
+        deletedExpense.setRecurrence(currentExpense.getRecurrence());
 
         int rowsDeleted = dbHelper.deleteExpense(currentExpense.getId());
 
@@ -16,13 +16,13 @@ import com.example.campusexpensemanager.models.Category;
 import com.example.campusexpensemanager.models.Expense;
 import com.example.campusexpensemanager.utils.CurrencyHelper;
 import com.example.campusexpensemanager.utils.DatabaseHelper;
+import com.example.campusexpensemanager.utils.Money;
 import com.example.campusexpensemanager.utils.SessionManager;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 
-import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.List;
@@ -103,14 +103,12 @@ public class EditIncomeActivity extends BaseActivity {
      * Load income from database
      */
     private void loadIncome(int incomeId) {
-        // Query database for income (expense with type=INCOME)
-        List<Expense> allExpenses = dbHelper.getExpensesByUser(sessionManager.getUserId());
+        // Query database for income (expense with type=INCOME, by primary key)
+        Expense expense = dbHelper.getExpenseById(incomeId);
 
-        for (Expense expense : allExpenses) {
-            if (expense.getId() == incomeId && expense.getType() == Expense.TYPE_INCOME) {
-                currentIncome = expense;
-                break;
-            }
+        if (expense != null && expense.getUserId() == sessionManager.getUserId()
+                && expense.getType() == Expense.TYPE_INCOME) {
+            currentIncome = expense;
         }
 
         if (currentIncome == null) {
@@ -139,7 +137,8 @@ public class EditIncomeActivity extends BaseActivity {
      */
     private void prefillForm() {
         // Amount
-        etAmount.setText(String.valueOf(currentIncome.getAmount()));
+        etAmount.setText(Money.toPlainString(currentIncome.getAmount(),
+                currencyHelper.getMinorScale(currentIncome.getCurrencyId())));
 
         // Category
         for (int i = 0; i < categories.size(); i++) {
@@ -222,9 +221,10 @@ public class EditIncomeActivity extends BaseActivity {
             return;
         }
 
-        double amount;
+        int minorScale = currencyHelper.getMinorScale(currentIncome.getCurrencyId());
+        long amount;
         try {
-            amount = Double.parseDouble(amountStr);
+            amount = Money.parse(amountStr, minorScale);
         } catch (NumberFormatException e) {
             tilAmount.setError("Invalid amount");
             return;
@@ -254,8 +254,7 @@ public class EditIncomeActivity extends BaseActivity {
         int rowsAffected = dbHelper.updateExpense(currentIncome);
 
         if (rowsAffected > 0) {
-            NumberFormat currencyFormat = NumberFormat.getInstance(new Locale("vi", "VN"));
-            String formattedAmount = currencyFormat.format(amount) + "đ";
+            String formattedAmount = currencyHelper.formatAmount(amount, currentIncome.getCurrencyId());
 
             Toast.makeText(this,
                     "Income updated: " + formattedAmount,
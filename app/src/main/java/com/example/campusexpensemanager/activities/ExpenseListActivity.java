@@ -16,15 +16,17 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.campusexpensemanager.R;
 import com.example.campusexpensemanager.adapters.ExpenseAdapter;
 import com.example.campusexpensemanager.models.Expense;
-import com.example.campusexpensemanager.utils.CurrencyHelper;
 import com.example.campusexpensemanager.utils.DatabaseHelper;
+import com.example.campusexpensemanager.utils.ExpenseColumns;
+import com.example.campusexpensemanager.utils.ExpensePager;
+import com.example.campusexpensemanager.utils.ExpenseRepository;
+import com.example.campusexpensemanager.utils.InvalidationTracker;
 import com.example.campusexpensemanager.utils.SessionManager;
 import com.google.android.material.chip.ChipGroup;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
 import java.text.NumberFormat;
 import java.util.Calendar;
-import java.util.List;
 import java.util.Locale;
 
 public class ExpenseListActivity extends BaseActivity implements ExpenseAdapter.OnExpenseClickListener {
@@ -37,11 +39,15 @@ public class ExpenseListActivity extends BaseActivity implements ExpenseAdapter.
 
     // **SPRINT 5: Thêm ChipGroup**
     private ChipGroup chipGroupFilterType;
-    private CurrencyHelper currencyHelper;
 
     private DatabaseHelper dbHelper;
+    private ExpenseRepository repository;
 
-    private List<Expense> expenses; // Đây là danh sách đầy đủ (master list)
+    // Chỉ giữ một cửa sổ các page gần vị trí đang xem, không tải toàn bộ lịch sử
+    private ExpensePager pager;
+
+    // Chỉ tải lại khi expenses của user này thay đổi (thay vì mỗi lần onResume)
+    private InvalidationTracker.Observer expenseObserver;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -56,7 +62,7 @@ public class ExpenseListActivity extends BaseActivity implements ExpenseAdapter.
 
         // ... (Initialize helpers, Check auth) ...
         dbHelper = DatabaseHelper.getInstance(this);
-        currencyHelper = CurrencyHelper.getInstance(this);
+        repository = ExpenseRepository.getInstance(this);
 
         if (!sessionManager.isLoggedIn()) {
             finish();
@@ -73,6 +79,14 @@ public class ExpenseListActivity extends BaseActivity implements ExpenseAdapter.
 
         loadExpenses();
 
+        // Add/Edit/Delete/Recurring worker -> pager cập nhật đúng những dòng bị đổi
+        expenseObserver = change -> {
+            pager.applyChange(change);
+            updateSummary();
+        };
+        repository.getInvalidationTracker().addObserver(InvalidationTracker.TABLE_EXPENSES,
+                sessionManager.getUserId(), expenseObserver);
+
         // ... (BackPressedCallback) ...
         getOnBackPressedDispatcher().addCallback(this, new OnBackPressedCallback(true) {
             @Override
@@ -104,6 +118,29 @@ public class ExpenseListActivity extends BaseActivity implements ExpenseAdapter.
     private void setupRecyclerView() {
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         recyclerView.setHasFixedSize(true);
+
+        pager = new ExpensePager(dbHelper, sessionManager.getUserId());
+        adapter = new ExpenseAdapter(this, pager, this);
+        recyclerView.setAdapter(adapter);
+
+        // Empty state phụ thuộc vào số dòng sau mỗi lần refresh/filter
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                updateEmptyState();
+            }
+
+            // ListAdapter báo từng khoảng insert/remove thay vì onChanged()
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyState();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyState();
+            }
+        });
     }
 
     private void setupSearch() {
@@ -114,6 +151,7 @@ public class ExpenseListActivity extends BaseActivity implements ExpenseAdapter.
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
                 if (adapter != null) {
+                    // Tìm bằng FTS index trong SQLite
                     adapter.filter(s.toString());
                 }
             }
@@ -161,47 +199,21 @@ public class ExpenseListActivity extends BaseActivity implements ExpenseAdapter.
     }
 
     /**
-     * Load expenses from database
+     * Load expenses from database (one page at a time, filters are kept by the pager)
      */
     private void loadExpenses() {
-        int userId = sessionManager.getUserId();
-        // Lấy TẤT CẢ transactions
-        expenses = dbHelper.getExpensesByUser(userId);
+        adapter.refresh();
+        updateSummary();
+    }
 
-        if (expenses.isEmpty()) {
+    private void updateEmptyState() {
+        if (adapter.getItemCount() == 0) {
             recyclerView.setVisibility(View.GONE);
             tvEmptyState.setVisibility(View.VISIBLE);
         } else {
             recyclerView.setVisibility(View.VISIBLE);
             tvEmptyState.setVisibility(View.GONE);
-
-            if (adapter == null) {
-                adapter = new ExpenseAdapter(this, expenses, this);
-                recyclerView.setAdapter(adapter);
-            } else {
-                adapter.updateExpenses(expenses);
-            }
-        }
-
-        // Cập nhật lại filter hiện tại (ví dụ: nếu đang ở chip "Expenses")
-        int checkedId = chipGroupFilterType.getCheckedChipId();
-        if (adapter != null) {
-            if (checkedId == R.id.chip_all) adapter.filterByType(0);
-            else if (checkedId == R.id.chip_expenses) adapter.filterByType(1);
-            else if (checkedId == R.id.chip_income) adapter.filterByType(2);
         }
-
-        updateSummary();
-    }
-
-    /**
-     * Cập nhật lại list khi quay lại từ Add/Edit
-     */
-    @Override
-    protected void onResume() {
-        super.onResume();
-        // Tải lại dữ liệu
-        loadExpenses();
     }
 
     /**
@@ -219,34 +231,38 @@ public class ExpenseListActivity extends BaseActivity implements ExpenseAdapter.
         calendar.add(Calendar.MONTH, 1);
         long monthEnd = calendar.getTimeInMillis();
 
-        // **SPRINT 5: Tính toán Income và Expense**
-        double monthlyTotalExpense = 0;
-        double monthlyTotalIncome = 0;
-        int monthlyCountExpense = 0;
-        int monthlyCountIncome = 0;
-        int totalCount = expenses.size();
-
-        for (Expense expense : expenses) {
-            if (expense.getDate() >= monthStart && expense.getDate() < monthEnd) {
-                if (expense.isIncome()) {
-                    monthlyTotalIncome += expense.getAmount();
-                    monthlyCountIncome++;
-                } else {
-                    monthlyTotalExpense += expense.getAmount();
-                    monthlyCountExpense++;
-                }
-            }
-        }
+        int userId = sessionManager.getUserId();
 
-        // Format and display
-        NumberFormat currencyFormat = NumberFormat.getInstance(new Locale("vi", "VN"));
-        String formattedIncome = currencyFormat.format(monthlyTotalIncome) + "đ";
-        String formattedExpense = currencyFormat.format(monthlyTotalExpense) + "đ";
+        // **SPRINT 5: Tính toán Income và Expense** (trên background thread)
+        repository.read(db -> {
+            // Tính trên cột expenses trong bộ nhớ, không tạo Expense nào
+            ExpenseColumns columns = db.getExpenseColumns(userId);
+            MonthlyStats stats = new MonthlyStats();
+            stats.totalCount = columns.size();
+            stats.totalIncome = columns.sumVnd(monthStart, monthEnd - 1, Expense.TYPE_INCOME, DatabaseHelper.FILTER_ANY);
+            stats.totalExpense = columns.sumVnd(monthStart, monthEnd - 1, Expense.TYPE_EXPENSE, DatabaseHelper.FILTER_ANY);
+            stats.countIncome = columns.count(monthStart, monthEnd - 1, Expense.TYPE_INCOME);
+            stats.countExpense = columns.count(monthStart, monthEnd - 1, Expense.TYPE_EXPENSE);
+            return stats;
+        }, stats -> {
+            // Format and display
+            NumberFormat currencyFormat = NumberFormat.getInstance(new Locale("vi", "VN"));
+            String formattedIncome = currencyFormat.format(stats.totalIncome) + "đ";
+            String formattedExpense = currencyFormat.format(stats.totalExpense) + "đ";
+
+            tvMonthlyTotal.setText("Thu: " + formattedIncome + " | Chi: " + formattedExpense);
+            tvExpenseCount.setText(stats.countIncome + " thu | " +
+                    stats.countExpense + " chi tháng này | " +
+                    stats.totalCount + " tổng");
+        });
+    }
 
-        tvMonthlyTotal.setText("Thu: " + formattedIncome + " | Chi: " + formattedExpense);
-        tvExpenseCount.setText(monthlyCountIncome + " thu | " +
-                monthlyCountExpense + " chi tháng này | " +
-                totalCount + " tổng");
+    private static class MonthlyStats {
+        long totalIncome; // VND
+        long totalExpense;
+        int countIncome;
+        int countExpense;
+        int totalCount;
     }
 
     /**
@@ -260,6 +276,17 @@ public class ExpenseListActivity extends BaseActivity implements ExpenseAdapter.
         startActivity(intent);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (expenseObserver != null) {
+            repository.getInvalidationTracker().removeObserver(expenseObserver);
+        }
+        if (pager != null) {
+            pager.close();
+        }
+    }
+
     @Override
     public void onBackPressed() {
         // Return to MainActivity instead of reloading
@@ -16,15 +16,16 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.campusexpensemanager.R;
 import com.example.campusexpensemanager.adapters.IncomeAdapter;
 import com.example.campusexpensemanager.models.Expense;
-import com.example.campusexpensemanager.utils.CurrencyHelper;
 import com.example.campusexpensemanager.utils.DatabaseHelper;
+import com.example.campusexpensemanager.utils.ExpenseColumns;
+import com.example.campusexpensemanager.utils.ExpensePager;
+import com.example.campusexpensemanager.utils.ExpenseRepository;
+import com.example.campusexpensemanager.utils.InvalidationTracker;
 import com.example.campusexpensemanager.utils.SessionManager;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
 import java.text.NumberFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.List;
 import java.util.Locale;
 
 /**
@@ -40,9 +41,10 @@ public class IncomeListActivity extends BaseActivity implements IncomeAdapter.On
     private FloatingActionButton fabAddIncome;
 
     private DatabaseHelper dbHelper;
-    private CurrencyHelper currencyHelper;
+    private ExpenseRepository repository;
 
-    private List<Expense> incomes;
+    private ExpensePager pager;
+    private InvalidationTracker.Observer incomeObserver;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -57,7 +59,7 @@ public class IncomeListActivity extends BaseActivity implements IncomeAdapter.On
 
         // Initialize helpers
         dbHelper = DatabaseHelper.getInstance(this);
-        currencyHelper = CurrencyHelper.getInstance(this);
+        repository = ExpenseRepository.getInstance(this);
 
         // Check authentication
         if (!sessionManager.isLoggedIn()) {
@@ -77,8 +79,14 @@ public class IncomeListActivity extends BaseActivity implements IncomeAdapter.On
         // Setup click listeners
         setupClickListeners();
 
-        // Load incomes
+        // Load incomes, then reload only when this user's transactions change
         loadIncomes();
+        incomeObserver = change -> {
+            pager.applyChange(change);
+            updateSummary();
+        };
+        repository.getInvalidationTracker().addObserver(InvalidationTracker.TABLE_EXPENSES,
+                sessionManager.getUserId(), incomeObserver);
 
         // Setup back pressed callback
         getOnBackPressedDispatcher().addCallback(this, new OnBackPressedCallback(true) {
@@ -107,6 +115,30 @@ public class IncomeListActivity extends BaseActivity implements IncomeAdapter.On
     private void setupRecyclerView() {
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         recyclerView.setHasFixedSize(true);
+
+        // Paged, incomes only (type filter applied in SQLite)
+        pager = new ExpensePager(dbHelper, sessionManager.getUserId());
+        pager.setType(Expense.TYPE_INCOME);
+        adapter = new IncomeAdapter(this, pager, this);
+        recyclerView.setAdapter(adapter);
+
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                updateEmptyState();
+            }
+
+            // ListAdapter báo từng khoảng insert/remove thay vì onChanged()
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyState();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyState();
+            }
+        });
     }
 
     private void setupSearch() {
@@ -117,6 +149,7 @@ public class IncomeListActivity extends BaseActivity implements IncomeAdapter.On
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
                 if (adapter != null) {
+                    // Tìm bằng FTS index trong SQLite
                     adapter.filter(s.toString());
                 }
             }
@@ -147,35 +180,23 @@ public class IncomeListActivity extends BaseActivity implements IncomeAdapter.On
     }
 
     /**
-     * Load incomes from database (type = INCOME only)
+     * Load incomes from database (type = INCOME only, one page at a time)
      */
     private void loadIncomes() {
-        int userId = sessionManager.getUserId();
+        adapter.refresh();
 
-        // Get all expenses and filter by type = INCOME
-        List<Expense> allExpenses = dbHelper.getExpensesByUser(userId);
-        incomes = new ArrayList<>();
-
-        for (Expense expense : allExpenses) {
-            if (expense.getType() == Expense.TYPE_INCOME) {
-                incomes.add(expense);
-            }
-        }
+        // Calculate and display summary
+        updateSummary();
+    }
 
-        if (incomes.isEmpty()) {
+    private void updateEmptyState() {
+        if (adapter.getItemCount() == 0) {
             recyclerView.setVisibility(View.GONE);
             tvEmptyState.setVisibility(View.VISIBLE);
         } else {
             recyclerView.setVisibility(View.VISIBLE);
             tvEmptyState.setVisibility(View.GONE);
-
-            // Create adapter
-            adapter = new IncomeAdapter(this, incomes, this);
-            recyclerView.setAdapter(adapter);
         }
-
-        // Calculate and display summary
-        updateSummary();
     }
 
     /**
@@ -193,24 +214,26 @@ public class IncomeListActivity extends BaseActivity implements IncomeAdapter.On
         calendar.add(Calendar.MONTH, 1);
         long monthEnd = calendar.getTimeInMillis();
 
-        // Calculate total for this month
-        double monthlyTotal = 0;
-        int monthlyCount = 0;
-
-        for (Expense income : incomes) {
-            if (income.getDate() >= monthStart && income.getDate() < monthEnd) {
-                monthlyTotal += income.getAmount();
-                monthlyCount++;
-            }
-        }
-
-        // Format and display
-        NumberFormat currencyFormat = NumberFormat.getInstance(new Locale("vi", "VN"));
-        String formattedTotal = currencyFormat.format(monthlyTotal) + "đ";
+        int userId = sessionManager.getUserId();
 
-        tvMonthlyTotal.setText("Total This Month: " + formattedTotal);
-        tvIncomeCount.setText(monthlyCount + " incomes this month | " +
-                incomes.size() + " total");
+        // Calculate total for this month (background thread)
+        repository.read(db -> {
+            // Tính trên cột expenses trong bộ nhớ, không tạo Expense nào
+            ExpenseColumns columns = db.getExpenseColumns(userId);
+            long monthlyTotal = columns.sumVnd(monthStart, monthEnd - 1, Expense.TYPE_INCOME,
+                    DatabaseHelper.FILTER_ANY);
+            int monthlyCount = columns.count(monthStart, monthEnd - 1, Expense.TYPE_INCOME);
+            int totalCount = columns.count(Long.MIN_VALUE, Long.MAX_VALUE, Expense.TYPE_INCOME);
+            return new long[]{monthlyTotal, monthlyCount, totalCount};
+        }, result -> {
+            // Format and display
+            NumberFormat currencyFormat = NumberFormat.getInstance(new Locale("vi", "VN"));
+            String formattedTotal = currencyFormat.format(result[0]) + "đ";
+
+            tvMonthlyTotal.setText("Total This Month: " + formattedTotal);
+            tvIncomeCount.setText((int) result[1] + " incomes this month | " +
+                    (int) result[2] + " total");
+        });
     }
 
     /**
@@ -225,8 +248,13 @@ public class IncomeListActivity extends BaseActivity implements IncomeAdapter.On
     }
 
     @Override
-    protected void onResume() {
-        super.onResume();
-        loadIncomes();
+    protected void onDestroy() {
+        super.onDestroy();
+        if (incomeObserver != null) {
+            repository.getInvalidationTracker().removeObserver(incomeObserver);
+        }
+        if (pager != null) {
+            pager.close();
+        }
     }
 }
\ No newline at end of file
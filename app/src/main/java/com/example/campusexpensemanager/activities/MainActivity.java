@@ -12,11 +12,17 @@ import androidx.core.content.ContextCompat;
 
 import com.example.campusexpensemanager.BaseActivity;
 import com.example.campusexpensemanager.R;
-import com.example.campusexpensemanager.models.Budget;
+import com.example.campusexpensemanager.models.BudgetStatus;
 import com.example.campusexpensemanager.models.Category;
-import com.example.campusexpensemanager.models.Expense;
+import com.example.campusexpensemanager.models.DashboardSummary;
+import com.example.campusexpensemanager.models.TransactionSummary;
+import com.example.campusexpensemanager.utils.CategoryRegistry;
 import com.example.campusexpensemanager.utils.CurrencyHelper;
+import com.example.campusexpensemanager.utils.DashboardSnapshotStore;
 import com.example.campusexpensemanager.utils.DatabaseHelper;
+import com.example.campusexpensemanager.utils.ExpenseRepository;
+import com.example.campusexpensemanager.utils.InvalidationTracker;
+import com.example.campusexpensemanager.utils.LiveQuery;
 import com.example.campusexpensemanager.utils.SessionManager;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
@@ -39,9 +45,15 @@ public class MainActivity extends BaseActivity {
     private Button btnAddExpense, btnViewBudget, btnGenerateReport;
 
     private DatabaseHelper dbHelper;
+    private ExpenseRepository repository;
+    private CategoryRegistry categoryRegistry;
 
     private CurrencyHelper currencyHelper;
 
+    // Dashboard tự chạy lại khi expenses/budgets/categories/currencies thay đổi
+    private LiveQuery<DashboardSummary> dashboardQuery;
+    private DashboardSummary shownSummary;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         // ... (onCreate giữ nguyên) ...
@@ -53,6 +65,8 @@ public class MainActivity extends BaseActivity {
         }
         setContentView(R.layout.activity_main);
         dbHelper = DatabaseHelper.getInstance(this);
+        repository = ExpenseRepository.getInstance(this);
+        categoryRegistry = CategoryRegistry.getInstance(this);
         currencyHelper = CurrencyHelper.getInstance(this);
         initializeViews();
         setupBottomNavigation();
@@ -128,121 +142,165 @@ public class MainActivity extends BaseActivity {
     }
 
     /**
-     * Load dashboard summary data
+     * Load dashboard summary data (queries run on ExpenseRepository's read thread)
+     * The last summary is drawn from DashboardSnapshotStore first, so a cold start shows numbers
+     * without touching the database on the main thread. The read thread then checks the stored
+     * data version and only recomputes if that snapshot is stale; afterwards the query re-runs
+     * only when data it depends on changes.
      */
     private void loadDashboardData() {
-        try {
-            int userId = sessionManager.getUserId();
+        updateGreeting();
+
+        if (dashboardQuery != null) {
+            return;
+        }
 
-            // ... (Greeting) ...
-            String userName = sessionManager.getUserName();
-            if (userName == null || userName.isEmpty()) { userName = "User"; }
-            tvGreeting.setText("Hello, " + userName + "! 👋");
+        int userId = sessionManager.getUserId();
+        DashboardSnapshotStore snapshotStore = DashboardSnapshotStore.getInstance(this);
+        DashboardSummary snapshot = snapshotStore.load(userId);
+        if (snapshot != null) {
+            showDashboardData(snapshot);
+        }
 
-            // Lấy TẤT CẢ transactions
-            List<Expense> expenses = dbHelper.getExpensesByUser(userId);
+        String[] tables = {
+                InvalidationTracker.TABLE_EXPENSES, InvalidationTracker.TABLE_BUDGETS,
+                InvalidationTracker.TABLE_CATEGORIES, InvalidationTracker.TABLE_CURRENCIES
+        };
+
+        dashboardQuery = repository.observe(userId, tables, true, db -> {
+            // Đọc version trước khi query: ghi xảy ra trong lúc tính sẽ làm snapshot này cũ
+            long dataVersion = db.getDataVersion();
+            // Snapshot vẫn đúng (không có lần ghi nào từ khi tính): dùng lại, không tính
+            if (snapshot != null && snapshotStore.isCurrent(snapshot, dataVersion)) {
+                return snapshot;
+            }
+            long now = System.currentTimeMillis();
 
-            // ... (Tính ngày đầu tháng) ...
+            // ... (Tính ngày đầu tháng, tính lại mỗi lần chạy vì có thể đã sang tháng mới) ...
             Calendar calendar = Calendar.getInstance();
             calendar.set(Calendar.DAY_OF_MONTH, 1);
             calendar.set(Calendar.HOUR_OF_DAY, 0);
             calendar.set(Calendar.MINUTE, 0);
             calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
             long monthStart = calendar.getTimeInMillis();
-
-            // **SPRINT 5: Tính toán Income, Expense, Balance**
-            double monthlyTotalExpense = 0;
-            double monthlyTotalIncome = 0;
-            java.util.Map<Integer, Double> categoryTotals = new java.util.HashMap<>();
-
-            for (Expense expense : expenses) {
-                if (expense.getDate() >= monthStart) {
-
-                    // **SPRINT 6: Chuyển đổi sang VND trước khi tính toán**
-                    double amountInVND = currencyHelper.convertToVND(
-                            expense.getAmount(),
-                            expense.getCurrencyId()
-                    );
-
-                    if (expense.isIncome()) {
-                        monthlyTotalIncome += amountInVND;
-                    } else {
-                        monthlyTotalExpense += amountInVND;
-                        int categoryId = expense.getCategoryId();
-                        categoryTotals.put(categoryId,
-                                categoryTotals.getOrDefault(categoryId, 0.0) + amountInVND);
-                    }
+            calendar.add(Calendar.MONTH, 1);
+            long validUntil = calendar.getTimeInMillis();
+
+            // **SPRINT 6: Tổng Income/Expense (đã quy đổi VND)**, tính trên cột expenses trong bộ nhớ
+            TransactionSummary summary = db.getExpenseColumns(userId).summarize(monthStart, validUntil - 1);
+            Category topCat = categoryRegistry.get(summary.getTopCategoryId());
+            String topCategoryName = (topCat != null && summary.getTopCategoryTotal() > 0) ? topCat.getName() : null;
+
+            // ... (Tính Budget: số đã chi của từng budget đọc sẵn từ cột spent_vnd) ...
+            long budgetRemaining = 0;
+            List<BudgetStatus> budgets = db.getBudgetStatuses(userId);
+            for (BudgetStatus status : budgets) {
+                long periodEnd = status.getBudget().getPeriodEnd();
+                if (periodEnd >= now) {
+                    budgetRemaining += status.getRemaining();
+                    // Budget hết kỳ -> tổng còn lại đổi dù không có lần ghi nào
+                    validUntil = Math.min(validUntil, periodEnd + 1);
                 }
             }
 
-            double monthlyBalance = monthlyTotalIncome - monthlyTotalExpense;
-
-            // ... (Tính Budget) ...
-            List<Budget> budgets = dbHelper.getBudgetsByUser(userId);
-            double totalBudget = 0;
-            for (Budget budget : budgets) {
-                if (budget.getPeriodEnd() >= System.currentTimeMillis()) {
-                    totalBudget += budget.getAmount();
+            DashboardSummary data = new DashboardSummary(summary.getTotalIncome(), summary.getTotalExpense(),
+                    budgetRemaining, topCategoryName, summary.getTopCategoryTotal(),
+                    dataVersion, validUntil, now);
+            snapshotStore.save(userId, data);
+            return data;
+        }, new ExpenseRepository.Callback<DashboardSummary>() {
+            @Override
+            public void onResult(DashboardSummary data) {
+                if (!isDestroyed()) {
+                    showDashboardData(data);
                 }
             }
-            // Chỉ tính budget remaining dựa trên expense
-            double budgetRemaining = totalBudget - monthlyTotalExpense;
-
-            // ... (Tìm Top Category) ...
-            String topCategory = "None";
-            double topAmount = 0;
-            for (java.util.Map.Entry<Integer, Double> entry : categoryTotals.entrySet()) {
-                if (entry.getValue() > topAmount) {
-                    topAmount = entry.getValue();
-                    Category cat = dbHelper.getCategoryById(entry.getKey());
-                    if (cat != null) {
-                        topCategory = cat.getName();
-                    }
+
+            @Override
+            public void onError(Exception e) {
+                e.printStackTrace();
+                if (snapshot != null) {
+                    return; // Giữ số liệu đã lưu
                 }
+                // ... (Xử lý lỗi) ...
+                tvMonthlyIncome.setText("Total Income: 0đ");
+                tvMonthlyTotal.setText("Total Spent: 0đ");
+                tvMonthlyBalance.setText("Balance: 0đ");
+                tvBudgetRemaining.setText("Budget Remaining: 0đ");
+                tvTopCategory.setText("Top Category: None");
             }
+        });
+    }
 
-            // **SPRINT 6: Dùng CurrencyHelper để format (chỉ VND)**
-            NumberFormat vndFormat = NumberFormat.getCurrencyInstance(new Locale("vi", "VN"));
-            String formattedIncome = vndFormat.format(monthlyTotalIncome);
-            String formattedExpense = vndFormat.format(monthlyTotalExpense);
-            String formattedBalance = vndFormat.format(monthlyBalance);
-            String formattedRemaining = vndFormat.format(Math.max(0, budgetRemaining));
-            String formattedTopAmount = vndFormat.format(topAmount);
-
-            // Update UI
-            tvMonthlyIncome.setText("Total Income: " + formattedIncome);
-            tvMonthlyTotal.setText("Total Spent: " + formattedExpense);
-            tvMonthlyBalance.setText("Balance: " + formattedBalance);
-            tvBudgetRemaining.setText("Budget Remaining: " + formattedRemaining);
-            tvTopCategory.setText("Top Category: " + topCategory + " (" + formattedTopAmount + ")");
-
-            // Đặt màu cho Balance
-            if (monthlyBalance < 0) {
-                tvMonthlyBalance.setTextColor(ContextCompat.getColor(this, R.color.error));
-            } else {
-                tvMonthlyBalance.setTextColor(ContextCompat.getColor(this, R.color.success));
-            }
+    private void updateGreeting() {
+        // ... (Greeting) ...
+        String userName = sessionManager.getUserName();
+        if (userName == null || userName.isEmpty()) { userName = "User"; }
+        tvGreeting.setText("Hello, " + userName + "! 👋");
+    }
+
+    private void showDashboardData(DashboardSummary data) {
+        shownSummary = data;
+        long monthlyTotalExpense = data.getTotalExpense();
+        long monthlyTotalIncome = data.getTotalIncome();
+        long monthlyBalance = data.getBalance();
+
+        // Budget remaining: tổng phần còn lại của các budget chưa hết kỳ (mỗi budget trừ chi tiêu trong kỳ của nó)
+        long budgetRemaining = data.getBudgetRemaining();
+
+        // ... (Top Category: summary đã sắp xếp theo tổng giảm dần) ...
+        String topCategory = "None";
+        long topAmount = data.getTopCategoryTotal();
+        if (topAmount > 0 && data.getTopCategoryName() != null) {
+            topCategory = data.getTopCategoryName();
+        }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            // ... (Xử lý lỗi) ...
-            tvGreeting.setText("Hello, User! 👋");
-            tvMonthlyIncome.setText("Total Income: 0đ");
-            tvMonthlyTotal.setText("Total Spent: 0đ");
-            tvMonthlyBalance.setText("Balance: 0đ");
-            tvBudgetRemaining.setText("Budget Remaining: 0đ");
-            tvTopCategory.setText("Top Category: None");
+        // **SPRINT 6: Dùng CurrencyHelper để format (chỉ VND)**
+        NumberFormat vndFormat = NumberFormat.getCurrencyInstance(new Locale("vi", "VN"));
+        String formattedIncome = vndFormat.format(monthlyTotalIncome);
+        String formattedExpense = vndFormat.format(monthlyTotalExpense);
+        String formattedBalance = vndFormat.format(monthlyBalance);
+        String formattedRemaining = vndFormat.format(Math.max(0, budgetRemaining));
+        String formattedTopAmount = vndFormat.format(topAmount);
+
+        // Update UI
+        tvMonthlyIncome.setText("Total Income: " + formattedIncome);
+        tvMonthlyTotal.setText("Total Spent: " + formattedExpense);
+        tvMonthlyBalance.setText("Balance: " + formattedBalance);
+        tvBudgetRemaining.setText("Budget Remaining: " + formattedRemaining);
+        tvTopCategory.setText("Top Category: " + topCategory + " (" + formattedTopAmount + ")");
+
+        // Đặt màu cho Balance
+        if (monthlyBalance < 0) {
+            tvMonthlyBalance.setTextColor(ContextCompat.getColor(this, R.color.error));
+        } else {
+            tvMonthlyBalance.setTextColor(ContextCompat.getColor(this, R.color.success));
         }
     }
 
     @Override
     protected void onResume() {
         super.onResume();
+        // Số liệu đã được dashboardQuery cập nhật; chỉ tên user có thể đổi ở ProfileActivity
         if (layoutDashboard != null && layoutDashboard.getVisibility() == View.VISIBLE) {
-            loadDashboardData();
+            updateGreeting();
+        }
+        // Sang tháng mới hoặc budget vừa hết kỳ khi app ở nền -> tính lại
+        if (dashboardQuery != null && shownSummary != null
+                && DashboardSnapshotStore.getInstance(this).isExpired(shownSummary)) {
+            dashboardQuery.refresh();
         }
         if (bottomNavigation != null) {
             bottomNavigation.setSelectedItemId(R.id.nav_dashboard);
         }
     }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (dashboardQuery != null) {
+            dashboardQuery.close();
+        }
+    }
 }
\ No newline at end of file
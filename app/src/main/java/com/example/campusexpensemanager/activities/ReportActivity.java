@@ -6,34 +6,40 @@ import android.content.Intent;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.CancellationSignal;
 import android.os.Environment;
+import android.os.OperationCanceledException;
 import android.provider.MediaStore;
 import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.campusexpensemanager.BaseActivity;
 import com.example.campusexpensemanager.R;
 import com.example.campusexpensemanager.models.Category;
-import com.example.campusexpensemanager.models.Currency;
-import com.example.campusexpensemanager.models.Expense;
-import com.example.campusexpensemanager.utils.CurrencyHelper;
+import com.example.campusexpensemanager.models.TransactionSummary;
+import com.example.campusexpensemanager.utils.CategoryRegistry;
 import com.example.campusexpensemanager.utils.DatabaseHelper;
+import com.example.campusexpensemanager.utils.ExpenseImporter;
+import com.example.campusexpensemanager.utils.ExpenseRepository;
+import com.example.campusexpensemanager.utils.ReportExporter;
 import com.example.campusexpensemanager.utils.SessionManager;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 /**
  * ReportActivity handles expense reporting and CSV export
@@ -41,10 +47,19 @@ import java.util.Map;
 public class ReportActivity extends BaseActivity {
 
     private TextView tvDateRange, tvTotalExpense, tvExpenseCount, tvCategorySummary;
-    private Button btnSelectStartDate, btnSelectEndDate, btnExportCSV, btnShareEmail;
+    private Button btnSelectStartDate, btnSelectEndDate, btnExportCSV, btnShareEmail, btnImport;
 
     private DatabaseHelper dbHelper;
-    private CurrencyHelper currencyHelper;
+    private ExpenseRepository repository;
+    private CategoryRegistry categoryRegistry;
+    private ReportExporter reportExporter;
+
+    // Khác null khi đang export; gọi cancel() để dừng
+    private CancellationSignal exportSignal;
+    private ExpenseImporter expenseImporter;
+    private ActivityResultLauncher<String[]> importLauncher;
+    // Khác null khi đang import
+    private CancellationSignal importSignal;
 
     private Calendar startDate, endDate;
     private SimpleDateFormat dateFormat;
@@ -57,7 +72,15 @@ public class ReportActivity extends BaseActivity {
 
         // Initialize helpers
         dbHelper = DatabaseHelper.getInstance(this);
-        currencyHelper = CurrencyHelper.getInstance(this);
+        repository = ExpenseRepository.getInstance(this);
+        categoryRegistry = CategoryRegistry.getInstance(this);
+        reportExporter = ReportExporter.getInstance(this);
+        expenseImporter = ExpenseImporter.getInstance(this);
+        importLauncher = registerForActivityResult(new ActivityResultContracts.OpenDocument(), uri -> {
+            if (uri != null) {
+                importFile(uri);
+            }
+        });
 
         // Check authentication
         if (!sessionManager.isLoggedIn()) {
@@ -91,6 +114,7 @@ public class ReportActivity extends BaseActivity {
         btnSelectEndDate = findViewById(R.id.btn_select_end_date);
         btnExportCSV = findViewById(R.id.btn_export_csv);
         btnShareEmail = findViewById(R.id.btn_share_email);
+        btnImport = findViewById(R.id.btn_import);
     }
 
     /**
@@ -118,10 +142,13 @@ public class ReportActivity extends BaseActivity {
         btnSelectEndDate.setOnClickListener(v -> showDatePicker(false));
 
         // Export CSV
-        btnExportCSV.setOnClickListener(v -> exportToCSV());
+        btnExportCSV.setOnClickListener(v -> onExportClicked());
 
         // Share via email
         btnShareEmail.setOnClickListener(v -> shareViaEmail());
+
+        // Import CSV / backup
+        btnImport.setOnClickListener(v -> onImportClicked());
     }
 
     /**
@@ -160,38 +187,21 @@ public class ReportActivity extends BaseActivity {
      */
     private void generateReport() {
         int userId = sessionManager.getUserId();
-        List<Expense> allExpenses = dbHelper.getExpensesByUser(userId);
-
-        // Filter expenses by date range
-        double totalExpense = 0;
-        double totalIncome = 0; // **MỚI**
-        int expenseCount = 0;
-        Map<Integer, Double> categoryTotals = new HashMap<>();
-
-        long startTime = startDate.getTimeInMillis();
-        long endTime = endDate.getTimeInMillis();
-
-        for (Expense expense : allExpenses) {
-            if (expense.getDate() >= startTime && expense.getDate() <= endTime) {
 
-                // **SPRINT 6: Chuyển sang VND**
-                double amountInVND = currencyHelper.convertToVND(
-                        expense.getAmount(),
-                        expense.getCurrencyId()
-                );
-
-                if (expense.isIncome()) {
-                    totalIncome += amountInVND;
-                } else {
-                    totalExpense += amountInVND;
-                    expenseCount++;
-                    // Aggregate by category (chỉ expense)
-                    int categoryId = expense.getCategoryId();
-                    categoryTotals.put(categoryId,
-                            categoryTotals.getOrDefault(categoryId, 0.0) + amountInVND);
-                }
+        // **SPRINT 6: Tổng theo category (đã quy đổi VND)**
+        // Khoảng bất kỳ: ngày đầu/cuối cộng từng dòng, các ngày giữa đọc từ Fenwick theo ngày (ExpenseColumns)
+        long start = startDate.getTimeInMillis();
+        long end = endDate.getTimeInMillis();
+        repository.read(db -> db.getExpenseColumns(userId).summarize(start, end), summary -> {
+            if (!isDestroyed()) {
+                showReport(summary);
             }
-        }
+        });
+    }
+
+    private void showReport(TransactionSummary summary) {
+        long totalExpense = summary.getTotalExpense();
+        int expenseCount = summary.getExpenseCount();
 
         // Update date range display
         String dateRangeText = dateFormat.format(startDate.getTime()) + " - " +
@@ -200,7 +210,6 @@ public class ReportActivity extends BaseActivity {
 
         // **SPRINT 6: Cập nhật summary (đã là VND)**
         String totalExpenseText = currencyFormat.format(totalExpense) + "đ";
-        String totalIncomeText = currencyFormat.format(totalIncome) + "đ";
         tvTotalExpense.setText(getString(R.string.report_total_expense) + ": " + totalExpenseText);
 
         // Update expense count
@@ -209,13 +218,13 @@ public class ReportActivity extends BaseActivity {
         // Generate category summary
         StringBuilder categorySummary = new StringBuilder("Expenses by Category:\n\n");
 
-        if (categoryTotals.isEmpty()) {
+        if (summary.getCategoryCount() == 0) {
             categorySummary.append("No expenses in this period");
         } else {
-            for (Map.Entry<Integer, Double> entry : categoryTotals.entrySet()) {
-                Category category = dbHelper.getCategoryById(entry.getKey());
+            for (int i = 0; i < summary.getCategoryCount(); i++) {
+                Category category = categoryRegistry.get(summary.getCategoryId(i));
                 String categoryName = category != null ? category.getName() : "Unknown";
-                String amount = currencyFormat.format(entry.getValue()) + "đ";
+                String amount = currencyFormat.format(summary.getCategoryTotal(i)) + "đ";
 
                 categorySummary.append("• ").append(categoryName)
                         .append(": ").append(amount).append("\n");
@@ -226,113 +235,259 @@ public class ReportActivity extends BaseActivity {
     }
 
     /**
-     * Export report to CSV file
+     * Ask for the export format, or cancel the export that is running
      */
-    private void exportToCSV() {
-        try {
-            // Get filtered expenses
-            List<Expense> expenses = getFilteredExpenses();
+    private void onExportClicked() {
+        if (exportSignal != null) {
+            exportSignal.cancel();
+            return;
+        }
 
-            if (expenses.isEmpty()) {
-                Toast.makeText(this, "No expenses to export", Toast.LENGTH_SHORT).show();
-                return;
-            }
+        // Thứ tự khớp với R.array.export_formats
+        int[] formats = {ReportExporter.FORMAT_CSV, ReportExporter.FORMAT_CSV_GZIP, ReportExporter.FORMAT_ARCHIVE};
+        new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.report_export_format))
+                .setItems(R.array.export_formats, (dialog, which) -> exportReport(formats[which]))
+                .setNegativeButton(getString(R.string.action_cancel), null)
+                .show();
+    }
 
-            // Generate CSV content
-            StringBuilder csv = new StringBuilder();
-            csv.append("Type,Category,OriginalAmount,Currency,Amount(VND),Date,Description\n");
+    /**
+     * Export report to a file in Downloads (see ReportExporter for the formats)
+     * Rows are streamed from the database into the file on ExpenseRepository's read thread;
+     * while it runs the button shows progress and a second tap cancels the export
+     */
+    private void exportReport(int format) {
+        int userId = sessionManager.getUserId();
+        long start = startDate.getTimeInMillis();
+        long end = endDate.getTimeInMillis();
+        String fileName = "expense_report_" +
+                new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault())
+                        .format(new Date()) + ReportExporter.getFileExtension(format);
+
+        CancellationSignal signal = new CancellationSignal();
+        exportSignal = signal;
+        btnExportCSV.setText(R.string.exporting);
+
+        repository.read(db -> {
+            DownloadsOutput output = new DownloadsOutput(fileName, ReportExporter.getMimeType(format));
+            try {
+                int rows = reportExporter.export(format, userId, start, end, output,
+                        (written, total) -> runOnUiThread(() -> showExportProgress(signal, written, total)),
+                        signal);
+                output.publish();
+                return rows;
+            } catch (Exception e) {
+                // Huỷ hoặc lỗi giữa chừng -> không để lại file dở dang
+                output.discard();
+                throw e;
+            }
+        }, new ExpenseRepository.Callback<Integer>() {
+            @Override
+            public void onResult(Integer rows) {
+                finishExport(signal);
+                if (rows > 0) {
+                    Toast.makeText(ReportActivity.this, "Report saved to Downloads", Toast.LENGTH_LONG).show();
+                } else {
+                    Toast.makeText(ReportActivity.this, "No expenses to export", Toast.LENGTH_SHORT).show();
+                }
+            }
 
-            for (Expense expense : expenses) {
-                Category category = dbHelper.getCategoryById(expense.getCategoryId());
-                String categoryName = category != null ? category.getName() : "Unknown";
-                // **SPRINT 6: Thêm dữ liệu currency**
-                Currency currency = currencyHelper.getCurrencyById(expense.getCurrencyId());
-                String type = expense.isIncome() ? "Income" : "Expense";
-                String originalAmount = String.valueOf(expense.getAmount());
-                String currencyCode = currency.getCode();
-                String amountVND = String.valueOf(currencyHelper.convertToVND(expense.getAmount(), expense.getCurrencyId()));
-
-                String date = dateFormat.format(new Date(expense.getDate()));
-                String description = expense.getDescription() != null ?
-                        expense.getDescription().replace(",", ";") : "";
-
-                csv.append(type).append(",")
-                        .append(categoryName).append(",")
-                        .append(originalAmount).append(",")
-                        .append(currencyCode).append(",")
-                        .append(amountVND).append(",")
-                        .append(date).append(",")
-                        .append(description).append("\n");
+            @Override
+            public void onError(Exception e) {
+                finishExport(signal);
+                if (e instanceof OperationCanceledException) {
+                    Toast.makeText(ReportActivity.this, "Export cancelled", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                e.printStackTrace();
+                Toast.makeText(ReportActivity.this, "Failed to export: " + e.getMessage(),
+                        Toast.LENGTH_SHORT).show();
             }
+        });
+    }
 
-            // Save to Downloads folder
-            String fileName = "expense_report_" +
-                    new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault())
-                            .format(new Date()) + ".csv";
+    private void showExportProgress(CancellationSignal signal, int written, int total) {
+        // Bỏ qua tiến độ của lần export đã kết thúc/bị huỷ
+        if (exportSignal == signal && !signal.isCanceled()) {
+            btnExportCSV.setText(getString(R.string.exporting) + " " + (written * 100L / total) + "%");
+        }
+    }
+
+    private void finishExport(CancellationSignal signal) {
+        if (exportSignal == signal) {
+            exportSignal = null;
+            btnExportCSV.setText(R.string.report_export);
+        }
+    }
 
+    /**
+     * File in Downloads, created only when the exporter opens it
+     * Android 10+: a MediaStore entry kept pending (hidden) until publish();
+     * Android 9 and below: a plain file
+     */
+    private class DownloadsOutput implements ReportExporter.OutputTarget {
+        private final String fileName;
+        private final String mimeType;
+        private Uri uri;
+        private File file;
+
+        DownloadsOutput(String fileName, String mimeType) {
+            this.fileName = fileName;
+            this.mimeType = mimeType;
+        }
+
+        @Override
+        public OutputStream open() throws IOException {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
                 // Android 10+ (Scoped Storage)
-                saveToDownloadsQ(fileName, csv.toString());
-            } else {
-                // Android 9 and below
-                saveToDownloadsLegacy(fileName, csv.toString());
+                ContentValues values = new ContentValues();
+                values.put(MediaStore.Downloads.DISPLAY_NAME, fileName);
+                values.put(MediaStore.Downloads.MIME_TYPE, mimeType);
+                values.put(MediaStore.Downloads.RELATIVE_PATH, Environment.DIRECTORY_DOWNLOADS);
+                values.put(MediaStore.Downloads.IS_PENDING, 1);
+
+                uri = getContentResolver().insert(MediaStore.Downloads.EXTERNAL_CONTENT_URI, values);
+                OutputStream stream = uri != null ? getContentResolver().openOutputStream(uri) : null;
+                if (stream == null) {
+                    throw new IOException("Cannot create " + fileName + " in Downloads");
+                }
+                return stream;
             }
 
-            Toast.makeText(this, "Report saved to Downloads", Toast.LENGTH_LONG).show();
+            // Android 9 and below
+            File downloadsDir = Environment.getExternalStoragePublicDirectory(
+                    Environment.DIRECTORY_DOWNLOADS);
+            file = new File(downloadsDir, fileName);
+            return new FileOutputStream(file);
+        }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            Toast.makeText(this, "Failed to export: " + e.getMessage(),
-                    Toast.LENGTH_SHORT).show();
+        /**
+         * Make the finished file visible to other apps
+         */
+        void publish() {
+            if (uri != null) {
+                ContentValues values = new ContentValues();
+                values.put(MediaStore.Downloads.IS_PENDING, 0);
+                getContentResolver().update(uri, values, null, null);
+            }
+        }
+
+        /**
+         * Delete a partially written file
+         */
+        void discard() {
+            if (uri != null) {
+                getContentResolver().delete(uri, null, null);
+            } else if (file != null) {
+                file.delete();
+            }
         }
     }
 
     /**
-     * Save CSV to Downloads (Android 10+)
+     * Pick a file to import, or cancel the import that is running
      */
-    private void saveToDownloadsQ(String fileName, String content) throws Exception {
-        ContentValues values = new ContentValues();
-        values.put(MediaStore.Downloads.DISPLAY_NAME, fileName);
-        values.put(MediaStore.Downloads.MIME_TYPE, "text/csv");
-        values.put(MediaStore.Downloads.RELATIVE_PATH, Environment.DIRECTORY_DOWNLOADS);
-
-        Uri uri = getContentResolver().insert(MediaStore.Downloads.EXTERNAL_CONTENT_URI, values);
-
-        if (uri != null) {
-            OutputStream outputStream = getContentResolver().openOutputStream(uri);
-            if (outputStream != null) {
-                outputStream.write(content.getBytes());
-                outputStream.close();
-            }
+    private void onImportClicked() {
+        if (importSignal != null) {
+            importSignal.cancel();
+            return;
         }
+        // CSV, CSV gzip hoặc .cemx; định dạng được nhận ra từ nội dung file
+        importLauncher.launch(new String[]{"*/*"});
     }
 
     /**
-     * Save CSV to Downloads (Android 9 and below)
+     * Import transactions from a file exported by this app (CSV, gzip CSV or .cemx backup)
+     * Runs on ExpenseRepository's write thread; the report is refreshed when it finishes.
      */
-    private void saveToDownloadsLegacy(String fileName, String content) throws Exception {
-        File downloadsDir = Environment.getExternalStoragePublicDirectory(
-                Environment.DIRECTORY_DOWNLOADS);
-        File file = new File(downloadsDir, fileName);
-
-        FileWriter writer = new FileWriter(file);
-        writer.write(content);
-        writer.close();
+    private void importFile(Uri uri) {
+        int userId = sessionManager.getUserId();
+        CancellationSignal signal = new CancellationSignal();
+        importSignal = signal;
+        btnImport.setText(R.string.importing);
+
+        repository.write(db -> expenseImporter.importFile(userId,
+                () -> {
+                    InputStream stream = getContentResolver().openInputStream(uri);
+                    if (stream == null) {
+                        throw new IOException("Cannot open " + uri);
+                    }
+                    return stream;
+                },
+                rows -> runOnUiThread(() -> {
+                    if (importSignal == signal) {
+                        btnImport.setText(getString(R.string.importing) + " " + rows);
+                    }
+                }),
+                signal), new ExpenseRepository.Callback<ExpenseImporter.Result>() {
+            @Override
+            public void onResult(ExpenseImporter.Result result) {
+                finishImport(signal);
+                String message = "Imported " + result.getImported() + " transactions";
+                if (result.getSkipped() > 0) {
+                    message += ", skipped " + result.getSkipped() + " invalid rows";
+                }
+                if (result.getDuplicates() > 0) {
+                    message += ", " + result.getDuplicates() + " already imported";
+                }
+                Toast.makeText(ReportActivity.this, message, Toast.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                finishImport(signal);
+                if (e instanceof OperationCanceledException) {
+                    Toast.makeText(ReportActivity.this, "Import cancelled", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                e.printStackTrace();
+                Toast.makeText(ReportActivity.this, "Failed to import: " + e.getMessage(),
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void finishImport(CancellationSignal signal) {
+        if (importSignal == signal) {
+            importSignal = null;
+            btnImport.setText(R.string.report_import);
+        }
+        // Batch đã ghi vẫn giữ lại kể cả khi huỷ -> luôn tính lại báo cáo
+        if (!isDestroyed()) {
+            generateReport();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Không ghi tiếp file khi màn hình đã đóng
+        if (exportSignal != null) {
+            exportSignal.cancel();
+        }
+        if (importSignal != null) {
+            importSignal.cancel();
+        }
     }
 
     /**
      * Share report via email
      */
     private void shareViaEmail() {
-        try {
-            // Generate CSV content
-            List<Expense> expenses = getFilteredExpenses();
-
-            if (expenses.isEmpty()) {
-                Toast.makeText(this, "No expenses to share", Toast.LENGTH_SHORT).show();
-                return;
-            }
+        int userId = sessionManager.getUserId();
+        repository.getExpensesByDateRange(userId, startDate.getTimeInMillis(), endDate.getTimeInMillis(),
+                expenses -> {
+                    if (expenses.isEmpty()) {
+                        Toast.makeText(this, "No expenses to share", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    sendReportEmail();
+                });
+    }
 
+    private void sendReportEmail() {
+        try {
             // Create email intent
             String subject = String.format(getString(R.string.report_email_subject),
                     dateFormat.format(startDate.getTime()));
@@ -358,25 +513,4 @@ public class ReportActivity extends BaseActivity {
                     Toast.LENGTH_SHORT).show();
         }
     }
-
-    /**
-     * Get expenses filtered by date range
-     */
-    private List<Expense> getFilteredExpenses() {
-        int userId = sessionManager.getUserId();
-        List<Expense> allExpenses = dbHelper.getExpensesByUser(userId);
-
-        // Filter by date range
-        List<Expense> filtered = new java.util.ArrayList<>();
-        long startTime = startDate.getTimeInMillis();
-        long endTime = endDate.getTimeInMillis();
-
-        for (Expense expense : allExpenses) {
-            if (expense.getDate() >= startTime && expense.getDate() <= endTime) {
-                filtered.add(expense);
-            }
-        }
-
-        return filtered;
-    }
-}
\ No newline at end of file
+}
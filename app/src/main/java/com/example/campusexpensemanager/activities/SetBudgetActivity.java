@@ -16,8 +16,13 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.campusexpensemanager.R;
 import com.example.campusexpensemanager.adapters.BudgetAdapter;
 import com.example.campusexpensemanager.models.Budget;
+import com.example.campusexpensemanager.models.BudgetStatus;
 import com.example.campusexpensemanager.models.Category;
 import com.example.campusexpensemanager.utils.DatabaseHelper;
+import com.example.campusexpensemanager.utils.ExpenseRepository;
+import com.example.campusexpensemanager.utils.InvalidationTracker;
+import com.example.campusexpensemanager.utils.LiveQuery;
+import com.example.campusexpensemanager.utils.Money;
 import com.example.campusexpensemanager.utils.SessionManager;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
@@ -41,10 +46,14 @@ public class SetBudgetActivity extends BaseActivity implements BudgetAdapter.OnB
     private RecyclerView recyclerBudgets;
 
     private DatabaseHelper dbHelper;
+    private ExpenseRepository repository;
     private BudgetAdapter adapter;
 
+    // Budgets + số đã chi, tự tải lại khi budgets hoặc expenses thay đổi
+    private LiveQuery<List<BudgetStatus>> budgetsQuery;
+
     private List<Category> categories;
-    private List<Budget> budgets;
+    private List<BudgetStatus> budgets;
 
     private long periodStart;
     private long periodEnd;
@@ -56,6 +65,7 @@ public class SetBudgetActivity extends BaseActivity implements BudgetAdapter.OnB
 
         // Initialize helpers
         dbHelper = DatabaseHelper.getInstance(this);
+        repository = ExpenseRepository.getInstance(this);
 
         // Check authentication
         if (!sessionManager.isLoggedIn()) {
@@ -184,9 +194,9 @@ public class SetBudgetActivity extends BaseActivity implements BudgetAdapter.OnB
             return;
         }
 
-        double amount;
+        long amount;
         try {
-            amount = Double.parseDouble(amountStr);
+            amount = Money.parse(amountStr, Money.VND_SCALE);
         } catch (NumberFormatException e) {
             tilAmount.setError("Invalid amount");
             return;
@@ -213,11 +223,8 @@ public class SetBudgetActivity extends BaseActivity implements BudgetAdapter.OnB
         if (budgetId != -1) {
             Toast.makeText(this, getString(R.string.budget_added), Toast.LENGTH_SHORT).show();
 
-            // Clear form
+            // Clear form (budgetsQuery tự tải lại danh sách)
             etAmount.setText("");
-
-            // Reload budgets
-            loadBudgets();
         } else {
             Toast.makeText(this, "Failed to save budget", Toast.LENGTH_SHORT).show();
         }
@@ -228,7 +235,14 @@ public class SetBudgetActivity extends BaseActivity implements BudgetAdapter.OnB
      */
     private void loadBudgets() {
         int userId = sessionManager.getUserId();
-        budgets = dbHelper.getBudgetsByUser(userId);
+        String[] tables = {InvalidationTracker.TABLE_BUDGETS, InvalidationTracker.TABLE_EXPENSES};
+        // Số đã chi của mọi budget tính trong cùng một query (BudgetAdapter không query khi bind)
+        budgetsQuery = repository.observe(userId, tables,
+                db -> db.getBudgetStatuses(userId), this::showBudgets);
+    }
+
+    private void showBudgets(List<BudgetStatus> newBudgets) {
+        budgets = newBudgets;
 
         if (budgets.isEmpty()) {
             recyclerBudgets.setVisibility(View.GONE);
@@ -253,8 +267,10 @@ public class SetBudgetActivity extends BaseActivity implements BudgetAdapter.OnB
     }
 
     @Override
-    protected void onResume() {
-        super.onResume();
-        loadBudgets();
+    protected void onDestroy() {
+        super.onDestroy();
+        if (budgetsQuery != null) {
+            budgetsQuery.close();
+        }
     }
 }
\ No newline at end of file
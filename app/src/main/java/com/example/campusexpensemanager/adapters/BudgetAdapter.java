@@ -10,13 +10,16 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.campusexpensemanager.R;
 import com.example.campusexpensemanager.models.Budget;
+import com.example.campusexpensemanager.models.BudgetStatus;
 import com.example.campusexpensemanager.models.Category;
+import com.example.campusexpensemanager.utils.CategoryRegistry;
 import com.example.campusexpensemanager.utils.CurrencyHelper;
-import com.example.campusexpensemanager.utils.DatabaseHelper;
 
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
@@ -26,12 +29,25 @@ import java.util.Locale;
 
 /**
  * BudgetAdapter for RecyclerView displaying budget list with progress
+ * New lists are diffed in the background (AsyncListDiffer), so only changed budgets are rebound.
+ * Spent amounts come precomputed with each budget (DatabaseHelper.getBudgetStatuses).
  */
-public class BudgetAdapter extends RecyclerView.Adapter<BudgetAdapter.BudgetViewHolder> {
+public class BudgetAdapter extends ListAdapter<BudgetStatus, BudgetAdapter.BudgetViewHolder> {
+
+    private static final DiffUtil.ItemCallback<BudgetStatus> DIFF_CALLBACK = new DiffUtil.ItemCallback<BudgetStatus>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull BudgetStatus oldItem, @NonNull BudgetStatus newItem) {
+            return oldItem.getBudget().getId() == newItem.getBudget().getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull BudgetStatus oldItem, @NonNull BudgetStatus newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
 
     private Context context;
-    private List<Budget> budgets;
-    private DatabaseHelper dbHelper;
+    private CategoryRegistry categoryRegistry;
     private CurrencyHelper currencyHelper;
     private OnBudgetClickListener listener;
 
@@ -42,17 +58,20 @@ public class BudgetAdapter extends RecyclerView.Adapter<BudgetAdapter.BudgetView
         void onBudgetClick(Budget budget);
     }
 
-    public BudgetAdapter(Context context, List<Budget> budgets, OnBudgetClickListener listener) {
+    public BudgetAdapter(Context context, List<BudgetStatus> budgets, OnBudgetClickListener listener) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        this.budgets = budgets;
         this.listener = listener;
-        this.dbHelper = DatabaseHelper.getInstance(context);
+        this.categoryRegistry = CategoryRegistry.getInstance(context);
 
         // **SPRINT 6: Khởi tạo CurrencyHelper**
         this.currencyHelper = CurrencyHelper.getInstance(context);
 
         this.currencyFormat = NumberFormat.getInstance(new Locale("vi", "VN"));
         this.dateFormat = new SimpleDateFormat("dd MMM yyyy", Locale.getDefault());
+
+        setHasStableIds(true);
+        submitList(budgets);
     }
 
     @NonNull
@@ -64,22 +83,23 @@ public class BudgetAdapter extends RecyclerView.Adapter<BudgetAdapter.BudgetView
 
     @Override
     public void onBindViewHolder(@NonNull BudgetViewHolder holder, int position) {
-        Budget budget = budgets.get(position);
+        BudgetStatus status = getItem(position);
+        Budget budget = status.getBudget();
 
         // Get category name
         String categoryName = "Total Budget";
         if (budget.getCategoryId() > 0) {
-            Category category = dbHelper.getCategoryById(budget.getCategoryId());
+            Category category = categoryRegistry.get(budget.getCategoryId());
             if (category != null) {
                 categoryName = category.getName();
             }
         }
         holder.tvCategoryName.setText(categoryName);
 
-        // **SPRINT 6: calculateSpent() đã được cập nhật để trả về VND**
-        double spent = calculateSpent(budget); // Đây là tổng VND
-        double remaining = budget.getAmount() - spent; // Giả định budget.getAmount() là VND
-        double percentageSpent = budget.calculatePercentageSpent(spent);
+        // **SPRINT 6: spent là tổng VND**
+        long spent = status.getSpent();
+        long remaining = status.getRemaining(); // budget.getAmount() là VND
+        double percentageSpent = status.getPercentageSpent();
 
         // Format amounts
         String budgetAmount = currencyFormat.format(budget.getAmount()) + "đ";
@@ -119,47 +139,15 @@ public class BudgetAdapter extends RecyclerView.Adapter<BudgetAdapter.BudgetView
     }
 
     @Override
-    public int getItemCount() {
-        return budgets.size();
-    }
-
-    /**
-     * Calculate total spent for a budget
-     */
-    private double calculateSpent(Budget budget) {
-        List<com.example.campusexpensemanager.models.Expense> allExpenses =
-                dbHelper.getExpensesByUser(budget.getUserId());
-
-        double totalInVND = 0;
-        for (com.example.campusexpensemanager.models.Expense expense : allExpenses) {
-            // Chỉ tính chi tiêu (expenses), không tính thu nhập (income)
-            if (expense.isExpense()) {
-                // Check if expense is within period
-                if (expense.getDate() >= budget.getPeriodStart() &&
-                        expense.getDate() <= budget.getPeriodEnd()) {
-
-                    // If budget is for specific category, filter by category
-                    if (budget.getCategoryId() == 0 ||
-                            expense.getCategoryId() == budget.getCategoryId()) {
-
-                        // **SPRINT 6: Chuyển sang VND trước khi cộng**
-                        totalInVND += currencyHelper.convertToVND(
-                                expense.getAmount(),
-                                expense.getCurrencyId()
-                        );
-                    }
-                }
-            }
-        }
-        return totalInVND;
+    public long getItemId(int position) {
+        return getItem(position).getBudget().getId();
     }
 
     /**
-     * Update budget list
+     * Update budget list (diffed against the current one off the main thread)
      */
-    public void updateBudgets(List<Budget> newBudgets) {
-        this.budgets = newBudgets;
-        notifyDataSetChanged();
+    public void updateBudgets(List<BudgetStatus> newBudgets) {
+        submitList(newBudgets);
     }
 
     static class BudgetViewHolder extends RecyclerView.ViewHolder {
@@ -11,31 +11,34 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.campusexpensemanager.R;
 import com.example.campusexpensemanager.models.Category;
 import com.example.campusexpensemanager.models.Expense;
+import com.example.campusexpensemanager.utils.CategoryRegistry;
 import com.example.campusexpensemanager.utils.CurrencyHelper;
 import com.example.campusexpensemanager.utils.DatabaseHelper;
+import com.example.campusexpensemanager.utils.ExpensePager;
 
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
 
 /**
  * ExpenseAdapter for RecyclerView displaying expense list
  * Features: Category icon, formatted amount, date, truncated description
+ * Rows come from an ExpensePager; rows that are not loaded yet are bound as empty placeholders.
+ * Each pager snapshot is diffed in the background, so only changed rows are rebound.
  */
-public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ExpenseViewHolder> {
+public class ExpenseAdapter extends ListAdapter<Expense, ExpenseAdapter.ExpenseViewHolder> {
 
     private Context context;
-    private List<Expense> expenses;
-    private List<Expense> expensesFiltered; // For search functionality
+    private final ExpensePager pager;
     private DatabaseHelper dbHelper;
+    private CategoryRegistry categoryRegistry;
     private OnExpenseClickListener listener;
 
     // Currency formatter
@@ -49,18 +52,23 @@ public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ExpenseV
         void onExpenseClick(Expense expense);
     }
 
-    public ExpenseAdapter(Context context, List<Expense> expenses, OnExpenseClickListener listener) {
+    public ExpenseAdapter(Context context, ExpensePager pager, OnExpenseClickListener listener) {
+        super(new ExpenseDiffCallback());
         this.context = context;
-        this.expenses = expenses;
-        this.expensesFiltered = new ArrayList<>(expenses);
+        this.pager = pager;
         this.listener = listener;
         this.dbHelper = DatabaseHelper.getInstance(context);
+        this.categoryRegistry = CategoryRegistry.getInstance(context);
 
         // **SPRINT 6: Khởi tạo CurrencyHelper**
         this.currencyHelper = CurrencyHelper.getInstance(context);
 
         // Initialize formatters
         this.dateFormat = new SimpleDateFormat("dd MMM yyyy", Locale.getDefault());
+
+        // ID ổn định = expense ID -> RecyclerView giữ đúng view khi dòng đổi vị trí
+        setHasStableIds(true);
+        pager.setCallback(this::submitList);
     }
 
     @NonNull
@@ -73,10 +81,15 @@ public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ExpenseV
     @SuppressLint("ClickableViewAccessibility")
     @Override
     public void onBindViewHolder(@NonNull ExpenseViewHolder holder, int position) {
-        Expense expense = expensesFiltered.get(position);
+        pager.loadAround(position);
+        Expense expense = getItem(position);
+        if (expense == null) {
+            bindPlaceholder(holder);
+            return;
+        }
 
         // Get category info
-        Category category = dbHelper.getCategoryById(expense.getCategoryId());
+        Category category = categoryRegistry.get(expense.getCategoryId());
 
         if (category != null) {
             holder.tvCategoryName.setText(category.getName());
@@ -150,47 +163,38 @@ public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ExpenseV
     }
 
     @Override
-    public int getItemCount() {
-        return expensesFiltered.size();
+    public long getItemId(int position) {
+        Expense expense = getItem(position);
+        // Placeholder chưa có ID: dùng khoảng âm theo vị trí để không trùng ID thật
+        return expense != null ? expense.getId() : Long.MIN_VALUE + position;
     }
 
     /**
-     * Update expense list and refresh adapter
+     * Row whose page is still loading: clear old content so recycled views don't show stale data
      */
-    public void updateExpenses(List<Expense> newExpenses) {
-        this.expenses = newExpenses;
-        this.expensesFiltered = new ArrayList<>(newExpenses);
-        notifyDataSetChanged();
+    private void bindPlaceholder(ExpenseViewHolder holder) {
+        holder.tvCategoryName.setText("");
+        holder.tvAmount.setText("");
+        holder.tvDate.setText("");
+        holder.tvDescription.setVisibility(View.GONE);
+        holder.ivReceiptIndicator.setVisibility(View.GONE);
+        holder.ivRecurringIndicator.setVisibility(View.GONE);
+        holder.cardView.setOnClickListener(null);
     }
 
     /**
-     * Filter expenses by description
+     * Reload from database (after add/edit/delete)
      */
-    public void filter(String query) {
-        expensesFiltered.clear();
-
-        if (query == null || query.isEmpty()) {
-            expensesFiltered.addAll(expenses);
-        } else {
-            String lowerCaseQuery = query.toLowerCase();
-
-            for (Expense expense : expenses) {
-                // Filter by description or category name
-                String description = expense.getDescription();
-                Category category = dbHelper.getCategoryById(expense.getCategoryId());
-
-                boolean matchDescription = description != null &&
-                        description.toLowerCase().contains(lowerCaseQuery);
-                boolean matchCategory = category != null &&
-                        category.getName().toLowerCase().contains(lowerCaseQuery);
-
-                if (matchDescription || matchCategory) {
-                    expensesFiltered.add(expense);
-                }
-            }
-        }
+    public void refresh() {
+        pager.refresh();
+    }
 
-        notifyDataSetChanged();
+    /**
+     * Filter expenses by full-text search (description or category name)
+     * @param query Search text, null or empty to show all
+     */
+    public void filter(String query) {
+        pager.setSearchQuery(query);
     }
 
     // **SPRINT 5: Hàm mới để lọc theo Type**
@@ -199,56 +203,19 @@ public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ExpenseV
      * @param type 0 = All, 1 = Expenses, 2 = Income
      */
     public void filterByType(int type) {
-        expensesFiltered.clear();
-
         if (type == 0) {
-            // Show all
-            expensesFiltered.addAll(expenses);
+            pager.setType(DatabaseHelper.FILTER_ANY);
         } else {
-            int transactionType = (type == 1) ? Expense.TYPE_EXPENSE : Expense.TYPE_INCOME;
-            for (Expense expense : expenses) {
-                if (expense.getType() == transactionType) {
-                    expensesFiltered.add(expense);
-                }
-            }
+            pager.setType((type == 1) ? Expense.TYPE_EXPENSE : Expense.TYPE_INCOME);
         }
-        notifyDataSetChanged();
     }
 
     /**
      * Filter expenses by category
+     * @param categoryId Category ID, 0 = All
      */
     public void filterByCategory(int categoryId) {
-        expensesFiltered.clear();
-
-        if (categoryId == 0) {
-            // Show all
-            expensesFiltered.addAll(expenses);
-        } else {
-            for (Expense expense : expenses) {
-                if (expense.getCategoryId() == categoryId) {
-                    expensesFiltered.add(expense);
-                }
-            }
-        }
-
-        notifyDataSetChanged();
-    }
-
-    /**
-     * Filter expenses by date range
-     */
-    public void filterByDateRange(long startDate, long endDate) {
-        expensesFiltered.clear();
-
-        for (Expense expense : expenses) {
-            long expenseDate = expense.getDate();
-            if (expenseDate >= startDate && expenseDate <= endDate) {
-                expensesFiltered.add(expense);
-            }
-        }
-
-        notifyDataSetChanged();
+        pager.setCategory(categoryId == 0 ? DatabaseHelper.FILTER_ANY : categoryId);
     }
 
     static class ExpenseViewHolder extends RecyclerView.ViewHolder {
@@ -0,0 +1,23 @@
+package com.example.campusexpensemanager.adapters;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.example.campusexpensemanager.models.Expense;
+
+/**
+ * DiffUtil callback dùng chung cho ExpenseAdapter và IncomeAdapter
+ * Same item = same row ID; same content = every displayed field equal (Expense.equals).
+ */
+class ExpenseDiffCallback extends DiffUtil.ItemCallback<Expense> {
+
+    @Override
+    public boolean areItemsTheSame(@NonNull Expense oldItem, @NonNull Expense newItem) {
+        return oldItem.getId() == newItem.getId();
+    }
+
+    @Override
+    public boolean areContentsTheSame(@NonNull Expense oldItem, @NonNull Expense newItem) {
+        return oldItem.equals(newItem);
+    }
+}
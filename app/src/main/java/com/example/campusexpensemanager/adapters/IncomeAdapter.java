@@ -11,48 +11,59 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.campusexpensemanager.R;
 import com.example.campusexpensemanager.models.Category;
 import com.example.campusexpensemanager.models.Expense;
+import com.example.campusexpensemanager.utils.CategoryRegistry;
+import com.example.campusexpensemanager.utils.CurrencyHelper;
 import com.example.campusexpensemanager.utils.DatabaseHelper;
+import com.example.campusexpensemanager.utils.ExpensePager;
 
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
 
 /**
  * IncomeAdapter for RecyclerView displaying income list
  * Similar to ExpenseAdapter but with green color scheme
+ * Rows come from an ExpensePager filtered to TYPE_INCOME by the caller.
+ * Each pager snapshot is diffed in the background, so only changed rows are rebound.
  */
-public class IncomeAdapter extends RecyclerView.Adapter<IncomeAdapter.IncomeViewHolder> {
+public class IncomeAdapter extends ListAdapter<Expense, IncomeAdapter.IncomeViewHolder> {
 
     private Context context;
-    private List<Expense> incomes;
-    private List<Expense> incomesFiltered;
+    private final ExpensePager pager;
     private DatabaseHelper dbHelper;
+    private CategoryRegistry categoryRegistry;
     private OnIncomeClickListener listener;
 
     private NumberFormat currencyFormat;
+    private CurrencyHelper currencyHelper;
     private SimpleDateFormat dateFormat;
 
     public interface OnIncomeClickListener {
         void onIncomeClick(Expense income);
     }
 
-    public IncomeAdapter(Context context, List<Expense> incomes, OnIncomeClickListener listener) {
+    public IncomeAdapter(Context context, ExpensePager pager, OnIncomeClickListener listener) {
+        super(new ExpenseDiffCallback());
         this.context = context;
-        this.incomes = incomes;
-        this.incomesFiltered = new ArrayList<>(incomes);
+        this.pager = pager;
         this.listener = listener;
         this.dbHelper = DatabaseHelper.getInstance(context);
+        this.categoryRegistry = CategoryRegistry.getInstance(context);
 
         this.currencyFormat = NumberFormat.getInstance(new Locale("vi", "VN"));
+        this.currencyHelper = CurrencyHelper.getInstance(context);
         this.dateFormat = new SimpleDateFormat("dd MMM yyyy", Locale.getDefault());
+
+        // ID ổn định = expense ID -> RecyclerView giữ đúng view khi dòng đổi vị trí
+        setHasStableIds(true);
+        pager.setCallback(this::submitList);
     }
 
     @NonNull
@@ -65,17 +76,23 @@ public class IncomeAdapter extends RecyclerView.Adapter<IncomeAdapter.IncomeView
     @SuppressLint("ClickableViewAccessibility")
     @Override
     public void onBindViewHolder(@NonNull IncomeViewHolder holder, int position) {
-        Expense income = incomesFiltered.get(position);
+        pager.loadAround(position);
+        Expense income = getItem(position);
+        if (income == null) {
+            bindPlaceholder(holder);
+            return;
+        }
 
         // Get category info
-        Category category = dbHelper.getCategoryById(income.getCategoryId());
+        Category category = categoryRegistry.get(income.getCategoryId());
 
         if (category != null) {
             holder.tvCategoryName.setText(category.getName());
         }
 
         // Format amount with GREEN color for income
-        String formattedAmount = currencyFormat.format(income.getAmount()) + "đ";
+        String formattedAmount = currencyFormat.format(
+                currencyHelper.convertToVND(income.getAmount(), income.getCurrencyId())) + "đ";
         holder.tvAmount.setText(formattedAmount);
         holder.tvAmount.setTextColor(ContextCompat.getColor(context, R.color.success)); // Green
 
@@ -118,37 +135,36 @@ public class IncomeAdapter extends RecyclerView.Adapter<IncomeAdapter.IncomeView
     }
 
     @Override
-    public int getItemCount() {
-        return incomesFiltered.size();
+    public long getItemId(int position) {
+        Expense income = getItem(position);
+        // Placeholder chưa có ID: dùng khoảng âm theo vị trí để không trùng ID thật
+        return income != null ? income.getId() : Long.MIN_VALUE + position;
     }
 
     /**
-     * Filter incomes by description
+     * Row whose page is still loading: clear old content so recycled views don't show stale data
      */
-    public void filter(String query) {
-        incomesFiltered.clear();
-
-        if (query == null || query.isEmpty()) {
-            incomesFiltered.addAll(incomes);
-        } else {
-            String lowerCaseQuery = query.toLowerCase();
-
-            for (Expense income : incomes) {
-                String description = income.getDescription();
-                Category category = dbHelper.getCategoryById(income.getCategoryId());
-
-                boolean matchDescription = description != null &&
-                        description.toLowerCase().contains(lowerCaseQuery);
-                boolean matchCategory = category != null &&
-                        category.getName().toLowerCase().contains(lowerCaseQuery);
+    private void bindPlaceholder(IncomeViewHolder holder) {
+        holder.tvCategoryName.setText("");
+        holder.tvAmount.setText("");
+        holder.tvDate.setText("");
+        holder.tvDescription.setVisibility(View.GONE);
+        holder.cardView.setOnClickListener(null);
+    }
 
-                if (matchDescription || matchCategory) {
-                    incomesFiltered.add(income);
-                }
-            }
-        }
+    /**
+     * Reload from database (after add/edit/delete)
+     */
+    public void refresh() {
+        pager.refresh();
+    }
 
-        notifyDataSetChanged();
+    /**
+     * Filter incomes by full-text search (description or category name)
+     * @param query Search text, null or empty to show all
+     */
+    public void filter(String query) {
+        pager.setSearchQuery(query);
     }
 
     static class IncomeViewHolder extends RecyclerView.ViewHolder {
@@ -1,5 +1,7 @@
 package com.example.campusexpensemanager.models;
 
+import java.util.Objects;
+
 /**
  * Budget model class for budget tracking
  * Links to User and Category, tracks period and remaining amount
@@ -8,7 +10,7 @@ public class Budget {
     private int id;
     private int userId;
     private int categoryId; // 0 for total budget, >0 for category-specific
-    private double amount;
+    private long amount; // VND
     private long periodStart; // Unix timestamp
     private long periodEnd; // Unix timestamp
     private long createdAt;
@@ -19,7 +21,7 @@ public class Budget {
     }
 
     // Constructor with essential fields
-    public Budget(int userId, int categoryId, double amount, long periodStart, long periodEnd) {
+    public Budget(int userId, int categoryId, long amount, long periodStart, long periodEnd) {
         this.userId = userId;
         this.categoryId = categoryId;
         this.amount = amount;
@@ -29,7 +31,7 @@ public class Budget {
     }
 
     // Full constructor
-    public Budget(int id, int userId, int categoryId, double amount, long periodStart,
+    public Budget(int id, int userId, int categoryId, long amount, long periodStart,
                   long periodEnd, long createdAt) {
         this.id = id;
         this.userId = userId;
@@ -65,11 +67,11 @@ public class Budget {
         this.categoryId = categoryId;
     }
 
-    public double getAmount() {
+    public long getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 
@@ -102,7 +104,7 @@ public class Budget {
      * @param spent Total amount spent in this budget period
      * @return Remaining budget amount
      */
-    public double calculateRemaining(double spent) {
+    public long calculateRemaining(long spent) {
         return amount - spent;
     }
 
@@ -111,9 +113,31 @@ public class Budget {
      * @param spent Total amount spent
      * @return Percentage (0-100+)
      */
-    public double calculatePercentageSpent(double spent) {
+    public double calculatePercentageSpent(long spent) {
         if (amount == 0) return 0;
-        return (spent / amount) * 100;
+        return spent * 100.0 / amount;
+    }
+
+    /**
+     * Content equality (all stored fields), used by BudgetAdapter to skip unchanged rows
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Budget)) return false;
+        Budget other = (Budget) o;
+        return id == other.id
+                && userId == other.userId
+                && categoryId == other.categoryId
+                && amount == other.amount
+                && periodStart == other.periodStart
+                && periodEnd == other.periodEnd
+                && createdAt == other.createdAt;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, userId, categoryId, amount, periodStart, periodEnd, createdAt);
     }
 
     @Override
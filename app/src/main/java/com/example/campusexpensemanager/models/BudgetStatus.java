@@ -0,0 +1,74 @@
+package com.example.campusexpensemanager.models;
+
+/**
+ * A budget together with how much has been spent in its period (VND, expenses only)
+ * Produced for all of a user's budgets at once by DatabaseHelper.getBudgetStatuses.
+ */
+public class BudgetStatus {
+    // Các ngưỡng cảnh báo (% đã chi), tăng dần
+    public static final int[] ALERT_LEVELS = {50, 80, 100};
+
+    private final Budget budget;
+    private final long spent;
+    private final int alertLevel; // Ngưỡng cao nhất đã gửi cảnh báo (0 = chưa)
+
+    public BudgetStatus(Budget budget, long spent, int alertLevel) {
+        this.budget = budget;
+        this.spent = spent;
+        this.alertLevel = alertLevel;
+    }
+
+    // Getters
+    public Budget getBudget() { return budget; }
+    public long getSpent() { return spent; }
+    public int getAlertLevel() { return alertLevel; }
+
+    /**
+     * Highest ALERT_LEVELS entry reached by the current spending
+     * @return 50, 80, 100 or 0 if below every threshold
+     */
+    public int getCurrentLevel() {
+        // Cùng phép so sánh với SQL trong DatabaseHelper.getBudgetAlertChanges
+        long amount = budget.getAmount();
+        int level = 0;
+        if (amount > 0) {
+            for (int threshold : ALERT_LEVELS) {
+                if (spent * 100 >= amount * threshold) {
+                    level = threshold;
+                }
+            }
+        }
+        return level;
+    }
+
+    public long getRemaining() {
+        return budget.calculateRemaining(spent);
+    }
+
+    public double getPercentageSpent() {
+        return budget.calculatePercentageSpent(spent);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BudgetStatus)) return false;
+        BudgetStatus other = (BudgetStatus) o;
+        return spent == other.spent && alertLevel == other.alertLevel
+                && budget.equals(other.budget);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * budget.hashCode() + Long.hashCode(spent)) + alertLevel;
+    }
+
+    @Override
+    public String toString() {
+        return "BudgetStatus{" +
+                "budget=" + budget +
+                ", spent=" + spent +
+                ", alertLevel=" + alertLevel +
+                '}';
+    }
+}
@@ -3,16 +3,19 @@ package com.example.campusexpensemanager.models;
 /**
  * Model class cho Tiền tệ (Currency)
  * Lưu trữ mã, tỷ giá, và biểu tượng
+ * Amounts in this currency are stored in minor units; see utils.Money for the arithmetic.
  */
 public class Currency {
     private int id;
     private String code; // e.g., "VND", "USD"
-    private double rateToVND; // Tỷ giá quy đổi về VND
+    private int minorScale; // Số đơn vị nhỏ trong 1 đơn vị (VND: 1, USD: 100)
+    private long rateToVND; // Tỷ giá quy đổi về VND, nhân Money.RATE_SCALE
     private String symbol; // e.g., "đ", "$"
 
-    public Currency(int id, String code, double rateToVND, String symbol) {
+    public Currency(int id, String code, int minorScale, long rateToVND, String symbol) {
         this.id = id;
         this.code = code;
+        this.minorScale = minorScale;
         this.rateToVND = rateToVND;
         this.symbol = symbol;
     }
@@ -20,7 +23,8 @@ public class Currency {
     // Getters
     public int getId() { return id; }
     public String getCode() { return code; }
-    public double getRateToVND() { return rateToVND; }
+    public int getMinorScale() { return minorScale; }
+    public long getRateToVND() { return rateToVND; }
     public String getSymbol() { return symbol; }
 
     /**
@@ -30,4 +34,4 @@ public class Currency {
     public String toString() {
         return code; // Hiển thị "VND" hoặc "USD" trong Spinner
     }
-}
\ No newline at end of file
+}
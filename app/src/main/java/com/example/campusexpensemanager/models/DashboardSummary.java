@@ -0,0 +1,58 @@
+package com.example.campusexpensemanager.models;
+
+/**
+ * Numbers shown on the MainActivity dashboard for the current month (amounts in VND, whole đồng)
+ * Persisted by DashboardSnapshotStore so the dashboard can be drawn before any query runs.
+ */
+public class DashboardSummary {
+    private final long totalIncome;
+    private final long totalExpense;
+    private final long budgetRemaining;
+    private final String topCategoryName; // null khi chưa có chi tiêu
+    private final long topCategoryTotal;
+
+    // Phiên bản dữ liệu lúc tính (DatabaseHelper.getDataVersion) và thời điểm hết hạn
+    private final long dataVersion;
+    private final long validUntil;
+    private final long computedAt;
+
+    public DashboardSummary(long totalIncome, long totalExpense, long budgetRemaining,
+                            String topCategoryName, long topCategoryTotal,
+                            long dataVersion, long validUntil, long computedAt) {
+        this.totalIncome = totalIncome;
+        this.totalExpense = totalExpense;
+        this.budgetRemaining = budgetRemaining;
+        this.topCategoryName = topCategoryName;
+        this.topCategoryTotal = topCategoryTotal;
+        this.dataVersion = dataVersion;
+        this.validUntil = validUntil;
+        this.computedAt = computedAt;
+    }
+
+    // Getters
+    public long getTotalIncome() { return totalIncome; }
+    public long getTotalExpense() { return totalExpense; }
+    public long getBalance() { return totalIncome - totalExpense; }
+    public long getBudgetRemaining() { return budgetRemaining; }
+    public String getTopCategoryName() { return topCategoryName; }
+    public long getTopCategoryTotal() { return topCategoryTotal; }
+    public long getDataVersion() { return dataVersion; }
+
+    /**
+     * End of the month, or the end of the first active budget period if sooner:
+     * after this time the numbers change even without any write
+     */
+    public long getValidUntil() { return validUntil; }
+    public long getComputedAt() { return computedAt; }
+
+    @Override
+    public String toString() {
+        return "DashboardSummary{" +
+                "income=" + totalIncome +
+                ", expense=" + totalExpense +
+                ", budgetRemaining=" + budgetRemaining +
+                ", topCategory='" + topCategoryName + '\'' +
+                ", version=" + dataVersion +
+                '}';
+    }
+}
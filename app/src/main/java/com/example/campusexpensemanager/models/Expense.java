@@ -1,5 +1,7 @@
 package com.example.campusexpensemanager.models;
 
+import java.util.Objects;
+
 /**
  * Expense model class representing a single expense/income transaction
  * Links to User, Category, and Currency tables
@@ -13,7 +15,7 @@ public class Expense {
     private int userId;
     private int categoryId;
     private int currencyId;
-    private double amount;
+    private long amount; // Minor units of currencyId (VND: đồng, USD: cent)
     private long date; // Unix timestamp in milliseconds
     private String description;
     private String receiptPath;
@@ -21,12 +23,15 @@ public class Expense {
     private int type; // 0 = expense, 1 = income
 
     // **SPRINT 5: Thêm trường cho Recurring Expenses**
-    private boolean isRecurring;
-    private String recurrencePeriod; // e.g., "Weekly", "Monthly", "Yearly"
-    private long nextOccurrenceDate; // Unix timestamp
+    private boolean isRecurring; // Có recurrence rule (cột is_recurring)
+    // Rule của expense này; chỉ được nạp bởi getExpenseById (danh sách chỉ cần isRecurring)
+    private RecurrenceRule recurrence;
+
+    // Khoá chống trùng cho dòng sinh tự động (VD: "recurring:<expenseId mẫu>:<occurrence>"), null nếu nhập tay
+    private String sourceKey;
 
     // Default constructor
-    public Expense(int userId, int categoryId, int currencyId, double amount, long l, String description, Object o, long currentTimeMillis, int type) {
+    public Expense(int userId, int categoryId, int currencyId, long amount, long l, String description, Object o, long currentTimeMillis, int type) {
         this.createdAt = System.currentTimeMillis();
         this.date = System.currentTimeMillis();
         this.type = TYPE_EXPENSE; // Default to expense
@@ -34,7 +39,7 @@ public class Expense {
     }
 
     // Constructor with essential fields (VND default, currencyId=1)
-    public Expense(int userId, int categoryId, double amount, long date, String description) {
+    public Expense(int userId, int categoryId, long amount, long date, String description) {
         this.userId = userId;
         this.categoryId = categoryId;
         this.currencyId = 1; // Default VND
@@ -47,7 +52,7 @@ public class Expense {
     }
 
     // Constructor with type
-    public Expense(int userId, int categoryId, double amount, long date, String description, int type) {
+    public Expense(int userId, int categoryId, long amount, long date, String description, int type) {
         this.userId = userId;
         this.categoryId = categoryId;
         this.currencyId = 1;
@@ -60,21 +65,21 @@ public class Expense {
     }
 
     // Full constructor (Legacy - Cập nhật)
-    public Expense(int id, int userId, int categoryId, int currencyId, double amount,
+    public Expense(int id, int userId, int categoryId, int currencyId, long amount,
                    long date, String description, String receiptPath, long createdAt) {
-        this(id, userId, categoryId, currencyId, amount, date, description, receiptPath, createdAt, TYPE_EXPENSE, false, null, 0); // **MỚI**
+        this(id, userId, categoryId, currencyId, amount, date, description, receiptPath, createdAt, TYPE_EXPENSE, false); // **MỚI**
     }
 
     // Full constructor with type (Legacy - Cập nhật)
-    public Expense(int id, int userId, int categoryId, int currencyId, double amount,
+    public Expense(int id, int userId, int categoryId, int currencyId, long amount,
                    long date, String description, String receiptPath, long createdAt, int type) {
-        this(id, userId, categoryId, currencyId, amount, date, description, receiptPath, createdAt, type, false, null, 0); // **MỚI**
+        this(id, userId, categoryId, currencyId, amount, date, description, receiptPath, createdAt, type, false); // **MỚI**
     }
 
     // **SPRINT 5: Constructor đầy đủ nhất**
-    public Expense(int id, int userId, int categoryId, int currencyId, double amount,
+    public Expense(int id, int userId, int categoryId, int currencyId, long amount,
                    long date, String description, String receiptPath, long createdAt, int type,
-                   boolean isRecurring, String recurrencePeriod, long nextOccurrenceDate) {
+                   boolean isRecurring) {
         this.id = id;
         this.userId = userId;
         this.categoryId = categoryId;
@@ -86,8 +91,6 @@ public class Expense {
         this.createdAt = createdAt;
         this.type = type;
         this.isRecurring = isRecurring;
-        this.recurrencePeriod = recurrencePeriod;
-        this.nextOccurrenceDate = nextOccurrenceDate;
     }
 
 
@@ -100,8 +103,8 @@ public class Expense {
     public void setCategoryId(int categoryId) { this.categoryId = categoryId; }
     public int getCurrencyId() { return currencyId; }
     public void setCurrencyId(int currencyId) { this.currencyId = currencyId; }
-    public double getAmount() { return amount; }
-    public void setAmount(double amount) { this.amount = amount; }
+    public long getAmount() { return amount; }
+    public void setAmount(long amount) { this.amount = amount; }
     public long getDate() { return date; }
     public void setDate(long date) { this.date = date; }
     public String getDescription() { return description; }
@@ -117,11 +120,46 @@ public class Expense {
 
     // **SPRINT 5: Getters/Setters cho Recurring**
     public boolean isRecurring() { return isRecurring; }
-    public void setRecurring(boolean recurring) { isRecurring = recurring; }
-    public String getRecurrencePeriod() { return recurrencePeriod; }
-    public void setRecurrencePeriod(String recurrencePeriod) { this.recurrencePeriod = recurrencePeriod; }
-    public long getNextOccurrenceDate() { return nextOccurrenceDate; }
-    public void setNextOccurrenceDate(long nextOccurrenceDate) { this.nextOccurrenceDate = nextOccurrenceDate; }
+    public RecurrenceRule getRecurrence() { return recurrence; }
+
+    /**
+     * Attach (or with null, remove) the rule written by insertExpense/updateExpense
+     */
+    public void setRecurrence(RecurrenceRule recurrence) {
+        this.recurrence = recurrence;
+        this.isRecurring = recurrence != null;
+    }
+    public String getSourceKey() { return sourceKey; }
+    public void setSourceKey(String sourceKey) { this.sourceKey = sourceKey; }
+
+    /**
+     * Content equality (all stored fields), used by the list adapters to skip unchanged rows
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Expense)) return false;
+        Expense other = (Expense) o;
+        return id == other.id
+                && userId == other.userId
+                && categoryId == other.categoryId
+                && currencyId == other.currencyId
+                && amount == other.amount
+                && date == other.date
+                && createdAt == other.createdAt
+                && type == other.type
+                && isRecurring == other.isRecurring
+                && Objects.equals(description, other.description)
+                && Objects.equals(receiptPath, other.receiptPath)
+                && Objects.equals(recurrence, other.recurrence)
+                && Objects.equals(sourceKey, other.sourceKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, userId, categoryId, currencyId, amount, date, createdAt, type,
+                isRecurring, description, receiptPath, recurrence, sourceKey);
+    }
 
     @Override
     public String toString() {
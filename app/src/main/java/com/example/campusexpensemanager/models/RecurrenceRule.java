@@ -0,0 +1,185 @@
+package com.example.campusexpensemanager.models;
+
+import java.util.Calendar;
+import java.util.Objects;
+
+/**
+ * Recurrence rule of a template expense (row of recurrence_rules)
+ * Occurrence n falls at anchorDate + n * interval units; occurrence 0 is the template itself.
+ * Dates are always computed from the anchor, so "monthly on the 31st" does not drift to the 28th.
+ */
+public class RecurrenceRule {
+    // Đơn vị lặp
+    public static final int UNIT_DAY = 1;
+    public static final int UNIT_WEEK = 2;
+    public static final int UNIT_MONTH = 3;
+    public static final int UNIT_YEAR = 4;
+
+    // Các lựa chọn trong spinner Add/Edit (cùng thứ tự với PRESET_UNITS/PRESET_INTERVALS)
+    public static final String[] PRESET_LABELS = {
+            "Daily", "Weekly", "Every 2 weeks", "Monthly", "Every 3 months", "Yearly"
+    };
+    private static final int[] PRESET_UNITS = {
+            UNIT_DAY, UNIT_WEEK, UNIT_WEEK, UNIT_MONTH, UNIT_MONTH, UNIT_YEAR
+    };
+    private static final int[] PRESET_INTERVALS = {1, 1, 2, 1, 3, 1};
+
+    private int id;
+    private int userId;
+    private int expenseId; // Template expense
+    private int unit;
+    private int interval;
+    private long anchorDate; // Unix timestamp of occurrence 0
+    private int nextIndex;
+    private long nextDue; // 0 when the rule has ended
+    private long endDate; // 0 = no end date
+    private int maxOccurrences; // 0 = unlimited, counts occurrence 0
+    private long createdAt;
+
+    // Full constructor
+    public RecurrenceRule(int id, int userId, int expenseId, int unit, int interval, long anchorDate,
+                          int nextIndex, long nextDue, long endDate, int maxOccurrences, long createdAt) {
+        this.id = id;
+        this.userId = userId;
+        this.expenseId = expenseId;
+        this.unit = unit;
+        this.interval = interval;
+        this.anchorDate = anchorDate;
+        this.nextIndex = nextIndex;
+        this.nextDue = nextDue;
+        this.endDate = endDate;
+        this.maxOccurrences = maxOccurrences;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * New rule repeating the template every interval units, first repeat one interval after anchorDate
+     * @param endDate Last allowed occurrence time, 0 for none
+     * @param maxOccurrences Total occurrences including the template, 0 for unlimited
+     */
+    public static RecurrenceRule every(int interval, int unit, long anchorDate, long endDate, int maxOccurrences) {
+        RecurrenceRule rule = new RecurrenceRule(0, 0, 0, unit, Math.max(1, interval), anchorDate,
+                0, 0, endDate, maxOccurrences, System.currentTimeMillis());
+        rule.moveTo(1);
+        return rule;
+    }
+
+    /**
+     * Rule for one of the PRESET_LABELS entries, without end
+     */
+    public static RecurrenceRule fromPreset(int preset, long anchorDate) {
+        return every(PRESET_INTERVALS[preset], PRESET_UNITS[preset], anchorDate, 0, 0);
+    }
+
+    /**
+     * @return Position in PRESET_LABELS, or -1 if the rule is not one of the presets
+     */
+    public int getPreset() {
+        for (int i = 0; i < PRESET_LABELS.length; i++) {
+            if (PRESET_UNITS[i] == unit && PRESET_INTERVALS[i] == interval) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public String getLabel() {
+        int preset = getPreset();
+        if (preset >= 0) {
+            return PRESET_LABELS[preset];
+        }
+        String[] units = {"", "days", "weeks", "months", "years"};
+        return "Every " + interval + " " + units[unit];
+    }
+
+    /**
+     * Time of occurrence n
+     */
+    public long occurrenceAt(int index) {
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(anchorDate);
+        switch (unit) {
+            case UNIT_DAY:
+                c.add(Calendar.DAY_OF_YEAR, index * interval);
+                break;
+            case UNIT_WEEK:
+                c.add(Calendar.DAY_OF_YEAR, index * interval * 7);
+                break;
+            case UNIT_MONTH:
+                c.add(Calendar.MONTH, index * interval);
+                break;
+            case UNIT_YEAR:
+                c.add(Calendar.YEAR, index * interval);
+                break;
+            default:
+                throw new IllegalStateException("Unknown recurrence unit " + unit);
+        }
+        return c.getTimeInMillis();
+    }
+
+    /**
+     * Make occurrence n the next one due, ending the rule if n is past its count or end date
+     */
+    public void moveTo(int index) {
+        nextIndex = index;
+        long due = occurrenceAt(index);
+        boolean ended = (maxOccurrences > 0 && index >= maxOccurrences)
+                || (endDate > 0 && due > endDate);
+        nextDue = ended ? 0 : due;
+    }
+
+    public boolean isFinished() {
+        return nextDue == 0;
+    }
+
+    // Getters and Setters
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+    public int getUserId() { return userId; }
+    public void setUserId(int userId) { this.userId = userId; }
+    public int getExpenseId() { return expenseId; }
+    public void setExpenseId(int expenseId) { this.expenseId = expenseId; }
+    public int getUnit() { return unit; }
+    public int getInterval() { return interval; }
+    public long getAnchorDate() { return anchorDate; }
+    public int getNextIndex() { return nextIndex; }
+    public long getNextDue() { return nextDue; }
+    public long getEndDate() { return endDate; }
+    public int getMaxOccurrences() { return maxOccurrences; }
+    public long getCreatedAt() { return createdAt; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RecurrenceRule)) return false;
+        RecurrenceRule other = (RecurrenceRule) o;
+        return id == other.id
+                && userId == other.userId
+                && expenseId == other.expenseId
+                && unit == other.unit
+                && interval == other.interval
+                && anchorDate == other.anchorDate
+                && nextIndex == other.nextIndex
+                && nextDue == other.nextDue
+                && endDate == other.endDate
+                && maxOccurrences == other.maxOccurrences
+                && createdAt == other.createdAt;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, userId, expenseId, unit, interval, anchorDate, nextIndex, nextDue,
+                endDate, maxOccurrences, createdAt);
+    }
+
+    @Override
+    public String toString() {
+        return "RecurrenceRule{" +
+                "id=" + id +
+                ", expenseId=" + expenseId +
+                ", every=" + interval + "x" + unit +
+                ", nextIndex=" + nextIndex +
+                ", nextDue=" + nextDue +
+                '}';
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.campusexpensemanager.models;
+
+/**
+ * Aggregated totals for a user's transactions in a date range
+ * All amounts are already converted to VND (whole đồng). Per-category totals (expenses only)
+ * are kept in parallel primitive arrays, sorted by total descending.
+ */
+public class TransactionSummary {
+    private final long totalIncome;
+    private final long totalExpense;
+    private final int incomeCount;
+    private final int expenseCount;
+
+    private final int[] categoryIds;
+    private final long[] categoryTotals;
+    private final int[] categoryCounts;
+
+    public TransactionSummary(long totalIncome, long totalExpense, int incomeCount, int expenseCount,
+                              int[] categoryIds, long[] categoryTotals, int[] categoryCounts) {
+        this.totalIncome = totalIncome;
+        this.totalExpense = totalExpense;
+        this.incomeCount = incomeCount;
+        this.expenseCount = expenseCount;
+        this.categoryIds = categoryIds;
+        this.categoryTotals = categoryTotals;
+        this.categoryCounts = categoryCounts;
+    }
+
+    // Getters
+    public long getTotalIncome() { return totalIncome; }
+    public long getTotalExpense() { return totalExpense; }
+    public long getBalance() { return totalIncome - totalExpense; }
+    public int getIncomeCount() { return incomeCount; }
+    public int getExpenseCount() { return expenseCount; }
+
+    /**
+     * Number of expense categories with at least one transaction
+     */
+    public int getCategoryCount() { return categoryIds.length; }
+    public int getCategoryId(int index) { return categoryIds[index]; }
+    public long getCategoryTotal(int index) { return categoryTotals[index]; }
+    public int getCategoryTransactionCount(int index) { return categoryCounts[index]; }
+
+    /**
+     * @return ID of the category with the highest expense total, or 0 if there are no expenses
+     */
+    public int getTopCategoryId() {
+        return categoryIds.length > 0 ? categoryIds[0] : 0;
+    }
+
+    /**
+     * @return Expense total of the top category, or 0 if there are no expenses
+     */
+    public long getTopCategoryTotal() {
+        return categoryTotals.length > 0 ? categoryTotals[0] : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionSummary{" +
+                "totalIncome=" + totalIncome +
+                ", totalExpense=" + totalExpense +
+                ", incomeCount=" + incomeCount +
+                ", expenseCount=" + expenseCount +
+                ", categories=" + categoryIds.length +
+                '}';
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.campusexpensemanager.utils;
+
+import android.content.Context;
+
+import com.example.campusexpensemanager.models.Category;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Singleton cache của bảng categories, đánh index theo ID (và theo tên cho import).
+ * get(id) chỉ đọc một phần tử mảng: không truy vấn DB, không tạo object mới.
+ * Cache được nạp lại khi DatabaseHelper báo categories đã thay đổi (version tăng).
+ */
+public class CategoryRegistry {
+
+    private static CategoryRegistry instance;
+    private final DatabaseHelper dbHelper;
+
+    // Mảng byId và version được thay cùng lúc để reader không thấy trạng thái nửa vời
+    private volatile Snapshot snapshot;
+
+    private CategoryRegistry(Context context) {
+        dbHelper = DatabaseHelper.getInstance(context);
+    }
+
+    public static synchronized CategoryRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new CategoryRegistry(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Lấy Category bằng ID
+     * @param categoryId Category ID
+     * @return Category object or null if unknown
+     */
+    public Category get(int categoryId) {
+        Category[] byId = current().byId;
+        if (categoryId < 0 || categoryId >= byId.length) {
+            return null;
+        }
+        return byId[categoryId];
+    }
+
+    /**
+     * Lấy Category bằng tên (không phân biệt hoa thường), VD khi import file
+     * @return Category object or null if no category has that name
+     */
+    public Category findByName(String name) {
+        return current().byName.get(name.trim().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Bỏ cache hiện tại, lần get() tiếp theo sẽ nạp lại từ DB
+     * (dùng khi categories bị sửa ngoài DatabaseHelper, VD: restore backup)
+     */
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        if (s == null || s.version != dbHelper.getCategoriesVersion()) {
+            s = load();
+        }
+        return s;
+    }
+
+    /**
+     * Tải tất cả categories vào mảng có kích thước maxId + 1
+     */
+    private synchronized Snapshot load() {
+        // Đọc version trước khi query: nếu có ghi xen giữa, lần sau sẽ nạp lại
+        int version = dbHelper.getCategoriesVersion();
+        Snapshot s = snapshot;
+        if (s != null && s.version == version) {
+            return s; // Thread khác vừa nạp xong
+        }
+
+        List<Category> categories = dbHelper.getAllCategories();
+        int maxId = 0;
+        for (Category category : categories) {
+            maxId = Math.max(maxId, category.getId());
+        }
+
+        Category[] byId = new Category[maxId + 1];
+        Map<String, Category> byName = new HashMap<>();
+        for (Category category : categories) {
+            byId[category.getId()] = category;
+            byName.putIfAbsent(category.getName().trim().toLowerCase(Locale.ROOT), category);
+        }
+
+        s = new Snapshot(version, byId, byName);
+        snapshot = s;
+        return s;
+    }
+
+    private static final class Snapshot {
+        final int version;
+        final Category[] byId;
+        final Map<String, Category> byName;
+
+        Snapshot(int version, Category[] byId, Map<String, Category> byName) {
+            this.version = version;
+            this.byId = byId;
+            this.byName = byName;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.campusexpensemanager.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Đọc CSV (RFC 4180) theo từng record, không nạp cả file vào bộ nhớ.
+ * Handles quoted fields with doubled quotes and embedded commas or line breaks, LF / CRLF / CR
+ * line ends, a leading BOM, and skips blank lines. Reads through its own buffer, so the
+ * Reader does not need to be buffered.
+ */
+final class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int NONE = -2;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    // Tái sử dụng cho mọi field
+    private final StringBuilder field = new StringBuilder();
+    private int line = 1;
+    private int recordLine;
+    private boolean started;
+    private int pushback = NONE;
+
+    CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Read the next record
+     * @param fields Cleared, then filled with the record's fields
+     * @return false at the end of the input (fields left empty)
+     * @throws IOException On a read error, or a quoted field not closed before the end of the input
+     */
+    boolean readRecord(List<String> fields) throws IOException {
+        fields.clear();
+        int c = read();
+        if (!started) {
+            started = true;
+            if (c == '\uFEFF') {
+                c = read();
+            }
+        }
+        // Bỏ qua dòng trống
+        while (c == '\r' || c == '\n') {
+            c = skipLineEnd(c);
+        }
+        if (c < 0) {
+            return false;
+        }
+
+        recordLine = line;
+        while (true) {
+            field.setLength(0);
+            if (c == '"') {
+                c = readQuoted();
+            } else {
+                while (c >= 0 && c != ',' && c != '\r' && c != '\n') {
+                    field.append((char) c);
+                    c = read();
+                }
+            }
+            fields.add(field.toString());
+
+            if (c == ',') {
+                c = read();
+                continue;
+            }
+            if (c >= 0) {
+                // Ký tự đầu dòng sau được đọc trước -> giữ lại cho lần gọi tiếp theo
+                pushback = skipLineEnd(c);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Line number (from 1) where the last record returned by readRecord started
+     */
+    int getLineNumber() {
+        return recordLine;
+    }
+
+    /**
+     * Read a quoted field after its opening quote
+     * @return The character after the closing quote
+     */
+    private int readQuoted() throws IOException {
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                throw new IOException("Unterminated quoted field at line " + recordLine);
+            }
+            if (c == '"') {
+                c = read();
+                if (c != '"') {
+                    // Ký tự thừa sau dấu đóng ngoặc (không chuẩn) -> giữ lại như Excel
+                    while (c >= 0 && c != ',' && c != '\r' && c != '\n') {
+                        field.append((char) c);
+                        c = read();
+                    }
+                    return c;
+                }
+            } else if (c == '\n') {
+                line++;
+            }
+            field.append((char) c);
+        }
+    }
+
+    /**
+     * Consume a line end starting with c (CR, LF or CRLF)
+     * @return The first character of the next line
+     */
+    private int skipLineEnd(int c) throws IOException {
+        line++;
+        int next = read();
+        if (c == '\r' && next == '\n') {
+            next = read();
+        }
+        return next;
+    }
+
+    private int read() throws IOException {
+        if (pushback != NONE) {
+            int c = pushback;
+            pushback = NONE;
+            return c;
+        }
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
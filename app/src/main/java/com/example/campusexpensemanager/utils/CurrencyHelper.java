@@ -16,7 +16,9 @@ import java.util.Map;
 public class CurrencyHelper {
 
     private static CurrencyHelper instance;
-    private Map<Integer, Currency> currencyMap;
+    private volatile Map<Integer, Currency> currencyMap;
+    private volatile Map<String, Currency> currencyByCode;
+    private volatile int loadedVersion = -1; // Version của bảng currencies lúc nạp currencyMap
     private DatabaseHelper dbHelper;
     private NumberFormat vndFormat;
     private NumberFormat usdFormat;
@@ -38,41 +40,88 @@ public class CurrencyHelper {
     /**
      * Tải tất cả tiền tệ từ DB vào một Map để truy cập nhanh
      */
-    private void loadCurrencies() {
-        currencyMap = new HashMap<>();
+    private synchronized void loadCurrencies() {
+        int version = dbHelper.getCurrenciesVersion();
+        if (currencyMap != null && loadedVersion == version) {
+            return; // Thread khác vừa nạp xong
+        }
+
+        Map<Integer, Currency> map = new HashMap<>();
+        Map<String, Currency> byCode = new HashMap<>();
         List<Currency> currencies = dbHelper.getAllCurrencies();
         for (Currency currency : currencies) {
-            currencyMap.put(currency.getId(), currency);
+            map.put(currency.getId(), currency);
+            byCode.put(currency.getCode().toUpperCase(Locale.ROOT), currency);
         }
+        // Gán byCode trước: currencyMap khác null nghĩa là cả hai đã sẵn sàng
+        currencyByCode = byCode;
+        currencyMap = map;
+        loadedVersion = version;
+    }
+
+    /**
+     * Bỏ map hiện tại và nạp lại từ DB (VD: sau khi restore backup)
+     */
+    public void refresh() {
+        loadedVersion = -1;
+        loadCurrencies();
     }
 
     /**
      * Lấy một đối tượng Currency bằng ID
+     * Nạp lại map nếu tỷ giá đã được cập nhật (DatabaseHelper.updateCurrencyRate)
      */
     public Currency getCurrencyById(int id) {
-        return currencyMap.getOrDefault(id, currencyMap.get(1)); // Mặc định là VND
+        if (loadedVersion != dbHelper.getCurrenciesVersion()) {
+            loadCurrencies();
+        }
+        Map<Integer, Currency> map = currencyMap;
+        return map.getOrDefault(id, map.get(1)); // Mặc định là VND
+    }
+
+    /**
+     * Lấy Currency bằng mã (VD: "USD", không phân biệt hoa thường)
+     * @return Currency, or null if the code is unknown (no VND fallback, unlike getCurrencyById)
+     */
+    public Currency getCurrencyByCode(String code) {
+        if (loadedVersion != dbHelper.getCurrenciesVersion()) {
+            loadCurrencies();
+        }
+        return currencyByCode.get(code.trim().toUpperCase(Locale.ROOT));
     }
 
     /**
      * Chuyển đổi một số tiền từ một loại tiền tệ bất kỳ sang VND
+     * @param amount Minor units of the currency (Expense.getAmount())
+     * @return Whole VND, rounded once (see Money.toVnd)
      */
-    public double convertToVND(double amount, int currencyId) {
+    public long convertToVND(long amount, int currencyId) {
         Currency currency = getCurrencyById(currencyId);
         if (currency == null) {
-            return amount; // Không tìm thấy, trả về giá trị gốc
+            return amount; // Không tìm thấy, coi như VND
         }
-        return amount * currency.getRateToVND();
+        return Money.toVnd(amount, currency.getMinorScale(), currency.getRateToVND());
+    }
+
+    /**
+     * Minor units per major unit of a currency (1 if unknown)
+     */
+    public int getMinorScale(int currencyId) {
+        Currency currency = getCurrencyById(currencyId);
+        return currency != null ? currency.getMinorScale() : Money.VND_SCALE;
     }
 
     /**
      * Định dạng số tiền theo đúng loại tiền tệ của nó (VD: $10.00 hoặc 250.000đ)
+     * @param amount Minor units of the currency
      */
-    public String formatAmount(double amount, int currencyId) {
+    public String formatAmount(long amount, int currencyId) {
         Currency currency = getCurrencyById(currencyId);
+        double major = Money.toMajor(amount, currency.getMinorScale());
         if (currency.getCode().equals("USD")) {
-            return usdFormat.format(amount);
+            return usdFormat.format(major);
         }
-        return vndFormat.format(amount);
+        return vndFormat.format(major);
     }
 
     /**
@@ -80,7 +129,7 @@ public class CurrencyHelper {
      * VD: $10.00 (250.000đ)
      * HOẶC: 50.000đ
      */
-    public String formatAmountWithVND(double originalAmount, int originalCurrencyId) {
+    public String formatAmountWithVND(long originalAmount, int originalCurrencyId) {
         // Nếu là VND, chỉ hiển thị VND
         if (originalCurrencyId == 1) { // 1 là ID của VND
             return vndFormat.format(originalAmount);
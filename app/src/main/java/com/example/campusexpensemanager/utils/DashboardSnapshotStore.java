@@ -0,0 +1,95 @@
+package com.example.campusexpensemanager.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.campusexpensemanager.models.DashboardSummary;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Singleton lưu DashboardSummary gần nhất của mỗi user trong SharedPreferences.
+ * Each summary carries the DatabaseHelper.getDataVersion it was computed at. That version is
+ * bumped by triggers inside every write transaction, so comparing the two on the read thread
+ * tells whether a stored summary is still right, even after the process was killed mid-way.
+ */
+public class DashboardSnapshotStore {
+
+    private static final String TAG = "DashboardSnapshotStore";
+    private static final String PREF_NAME = "CampusExpenseDashboard";
+    private static final String KEY_SUMMARY_PREFIX = "summary_";
+
+    private static DashboardSnapshotStore instance;
+
+    private final SharedPreferences prefs;
+
+    private DashboardSnapshotStore(Context context) {
+        prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static synchronized DashboardSnapshotStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new DashboardSnapshotStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * @return The stored summary, or null if none was saved or it cannot be read
+     */
+    public DashboardSummary load(int userId) {
+        String json = prefs.getString(KEY_SUMMARY_PREFIX + userId, null);
+        if (json == null) {
+            return null;
+        }
+        try {
+            JSONObject o = new JSONObject(json);
+            return new DashboardSummary(
+                    o.getLong("income"),
+                    o.getLong("expense"),
+                    o.getLong("budget_remaining"),
+                    o.has("top_category") ? o.getString("top_category") : null,
+                    o.getLong("top_category_total"),
+                    o.getLong("version"),
+                    o.getLong("valid_until"),
+                    o.getLong("computed_at"));
+        } catch (JSONException e) {
+            Log.w(TAG, "Discarding unreadable dashboard snapshot", e);
+            return null;
+        }
+    }
+
+    public void save(int userId, DashboardSummary summary) {
+        try {
+            JSONObject o = new JSONObject();
+            o.put("income", summary.getTotalIncome());
+            o.put("expense", summary.getTotalExpense());
+            o.put("budget_remaining", summary.getBudgetRemaining());
+            o.putOpt("top_category", summary.getTopCategoryName());
+            o.put("top_category_total", summary.getTopCategoryTotal());
+            o.put("version", summary.getDataVersion());
+            o.put("valid_until", summary.getValidUntil());
+            o.put("computed_at", summary.getComputedAt());
+            prefs.edit().putString(KEY_SUMMARY_PREFIX + userId, o.toString()).apply();
+        } catch (JSONException e) {
+            Log.w(TAG, "Could not save dashboard snapshot", e);
+        }
+    }
+
+    /**
+     * A summary is current if no write happened since it was computed and its month/budget periods still hold
+     * @param dataVersion DatabaseHelper.getDataVersion, read on a background thread
+     */
+    public boolean isCurrent(DashboardSummary summary, long dataVersion) {
+        return summary.getDataVersion() == dataVersion && !isExpired(summary);
+    }
+
+    /**
+     * @return true once the summary's month or a budget period in it has ended
+     */
+    public boolean isExpired(DashboardSummary summary) {
+        return System.currentTimeMillis() >= summary.getValidUntil();
+    }
+}
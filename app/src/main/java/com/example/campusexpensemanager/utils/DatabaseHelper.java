@@ -2,19 +2,35 @@ package com.example.campusexpensemanager.utils;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.CancellationSignal;
+import android.os.Looper;
 import android.util.Log;
 
 import com.example.campusexpensemanager.models.Budget;
+import com.example.campusexpensemanager.models.BudgetStatus;
 import com.example.campusexpensemanager.models.Category;
 import com.example.campusexpensemanager.models.Currency; // **MỚI**
 import com.example.campusexpensemanager.models.Expense;
+import com.example.campusexpensemanager.models.RecurrenceRule;
+import com.example.campusexpensemanager.models.TransactionSummary;
 import com.example.campusexpensemanager.models.User;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * DatabaseHelper manages SQLite database for CampusExpense Manager
@@ -27,7 +43,17 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     // Database Info
     private static final String DATABASE_NAME = "CampusExpense.db";
     // **SPRINT 6: Nâng cấp DB version
-    private static final int DATABASE_VERSION = 3;
+    // v4: secondary indexes on expenses/budgets
+    // v5: monthly_totals rollup table
+    // v6: expenses_fts full-text search index
+    // v7: budgets.spent_vnd counter maintained by triggers
+    // v8: budgets.alert_level (last threshold notified by BudgetAlertWorker)
+    // v9: expenses.source_key idempotency key for generated rows
+    // v10: recurrence_rules table (recurring state moved off the expenses row)
+    // v11: amounts as INTEGER minor units, currency rates as fixed-point INTEGER (see Money)
+    // v12: expenses.fingerprint duplicate-detection key for statement imports (see ExpenseFingerprint)
+    // v13: data_version counter bumped by triggers, for the dashboard snapshot (see getDataVersion)
+    static final int DATABASE_VERSION = 13;
 
     // Table Names
     private static final String TABLE_USERS = "users";
@@ -35,6 +61,22 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String TABLE_EXPENSES = "expenses";
     private static final String TABLE_BUDGETS = "budgets";
     private static final String TABLE_CURRENCIES = "currencies";
+    private static final String TABLE_MONTHLY_TOTALS = "monthly_totals";
+    private static final String TABLE_EXPENSES_FTS = "expenses_fts";
+    private static final String TABLE_RECURRENCE_RULES = "recurrence_rules";
+    private static final String TABLE_DATA_VERSION = "data_version";
+
+    // Index Names
+    private static final String INDEX_EXPENSES_USER_DATE = "idx_expenses_user_date";
+    private static final String INDEX_EXPENSES_USER_TYPE_DATE = "idx_expenses_user_type_date";
+    private static final String INDEX_EXPENSES_USER_CATEGORY_DATE = "idx_expenses_user_category_date";
+    private static final String INDEX_EXPENSES_NEXT_OCCURRENCE = "idx_expenses_next_occurrence"; // v4-v9
+    private static final String INDEX_BUDGETS_USER_PERIOD = "idx_budgets_user_period"; // v4-v6, thay bằng INDEX_BUDGETS_USER_END
+    private static final String INDEX_BUDGETS_USER_END = "idx_budgets_user_end";
+    private static final String INDEX_EXPENSES_SOURCE_KEY = "idx_expenses_source_key";
+    private static final String INDEX_EXPENSES_USER_FINGERPRINT = "idx_expenses_user_fingerprint";
+    private static final String INDEX_RECURRENCE_NEXT_DUE = "idx_recurrence_rules_next_due";
+    private static final String INDEX_RECURRENCE_EXPENSE = "idx_recurrence_rules_expense";
 
     // Common Column Names
     private static final String KEY_ID = "id";
@@ -59,31 +101,75 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String KEY_EXPENSE_USER_ID = "user_id";
     private static final String KEY_EXPENSE_CATEGORY_ID = "category_id";
     private static final String KEY_EXPENSE_CURRENCY_ID = "currency_id";
-    private static final String KEY_EXPENSE_AMOUNT = "amount";
+    private static final String KEY_EXPENSE_AMOUNT = "amount"; // Minor units of currency_id (v1-v10: REAL, major units)
     private static final String KEY_EXPENSE_DATE = "date";
     private static final String KEY_EXPENSE_DESCRIPTION = "description";
     private static final String KEY_EXPENSE_RECEIPT = "receipt_path";
     private static final String KEY_EXPENSE_TYPE = "type"; // 0=expense, 1=income
     // **SPRINT 5: Cột cho Recurring Expenses
-    private static final String KEY_EXPENSE_IS_RECURRING = "is_recurring";
+    private static final String KEY_EXPENSE_IS_RECURRING = "is_recurring"; // 1 khi có dòng trong recurrence_rules
+    // v2-v9: trạng thái lặp nằm trên dòng expense, chuyển sang recurrence_rules ở v10
     private static final String KEY_EXPENSE_RECURRENCE_PERIOD = "recurrence_period";
     private static final String KEY_EXPENSE_NEXT_OCCURRENCE_DATE = "next_occurrence_date";
+    // Khoá chống trùng cho dòng do RecurringExpenseWorker sinh ra (UNIQUE khi khác NULL)
+    private static final String KEY_EXPENSE_SOURCE_KEY = "source_key";
+    // Hash (ngày, số tiền có dấu, currency, mô tả chuẩn hoá) để nhận ra dòng sao kê đã import
+    private static final String KEY_EXPENSE_FINGERPRINT = "fingerprint";
 
     // Budget Table Columns
     private static final String KEY_BUDGET_USER_ID = "user_id";
     private static final String KEY_BUDGET_CATEGORY_ID = "category_id";
-    private static final String KEY_BUDGET_AMOUNT = "amount";
+    private static final String KEY_BUDGET_AMOUNT = "amount"; // Whole VND (v1-v10: REAL)
     private static final String KEY_BUDGET_PERIOD_START = "period_start";
     private static final String KEY_BUDGET_PERIOD_END = "period_end";
+    private static final String KEY_BUDGET_SPENT_VND = "spent_vnd"; // Tổng chi (VND) trong kỳ, do trigger cập nhật
+    private static final String KEY_BUDGET_ALERT_LEVEL = "alert_level"; // 0/50/80/100, xem BudgetStatus.ALERT_LEVELS
+
+    // Recurrence Rule Table Columns
+    private static final String KEY_RULE_USER_ID = "user_id";
+    private static final String KEY_RULE_EXPENSE_ID = "expense_id"; // Template expense
+    private static final String KEY_RULE_UNIT = "interval_unit"; // RecurrenceRule.UNIT_*
+    private static final String KEY_RULE_INTERVAL = "interval_count";
+    private static final String KEY_RULE_ANCHOR_DATE = "anchor_date";
+    private static final String KEY_RULE_NEXT_INDEX = "next_index";
+    private static final String KEY_RULE_NEXT_DUE = "next_due"; // 0 khi rule đã kết thúc
+    private static final String KEY_RULE_END_DATE = "end_date";
+    private static final String KEY_RULE_MAX_OCCURRENCES = "max_occurrences";
+    private static final String KEY_RULE_ID_ALIAS = "rule_id"; // r.id khi join với expenses
 
     // Currency Table Columns
     private static final String KEY_CURRENCY_CODE = "code";
-    private static final String KEY_CURRENCY_RATE = "rate_to_vnd";
+    private static final String KEY_CURRENCY_RATE_V10 = "rate_to_vnd"; // v1-v10: REAL, thay bằng KEY_CURRENCY_RATE
+    private static final String KEY_CURRENCY_RATE = "rate_to_vnd_e4"; // VND per major unit * Money.RATE_SCALE
+    private static final String KEY_CURRENCY_MINOR_SCALE = "minor_scale"; // Minor units per major unit (VND 1, USD 100)
     // **SPRINT 6: Thêm cột symbol
     private static final String KEY_CURRENCY_SYMBOL = "symbol";
 
+    // Data Version Table Columns (một dòng duy nhất, id = 1)
+    private static final String KEY_DATA_VERSION = "version";
+
+    // Monthly Totals (rollup) Table Columns
+    private static final String KEY_ROLLUP_USER_ID = "user_id";
+    private static final String KEY_ROLLUP_YEAR_MONTH = "year_month"; // yyyyMM, local time
+    private static final String KEY_ROLLUP_CATEGORY_ID = "category_id";
+    private static final String KEY_ROLLUP_TYPE = "type";
+    private static final String KEY_ROLLUP_TOTAL_VND = "total_vnd";
+    private static final String KEY_ROLLUP_COUNT = "tx_count";
+
+    // Full-text search Table Columns (docid = expense id)
+    private static final String KEY_FTS_DOCID = "docid";
+    private static final String KEY_FTS_DESCRIPTION = "description";
+    private static final String KEY_FTS_CATEGORY_NAME = "category_name";
+
+    // Wildcard for optional filters in getExpensesByFilter
+    public static final int FILTER_ANY = -1;
+
     private static DatabaseHelper instance;
 
+    // Tăng mỗi khi categories/currencies thay đổi -> cache (CategoryRegistry, CurrencyHelper) tự nạp lại
+    private final AtomicInteger categoriesVersion = new AtomicInteger();
+    private final AtomicInteger currenciesVersion = new AtomicInteger();
+
     public static synchronized DatabaseHelper getInstance(Context context) {
         if (instance == null) {
             instance = new DatabaseHelper(context.getApplicationContext());
@@ -91,8 +177,56 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return instance;
     }
 
+    // Báo cho các màn hình đang mở khi dữ liệu thay đổi
+    private final InvalidationTracker invalidationTracker = new InvalidationTracker();
+
+    // Cột expenses theo user cho báo cáo (getExpenseColumns); map cũng là lock cho expenseWrites
+    private final Map<Integer, ExpenseColumns> expenseColumns = new HashMap<>();
+    private int expenseWrites;
+    // Ghi nhiều dòng hơn mức này thì bỏ cột đã cache thay vì patch từng dòng
+    private static final int BULK_PATCH_LIMIT = 256;
+    // Số tham số tối đa của một câu SQL trên SQLite cũ (SQLITE_MAX_VARIABLE_NUMBER = 999)
+    private static final int MAX_SQL_ARGS = 999;
+
+    // Debug build: cảnh báo (kèm stack trace) mỗi khi DB bị truy cập trên main thread
+    private final boolean flagMainThreadAccess;
+
     private DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    // Test: mở một file DB khác (VD: schema cũ để kiểm tra onUpgrade) thay vì DB của app
+    DatabaseHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+        // WAL: các thread đọc của ExpenseRepository không bị chặn bởi thread ghi
+        setWriteAheadLoggingEnabled(true);
+        flagMainThreadAccess = (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    @Override
+    public SQLiteDatabase getReadableDatabase() {
+        checkNotMainThread();
+        return super.getReadableDatabase();
+    }
+
+    @Override
+    public SQLiteDatabase getWritableDatabase() {
+        checkNotMainThread();
+        return super.getWritableDatabase();
+    }
+
+    public InvalidationTracker getInvalidationTracker() {
+        return invalidationTracker;
+    }
+
+    /**
+     * StrictMode-style check: DB work belongs on ExpenseRepository's executors
+     * Only logs (like StrictMode penaltyLog) so screens not migrated yet keep working
+     */
+    private void checkNotMainThread() {
+        if (flagMainThreadAccess && Looper.myLooper() == Looper.getMainLooper()) {
+            Log.w(TAG, "Database accessed on the main thread", new Throwable("DatabaseHelper main-thread access"));
+        }
     }
 
     @Override
@@ -122,53 +256,19 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 + ")";
         db.execSQL(CREATE_CATEGORIES_TABLE);
 
-        // **SPRINT 6: Cập nhật CREATE_CURRENCIES_TABLE
-        String CREATE_CURRENCIES_TABLE = "CREATE TABLE " + TABLE_CURRENCIES + "("
-                + KEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
-                + KEY_CURRENCY_CODE + " TEXT UNIQUE NOT NULL,"
-                + KEY_CURRENCY_RATE + " REAL DEFAULT 1,"
-                + KEY_CURRENCY_SYMBOL + " TEXT NOT NULL" // **MỚI**
-                + ")";
-        db.execSQL(CREATE_CURRENCIES_TABLE);
-
-        // ... (CREATE_EXPENSES_TABLE, CREATE_BUDGETS_TABLE từ Sprint 5 giữ nguyên) ...
-        String CREATE_EXPENSES_TABLE = "CREATE TABLE " + TABLE_EXPENSES + "("
-                + KEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
-                + KEY_EXPENSE_USER_ID + " INTEGER NOT NULL,"
-                + KEY_EXPENSE_CATEGORY_ID + " INTEGER NOT NULL,"
-                + KEY_EXPENSE_CURRENCY_ID + " INTEGER DEFAULT 1,"
-                + KEY_EXPENSE_AMOUNT + " REAL NOT NULL,"
-                + KEY_EXPENSE_DATE + " INTEGER NOT NULL,"
-                + KEY_EXPENSE_DESCRIPTION + " TEXT,"
-                + KEY_EXPENSE_RECEIPT + " TEXT,"
-                + KEY_EXPENSE_TYPE + " INTEGER DEFAULT 0," // 0=expense, 1=income
-                + KEY_EXPENSE_IS_RECURRING + " INTEGER DEFAULT 0,"
-                + KEY_EXPENSE_RECURRENCE_PERIOD + " TEXT,"
-                + KEY_EXPENSE_NEXT_OCCURRENCE_DATE + " INTEGER DEFAULT 0,"
-                + KEY_CREATED_AT + " INTEGER NOT NULL,"
-                + "FOREIGN KEY(" + KEY_EXPENSE_USER_ID + ") REFERENCES "
-                + TABLE_USERS + "(" + KEY_ID + ") ON DELETE CASCADE,"
-                + "FOREIGN KEY(" + KEY_EXPENSE_CATEGORY_ID + ") REFERENCES "
-                + TABLE_CATEGORIES + "(" + KEY_ID + "),"
-                + "FOREIGN KEY(" + KEY_EXPENSE_CURRENCY_ID + ") REFERENCES "
-                + TABLE_CURRENCIES + "(" + KEY_ID + ")"
-                + ")";
-        db.execSQL(CREATE_EXPENSES_TABLE);
+        // Cùng định nghĩa với bảng dựng lại ở migration v11
+        createCurrenciesTable(db, TABLE_CURRENCIES);
+        createExpensesTable(db, TABLE_EXPENSES);
+        createBudgetsTable(db, TABLE_BUDGETS);
 
-        String CREATE_BUDGETS_TABLE = "CREATE TABLE " + TABLE_BUDGETS + "("
-                + KEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
-                + KEY_BUDGET_USER_ID + " INTEGER NOT NULL,"
-                + KEY_BUDGET_CATEGORY_ID + " INTEGER DEFAULT 0,"
-                + KEY_BUDGET_AMOUNT + " REAL NOT NULL,"
-                + KEY_BUDGET_PERIOD_START + " INTEGER NOT NULL,"
-                + KEY_BUDGET_PERIOD_END + " INTEGER NOT NULL,"
-                + KEY_CREATED_AT + " INTEGER NOT NULL,"
-                + "FOREIGN KEY(" + KEY_BUDGET_USER_ID + ") REFERENCES "
-                + TABLE_USERS + "(" + KEY_ID + ") ON DELETE CASCADE,"
-                + "FOREIGN KEY(" + KEY_BUDGET_CATEGORY_ID + ") REFERENCES "
-                + TABLE_CATEGORIES + "(" + KEY_ID + ")"
-                + ")";
-        db.execSQL(CREATE_BUDGETS_TABLE);
+        createIndexes(db);
+        createSourceKeyIndex(db);
+        createFingerprintIndex(db);
+        createMonthlyTotalsTable(db);
+        createSearchIndex(db);
+        createBudgetSpentTriggers(db);
+        createRecurrenceRulesTable(db);
+        createDataVersionTable(db);
 
         // ... (foreign keys, prepopulate) ...
         db.execSQL("PRAGMA foreign_keys=ON");
@@ -207,14 +307,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             String CREATE_CURRENCIES_TABLE_V3 = "CREATE TABLE " + TABLE_CURRENCIES + "("
                     + KEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
                     + KEY_CURRENCY_CODE + " TEXT UNIQUE NOT NULL,"
-                    + KEY_CURRENCY_RATE + " REAL DEFAULT 1,"
+                    + KEY_CURRENCY_RATE_V10 + " REAL DEFAULT 1,"
                     + KEY_CURRENCY_SYMBOL + " TEXT NOT NULL"
                     + ")";
             db.execSQL(CREATE_CURRENCIES_TABLE_V3);
 
             // Copy dữ liệu cũ
-            db.execSQL("INSERT INTO " + TABLE_CURRENCIES + " (" + KEY_ID + ", " + KEY_CURRENCY_CODE + ", " + KEY_CURRENCY_RATE + ", " + KEY_CURRENCY_SYMBOL + ") " +
-                    "SELECT " + KEY_ID + ", " + KEY_CURRENCY_CODE + ", " + KEY_CURRENCY_RATE + ", " +
+            db.execSQL("INSERT INTO " + TABLE_CURRENCIES + " (" + KEY_ID + ", " + KEY_CURRENCY_CODE + ", " + KEY_CURRENCY_RATE_V10 + ", " + KEY_CURRENCY_SYMBOL + ") " +
+                    "SELECT " + KEY_ID + ", " + KEY_CURRENCY_CODE + ", " + KEY_CURRENCY_RATE_V10 + ", " +
                     "CASE WHEN " + KEY_CURRENCY_CODE + " = 'VND' THEN 'đ' ELSE '$' END " + // Gán symbol mặc định
                     "FROM " + TABLE_CURRENCIES + "_old");
 
@@ -225,11 +325,647 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             Log.d(TAG, "Upgrading to v3: Adding USD currency");
             ContentValues usdValues = new ContentValues();
             usdValues.put(KEY_CURRENCY_CODE, "USD");
-            usdValues.put(KEY_CURRENCY_RATE, 25000.0); // Tỷ giá giả định
+            usdValues.put(KEY_CURRENCY_RATE_V10, 25000.0); // Tỷ giá giả định
             usdValues.put(KEY_CURRENCY_SYMBOL, "$");
             // Sử dụng insertWithOnConflict để tránh crash nếu USD đã tồn tại (ví dụ: từ logic copy)
             db.insertWithOnConflict(TABLE_CURRENCIES, null, usdValues, SQLiteDatabase.CONFLICT_IGNORE);
         }
+
+        // Nâng cấp từ v3 lên v4: Thêm index cho expenses và budgets
+        if (oldVersion < 4) {
+            Log.d(TAG, "Upgrading to v4: Creating indexes on expenses and budgets");
+            createIndexes(db);
+        }
+
+        // Nâng cấp từ v4 lên v5: Bảng rollup theo tháng + triggers
+        // Không tính lại ở đây: AMOUNT_IN_VND cần cột tỷ giá của v11, và bước v11 bên dưới
+        // (luôn chạy khi oldVersion < 5) dựng lại bảng rồi tính lại từ dữ liệu cũ
+        if (oldVersion < 5) {
+            Log.d(TAG, "Upgrading to v5: Creating monthly_totals rollup");
+            createMonthlyTotalsTable(db);
+        }
+
+        // Nâng cấp từ v5 lên v6: Bảng FTS cho tìm kiếm + index dữ liệu cũ
+        if (oldVersion < 6) {
+            Log.d(TAG, "Upgrading to v6: Creating expenses_fts search index");
+            createSearchIndex(db);
+            rebuildSearchIndex(db);
+        }
+
+        // Nâng cấp từ v6 lên v7: Cột spent_vnd cho budgets + triggers
+        // Giá trị được tính ở bước v11 (migrateToMinorUnits), như monthly_totals của v5
+        if (oldVersion < 7) {
+            Log.d(TAG, "Upgrading to v7: Adding budgets.spent_vnd counter");
+            db.execSQL("ALTER TABLE " + TABLE_BUDGETS + " ADD COLUMN " + KEY_BUDGET_SPENT_VND
+                    + " REAL NOT NULL DEFAULT 0");
+            db.execSQL("DROP INDEX IF EXISTS " + INDEX_BUDGETS_USER_PERIOD);
+            createIndexes(db);
+            createBudgetSpentTriggers(db);
+        }
+
+        // Nâng cấp từ v7 lên v8: Trạng thái cảnh báo của từng budget
+        if (oldVersion < 8) {
+            Log.d(TAG, "Upgrading to v8: Adding budgets.alert_level");
+            db.execSQL("ALTER TABLE " + TABLE_BUDGETS + " ADD COLUMN " + KEY_BUDGET_ALERT_LEVEL
+                    + " INTEGER NOT NULL DEFAULT 0");
+        }
+
+        // Nâng cấp từ v8 lên v9: Khoá chống trùng cho các dòng recurring tự sinh
+        if (oldVersion < 9) {
+            Log.d(TAG, "Upgrading to v9: Adding expenses.source_key");
+            db.execSQL("ALTER TABLE " + TABLE_EXPENSES + " ADD COLUMN " + KEY_EXPENSE_SOURCE_KEY + " TEXT");
+            createSourceKeyIndex(db);
+        }
+
+        // Nâng cấp từ v9 lên v10: Tách rule lặp sang bảng recurrence_rules
+        if (oldVersion < 10) {
+            Log.d(TAG, "Upgrading to v10: Moving recurrence rules to recurrence_rules");
+            createRecurrenceRulesTable(db);
+            migrateRecurrenceRules(db);
+        }
+
+        // Nâng cấp từ v10 lên v11: Số tiền INTEGER theo đơn vị nhỏ, tỷ giá fixed-point
+        if (oldVersion < 11) {
+            Log.d(TAG, "Upgrading to v11: Converting amounts to integer minor units");
+            migrateToMinorUnits(db);
+        }
+
+        // Nâng cấp từ v11 lên v12: Fingerprint chống trùng khi import sao kê
+        if (oldVersion < 12) {
+            Log.d(TAG, "Upgrading to v12: Adding expenses.fingerprint");
+            // Dưới v11 bảng vừa được dựng lại ở trên với createExpensesTable, đã có cột này
+            if (oldVersion == 11) {
+                db.execSQL("ALTER TABLE " + TABLE_EXPENSES + " ADD COLUMN " + KEY_EXPENSE_FINGERPRINT + " INTEGER");
+            }
+            backfillFingerprints(db);
+            createFingerprintIndex(db);
+        }
+
+        // Nâng cấp từ v12 lên v13: Version dữ liệu của dashboard ghi cùng transaction với dữ liệu
+        if (oldVersion < 13) {
+            Log.d(TAG, "Upgrading to v13: Adding data_version");
+            createDataVersionTable(db);
+        }
+    }
+
+    private void createCurrenciesTable(SQLiteDatabase db, String name) {
+        db.execSQL("CREATE TABLE " + name + "("
+                + KEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + KEY_CURRENCY_CODE + " TEXT UNIQUE NOT NULL,"
+                + KEY_CURRENCY_MINOR_SCALE + " INTEGER NOT NULL DEFAULT 1,"
+                + KEY_CURRENCY_RATE + " INTEGER NOT NULL DEFAULT " + Money.VND_RATE + ","
+                + KEY_CURRENCY_SYMBOL + " TEXT NOT NULL"
+                + ")");
+    }
+
+    private void createExpensesTable(SQLiteDatabase db, String name) {
+        db.execSQL("CREATE TABLE " + name + "("
+                + KEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + KEY_EXPENSE_USER_ID + " INTEGER NOT NULL,"
+                + KEY_EXPENSE_CATEGORY_ID + " INTEGER NOT NULL,"
+                + KEY_EXPENSE_CURRENCY_ID + " INTEGER DEFAULT 1,"
+                + KEY_EXPENSE_AMOUNT + " INTEGER NOT NULL,"
+                + KEY_EXPENSE_DATE + " INTEGER NOT NULL,"
+                + KEY_EXPENSE_DESCRIPTION + " TEXT,"
+                + KEY_EXPENSE_RECEIPT + " TEXT,"
+                + KEY_EXPENSE_TYPE + " INTEGER DEFAULT 0," // 0=expense, 1=income
+                + KEY_EXPENSE_IS_RECURRING + " INTEGER DEFAULT 0,"
+                + KEY_CREATED_AT + " INTEGER NOT NULL,"
+                + KEY_EXPENSE_SOURCE_KEY + " TEXT,"
+                + KEY_EXPENSE_FINGERPRINT + " INTEGER,"
+                + "FOREIGN KEY(" + KEY_EXPENSE_USER_ID + ") REFERENCES "
+                + TABLE_USERS + "(" + KEY_ID + ") ON DELETE CASCADE,"
+                + "FOREIGN KEY(" + KEY_EXPENSE_CATEGORY_ID + ") REFERENCES "
+                + TABLE_CATEGORIES + "(" + KEY_ID + "),"
+                + "FOREIGN KEY(" + KEY_EXPENSE_CURRENCY_ID + ") REFERENCES "
+                + TABLE_CURRENCIES + "(" + KEY_ID + ")"
+                + ")");
+    }
+
+    private void createBudgetsTable(SQLiteDatabase db, String name) {
+        db.execSQL("CREATE TABLE " + name + "("
+                + KEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + KEY_BUDGET_USER_ID + " INTEGER NOT NULL,"
+                + KEY_BUDGET_CATEGORY_ID + " INTEGER DEFAULT 0,"
+                + KEY_BUDGET_AMOUNT + " INTEGER NOT NULL,"
+                + KEY_BUDGET_PERIOD_START + " INTEGER NOT NULL,"
+                + KEY_BUDGET_PERIOD_END + " INTEGER NOT NULL,"
+                + KEY_CREATED_AT + " INTEGER NOT NULL,"
+                + KEY_BUDGET_SPENT_VND + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_BUDGET_ALERT_LEVEL + " INTEGER NOT NULL DEFAULT 0,"
+                + "FOREIGN KEY(" + KEY_BUDGET_USER_ID + ") REFERENCES "
+                + TABLE_USERS + "(" + KEY_ID + ") ON DELETE CASCADE,"
+                + "FOREIGN KEY(" + KEY_BUDGET_CATEGORY_ID + ") REFERENCES "
+                + TABLE_CATEGORIES + "(" + KEY_ID + ")"
+                + ")");
+    }
+
+    /**
+     * Rebuild currencies, expenses, budgets and monthly_totals with INTEGER amounts.
+     * SQLite cannot change a column type, so each table is copied into a new one (like the v3
+     * currencies migration). Amounts are rounded once to minor units of their currency; rates to
+     * Money.RATE_SCALE. The v2-v9 recurring columns of expenses are left behind.
+     * Runs in onUpgrade, before onOpen turns foreign_keys on, so dropping expenses does not
+     * cascade into recurrence_rules.
+     */
+    private void migrateToMinorUnits(SQLiteDatabase db) {
+        // Trigger nào nhắc tới các bảng này đều phải xoá trước, RENAME kiểm tra lại toàn bộ schema
+        for (String trigger : AMOUNT_TRIGGERS) {
+            db.execSQL("DROP TRIGGER IF EXISTS " + trigger);
+        }
+
+        createCurrenciesTable(db, TABLE_CURRENCIES + "_new");
+        db.execSQL("INSERT INTO " + TABLE_CURRENCIES + "_new(" + KEY_ID + ", " + KEY_CURRENCY_CODE + ", "
+                + KEY_CURRENCY_MINOR_SCALE + ", " + KEY_CURRENCY_RATE + ", " + KEY_CURRENCY_SYMBOL + ")"
+                + " SELECT " + KEY_ID + ", " + KEY_CURRENCY_CODE + ", "
+                + "CASE WHEN " + KEY_CURRENCY_CODE + " IN ('VND', 'JPY', 'KRW') THEN 1 ELSE 100 END, "
+                + "CAST(ROUND(IFNULL(" + KEY_CURRENCY_RATE_V10 + ", 1) * " + Money.RATE_SCALE + ") AS INTEGER), "
+                + KEY_CURRENCY_SYMBOL
+                + " FROM " + TABLE_CURRENCIES);
+        replaceWithRebuiltTable(db, TABLE_CURRENCIES);
+
+        createExpensesTable(db, TABLE_EXPENSES + "_new");
+        db.execSQL("INSERT INTO " + TABLE_EXPENSES + "_new(" + KEY_ID + ", " + KEY_EXPENSE_USER_ID + ", "
+                + KEY_EXPENSE_CATEGORY_ID + ", " + KEY_EXPENSE_CURRENCY_ID + ", " + KEY_EXPENSE_AMOUNT + ", "
+                + KEY_EXPENSE_DATE + ", " + KEY_EXPENSE_DESCRIPTION + ", " + KEY_EXPENSE_RECEIPT + ", "
+                + KEY_EXPENSE_TYPE + ", " + KEY_EXPENSE_IS_RECURRING + ", " + KEY_CREATED_AT + ", "
+                + KEY_EXPENSE_SOURCE_KEY + ")"
+                + " SELECT e." + KEY_ID + ", e." + KEY_EXPENSE_USER_ID + ", e." + KEY_EXPENSE_CATEGORY_ID + ", e."
+                + KEY_EXPENSE_CURRENCY_ID + ", CAST(ROUND(e." + KEY_EXPENSE_AMOUNT + " * IFNULL(c."
+                + KEY_CURRENCY_MINOR_SCALE + ", 1)) AS INTEGER), e." + KEY_EXPENSE_DATE + ", e."
+                + KEY_EXPENSE_DESCRIPTION + ", e." + KEY_EXPENSE_RECEIPT + ", e." + KEY_EXPENSE_TYPE + ", e."
+                + KEY_EXPENSE_IS_RECURRING + ", e." + KEY_CREATED_AT + ", e." + KEY_EXPENSE_SOURCE_KEY
+                + " FROM " + TABLE_EXPENSES + " e LEFT JOIN " + TABLE_CURRENCIES + " c"
+                + " ON c." + KEY_ID + " = e." + KEY_EXPENSE_CURRENCY_ID);
+        replaceWithRebuiltTable(db, TABLE_EXPENSES);
+
+        // Budget luôn tính bằng VND; spent_vnd được tính lại bên dưới
+        createBudgetsTable(db, TABLE_BUDGETS + "_new");
+        db.execSQL("INSERT INTO " + TABLE_BUDGETS + "_new(" + KEY_ID + ", " + KEY_BUDGET_USER_ID + ", "
+                + KEY_BUDGET_CATEGORY_ID + ", " + KEY_BUDGET_AMOUNT + ", " + KEY_BUDGET_PERIOD_START + ", "
+                + KEY_BUDGET_PERIOD_END + ", " + KEY_CREATED_AT + ", " + KEY_BUDGET_ALERT_LEVEL + ")"
+                + " SELECT " + KEY_ID + ", " + KEY_BUDGET_USER_ID + ", " + KEY_BUDGET_CATEGORY_ID + ", "
+                + "CAST(ROUND(" + KEY_BUDGET_AMOUNT + ") AS INTEGER), " + KEY_BUDGET_PERIOD_START + ", "
+                + KEY_BUDGET_PERIOD_END + ", " + KEY_CREATED_AT + ", " + KEY_BUDGET_ALERT_LEVEL
+                + " FROM " + TABLE_BUDGETS);
+        replaceWithRebuiltTable(db, TABLE_BUDGETS);
+
+        createIndexes(db);
+        createSourceKeyIndex(db);
+
+        // total_vnd thành INTEGER: tạo lại bảng rollup rồi tính lại
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_MONTHLY_TOTALS);
+        createMonthlyTotalsTable(db);
+        rebuildMonthlyTotals(db);
+        createSearchIndex(db); // Chỉ tạo lại triggers, nội dung FTS giữ nguyên (id không đổi)
+        createBudgetSpentTriggers(db);
+        rebuildBudgetSpent(db);
+    }
+
+    // Mọi trigger đọc expenses/budgets/currencies (tạo bởi createMonthlyTotalsTable,
+    // createBudgetSpentTriggers, createSearchIndex)
+    private static final String[] AMOUNT_TRIGGERS = {
+            "trg_expenses_rollup_insert", "trg_expenses_rollup_delete", "trg_expenses_rollup_update",
+            "trg_expenses_budget_insert", "trg_expenses_budget_delete", "trg_expenses_budget_update",
+            "trg_budgets_spent_insert", "trg_budgets_spent_update",
+            "trg_expenses_fts_insert", "trg_expenses_fts_delete", "trg_expenses_fts_update",
+            "trg_categories_fts_update"
+    };
+
+    /**
+     * Swap a filled "<table>_new" in for table. The AUTOINCREMENT counter is carried over so the
+     * IDs of deleted rows are not handed out again; the old table's indexes go with it.
+     */
+    private void replaceWithRebuiltTable(SQLiteDatabase db, String table) {
+        db.execSQL("UPDATE sqlite_sequence SET seq = (SELECT MAX(seq) FROM sqlite_sequence"
+                + " WHERE name IN ('" + table + "', '" + table + "_new')) WHERE name = '" + table + "_new'");
+        db.execSQL("DROP TABLE " + table);
+        db.execSQL("ALTER TABLE " + table + "_new RENAME TO " + table);
+    }
+
+    /**
+     * Create secondary indexes so per-user and date-range lookups
+     * are index searches instead of full table scans
+     */
+    private void createIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_EXPENSES_USER_DATE + " ON " + TABLE_EXPENSES
+                + "(" + KEY_EXPENSE_USER_ID + ", " + KEY_EXPENSE_DATE + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_EXPENSES_USER_TYPE_DATE + " ON " + TABLE_EXPENSES
+                + "(" + KEY_EXPENSE_USER_ID + ", " + KEY_EXPENSE_TYPE + ", " + KEY_EXPENSE_DATE + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_EXPENSES_USER_CATEGORY_DATE + " ON " + TABLE_EXPENSES
+                + "(" + KEY_EXPENSE_USER_ID + ", " + KEY_EXPENSE_CATEGORY_ID + ", " + KEY_EXPENSE_DATE + ")");
+        // period_end đứng trước: tìm budget chứa một ngày (period_end >= date) chỉ duyệt các kỳ chưa kết thúc,
+        // và getBudgetsByUser (ORDER BY period_end DESC) không cần sort
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_BUDGETS_USER_END + " ON " + TABLE_BUDGETS
+                + "(" + KEY_BUDGET_USER_ID + ", " + KEY_BUDGET_PERIOD_END + ", " + KEY_BUDGET_PERIOD_START + ")");
+    }
+
+    /**
+     * Unique index on generated rows only (manual expenses have a NULL source_key).
+     * Created separately because the column only exists from v9 on.
+     */
+    private void createSourceKeyIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS " + INDEX_EXPENSES_SOURCE_KEY + " ON " + TABLE_EXPENSES
+                + "(" + KEY_EXPENSE_SOURCE_KEY + ") WHERE " + KEY_EXPENSE_SOURCE_KEY + " IS NOT NULL");
+    }
+
+    /**
+     * Index for the duplicate check of statement imports (countExpensesWithFingerprint)
+     */
+    private void createFingerprintIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_EXPENSES_USER_FINGERPRINT + " ON " + TABLE_EXPENSES
+                + "(" + KEY_EXPENSE_USER_ID + ", " + KEY_EXPENSE_FINGERPRINT + ")");
+    }
+
+    /**
+     * Compute the fingerprint of every existing expense (the hash needs Java, not SQL)
+     */
+    private void backfillFingerprints(SQLiteDatabase db) {
+        SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_EXPENSES + " SET "
+                + KEY_EXPENSE_FINGERPRINT + " = ? WHERE " + KEY_ID + " = ?");
+        Cursor cursor = db.rawQuery("SELECT " + KEY_ID + ", " + KEY_EXPENSE_DATE + ", " + KEY_EXPENSE_TYPE + ", "
+                + KEY_EXPENSE_AMOUNT + ", " + KEY_EXPENSE_CURRENCY_ID + ", " + KEY_EXPENSE_DESCRIPTION
+                + " FROM " + TABLE_EXPENSES, null);
+        try {
+            while (cursor.moveToNext()) {
+                update.bindLong(1, ExpenseFingerprint.of(cursor.getLong(1), cursor.getInt(2), cursor.getLong(3),
+                        cursor.getInt(4), cursor.isNull(5) ? null : cursor.getString(5)));
+                update.bindLong(2, cursor.getLong(0));
+                update.executeUpdateDelete();
+            }
+        } finally {
+            cursor.close();
+            update.close();
+        }
+    }
+
+    /**
+     * Create the recurrence rule table: one row per recurring template expense.
+     * The partial index on next_due holds active rules only, so both the due scan and the
+     * earliest-due lookup used for scheduling read a handful of index entries.
+     */
+    private void createRecurrenceRulesTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_RECURRENCE_RULES + "("
+                + KEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + KEY_RULE_USER_ID + " INTEGER NOT NULL,"
+                + KEY_RULE_EXPENSE_ID + " INTEGER NOT NULL,"
+                + KEY_RULE_UNIT + " INTEGER NOT NULL,"
+                + KEY_RULE_INTERVAL + " INTEGER NOT NULL DEFAULT 1,"
+                + KEY_RULE_ANCHOR_DATE + " INTEGER NOT NULL,"
+                + KEY_RULE_NEXT_INDEX + " INTEGER NOT NULL,"
+                + KEY_RULE_NEXT_DUE + " INTEGER NOT NULL,"
+                + KEY_RULE_END_DATE + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_RULE_MAX_OCCURRENCES + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_CREATED_AT + " INTEGER NOT NULL,"
+                + "FOREIGN KEY(" + KEY_RULE_USER_ID + ") REFERENCES "
+                + TABLE_USERS + "(" + KEY_ID + ") ON DELETE CASCADE,"
+                + "FOREIGN KEY(" + KEY_RULE_EXPENSE_ID + ") REFERENCES "
+                + TABLE_EXPENSES + "(" + KEY_ID + ") ON DELETE CASCADE"
+                + ")");
+        // Mỗi expense mẫu có tối đa một rule
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS " + INDEX_RECURRENCE_EXPENSE + " ON "
+                + TABLE_RECURRENCE_RULES + "(" + KEY_RULE_EXPENSE_ID + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_RECURRENCE_NEXT_DUE + " ON " + TABLE_RECURRENCE_RULES
+                + "(" + KEY_RULE_NEXT_DUE + ") WHERE " + KEY_RULE_NEXT_DUE + " > 0");
+    }
+
+    /**
+     * Copy v2-v9 rules (Weekly/Monthly/Yearly on the expense row) into recurrence_rules.
+     * The old next_occurrence_date becomes occurrence 0, so nothing already generated is repeated.
+     */
+    private void migrateRecurrenceRules(SQLiteDatabase db) {
+        db.execSQL("INSERT INTO " + TABLE_RECURRENCE_RULES + "("
+                + KEY_RULE_USER_ID + ", " + KEY_RULE_EXPENSE_ID + ", " + KEY_RULE_UNIT + ", "
+                + KEY_RULE_INTERVAL + ", " + KEY_RULE_ANCHOR_DATE + ", " + KEY_RULE_NEXT_INDEX + ", "
+                + KEY_RULE_NEXT_DUE + ", " + KEY_CREATED_AT + ")"
+                + " SELECT " + KEY_EXPENSE_USER_ID + ", " + KEY_ID + ", "
+                + "CASE " + KEY_EXPENSE_RECURRENCE_PERIOD
+                + " WHEN 'Weekly' THEN " + RecurrenceRule.UNIT_WEEK
+                + " WHEN 'Monthly' THEN " + RecurrenceRule.UNIT_MONTH
+                + " ELSE " + RecurrenceRule.UNIT_YEAR + " END, "
+                + "1, " + KEY_EXPENSE_NEXT_OCCURRENCE_DATE + ", 0, " + KEY_EXPENSE_NEXT_OCCURRENCE_DATE + ", "
+                + KEY_CREATED_AT
+                + " FROM " + TABLE_EXPENSES
+                + " WHERE " + KEY_EXPENSE_IS_RECURRING + " = 1 AND " + KEY_EXPENSE_NEXT_OCCURRENCE_DATE + " > 0"
+                + " AND " + KEY_EXPENSE_RECURRENCE_PERIOD + " IN ('Weekly', 'Monthly', 'Yearly')");
+
+        // Cột cũ không còn dùng; is_recurring chỉ giữ cho dòng có rule
+        db.execSQL("UPDATE " + TABLE_EXPENSES + " SET "
+                + KEY_EXPENSE_RECURRENCE_PERIOD + " = NULL, " + KEY_EXPENSE_NEXT_OCCURRENCE_DATE + " = 0, "
+                + KEY_EXPENSE_IS_RECURRING + " = (" + KEY_ID + " IN (SELECT " + KEY_RULE_EXPENSE_ID
+                + " FROM " + TABLE_RECURRENCE_RULES + "))"
+                + " WHERE " + KEY_EXPENSE_IS_RECURRING + " = 1");
+        db.execSQL("DROP INDEX IF EXISTS " + INDEX_EXPENSES_NEXT_OCCURRENCE);
+    }
+
+    /**
+     * Create the monthly rollup table and the triggers that keep it in sync with expenses.
+     * Triggers run inside the same transaction as the expense write, so the rollup can
+     * never disagree with the raw rows.
+     */
+    private void createMonthlyTotalsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_MONTHLY_TOTALS + "("
+                + KEY_ROLLUP_USER_ID + " INTEGER NOT NULL,"
+                + KEY_ROLLUP_YEAR_MONTH + " INTEGER NOT NULL,"
+                + KEY_ROLLUP_CATEGORY_ID + " INTEGER NOT NULL,"
+                + KEY_ROLLUP_TYPE + " INTEGER NOT NULL,"
+                + KEY_ROLLUP_TOTAL_VND + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_ROLLUP_COUNT + " INTEGER NOT NULL DEFAULT 0,"
+                + "PRIMARY KEY(" + KEY_ROLLUP_USER_ID + ", " + KEY_ROLLUP_YEAR_MONTH + ", "
+                + KEY_ROLLUP_CATEGORY_ID + ", " + KEY_ROLLUP_TYPE + ")"
+                + ") WITHOUT ROWID");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_expenses_rollup_insert AFTER INSERT ON "
+                + TABLE_EXPENSES + " BEGIN "
+                + rollupAddSql("NEW")
+                + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_expenses_rollup_delete AFTER DELETE ON "
+                + TABLE_EXPENSES + " BEGIN "
+                + rollupSubtractSql("OLD")
+                + " END");
+        // Chỉ chạy khi các cột ảnh hưởng tới tổng thay đổi (không chạy khi cập nhật next_occurrence_date)
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_expenses_rollup_update AFTER UPDATE OF "
+                + KEY_EXPENSE_USER_ID + ", " + KEY_EXPENSE_CATEGORY_ID + ", " + KEY_EXPENSE_CURRENCY_ID + ", "
+                + KEY_EXPENSE_AMOUNT + ", " + KEY_EXPENSE_DATE + ", " + KEY_EXPENSE_TYPE
+                + " ON " + TABLE_EXPENSES + " BEGIN "
+                + rollupSubtractSql("OLD")
+                + rollupAddSql("NEW")
+                + " END");
+    }
+
+    // yyyyMM of an expense row (ref = NEW/OLD) in local time, as used for KEY_ROLLUP_YEAR_MONTH
+    private static String yearMonthSql(String ref) {
+        return "CAST(strftime('%Y%m', " + ref + "." + KEY_EXPENSE_DATE
+                + " / 1000, 'unixepoch', 'localtime') AS INTEGER)";
+    }
+
+    private static String rollupKeySql(String ref) {
+        return KEY_ROLLUP_USER_ID + " = " + ref + "." + KEY_EXPENSE_USER_ID
+                + " AND " + KEY_ROLLUP_YEAR_MONTH + " = " + yearMonthSql(ref)
+                + " AND " + KEY_ROLLUP_CATEGORY_ID + " = " + ref + "." + KEY_EXPENSE_CATEGORY_ID
+                + " AND " + KEY_ROLLUP_TYPE + " = " + ref + "." + KEY_EXPENSE_TYPE;
+    }
+
+    // Số tiền (ref = NEW/OLD) quy ra VND bằng số nguyên, cùng công thức với Money.toVnd
+    // (amount luôn >= 0 nên + nửa số chia là làm tròn nửa lên); currency không tồn tại -> coi là VND
+    private static String amountInVndSql(String ref) {
+        return "IFNULL((SELECT " + vndFormulaSql(ref + "." + KEY_EXPENSE_AMOUNT, "") + " FROM " + TABLE_CURRENCIES
+                + " WHERE " + KEY_ID + " = " + ref + "." + KEY_EXPENSE_CURRENCY_ID + "), "
+                + ref + "." + KEY_EXPENSE_AMOUNT + ")";
+    }
+
+    // (amount * rate + scale * RATE_SCALE / 2) / (scale * RATE_SCALE), c = prefix of the currency columns
+    private static String vndFormulaSql(String amount, String c) {
+        return "(" + amount + " * " + c + KEY_CURRENCY_RATE + " + " + c + KEY_CURRENCY_MINOR_SCALE + " * "
+                + (Money.RATE_SCALE / 2) + ") / (" + c + KEY_CURRENCY_MINOR_SCALE + " * " + Money.RATE_SCALE + ")";
+    }
+
+    // SQLite trên Android 10 chưa hỗ trợ UPSERT: INSERT OR IGNORE rồi UPDATE
+    private static String rollupAddSql(String ref) {
+        return "INSERT OR IGNORE INTO " + TABLE_MONTHLY_TOTALS + "(" + KEY_ROLLUP_USER_ID + ", "
+                + KEY_ROLLUP_YEAR_MONTH + ", " + KEY_ROLLUP_CATEGORY_ID + ", " + KEY_ROLLUP_TYPE + ")"
+                + " VALUES (" + ref + "." + KEY_EXPENSE_USER_ID + ", " + yearMonthSql(ref) + ", "
+                + ref + "." + KEY_EXPENSE_CATEGORY_ID + ", " + ref + "." + KEY_EXPENSE_TYPE + ");"
+                + " UPDATE " + TABLE_MONTHLY_TOTALS + " SET "
+                + KEY_ROLLUP_TOTAL_VND + " = " + KEY_ROLLUP_TOTAL_VND + " + " + amountInVndSql(ref) + ", "
+                + KEY_ROLLUP_COUNT + " = " + KEY_ROLLUP_COUNT + " + 1"
+                + " WHERE " + rollupKeySql(ref) + ";";
+    }
+
+    private static String rollupSubtractSql(String ref) {
+        return "UPDATE " + TABLE_MONTHLY_TOTALS + " SET "
+                + KEY_ROLLUP_TOTAL_VND + " = " + KEY_ROLLUP_TOTAL_VND + " - " + amountInVndSql(ref) + ", "
+                + KEY_ROLLUP_COUNT + " = " + KEY_ROLLUP_COUNT + " - 1"
+                + " WHERE " + rollupKeySql(ref) + ";"
+                + " DELETE FROM " + TABLE_MONTHLY_TOTALS
+                + " WHERE " + rollupKeySql(ref) + " AND " + KEY_ROLLUP_COUNT + " <= 0;";
+    }
+
+    /**
+     * Create the triggers that keep budgets.spent_vnd equal to the VND total of the expenses
+     * in each budget's period (same user, same category or any category for a total budget).
+     * Expense triggers adjust only the budgets containing the row's date; budget triggers
+     * recompute a budget whose period or category changed.
+     */
+    private void createBudgetSpentTriggers(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_expenses_budget_insert AFTER INSERT ON "
+                + TABLE_EXPENSES + " BEGIN "
+                + budgetSpentAdjustSql("NEW", "+")
+                + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_expenses_budget_delete AFTER DELETE ON "
+                + TABLE_EXPENSES + " BEGIN "
+                + budgetSpentAdjustSql("OLD", "-")
+                + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_expenses_budget_update AFTER UPDATE OF "
+                + KEY_EXPENSE_USER_ID + ", " + KEY_EXPENSE_CATEGORY_ID + ", " + KEY_EXPENSE_CURRENCY_ID + ", "
+                + KEY_EXPENSE_AMOUNT + ", " + KEY_EXPENSE_DATE + ", " + KEY_EXPENSE_TYPE
+                + " ON " + TABLE_EXPENSES + " BEGIN "
+                + budgetSpentAdjustSql("OLD", "-")
+                + budgetSpentAdjustSql("NEW", "+")
+                + " END");
+
+        // Budget mới hoặc đổi kỳ/category -> tính lại từ expenses (chỉ budget đó)
+        String recompute = "UPDATE " + TABLE_BUDGETS + " SET " + KEY_BUDGET_SPENT_VND + " = "
+                + budgetSpentSql("NEW") + " WHERE " + KEY_ID + " = NEW." + KEY_ID + ";";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_budgets_spent_insert AFTER INSERT ON "
+                + TABLE_BUDGETS + " BEGIN " + recompute + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_budgets_spent_update AFTER UPDATE OF "
+                + KEY_BUDGET_USER_ID + ", " + KEY_BUDGET_CATEGORY_ID + ", "
+                + KEY_BUDGET_PERIOD_START + ", " + KEY_BUDGET_PERIOD_END
+                + " ON " + TABLE_BUDGETS + " BEGIN " + recompute + " END");
+    }
+
+    /**
+     * Create the one-row data_version table and the triggers that bump it on every write the
+     * dashboard depends on. The bump runs inside the writing transaction, so a committed write
+     * always comes with its new version, even if the process dies right after.
+     * The counter starts at the current time so it never matches a version saved by older builds.
+     */
+    private void createDataVersionTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_DATA_VERSION + "("
+                + KEY_ID + " INTEGER PRIMARY KEY CHECK (" + KEY_ID + " = 1),"
+                + KEY_DATA_VERSION + " INTEGER NOT NULL"
+                + ")");
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_DATA_VERSION + "(" + KEY_ID + ", " + KEY_DATA_VERSION
+                + ") VALUES (1, " + System.currentTimeMillis() + ")");
+
+        // Chỉ các cột dashboard đọc: đổi mô tả hay alert_level không làm snapshot cũ
+        createDataVersionTriggers(db, TABLE_EXPENSES, KEY_EXPENSE_USER_ID + ", " + KEY_EXPENSE_CATEGORY_ID + ", "
+                + KEY_EXPENSE_CURRENCY_ID + ", " + KEY_EXPENSE_AMOUNT + ", " + KEY_EXPENSE_DATE + ", "
+                + KEY_EXPENSE_TYPE);
+        createDataVersionTriggers(db, TABLE_BUDGETS, KEY_BUDGET_USER_ID + ", " + KEY_BUDGET_CATEGORY_ID + ", "
+                + KEY_BUDGET_AMOUNT + ", " + KEY_BUDGET_PERIOD_START + ", " + KEY_BUDGET_PERIOD_END + ", "
+                + KEY_BUDGET_SPENT_VND);
+        createDataVersionTriggers(db, TABLE_CATEGORIES, KEY_CATEGORY_NAME);
+        createDataVersionTriggers(db, TABLE_CURRENCIES, KEY_CURRENCY_RATE + ", " + KEY_CURRENCY_MINOR_SCALE);
+    }
+
+    private static void createDataVersionTriggers(SQLiteDatabase db, String table, String updateColumns) {
+        String bump = " BEGIN UPDATE " + TABLE_DATA_VERSION + " SET " + KEY_DATA_VERSION + " = "
+                + KEY_DATA_VERSION + " + 1; END";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_" + table + "_version_insert AFTER INSERT ON "
+                + table + bump);
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_" + table + "_version_delete AFTER DELETE ON "
+                + table + bump);
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_" + table + "_version_update AFTER UPDATE OF "
+                + updateColumns + " ON " + table + bump);
+    }
+
+    // Cộng/trừ một expense (ref = NEW/OLD) vào mọi budget có kỳ chứa ngày của nó
+    static String budgetSpentAdjustSql(String ref, String sign) {
+        return "UPDATE " + TABLE_BUDGETS + " SET "
+                + KEY_BUDGET_SPENT_VND + " = " + KEY_BUDGET_SPENT_VND + " " + sign + " " + amountInVndSql(ref)
+                + " WHERE " + ref + "." + KEY_EXPENSE_TYPE + " = " + Expense.TYPE_EXPENSE
+                + " AND " + KEY_BUDGET_USER_ID + " = " + ref + "." + KEY_EXPENSE_USER_ID
+                + " AND " + KEY_BUDGET_PERIOD_END + " >= " + ref + "." + KEY_EXPENSE_DATE
+                + " AND " + KEY_BUDGET_PERIOD_START + " <= " + ref + "." + KEY_EXPENSE_DATE
+                + " AND " + KEY_BUDGET_CATEGORY_ID + " IN (0, " + ref + "." + KEY_EXPENSE_CATEGORY_ID + ");";
+    }
+
+    // Tổng chi (VND) của một budget row (ref = NEW hoặc tên bảng), tính từ expenses
+    private static String budgetSpentSql(String ref) {
+        return "(SELECT IFNULL(SUM(" + amountInVndSql("e") + "), 0)"
+                + " FROM " + TABLE_EXPENSES + " e"
+                + " WHERE e." + KEY_EXPENSE_USER_ID + " = " + ref + "." + KEY_BUDGET_USER_ID
+                + " AND e." + KEY_EXPENSE_TYPE + " = " + Expense.TYPE_EXPENSE
+                + " AND e." + KEY_EXPENSE_DATE + " >= " + ref + "." + KEY_BUDGET_PERIOD_START
+                + " AND e." + KEY_EXPENSE_DATE + " <= " + ref + "." + KEY_BUDGET_PERIOD_END
+                + " AND (" + ref + "." + KEY_BUDGET_CATEGORY_ID + " = 0 OR e." + KEY_EXPENSE_CATEGORY_ID
+                + " = " + ref + "." + KEY_BUDGET_CATEGORY_ID + "))";
+    }
+
+    /**
+     * Create the full-text index over expense descriptions and category names,
+     * kept in sync with expenses and categories by triggers.
+     * FTS4 is used because the framework SQLite on Android is not built with FTS5.
+     */
+    private void createSearchIndex(SQLiteDatabase db) {
+        // unicode61 bỏ dấu tiếng Việt: "an" khớp với "Ăn uống"
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_EXPENSES_FTS + " USING fts4("
+                + KEY_FTS_DESCRIPTION + ", " + KEY_FTS_CATEGORY_NAME + ", tokenize=unicode61)");
+
+        String insertNew = "INSERT INTO " + TABLE_EXPENSES_FTS + "(" + KEY_FTS_DOCID + ", "
+                + KEY_FTS_DESCRIPTION + ", " + KEY_FTS_CATEGORY_NAME + ")"
+                + " VALUES (NEW." + KEY_ID + ", NEW." + KEY_EXPENSE_DESCRIPTION
+                + ", (SELECT " + KEY_CATEGORY_NAME + " FROM " + TABLE_CATEGORIES
+                + " WHERE " + KEY_ID + " = NEW." + KEY_EXPENSE_CATEGORY_ID + "));";
+        String deleteOld = "DELETE FROM " + TABLE_EXPENSES_FTS
+                + " WHERE " + KEY_FTS_DOCID + " = OLD." + KEY_ID + ";";
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_expenses_fts_insert AFTER INSERT ON "
+                + TABLE_EXPENSES + " BEGIN " + insertNew + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_expenses_fts_delete AFTER DELETE ON "
+                + TABLE_EXPENSES + " BEGIN " + deleteOld + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_expenses_fts_update AFTER UPDATE OF "
+                + KEY_EXPENSE_DESCRIPTION + ", " + KEY_EXPENSE_CATEGORY_ID + " ON " + TABLE_EXPENSES
+                + " BEGIN " + deleteOld + " " + insertNew + " END");
+        // Đổi tên category -> cập nhật mọi dòng thuộc category đó
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_categories_fts_update AFTER UPDATE OF "
+                + KEY_CATEGORY_NAME + " ON " + TABLE_CATEGORIES + " BEGIN "
+                + "UPDATE " + TABLE_EXPENSES_FTS + " SET " + KEY_FTS_CATEGORY_NAME + " = NEW." + KEY_CATEGORY_NAME
+                + " WHERE " + KEY_FTS_DOCID + " IN (SELECT " + KEY_ID + " FROM " + TABLE_EXPENSES
+                + " WHERE " + KEY_EXPENSE_CATEGORY_ID + " = NEW." + KEY_ID + "); END");
+    }
+
+    private void rebuildSearchIndex(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + TABLE_EXPENSES_FTS);
+        db.execSQL("INSERT INTO " + TABLE_EXPENSES_FTS + "(" + KEY_FTS_DOCID + ", "
+                + KEY_FTS_DESCRIPTION + ", " + KEY_FTS_CATEGORY_NAME + ")"
+                + " SELECT e." + KEY_ID + ", e." + KEY_EXPENSE_DESCRIPTION + ", c." + KEY_CATEGORY_NAME
+                + " FROM " + TABLE_EXPENSES + " e LEFT JOIN " + TABLE_CATEGORIES + " c"
+                + " ON c." + KEY_ID + " = e." + KEY_EXPENSE_CATEGORY_ID);
+        Log.d(TAG, "Search index rebuilt");
+    }
+
+    /**
+     * Recompute the whole monthly rollup from the expenses table.
+     * Use after migrating an existing database, after a currency rate change,
+     * or if the device time zone changed (months are bucketed in local time).
+     */
+    public void rebuildMonthlyTotals() {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            rebuildMonthlyTotals(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void rebuildMonthlyTotals(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + TABLE_MONTHLY_TOTALS);
+        db.execSQL("INSERT INTO " + TABLE_MONTHLY_TOTALS + "(" + KEY_ROLLUP_USER_ID + ", "
+                + KEY_ROLLUP_YEAR_MONTH + ", " + KEY_ROLLUP_CATEGORY_ID + ", " + KEY_ROLLUP_TYPE + ", "
+                + KEY_ROLLUP_TOTAL_VND + ", " + KEY_ROLLUP_COUNT + ")"
+                + " SELECT e." + KEY_EXPENSE_USER_ID + ", " + yearMonthSql("e") + ", e."
+                + KEY_EXPENSE_CATEGORY_ID + ", e." + KEY_EXPENSE_TYPE + ", SUM(" + AMOUNT_IN_VND + "), COUNT(*)"
+                + FROM_EXPENSES_WITH_RATE
+                + " GROUP BY 1, 2, 3, 4");
+        Log.d(TAG, "Monthly totals rebuilt");
+    }
+
+    private void rebuildBudgetSpent(SQLiteDatabase db) {
+        db.execSQL("UPDATE " + TABLE_BUDGETS + " SET " + KEY_BUDGET_SPENT_VND + " = "
+                + budgetSpentSql(TABLE_BUDGETS));
+        Log.d(TAG, "Budget spent counters rebuilt");
+    }
+
+    /**
+     * Compare every budgets.spent_vnd counter with a recount from the expenses table.
+     * Counters are only written by triggers, so a mismatch means rows were changed outside
+     * this helper (e.g. a restored backup).
+     * @param repair true to rebuild all counters when any mismatch is found
+     * @return Number of budgets whose counter was wrong
+     */
+    public int verifyBudgetSpent(boolean repair) {
+        SQLiteDatabase db = repair ? this.getWritableDatabase() : this.getReadableDatabase();
+
+        Cursor cursor = db.rawQuery("SELECT b." + KEY_ID + ", b." + KEY_BUDGET_SPENT_VND + ", "
+                + budgetSpentSql("b") + " FROM " + TABLE_BUDGETS + " b", null);
+
+        List<Integer> wrongIds = new ArrayList<>();
+        if (cursor != null && cursor.moveToFirst()) {
+            do {
+                // Số nguyên: phải khớp tuyệt đối
+                if (cursor.getLong(1) != cursor.getLong(2)) {
+                    wrongIds.add(cursor.getInt(0));
+                }
+            } while (cursor.moveToNext());
+            cursor.close();
+        }
+
+        if (!wrongIds.isEmpty()) {
+            Log.w(TAG, "Budget spent counters out of sync: " + wrongIds);
+            if (repair) {
+                db.beginTransaction();
+                try {
+                    rebuildBudgetSpent(db);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+
+                int[] ids = new int[wrongIds.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = wrongIds.get(i);
+                }
+                invalidationTracker.notifyChanged(TABLE_BUDGETS, InvalidationTracker.ALL_USERS,
+                        InvalidationTracker.KIND_UPDATE, ids);
+            }
+        }
+        return wrongIds.size();
+    }
+
+    /**
+     * Convert a timestamp to the yyyyMM key used by the monthly rollup (local time)
+     * @param timeMillis Unix timestamp in milliseconds
+     * @return e.g. 202405 for May 2024
+     */
+    public static int toYearMonth(long timeMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timeMillis);
+        return calendar.get(Calendar.YEAR) * 100 + calendar.get(Calendar.MONTH) + 1;
     }
 
     @Override
@@ -273,14 +1009,16 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         // Chỉ thêm VND khi tạo mới
         ContentValues values = new ContentValues();
         values.put(KEY_CURRENCY_CODE, "VND");
-        values.put(KEY_CURRENCY_RATE, 1.0);
+        values.put(KEY_CURRENCY_MINOR_SCALE, Money.VND_SCALE);
+        values.put(KEY_CURRENCY_RATE, Money.VND_RATE);
         values.put(KEY_CURRENCY_SYMBOL, "đ");
         db.insert(TABLE_CURRENCIES, null, values);
 
         // **SPRINT 6: Thêm USD
         ContentValues usdValues = new ContentValues();
         usdValues.put(KEY_CURRENCY_CODE, "USD");
-        usdValues.put(KEY_CURRENCY_RATE, 25000.0); // Tỷ giá giả định, có thể cập nhật sau
+        usdValues.put(KEY_CURRENCY_MINOR_SCALE, 100); // cent
+        usdValues.put(KEY_CURRENCY_RATE, Money.rateOf(25000.0)); // Tỷ giá giả định, có thể cập nhật sau
         usdValues.put(KEY_CURRENCY_SYMBOL, "$");
         db.insert(TABLE_CURRENCIES, null, usdValues);
 
@@ -392,6 +1130,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 new String[]{String.valueOf(userId)});
 
         Log.d(TAG, "User deleted: " + rowsDeleted + " rows");
+        // Expenses bị xoá theo (ON DELETE CASCADE)
+        patchExpenseColumns(userId, null);
         return rowsDeleted;
     }
 
@@ -438,6 +1178,57 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return category;
     }
 
+    /**
+     * Insert new category
+     * @param category Category object
+     * @return Category ID if successful, -1 if failed
+     */
+    public long insertCategory(Category category) {
+        SQLiteDatabase db = this.getWritableDatabase();
+
+        ContentValues values = new ContentValues();
+        values.put(KEY_CATEGORY_NAME, category.getName());
+        values.put(KEY_CATEGORY_ICON, category.getIconResource());
+
+        long categoryId = db.insert(TABLE_CATEGORIES, null, values);
+        if (categoryId != -1) {
+            categoriesVersion.incrementAndGet();
+            invalidationTracker.notifyChanged(TABLE_CATEGORIES, InvalidationTracker.ALL_USERS,
+                    InvalidationTracker.KIND_INSERT, (int) categoryId);
+        }
+        return categoryId;
+    }
+
+    /**
+     * Update category name/icon
+     * @param category Category object with updated data
+     * @return Number of rows affected
+     */
+    public int updateCategory(Category category) {
+        SQLiteDatabase db = this.getWritableDatabase();
+
+        ContentValues values = new ContentValues();
+        values.put(KEY_CATEGORY_NAME, category.getName());
+        values.put(KEY_CATEGORY_ICON, category.getIconResource());
+
+        int rowsAffected = db.update(TABLE_CATEGORIES, values, KEY_ID + "=?",
+                new String[]{String.valueOf(category.getId())});
+        if (rowsAffected > 0) {
+            categoriesVersion.incrementAndGet();
+            invalidationTracker.notifyChanged(TABLE_CATEGORIES, InvalidationTracker.ALL_USERS,
+                    InvalidationTracker.KIND_UPDATE, category.getId());
+        }
+        return rowsAffected;
+    }
+
+    /**
+     * Version of the categories table, bumped on every write
+     * Used by CategoryRegistry to know when its cache is stale
+     */
+    public int getCategoriesVersion() {
+        return categoriesVersion.get();
+    }
+
     // **SPRINT 6: Thêm CURRENCY CRUD**
 
     /**
@@ -479,10 +1270,66 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return currency;
     }
 
+    /**
+     * Update exchange rate of a currency
+     * monthly_totals and budgets.spent_vnd store amounts already converted to VND,
+     * so both are rebuilt in the same transaction
+     * @param currencyId Currency ID
+     * @param rateToVnd New rate: 1 unit = rateToVnd / Money.RATE_SCALE VND (see Money.rateOf)
+     * @return Number of rows affected
+     */
+    public int updateCurrencyRate(int currencyId, long rateToVnd) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        int rowsAffected = 0;
+
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            values.put(KEY_CURRENCY_RATE, rateToVnd);
+            rowsAffected = db.update(TABLE_CURRENCIES, values, KEY_ID + "=?",
+                    new String[]{String.valueOf(currencyId)});
+            if (rowsAffected > 0) {
+                rebuildMonthlyTotals(db);
+                rebuildBudgetSpent(db);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (rowsAffected > 0) {
+            currenciesVersion.incrementAndGet();
+            invalidationTracker.notifyChanged(TABLE_CURRENCIES, InvalidationTracker.ALL_USERS,
+                    InvalidationTracker.KIND_UPDATE, currencyId);
+            invalidationTracker.notifyChanged(TABLE_BUDGETS, InvalidationTracker.ALL_USERS,
+                    InvalidationTracker.KIND_UPDATE);
+        }
+        return rowsAffected;
+    }
+
+    /**
+     * Version of the data the dashboard reads, bumped by triggers in the same transaction as every
+     * write to expenses, budgets, categories and currencies (DashboardSnapshotStore.isCurrent)
+     * Call off the main thread.
+     */
+    public long getDataVersion() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return DatabaseUtils.longForQuery(db, "SELECT " + KEY_DATA_VERSION + " FROM " + TABLE_DATA_VERSION
+                + " WHERE " + KEY_ID + " = 1", null);
+    }
+
+    /**
+     * Version of the currencies table, bumped on every write
+     * Used by CurrencyHelper to know when its map is stale
+     */
+    public int getCurrenciesVersion() {
+        return currenciesVersion.get();
+    }
+
     // =============== EXPENSE CRUD OPERATIONS ===============
 
     /**
-     * Insert new expense
+     * Insert new expense, together with its recurrence rule if one is attached
      * @param expense Expense object
      * @return Expense ID if successful, -1 if failed
      */
@@ -498,19 +1345,148 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(KEY_EXPENSE_DESCRIPTION, expense.getDescription());
         values.put(KEY_EXPENSE_RECEIPT, expense.getReceiptPath());
         values.put(KEY_EXPENSE_TYPE, expense.getType()); // Add type field
+        values.put(KEY_EXPENSE_FINGERPRINT, ExpenseFingerprint.of(expense));
         values.put(KEY_CREATED_AT, expense.getCreatedAt());
 
         // **SPRINT 5: Thêm dữ liệu recurring**
-        values.put(KEY_EXPENSE_IS_RECURRING, expense.isRecurring() ? 1 : 0);
-        values.put(KEY_EXPENSE_RECURRENCE_PERIOD, expense.getRecurrencePeriod());
-        values.put(KEY_EXPENSE_NEXT_OCCURRENCE_DATE, expense.getNextOccurrenceDate());
+        RecurrenceRule rule = expense.getRecurrence();
+        values.put(KEY_EXPENSE_IS_RECURRING, rule != null ? 1 : 0);
+        values.put(KEY_EXPENSE_SOURCE_KEY, expense.getSourceKey());
+
+        long id;
+        db.beginTransaction();
+        try {
+            id = db.insert(TABLE_EXPENSES, null, values);
+            if (id != -1 && rule != null) {
+                rule.setUserId(expense.getUserId());
+                rule.setExpenseId((int) id);
+                rule.setId((int) db.insertOrThrow(TABLE_RECURRENCE_RULES, null, recurrenceRuleValues(rule)));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
 
-        long id = db.insert(TABLE_EXPENSES, null, values);
         Log.d(TAG, "Expense inserted with ID: " + id);
+        if (id != -1) {
+            int expenseId = (int) id;
+            patchExpenseColumns(expense.getUserId(), columns -> columns.insert(expenseId, expense.getDate(),
+                    expense.getAmount(), expense.getCategoryId(), expense.getCurrencyId(), expense.getType()));
+            invalidationTracker.notifyChanged(TABLE_EXPENSES, expense.getUserId(),
+                    InvalidationTracker.KIND_INSERT, (int) id);
+            if (rule != null) {
+                invalidationTracker.notifyChanged(InvalidationTracker.TABLE_RECURRENCE_RULES,
+                        expense.getUserId(), InvalidationTracker.KIND_INSERT, rule.getId());
+            }
+        }
 
         return id;
     }
 
+    /**
+     * Insert many expenses in one transaction, reusing one compiled INSERT
+     * Any failure rolls the whole list back. Recurrence rules attached to expenses are inserted too.
+     * @param expenses Expenses to insert; their IDs are set on success
+     * @return Generated IDs, in list order
+     */
+    public int[] insertExpenses(List<Expense> expenses) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        int[] ids = new int[expenses.size()];
+        boolean hasRules = false;
+
+        db.beginTransaction();
+        try {
+            SQLiteStatement insert = db.compileStatement("INSERT INTO " + TABLE_EXPENSES + "("
+                    + KEY_EXPENSE_USER_ID + ", " + KEY_EXPENSE_CATEGORY_ID + ", " + KEY_EXPENSE_CURRENCY_ID + ", "
+                    + KEY_EXPENSE_AMOUNT + ", " + KEY_EXPENSE_DATE + ", " + KEY_EXPENSE_DESCRIPTION + ", "
+                    + KEY_EXPENSE_RECEIPT + ", " + KEY_EXPENSE_TYPE + ", " + KEY_CREATED_AT + ", "
+                    + KEY_EXPENSE_IS_RECURRING + ", " + KEY_EXPENSE_SOURCE_KEY + ", " + KEY_EXPENSE_FINGERPRINT
+                    + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            try {
+                for (int i = 0; i < ids.length; i++) {
+                    Expense expense = expenses.get(i);
+                    RecurrenceRule rule = expense.getRecurrence();
+                    insert.clearBindings();
+                    insert.bindLong(1, expense.getUserId());
+                    insert.bindLong(2, expense.getCategoryId());
+                    insert.bindLong(3, expense.getCurrencyId());
+                    insert.bindLong(4, expense.getAmount());
+                    insert.bindLong(5, expense.getDate());
+                    if (expense.getDescription() != null) {
+                        insert.bindString(6, expense.getDescription());
+                    }
+                    if (expense.getReceiptPath() != null) {
+                        insert.bindString(7, expense.getReceiptPath());
+                    }
+                    insert.bindLong(8, expense.getType());
+                    insert.bindLong(9, expense.getCreatedAt());
+                    insert.bindLong(10, rule != null ? 1 : 0);
+                    if (expense.getSourceKey() != null) {
+                        insert.bindString(11, expense.getSourceKey());
+                    }
+                    insert.bindLong(12, ExpenseFingerprint.of(expense));
+                    ids[i] = (int) insert.executeInsert();
+
+                    if (rule != null) {
+                        rule.setUserId(expense.getUserId());
+                        rule.setExpenseId(ids[i]);
+                        rule.setId((int) db.insertOrThrow(TABLE_RECURRENCE_RULES, null, recurrenceRuleValues(rule)));
+                        hasRules = true;
+                    }
+                }
+            } finally {
+                insert.close();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        Log.d(TAG, "Expenses inserted: " + ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            expenses.get(i).setId(ids[i]);
+        }
+        onExpensesWritten(expenses, InvalidationTracker.KIND_INSERT);
+        if (hasRules) {
+            for (Expense expense : expenses) {
+                if (expense.getRecurrence() != null) {
+                    invalidationTracker.notifyChanged(InvalidationTracker.TABLE_RECURRENCE_RULES,
+                            expense.getUserId(), InvalidationTracker.KIND_INSERT, expense.getRecurrence().getId());
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Patch caches and notify observers after a multi-row insert or update
+     * Large batches drop the user's columns instead (one reload beats thousands of array shifts)
+     * and are reported without row IDs.
+     * @param kind InvalidationTracker.KIND_INSERT or KIND_UPDATE
+     */
+    private void onExpensesWritten(List<Expense> written, int kind) {
+        boolean bulk = written.size() > BULK_PATCH_LIMIT;
+        for (Expense expense : written) {
+            if (bulk) {
+                patchExpenseColumns(expense.getUserId(), null);
+                invalidationTracker.notifyChanged(TABLE_EXPENSES, expense.getUserId(), kind);
+            } else {
+                patchExpenseColumns(expense.getUserId(), kind == InvalidationTracker.KIND_INSERT
+                        ? columns -> columns.insert(expense.getId(), expense.getDate(), expense.getAmount(),
+                                expense.getCategoryId(), expense.getCurrencyId(), expense.getType())
+                        : columns -> columns.update(expense.getId(), expense.getDate(), expense.getAmount(),
+                                expense.getCategoryId(), expense.getCurrencyId(), expense.getType()));
+                invalidationTracker.notifyChanged(TABLE_EXPENSES, expense.getUserId(), kind, expense.getId());
+            }
+        }
+    }
+
+    // Câu SQL của các hàm đọc để package-private: DatabaseQueryPlanTest chạy EXPLAIN QUERY PLAN
+    // trên đúng các chuỗi này
+    static final String QUERY_EXPENSES_BY_USER = "SELECT * FROM " + TABLE_EXPENSES
+            + " WHERE " + KEY_EXPENSE_USER_ID + "=? ORDER BY " + KEY_EXPENSE_DATE + " DESC";
+    static final String QUERY_EXPENSE_BY_ID = "SELECT * FROM " + TABLE_EXPENSES + " WHERE " + KEY_ID + "=?";
+
     /**
      * Get all expenses for a user
      * @param userId User ID
@@ -520,8 +1496,156 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         List<Expense> expenses = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
 
-        Cursor cursor = db.query(TABLE_EXPENSES, null, KEY_EXPENSE_USER_ID + "=?",
-                new String[]{String.valueOf(userId)}, null, null, KEY_EXPENSE_DATE + " DESC");
+        Cursor cursor = db.rawQuery(QUERY_EXPENSES_BY_USER, new String[]{String.valueOf(userId)});
+
+        if (cursor != null && cursor.moveToFirst()) {
+            do {
+                Expense expense = cursorToExpense(cursor);
+                expenses.add(expense);
+            } while (cursor.moveToNext());
+            cursor.close();
+        }
+
+        return expenses;
+    }
+
+    /**
+     * Get a single expense by ID
+     * @param expenseId Expense ID
+     * @return Expense object or null if not found
+     */
+    public Expense getExpenseById(int expenseId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        Cursor cursor = db.rawQuery(QUERY_EXPENSE_BY_ID, new String[]{String.valueOf(expenseId)});
+
+        Expense expense = null;
+        if (cursor != null && cursor.moveToFirst()) {
+            expense = cursorToExpense(cursor);
+            cursor.close();
+        }
+
+        // Màn hình Edit cần rule để hiển thị chu kỳ
+        if (expense != null && expense.isRecurring()) {
+            expense.setRecurrence(getRecurrenceRule(db, expenseId));
+        }
+        return expense;
+    }
+
+    private RecurrenceRule getRecurrenceRule(SQLiteDatabase db, int expenseId) {
+        Cursor cursor = db.query(TABLE_RECURRENCE_RULES, null, KEY_RULE_EXPENSE_ID + "=?",
+                new String[]{String.valueOf(expenseId)}, null, null, null);
+
+        RecurrenceRule rule = null;
+        if (cursor != null && cursor.moveToFirst()) {
+            rule = cursorToRecurrenceRule(cursor, KEY_ID);
+            cursor.close();
+        }
+        return rule;
+    }
+
+    /**
+     * Get expenses for a user within a date range
+     * @param userId User ID
+     * @param startDate Range start (inclusive, Unix ms)
+     * @param endDate Range end (inclusive, Unix ms)
+     * @return List of Expense objects, newest first
+     */
+    public List<Expense> getExpensesByDateRange(int userId, long startDate, long endDate) {
+        return getExpensesByFilter(userId, startDate, endDate, FILTER_ANY, FILTER_ANY, FILTER_ANY);
+    }
+
+    /**
+     * Get all transactions of one type (expense or income) for a user
+     * @param userId User ID
+     * @param type Expense.TYPE_EXPENSE or Expense.TYPE_INCOME
+     * @return List of Expense objects, newest first
+     */
+    public List<Expense> getExpensesByType(int userId, int type) {
+        return getExpensesByFilter(userId, Long.MIN_VALUE, Long.MAX_VALUE, type, FILTER_ANY, FILTER_ANY);
+    }
+
+    /**
+     * Get expenses for a user filtered in SQLite by date range and optional type/category/currency
+     * @param userId User ID
+     * @param startDate Range start (inclusive, Unix ms)
+     * @param endDate Range end (inclusive, Unix ms)
+     * @param type Expense.TYPE_EXPENSE, Expense.TYPE_INCOME or FILTER_ANY
+     * @param categoryId Category ID or FILTER_ANY
+     * @param currencyId Currency ID or FILTER_ANY
+     * @return List of Expense objects, newest first
+     */
+    public List<Expense> getExpensesByFilter(int userId, long startDate, long endDate,
+                                             int type, int categoryId, int currencyId) {
+        List<Expense> expenses = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        List<String> args = new ArrayList<>();
+        String query = expensesByFilterSql(userId, startDate, endDate, type, categoryId, currencyId, args);
+        Cursor cursor = db.rawQuery(query, args.toArray(new String[0]));
+
+        if (cursor != null && cursor.moveToFirst()) {
+            do {
+                Expense expense = cursorToExpense(cursor);
+                expenses.add(expense);
+            } while (cursor.moveToNext());
+            cursor.close();
+        }
+
+        return expenses;
+    }
+
+    // SQL của getExpensesByFilter; tham số được thêm vào args theo thứ tự dấu '?'
+    static String expensesByFilterSql(int userId, long startDate, long endDate,
+                                      int type, int categoryId, int currencyId, List<String> args) {
+        StringBuilder query = new StringBuilder("SELECT * FROM " + TABLE_EXPENSES
+                + " WHERE " + KEY_EXPENSE_USER_ID + "=?");
+        args.add(String.valueOf(userId));
+
+        if (type != FILTER_ANY) {
+            query.append(" AND ").append(KEY_EXPENSE_TYPE).append("=?");
+            args.add(String.valueOf(type));
+        }
+        if (categoryId != FILTER_ANY) {
+            query.append(" AND ").append(KEY_EXPENSE_CATEGORY_ID).append("=?");
+            args.add(String.valueOf(categoryId));
+        }
+        if (currencyId != FILTER_ANY) {
+            query.append(" AND ").append(KEY_EXPENSE_CURRENCY_ID).append("=?");
+            args.add(String.valueOf(currencyId));
+        }
+        if (startDate != Long.MIN_VALUE) {
+            query.append(" AND ").append(KEY_EXPENSE_DATE).append(">=?");
+            args.add(String.valueOf(startDate));
+        }
+        if (endDate != Long.MAX_VALUE) {
+            query.append(" AND ").append(KEY_EXPENSE_DATE).append("<=?");
+            args.add(String.valueOf(endDate));
+        }
+        return query.append(" ORDER BY ").append(KEY_EXPENSE_DATE).append(" DESC").toString();
+    }
+
+    /**
+     * Load one page of transactions, newest first, using a (date, id) keyset cursor
+     * Rows are ordered by date DESC, id DESC; the page starts right after (beforeDate, beforeId).
+     * Pass Long.MAX_VALUE / Integer.MAX_VALUE to get the first page.
+     * @param userId User ID
+     * @param type Expense.TYPE_* or FILTER_ANY
+     * @param categoryId Category ID or FILTER_ANY
+     * @param searchQuery Full-text search text, or null for no search
+     * @param beforeDate Date of the last row of the previous page
+     * @param beforeId ID of the last row of the previous page
+     * @param limit Page size
+     * @return Up to limit expenses
+     */
+    public List<Expense> getExpensePage(int userId, int type, int categoryId, String searchQuery,
+                                        long beforeDate, int beforeId, int limit) {
+        List<Expense> expenses = new ArrayList<>(limit);
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        List<String> args = new ArrayList<>();
+        String query = expensePageSql(userId, type, categoryId, searchQuery, beforeDate, beforeId, limit, args);
+        Cursor cursor = db.rawQuery(query, args.toArray(new String[0]));
 
         if (cursor != null && cursor.moveToFirst()) {
             do {
@@ -534,8 +1658,76 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return expenses;
     }
 
+    // SQL của getExpensePage; tham số được thêm vào args theo thứ tự dấu '?'
+    static String expensePageSql(int userId, int type, int categoryId, String searchQuery,
+                                 long beforeDate, int beforeId, int limit, List<String> args) {
+        StringBuilder query = new StringBuilder("SELECT * FROM " + TABLE_EXPENSES + " WHERE ");
+        appendPageFilter(query, args, userId, type, categoryId, searchQuery);
+
+        // date <= ? cho phép SQLite dùng range trên index (user_id, ..., date)
+        query.append(" AND ").append(KEY_EXPENSE_DATE).append("<=?")
+                .append(" AND (").append(KEY_EXPENSE_DATE).append("<? OR ").append(KEY_ID).append("<?)");
+        args.add(String.valueOf(beforeDate));
+        args.add(String.valueOf(beforeDate));
+        args.add(String.valueOf(beforeId));
+
+        return query.append(" ORDER BY ").append(KEY_EXPENSE_DATE).append(" DESC, ").append(KEY_ID)
+                .append(" DESC LIMIT ").append(limit).toString();
+    }
+
+    /**
+     * Count transactions matching the same filter as getExpensePage
+     * @return Number of matching rows
+     */
+    public int countExpenses(int userId, int type, int categoryId, String searchQuery) {
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        List<String> args = new ArrayList<>();
+        Cursor cursor = db.rawQuery(countExpensesSql(userId, type, categoryId, searchQuery, args),
+                args.toArray(new String[0]));
+
+        int count = 0;
+        if (cursor != null && cursor.moveToFirst()) {
+            count = cursor.getInt(0);
+            cursor.close();
+        }
+        return count;
+    }
+
+    // SQL của countExpenses; tham số được thêm vào args theo thứ tự dấu '?'
+    static String countExpensesSql(int userId, int type, int categoryId, String searchQuery, List<String> args) {
+        StringBuilder query = new StringBuilder("SELECT COUNT(*) FROM " + TABLE_EXPENSES + " WHERE ");
+        appendPageFilter(query, args, userId, type, categoryId, searchQuery);
+        return query.toString();
+    }
+
+    private static void appendPageFilter(StringBuilder selection, List<String> args,
+                                         int userId, int type, int categoryId, String searchQuery) {
+        selection.append(KEY_EXPENSE_USER_ID).append("=?");
+        args.add(String.valueOf(userId));
+
+        if (type != FILTER_ANY) {
+            selection.append(" AND ").append(KEY_EXPENSE_TYPE).append("=?");
+            args.add(String.valueOf(type));
+        }
+        if (categoryId != FILTER_ANY) {
+            selection.append(" AND ").append(KEY_EXPENSE_CATEGORY_ID).append("=?");
+            args.add(String.valueOf(categoryId));
+        }
+
+        String match = toMatchExpression(searchQuery);
+        if (!match.isEmpty()) {
+            selection.append(" AND ").append(KEY_ID).append(" IN (SELECT ").append(KEY_FTS_DOCID)
+                    .append(" FROM ").append(TABLE_EXPENSES_FTS).append(" WHERE ")
+                    .append(TABLE_EXPENSES_FTS).append(" MATCH ?)");
+            args.add(match);
+        }
+    }
+
     /**
-     * Update expense
+     * Update expense and replace its recurrence rule with the attached one (none if null).
+     * A rule with the same period, anchor and limits as the stored one is kept as is,
+     * so editing other fields does not restart the schedule.
      * @param expense Expense object with updated data
      * @return Number of rows affected
      */
@@ -550,19 +1742,137 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(KEY_EXPENSE_DESCRIPTION, expense.getDescription());
         values.put(KEY_EXPENSE_RECEIPT, expense.getReceiptPath());
         values.put(KEY_EXPENSE_TYPE, expense.getType()); // Add type field
+        values.put(KEY_EXPENSE_FINGERPRINT, ExpenseFingerprint.of(expense));
 
         // **SPRINT 5: Cập nhật dữ liệu recurring**
-        values.put(KEY_EXPENSE_IS_RECURRING, expense.isRecurring() ? 1 : 0);
-        values.put(KEY_EXPENSE_RECURRENCE_PERIOD, expense.getRecurrencePeriod());
-        values.put(KEY_EXPENSE_NEXT_OCCURRENCE_DATE, expense.getNextOccurrenceDate());
-
-        int rowsAffected = db.update(TABLE_EXPENSES, values, KEY_ID + "=?",
-                new String[]{String.valueOf(expense.getId())});
+        RecurrenceRule rule = expense.getRecurrence();
+        values.put(KEY_EXPENSE_IS_RECURRING, rule != null ? 1 : 0);
+
+        int rowsAffected;
+        boolean ruleChanged = false;
+        db.beginTransaction();
+        try {
+            rowsAffected = db.update(TABLE_EXPENSES, values, KEY_ID + "=?",
+                    new String[]{String.valueOf(expense.getId())});
+            if (rowsAffected > 0) {
+                ruleChanged = replaceRecurrenceRule(db, expense.getId(), expense.getUserId(), rule);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
 
         Log.d(TAG, "Expense updated: " + rowsAffected + " rows");
+        if (rowsAffected > 0) {
+            patchExpenseColumns(expense.getUserId(), columns -> columns.update(expense.getId(), expense.getDate(),
+                    expense.getAmount(), expense.getCategoryId(), expense.getCurrencyId(), expense.getType()));
+            invalidationTracker.notifyChanged(TABLE_EXPENSES, expense.getUserId(),
+                    InvalidationTracker.KIND_UPDATE, expense.getId());
+            if (ruleChanged) {
+                invalidationTracker.notifyChanged(InvalidationTracker.TABLE_RECURRENCE_RULES,
+                        expense.getUserId(), InvalidationTracker.KIND_UPDATE);
+            }
+        }
         return rowsAffected;
     }
 
+    /**
+     * Update many expenses in one transaction, reusing one compiled UPDATE (bulk edit)
+     * Only the editable fields are written; recurrence rules are left as they are, unlike
+     * updateExpense. Any failure rolls the whole list back.
+     * @param expenses Expenses with their IDs and new data
+     * @return Number of rows updated (IDs that no longer exist are skipped)
+     */
+    public int updateExpenses(List<Expense> expenses) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        List<Expense> updated = new ArrayList<>(expenses.size());
+
+        db.beginTransaction();
+        try {
+            SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_EXPENSES + " SET "
+                    + KEY_EXPENSE_CATEGORY_ID + " = ?, " + KEY_EXPENSE_CURRENCY_ID + " = ?, "
+                    + KEY_EXPENSE_AMOUNT + " = ?, " + KEY_EXPENSE_DATE + " = ?, "
+                    + KEY_EXPENSE_DESCRIPTION + " = ?, " + KEY_EXPENSE_RECEIPT + " = ?, "
+                    + KEY_EXPENSE_TYPE + " = ?, " + KEY_EXPENSE_FINGERPRINT + " = ? WHERE " + KEY_ID + " = ?");
+            try {
+                for (Expense expense : expenses) {
+                    update.clearBindings();
+                    update.bindLong(1, expense.getCategoryId());
+                    update.bindLong(2, expense.getCurrencyId());
+                    update.bindLong(3, expense.getAmount());
+                    update.bindLong(4, expense.getDate());
+                    if (expense.getDescription() != null) {
+                        update.bindString(5, expense.getDescription());
+                    }
+                    if (expense.getReceiptPath() != null) {
+                        update.bindString(6, expense.getReceiptPath());
+                    }
+                    update.bindLong(7, expense.getType());
+                    update.bindLong(8, ExpenseFingerprint.of(expense));
+                    update.bindLong(9, expense.getId());
+                    if (update.executeUpdateDelete() > 0) {
+                        updated.add(expense);
+                    }
+                }
+            } finally {
+                update.close();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        Log.d(TAG, "Expenses updated: " + updated.size() + " rows");
+        onExpensesWritten(updated, InvalidationTracker.KIND_UPDATE);
+        return updated.size();
+    }
+
+    /**
+     * @return true if the stored rule was deleted or a new one inserted
+     */
+    private boolean replaceRecurrenceRule(SQLiteDatabase db, int expenseId, int userId, RecurrenceRule rule) {
+        int deleted;
+        if (rule == null) {
+            deleted = db.delete(TABLE_RECURRENCE_RULES, KEY_RULE_EXPENSE_ID + "=?",
+                    new String[]{String.valueOf(expenseId)});
+            return deleted > 0;
+        }
+
+        // Chỉ xoá khi chu kỳ khác; rule giống hệt thì giữ nguyên tiến độ (next_index)
+        deleted = db.delete(TABLE_RECURRENCE_RULES, KEY_RULE_EXPENSE_ID + "=? AND NOT ("
+                        + KEY_RULE_UNIT + "=? AND " + KEY_RULE_INTERVAL + "=? AND "
+                        + KEY_RULE_ANCHOR_DATE + "=? AND " + KEY_RULE_END_DATE + "=? AND "
+                        + KEY_RULE_MAX_OCCURRENCES + "=?)",
+                new String[]{String.valueOf(expenseId), String.valueOf(rule.getUnit()),
+                        String.valueOf(rule.getInterval()), String.valueOf(rule.getAnchorDate()),
+                        String.valueOf(rule.getEndDate()), String.valueOf(rule.getMaxOccurrences())});
+
+        rule.setUserId(userId);
+        rule.setExpenseId(expenseId);
+        // Unique index trên expense_id: rule cũ còn đó thì bỏ qua
+        long id = db.insertWithOnConflict(TABLE_RECURRENCE_RULES, null, recurrenceRuleValues(rule),
+                SQLiteDatabase.CONFLICT_IGNORE);
+        if (id != -1) {
+            rule.setId((int) id);
+        }
+        return deleted > 0 || id != -1;
+    }
+
+    private ContentValues recurrenceRuleValues(RecurrenceRule rule) {
+        ContentValues values = new ContentValues();
+        values.put(KEY_RULE_USER_ID, rule.getUserId());
+        values.put(KEY_RULE_EXPENSE_ID, rule.getExpenseId());
+        values.put(KEY_RULE_UNIT, rule.getUnit());
+        values.put(KEY_RULE_INTERVAL, rule.getInterval());
+        values.put(KEY_RULE_ANCHOR_DATE, rule.getAnchorDate());
+        values.put(KEY_RULE_NEXT_INDEX, rule.getNextIndex());
+        values.put(KEY_RULE_NEXT_DUE, rule.getNextDue());
+        values.put(KEY_RULE_END_DATE, rule.getEndDate());
+        values.put(KEY_RULE_MAX_OCCURRENCES, rule.getMaxOccurrences());
+        values.put(KEY_CREATED_AT, rule.getCreatedAt());
+        return values;
+    }
+
     /**
      * Delete expense
      * @param expenseId Expense ID
@@ -570,13 +1880,404 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public int deleteExpense(int expenseId) {
         SQLiteDatabase db = this.getWritableDatabase();
-        int rowsDeleted = db.delete(TABLE_EXPENSES, KEY_ID + "=?",
-                new String[]{String.valueOf(expenseId)});
+        int userId = getOwnerId(db, TABLE_EXPENSES, KEY_EXPENSE_USER_ID, expenseId);
+        String[] args = {String.valueOf(expenseId)};
+
+        int rowsDeleted;
+        int rulesDeleted;
+        db.beginTransaction();
+        try {
+            rowsDeleted = db.delete(TABLE_EXPENSES, KEY_ID + "=?", args);
+            // foreign_keys không bật trên mọi kết nối: xoá rule của expense mẫu thủ công
+            rulesDeleted = db.delete(TABLE_RECURRENCE_RULES, KEY_RULE_EXPENSE_ID + "=?", args);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
 
         Log.d(TAG, "Expense deleted: " + rowsDeleted + " rows");
+        if (rowsDeleted > 0) {
+            patchExpenseColumns(userId, columns -> columns.remove(expenseId));
+            invalidationTracker.notifyChanged(TABLE_EXPENSES, userId,
+                    InvalidationTracker.KIND_DELETE, expenseId);
+        }
+        if (rulesDeleted > 0) {
+            invalidationTracker.notifyChanged(InvalidationTracker.TABLE_RECURRENCE_RULES, userId,
+                    InvalidationTracker.KIND_DELETE);
+        }
         return rowsDeleted;
     }
 
+    /**
+     * Delete many expenses in one transaction, reusing compiled DELETEs (bulk delete)
+     * Recurrence rules of deleted templates go with them. Any failure rolls the whole list back.
+     * @param expenseIds Expense IDs; IDs that do not exist are skipped
+     * @return Number of rows deleted
+     */
+    public int deleteExpenses(int[] expenseIds) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        // Chủ sở hữu của từng ID, để patch cache và báo thay đổi sau khi xoá
+        int[] owners = new int[expenseIds.length];
+        int rowsDeleted = 0;
+        int rulesDeleted = 0;
+
+        db.beginTransaction();
+        try {
+            getOwnerIds(db, expenseIds, owners);
+            SQLiteStatement deleteExpense = db.compileStatement("DELETE FROM " + TABLE_EXPENSES
+                    + " WHERE " + KEY_ID + " = ?");
+            // foreign_keys không bật trên mọi kết nối: xoá rule của expense mẫu thủ công
+            SQLiteStatement deleteRule = db.compileStatement("DELETE FROM " + TABLE_RECURRENCE_RULES
+                    + " WHERE " + KEY_RULE_EXPENSE_ID + " = ?");
+            try {
+                for (int i = 0; i < expenseIds.length; i++) {
+                    if (owners[i] == InvalidationTracker.ALL_USERS) {
+                        continue;
+                    }
+                    deleteExpense.bindLong(1, expenseIds[i]);
+                    if (deleteExpense.executeUpdateDelete() == 0) {
+                        // ID lặp lại trong mảng: đã xoá ở lần trước
+                        owners[i] = InvalidationTracker.ALL_USERS;
+                        continue;
+                    }
+                    rowsDeleted++;
+                    deleteRule.bindLong(1, expenseIds[i]);
+                    rulesDeleted += deleteRule.executeUpdateDelete();
+                }
+            } finally {
+                deleteExpense.close();
+                deleteRule.close();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        Log.d(TAG, "Expenses deleted: " + rowsDeleted + " rows");
+        boolean bulk = rowsDeleted > BULK_PATCH_LIMIT;
+        for (int i = 0; i < expenseIds.length; i++) {
+            int userId = owners[i];
+            if (userId == InvalidationTracker.ALL_USERS) {
+                continue;
+            }
+            int expenseId = expenseIds[i];
+            if (bulk) {
+                patchExpenseColumns(userId, null);
+                invalidationTracker.notifyChanged(TABLE_EXPENSES, userId, InvalidationTracker.KIND_DELETE);
+            } else {
+                patchExpenseColumns(userId, columns -> columns.remove(expenseId));
+                invalidationTracker.notifyChanged(TABLE_EXPENSES, userId,
+                        InvalidationTracker.KIND_DELETE, expenseId);
+            }
+        }
+        if (rulesDeleted > 0) {
+            for (int userId : distinct(owners)) {
+                invalidationTracker.notifyChanged(InvalidationTracker.TABLE_RECURRENCE_RULES, userId,
+                        InvalidationTracker.KIND_DELETE);
+            }
+        }
+        return rowsDeleted;
+    }
+
+    // =============== IMPORT ===============
+
+    static final String QUERY_COUNT_BY_FINGERPRINT = "SELECT COUNT(*) FROM " + TABLE_EXPENSES
+            + " WHERE " + KEY_EXPENSE_USER_ID + "=? AND " + KEY_EXPENSE_FINGERPRINT + "=?";
+
+    /**
+     * Number of a user's expenses with a given fingerprint (index lookup on idx_expenses_user_fingerprint)
+     * Used by statement imports to skip lines that are already in the database.
+     * @param fingerprint ExpenseFingerprint.of(...)
+     */
+    public int countExpensesWithFingerprint(int userId, long fingerprint) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(QUERY_COUNT_BY_FINGERPRINT,
+                new String[]{String.valueOf(userId), String.valueOf(fingerprint)});
+
+        int count = 0;
+        if (cursor != null && cursor.moveToFirst()) {
+            count = cursor.getInt(0);
+            cursor.close();
+        }
+        return count;
+    }
+
+    // =============== EXPORT ===============
+
+    static final String QUERY_EXPENSES_FOR_EXPORT = "SELECT " + KEY_EXPENSE_TYPE + ", " + KEY_EXPENSE_CATEGORY_ID
+            + ", " + KEY_EXPENSE_AMOUNT + ", " + KEY_EXPENSE_CURRENCY_ID + ", " + KEY_EXPENSE_DATE + ", "
+            + KEY_EXPENSE_DESCRIPTION
+            + " FROM " + TABLE_EXPENSES
+            + " WHERE " + KEY_EXPENSE_USER_ID + "=? AND " + KEY_EXPENSE_DATE + ">=? AND " + KEY_EXPENSE_DATE + "<=?"
+            + " ORDER BY " + KEY_EXPENSE_DATE + " DESC";
+
+    /**
+     * Open a narrow cursor over a user's transactions for streaming export, newest first
+     * Columns, in order: type, category_id, amount, currency_id, date, description.
+     * The caller iterates and closes it; rows are read window by window, never all at once.
+     * @param userId User ID
+     * @param startDate Range start (inclusive, Unix ms)
+     * @param endDate Range end (inclusive, Unix ms)
+     * @param signal Cancels the query (and lets the caller stop between rows), or null
+     * @return Cursor (never null)
+     */
+    public Cursor queryExpensesForExport(int userId, long startDate, long endDate, CancellationSignal signal) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return db.rawQuery(QUERY_EXPENSES_FOR_EXPORT, new String[]{String.valueOf(userId), String.valueOf(startDate),
+                String.valueOf(endDate)}, signal);
+    }
+
+    // =============== SEARCH ===============
+
+    static final String QUERY_SEARCH_EXPENSE_IDS = "SELECT " + TABLE_EXPENSES_FTS + "." + KEY_FTS_DOCID
+            + " FROM " + TABLE_EXPENSES_FTS
+            + " JOIN " + TABLE_EXPENSES + " e ON e." + KEY_ID + " = " + TABLE_EXPENSES_FTS + "." + KEY_FTS_DOCID
+            + " WHERE " + TABLE_EXPENSES_FTS + " MATCH ? AND e." + KEY_EXPENSE_USER_ID + " = ?"
+            + " ORDER BY " + TABLE_EXPENSES_FTS + "." + KEY_FTS_DOCID;
+
+    /**
+     * Full-text search over description and category name (prefix match on every word)
+     * @param userId User ID
+     * @param query Text typed by the user
+     * @return Matching expense IDs in ascending order (for Arrays.binarySearch)
+     */
+    public int[] searchExpenseIds(int userId, String query) {
+        String match = toMatchExpression(query);
+        if (match.isEmpty()) {
+            return new int[0];
+        }
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(QUERY_SEARCH_EXPENSE_IDS, new String[]{match, String.valueOf(userId)});
+
+        int[] ids = new int[0];
+        if (cursor != null) {
+            ids = new int[cursor.getCount()];
+            int i = 0;
+            while (cursor.moveToNext()) {
+                ids[i++] = cursor.getInt(0);
+            }
+            cursor.close();
+        }
+        return ids;
+    }
+
+    /**
+     * Build an FTS MATCH expression: each word becomes a quoted prefix term, all terms ANDed
+     * e.g. 'com tr' -> '"com*" "tr*"'
+     */
+    private static String toMatchExpression(String query) {
+        StringBuilder match = new StringBuilder();
+        if (query == null) {
+            return "";
+        }
+        for (String word : query.trim().split("\\s+")) {
+            String term = word.replace("\"", "");
+            if (term.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append('"').append(term).append("*\"");
+        }
+        return match.toString();
+    }
+
+    // =============== AGGREGATION QUERIES ===============
+
+    // Amount converted to whole VND inside SQLite (currency missing -> treated as VND)
+    private static final String AMOUNT_IN_VND = "IFNULL(" + vndFormulaSql("e." + KEY_EXPENSE_AMOUNT, "c.")
+            + ", e." + KEY_EXPENSE_AMOUNT + ")";
+    private static final String FROM_EXPENSES_WITH_RATE = " FROM " + TABLE_EXPENSES + " e"
+            + " LEFT JOIN " + TABLE_CURRENCIES + " c ON c." + KEY_ID + " = e." + KEY_EXPENSE_CURRENCY_ID;
+
+    static final String QUERY_TRANSACTION_SUMMARY = "SELECT e." + KEY_EXPENSE_TYPE + ", e." + KEY_EXPENSE_CATEGORY_ID
+            + ", SUM(" + AMOUNT_IN_VND + ") AS total_vnd, COUNT(*)"
+            + FROM_EXPENSES_WITH_RATE
+            + " WHERE e." + KEY_EXPENSE_USER_ID + "=? AND e." + KEY_EXPENSE_DATE + ">=?"
+            + " AND e." + KEY_EXPENSE_DATE + "<=?"
+            + " GROUP BY e." + KEY_EXPENSE_TYPE + ", e." + KEY_EXPENSE_CATEGORY_ID
+            + " ORDER BY total_vnd DESC";
+    static final String QUERY_MONTHLY_SUMMARY = "SELECT " + KEY_ROLLUP_TYPE + ", " + KEY_ROLLUP_CATEGORY_ID
+            + ", SUM(" + KEY_ROLLUP_TOTAL_VND + ") AS total_vnd, SUM(" + KEY_ROLLUP_COUNT + ")"
+            + " FROM " + TABLE_MONTHLY_TOTALS
+            + " WHERE " + KEY_ROLLUP_USER_ID + "=? AND " + KEY_ROLLUP_YEAR_MONTH + ">=?"
+            + " AND " + KEY_ROLLUP_YEAR_MONTH + "<=?"
+            + " GROUP BY " + KEY_ROLLUP_TYPE + ", " + KEY_ROLLUP_CATEGORY_ID
+            + " ORDER BY total_vnd DESC";
+
+    /**
+     * Get income/expense totals and per-category expense totals (in VND) for a date range,
+     * computed with a single GROUP BY query
+     * @param userId User ID
+     * @param startDate Range start (inclusive, Unix ms)
+     * @param endDate Range end (inclusive, Unix ms)
+     * @return TransactionSummary (never null)
+     */
+    public TransactionSummary getTransactionSummary(int userId, long startDate, long endDate) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(QUERY_TRANSACTION_SUMMARY, new String[]{
+                String.valueOf(userId), String.valueOf(startDate), String.valueOf(endDate)});
+
+        return cursorToSummary(cursor);
+    }
+
+    /**
+     * Get income/expense totals and per-category expense totals (in VND) for whole months,
+     * read from the monthly_totals rollup (a handful of rows regardless of history size)
+     * @param userId User ID
+     * @param fromYearMonth First month, yyyyMM (inclusive), see toYearMonth
+     * @param toYearMonth Last month, yyyyMM (inclusive)
+     * @return TransactionSummary (never null)
+     */
+    public TransactionSummary getMonthlySummary(int userId, int fromYearMonth, int toYearMonth) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(QUERY_MONTHLY_SUMMARY, new String[]{
+                String.valueOf(userId), String.valueOf(fromYearMonth), String.valueOf(toYearMonth)});
+
+        return cursorToSummary(cursor);
+    }
+
+    /**
+     * Sum transactions (converted to VND) in a date range with a single SUM query
+     * @param userId User ID
+     * @param startDate Range start (inclusive, Unix ms)
+     * @param endDate Range end (inclusive, Unix ms)
+     * @param type Expense.TYPE_EXPENSE, Expense.TYPE_INCOME or FILTER_ANY
+     * @param categoryId Category ID or FILTER_ANY
+     * @return Total in VND
+     */
+    public long getTotalInVND(int userId, long startDate, long endDate, int type, int categoryId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        List<String> args = new ArrayList<>();
+        String query = totalInVndSql(userId, startDate, endDate, type, categoryId, args);
+        Cursor cursor = db.rawQuery(query, args.toArray(new String[0]));
+
+        long total = 0;
+        if (cursor != null) {
+            if (cursor.moveToFirst()) {
+                total = cursor.getLong(0); // SUM() of no rows is NULL -> 0
+            }
+            cursor.close();
+        }
+        return total;
+    }
+
+    // SQL của getTotalInVND; tham số được thêm vào args theo thứ tự dấu '?'
+    static String totalInVndSql(int userId, long startDate, long endDate, int type, int categoryId,
+                                List<String> args) {
+        StringBuilder query = new StringBuilder("SELECT SUM(" + AMOUNT_IN_VND + ")"
+                + FROM_EXPENSES_WITH_RATE
+                + " WHERE e." + KEY_EXPENSE_USER_ID + "=?");
+        args.add(String.valueOf(userId));
+
+        if (type != FILTER_ANY) {
+            query.append(" AND e.").append(KEY_EXPENSE_TYPE).append("=?");
+            args.add(String.valueOf(type));
+        }
+        if (categoryId != FILTER_ANY) {
+            query.append(" AND e.").append(KEY_EXPENSE_CATEGORY_ID).append("=?");
+            args.add(String.valueOf(categoryId));
+        }
+        query.append(" AND e.").append(KEY_EXPENSE_DATE).append(">=? AND e.")
+                .append(KEY_EXPENSE_DATE).append("<=?");
+        args.add(String.valueOf(startDate));
+        args.add(String.valueOf(endDate));
+        return query.toString();
+    }
+
+    // =============== COLUMNAR CACHE ===============
+
+    /**
+     * Get the user's expenses as primitive columns for range sums and category breakdowns
+     * The first call per user runs one narrow query; later calls return the same object,
+     * kept current by every expense write through this helper.
+     * @param userId User ID
+     * @return ExpenseColumns (never null)
+     */
+    public ExpenseColumns getExpenseColumns(int userId) {
+        ExpenseColumns columns;
+        int writes;
+        synchronized (expenseColumns) {
+            columns = expenseColumns.get(userId);
+            writes = expenseWrites;
+        }
+
+        if (columns == null) {
+            columns = loadExpenseColumns(userId);
+            synchronized (expenseColumns) {
+                // Có lần ghi xen giữa lúc đọc -> không cache (lần sau nạp lại), vẫn trả kết quả vừa đọc
+                if (writes == expenseWrites) {
+                    expenseColumns.put(userId, columns);
+                }
+            }
+        }
+
+        int version = currenciesVersion.get();
+        if (columns.getRatesVersion() != version) {
+            loadColumnRates(columns, version);
+        }
+        return columns;
+    }
+
+    static final String QUERY_EXPENSE_COLUMNS = "SELECT " + KEY_ID + ", " + KEY_EXPENSE_DATE + ", "
+            + KEY_EXPENSE_AMOUNT + ", " + KEY_EXPENSE_CATEGORY_ID + ", " + KEY_EXPENSE_CURRENCY_ID + ", "
+            + KEY_EXPENSE_TYPE
+            + " FROM " + TABLE_EXPENSES
+            + " WHERE " + KEY_EXPENSE_USER_ID + "=? ORDER BY " + KEY_EXPENSE_DATE + " ASC, " + KEY_ID + " ASC";
+
+    private ExpenseColumns loadExpenseColumns(int userId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(QUERY_EXPENSE_COLUMNS, new String[]{String.valueOf(userId)});
+
+        ExpenseColumns columns = new ExpenseColumns(cursor != null ? cursor.getCount() : 0);
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                columns.append(cursor.getInt(0), cursor.getLong(1), cursor.getLong(2),
+                        cursor.getInt(3), cursor.getInt(4), cursor.getInt(5));
+            }
+            cursor.close();
+        }
+        Log.d(TAG, "Expense columns loaded for user " + userId + ": " + columns.size() + " rows");
+        return columns;
+    }
+
+    private void loadColumnRates(ExpenseColumns columns, int version) {
+        List<Currency> currencies = getAllCurrencies();
+        int maxId = 0;
+        for (Currency currency : currencies) {
+            maxId = Math.max(maxId, currency.getId());
+        }
+        long[] rateById = new long[maxId + 1];
+        int[] scaleById = new int[maxId + 1];
+        for (Currency currency : currencies) {
+            rateById[currency.getId()] = currency.getRateToVND();
+            scaleById[currency.getId()] = currency.getMinorScale();
+        }
+        columns.setRates(version, rateById, scaleById);
+    }
+
+    /**
+     * Apply a committed expense write to the user's cached columns, if loaded
+     * @param patch Change to apply, or null to drop the user's columns (reloaded on next use)
+     */
+    private void patchExpenseColumns(int userId, Consumer<ExpenseColumns> patch) {
+        synchronized (expenseColumns) {
+            expenseWrites++;
+            ExpenseColumns columns = expenseColumns.get(userId);
+            if (columns == null) {
+                return;
+            }
+            if (patch == null) {
+                expenseColumns.remove(userId);
+            } else {
+                patch.accept(columns);
+            }
+        }
+    }
+
     // =============== BUDGET CRUD OPERATIONS ===============
 
     /**
@@ -597,10 +2298,17 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         long id = db.insert(TABLE_BUDGETS, null, values);
         Log.d(TAG, "Budget inserted with ID: " + id);
+        if (id != -1) {
+            invalidationTracker.notifyChanged(TABLE_BUDGETS, budget.getUserId(),
+                    InvalidationTracker.KIND_INSERT, (int) id);
+        }
 
         return id;
     }
 
+    static final String QUERY_BUDGETS_BY_USER = "SELECT * FROM " + TABLE_BUDGETS
+            + " WHERE " + KEY_BUDGET_USER_ID + "=? ORDER BY " + KEY_BUDGET_PERIOD_END + " DESC";
+
     /**
      * Get all budgets for a user
      * @param userId User ID
@@ -610,8 +2318,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         List<Budget> budgets = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
 
-        Cursor cursor = db.query(TABLE_BUDGETS, null, KEY_BUDGET_USER_ID + "=?",
-                new String[]{String.valueOf(userId)}, null, null, KEY_BUDGET_PERIOD_END + " DESC");
+        Cursor cursor = db.rawQuery(QUERY_BUDGETS_BY_USER, new String[]{String.valueOf(userId)});
 
         if (cursor != null && cursor.moveToFirst()) {
             do {
@@ -624,6 +2331,93 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return budgets;
     }
 
+    /**
+     * Get all budgets of a user with the amount spent in each period
+     * Spent comes from the budgets.spent_vnd counter, so this is a plain indexed read
+     * regardless of how many expenses the user has.
+     * @param userId User ID
+     * @return Budget statuses, same order as getBudgetsByUser
+     */
+    public List<BudgetStatus> getBudgetStatuses(int userId) {
+        List<BudgetStatus> statuses = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        Cursor cursor = db.rawQuery(QUERY_BUDGETS_BY_USER, new String[]{String.valueOf(userId)});
+
+        readBudgetStatuses(cursor, statuses);
+        return statuses;
+    }
+
+    /**
+     * Get the active budgets whose spending crossed a different alert threshold than the one
+     * last recorded (BudgetStatus.getCurrentLevel() != getAlertLevel()).
+     * Only budgets whose period has not ended are read (idx_budgets_user_end).
+     * @param userId User ID, or InvalidationTracker.ALL_USERS
+     * @param now Current time; budgets ending before it are ignored
+     */
+    public List<BudgetStatus> getBudgetAlertChanges(int userId, long now) {
+        List<BudgetStatus> statuses = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        List<String> args = new ArrayList<>();
+        Cursor cursor = db.rawQuery(budgetAlertChangesSql(userId, now, args), args.toArray(new String[0]));
+        readBudgetStatuses(cursor, statuses);
+        return statuses;
+    }
+
+    // SQL của getBudgetAlertChanges; tham số được thêm vào args theo thứ tự dấu '?'
+    static String budgetAlertChangesSql(int userId, long now, List<String> args) {
+        // Ngưỡng hiện tại tính trong SQL để chỉ trả về các budget cần xử lý
+        StringBuilder level = new StringBuilder("CASE");
+        for (int i = BudgetStatus.ALERT_LEVELS.length - 1; i >= 0; i--) {
+            int threshold = BudgetStatus.ALERT_LEVELS[i];
+            level.append(" WHEN ").append(KEY_BUDGET_SPENT_VND).append(" * 100 >= ")
+                    .append(KEY_BUDGET_AMOUNT).append(" * ").append(threshold)
+                    .append(" THEN ").append(threshold);
+        }
+        level.append(" ELSE 0 END");
+
+        StringBuilder query = new StringBuilder("SELECT * FROM " + TABLE_BUDGETS + " WHERE ");
+        if (userId != InvalidationTracker.ALL_USERS) {
+            query.append(KEY_BUDGET_USER_ID).append("=? AND ");
+            args.add(String.valueOf(userId));
+        }
+        query.append(KEY_BUDGET_PERIOD_END).append(">=? AND ").append(KEY_BUDGET_AMOUNT)
+                .append(" > 0 AND ").append(KEY_BUDGET_ALERT_LEVEL).append(" <> (").append(level).append(")");
+        args.add(String.valueOf(now));
+        return query.toString();
+    }
+
+    /**
+     * Record the alert threshold of a budget, only if it still has the expected value.
+     * Two alert jobs racing on the same budget cannot both see their update succeed,
+     * so each threshold is notified at most once.
+     * Not reported to InvalidationTracker: nothing on screen depends on the alert state.
+     * @return true if this call changed the level
+     */
+    public boolean updateBudgetAlertLevel(int budgetId, int expectedLevel, int newLevel) {
+        SQLiteDatabase db = this.getWritableDatabase();
+
+        ContentValues values = new ContentValues();
+        values.put(KEY_BUDGET_ALERT_LEVEL, newLevel);
+        int rowsAffected = db.update(TABLE_BUDGETS, values,
+                KEY_ID + "=? AND " + KEY_BUDGET_ALERT_LEVEL + "=?",
+                new String[]{String.valueOf(budgetId), String.valueOf(expectedLevel)});
+        return rowsAffected > 0;
+    }
+
+    private void readBudgetStatuses(Cursor cursor, List<BudgetStatus> statuses) {
+        if (cursor != null && cursor.moveToFirst()) {
+            int spentIndex = cursor.getColumnIndexOrThrow(KEY_BUDGET_SPENT_VND);
+            int alertIndex = cursor.getColumnIndexOrThrow(KEY_BUDGET_ALERT_LEVEL);
+            do {
+                statuses.add(new BudgetStatus(cursorToBudget(cursor),
+                        cursor.getLong(spentIndex), cursor.getInt(alertIndex)));
+            } while (cursor.moveToNext());
+            cursor.close();
+        }
+    }
+
     /**
      * Update budget
      * @param budget Budget object with updated data
@@ -642,6 +2436,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 new String[]{String.valueOf(budget.getId())});
 
         Log.d(TAG, "Budget updated: " + rowsAffected + " rows");
+        if (rowsAffected > 0) {
+            invalidationTracker.notifyChanged(TABLE_BUDGETS, budget.getUserId(),
+                    InvalidationTracker.KIND_UPDATE, budget.getId());
+        }
         return rowsAffected;
     }
 
@@ -652,41 +2450,182 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public int deleteBudget(int budgetId) {
         SQLiteDatabase db = this.getWritableDatabase();
+        int userId = getOwnerId(db, TABLE_BUDGETS, KEY_BUDGET_USER_ID, budgetId);
         int rowsDeleted = db.delete(TABLE_BUDGETS, KEY_ID + "=?",
                 new String[]{String.valueOf(budgetId)});
 
         Log.d(TAG, "Budget deleted: " + rowsDeleted + " rows");
+        if (rowsDeleted > 0) {
+            invalidationTracker.notifyChanged(TABLE_BUDGETS, userId,
+                    InvalidationTracker.KIND_DELETE, budgetId);
+        }
         return rowsDeleted;
     }
 
+    // Duyệt partial index next_due (chỉ rule còn hiệu lực), rồi lấy expense mẫu theo khoá chính
+    static final String QUERY_DUE_RECURRENCES = "SELECT e.*, r." + KEY_ID + " AS " + KEY_RULE_ID_ALIAS + ", "
+            + "r." + KEY_RULE_EXPENSE_ID + ", r." + KEY_RULE_UNIT + ", r." + KEY_RULE_INTERVAL + ", "
+            + "r." + KEY_RULE_ANCHOR_DATE + ", r." + KEY_RULE_NEXT_INDEX + ", r." + KEY_RULE_NEXT_DUE + ", "
+            + "r." + KEY_RULE_END_DATE + ", r." + KEY_RULE_MAX_OCCURRENCES
+            + " FROM " + TABLE_RECURRENCE_RULES + " r"
+            + " JOIN " + TABLE_EXPENSES + " e ON e." + KEY_ID + " = r." + KEY_RULE_EXPENSE_ID
+            + " WHERE r." + KEY_RULE_NEXT_DUE + " > 0 AND r." + KEY_RULE_NEXT_DUE + " <= ?"
+            + " ORDER BY r." + KEY_RULE_NEXT_DUE;
+    static final String QUERY_NEXT_RECURRENCE_DUE = "SELECT MIN(" + KEY_RULE_NEXT_DUE + ") FROM "
+            + TABLE_RECURRENCE_RULES + " WHERE " + KEY_RULE_NEXT_DUE + " > 0";
+
     // **SPRINT 5: Hàm mới để lấy chi phí lặp lại đến hạn**
-    public List<Expense> getDueRecurringExpenses() {
-        List<Expense> expenses = new ArrayList<>();
+    /**
+     * Get the template expenses whose rule is due at or before a given time
+     * @param currentTime Cut-off timestamp (usually now)
+     * @return Templates with their rule attached (Expense.getRecurrence), earliest due first
+     */
+    public List<Expense> getDueRecurrences(long currentTime) {
+        List<Expense> templates = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
 
-        long currentTime = System.currentTimeMillis();
-        // Lấy các chi phí là recurring (1), có ngày hẹn (next_occurrence_date > 0) và ngày đó nhỏ hơn hoặc bằng hiện tại
-        String selection = KEY_EXPENSE_IS_RECURRING + " = 1 AND "
-                + KEY_EXPENSE_NEXT_OCCURRENCE_DATE + " > 0 AND "
-                + KEY_EXPENSE_NEXT_OCCURRENCE_DATE + " <= ?";
-
-        String[] selectionArgs = { String.valueOf(currentTime) };
-
-        Cursor cursor = db.query(TABLE_EXPENSES, null, selection, selectionArgs, null, null, KEY_EXPENSE_DATE + " DESC");
+        Cursor cursor = db.rawQuery(QUERY_DUE_RECURRENCES, new String[]{String.valueOf(currentTime)});
 
         if (cursor != null && cursor.moveToFirst()) {
             do {
-                Expense expense = cursorToExpense(cursor);
-                expenses.add(expense);
+                Expense template = cursorToExpense(cursor);
+                template.setRecurrence(cursorToRecurrenceRule(cursor, KEY_RULE_ID_ALIAS));
+                templates.add(template);
             } while (cursor.moveToNext());
             cursor.close();
         }
 
-        return expenses;
+        return templates;
+    }
+
+    /**
+     * Earliest next_due over all active rules, used to schedule RecurringExpenseWorker
+     * @return Unix ms, or 0 if no rule is active
+     */
+    public long getNextRecurrenceDue() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(QUERY_NEXT_RECURRENCE_DUE, null);
+
+        long nextDue = 0;
+        if (cursor != null && cursor.moveToFirst()) {
+            nextDue = cursor.isNull(0) ? 0 : cursor.getLong(0);
+            cursor.close();
+        }
+        return nextDue;
+    }
+
+    /**
+     * Write the result of one recurring run in a single transaction: every generated occurrence
+     * plus the new position of every rule. Either all of it is stored or none.
+     * Occurrences carry a source_key (template + occurrence time); one that already exists is skipped,
+     * so a run repeated after a crash or by two workers never charges twice.
+     * Rule progress is not reported to InvalidationTracker: the worker reschedules itself.
+     * @param occurrences New expenses to insert, each with a source key
+     * @param rules Rules moved past the generated occurrences (RecurrenceRule.moveTo)
+     * @return The occurrences actually inserted, with their new IDs set
+     */
+    public List<Expense> insertRecurringOccurrences(List<Expense> occurrences, List<RecurrenceRule> rules) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        List<Expense> inserted = new ArrayList<>();
+
+        db.beginTransaction();
+        try {
+            // Compile một lần, bind lại cho từng dòng
+            SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO " + TABLE_EXPENSES + "("
+                    + KEY_EXPENSE_USER_ID + ", " + KEY_EXPENSE_CATEGORY_ID + ", " + KEY_EXPENSE_CURRENCY_ID + ", "
+                    + KEY_EXPENSE_AMOUNT + ", " + KEY_EXPENSE_DATE + ", " + KEY_EXPENSE_DESCRIPTION + ", "
+                    + KEY_EXPENSE_TYPE + ", " + KEY_CREATED_AT + ", " + KEY_EXPENSE_SOURCE_KEY + ", "
+                    + KEY_EXPENSE_FINGERPRINT + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            SQLiteStatement advance = db.compileStatement("UPDATE " + TABLE_RECURRENCE_RULES
+                    + " SET " + KEY_RULE_NEXT_INDEX + " = ?, " + KEY_RULE_NEXT_DUE + " = ? WHERE " + KEY_ID + " = ?");
+            try {
+                for (Expense occurrence : occurrences) {
+                    insert.clearBindings();
+                    insert.bindLong(1, occurrence.getUserId());
+                    insert.bindLong(2, occurrence.getCategoryId());
+                    insert.bindLong(3, occurrence.getCurrencyId());
+                    insert.bindLong(4, occurrence.getAmount());
+                    insert.bindLong(5, occurrence.getDate());
+                    if (occurrence.getDescription() != null) {
+                        insert.bindString(6, occurrence.getDescription());
+                    }
+                    insert.bindLong(7, occurrence.getType());
+                    insert.bindLong(8, occurrence.getCreatedAt());
+                    insert.bindString(9, occurrence.getSourceKey());
+                    insert.bindLong(10, ExpenseFingerprint.of(occurrence));
+
+                    // OR IGNORE trả về -1 khi source_key đã tồn tại
+                    long id = insert.executeInsert();
+                    if (id != -1) {
+                        occurrence.setId((int) id);
+                        inserted.add(occurrence);
+                    }
+                }
+
+                for (RecurrenceRule rule : rules) {
+                    advance.bindLong(1, rule.getNextIndex());
+                    advance.bindLong(2, rule.getNextDue());
+                    advance.bindLong(3, rule.getId());
+                    advance.executeUpdateDelete();
+                }
+            } finally {
+                insert.close();
+                advance.close();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        Log.d(TAG, "Recurring run: " + inserted.size() + " occurrences, " + rules.size() + " rules advanced");
+        onExpensesWritten(inserted, InvalidationTracker.KIND_INSERT);
+        return inserted;
     }
 
     // =============== HELPER METHODS ===============
 
+    /**
+     * Owners of many expense rows, looked up MAX_SQL_ARGS IDs per query
+     * @param owners Filled in ID order; InvalidationTracker.ALL_USERS where the row does not exist
+     */
+    private void getOwnerIds(SQLiteDatabase db, int[] expenseIds, int[] owners) {
+        Map<Integer, Integer> ownerById = new HashMap<>();
+        for (int from = 0; from < expenseIds.length; from += MAX_SQL_ARGS) {
+            int to = Math.min(expenseIds.length, from + MAX_SQL_ARGS);
+            StringBuilder sql = new StringBuilder("SELECT " + KEY_ID + ", " + KEY_EXPENSE_USER_ID
+                    + " FROM " + TABLE_EXPENSES + " WHERE " + KEY_ID + " IN (");
+            String[] args = new String[to - from];
+            for (int i = from; i < to; i++) {
+                sql.append(i > from ? ", ?" : "?");
+                args[i - from] = String.valueOf(expenseIds[i]);
+            }
+            Cursor cursor = db.rawQuery(sql.append(")").toString(), args);
+            try {
+                while (cursor.moveToNext()) {
+                    ownerById.put(cursor.getInt(0), cursor.getInt(1));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        for (int i = 0; i < expenseIds.length; i++) {
+            owners[i] = ownerById.getOrDefault(expenseIds[i], InvalidationTracker.ALL_USERS);
+        }
+    }
+
+    /**
+     * Distinct user IDs, skipping InvalidationTracker.ALL_USERS
+     */
+    private static Set<Integer> distinct(int[] userIds) {
+        Set<Integer> distinct = new HashSet<>();
+        for (int userId : userIds) {
+            if (userId != InvalidationTracker.ALL_USERS) {
+                distinct.add(userId);
+            }
+        }
+        return distinct;
+    }
+
     private User cursorToUser(Cursor cursor) {
         // **SPRINT 6: Thêm default_currency_id
         int currencyIdIndex = cursor.getColumnIndex(KEY_USER_DEFAULT_CURRENCY_ID);
@@ -706,6 +2645,22 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         );
     }
 
+    /**
+     * User that owns a row (read before deleting it, for change notifications)
+     * @return User ID, or InvalidationTracker.ALL_USERS if the row does not exist
+     */
+    private int getOwnerId(SQLiteDatabase db, String table, String userColumn, int rowId) {
+        Cursor cursor = db.query(table, new String[]{userColumn}, KEY_ID + "=?",
+                new String[]{String.valueOf(rowId)}, null, null, null);
+
+        int userId = InvalidationTracker.ALL_USERS;
+        if (cursor != null && cursor.moveToFirst()) {
+            userId = cursor.getInt(0);
+            cursor.close();
+        }
+        return userId;
+    }
+
     private Category cursorToCategory(Cursor cursor) {
         return new Category(
                 cursor.getInt(cursor.getColumnIndexOrThrow(KEY_ID)),
@@ -722,27 +2677,44 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         int isRecurringIndex = cursor.getColumnIndex(KEY_EXPENSE_IS_RECURRING);
         boolean isRecurring = (isRecurringIndex >= 0) && cursor.getInt(isRecurringIndex) == 1;
 
-        int periodIndex = cursor.getColumnIndex(KEY_EXPENSE_RECURRENCE_PERIOD);
-        String recurrencePeriod = (periodIndex >= 0) ? cursor.getString(periodIndex) : null;
+        int sourceKeyIndex = cursor.getColumnIndex(KEY_EXPENSE_SOURCE_KEY);
 
-        int nextDateIndex = cursor.getColumnIndex(KEY_EXPENSE_NEXT_OCCURRENCE_DATE);
-        long nextOccurrenceDate = (nextDateIndex >= 0) ? cursor.getLong(nextDateIndex) : 0;
-
-
-        return new Expense(
+        Expense expense = new Expense(
                 cursor.getInt(cursor.getColumnIndexOrThrow(KEY_ID)),
                 cursor.getInt(cursor.getColumnIndexOrThrow(KEY_EXPENSE_USER_ID)),
                 cursor.getInt(cursor.getColumnIndexOrThrow(KEY_EXPENSE_CATEGORY_ID)),
                 cursor.getInt(cursor.getColumnIndexOrThrow(KEY_EXPENSE_CURRENCY_ID)),
-                cursor.getDouble(cursor.getColumnIndexOrThrow(KEY_EXPENSE_AMOUNT)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(KEY_EXPENSE_AMOUNT)),
                 cursor.getLong(cursor.getColumnIndexOrThrow(KEY_EXPENSE_DATE)),
                 cursor.getString(cursor.getColumnIndexOrThrow(KEY_EXPENSE_DESCRIPTION)),
                 cursor.getString(cursor.getColumnIndexOrThrow(KEY_EXPENSE_RECEIPT)),
                 cursor.getLong(cursor.getColumnIndexOrThrow(KEY_CREATED_AT)),
                 type,
-                isRecurring,      // **MỚI**
-                recurrencePeriod, // **MỚI**
-                nextOccurrenceDate // **MỚI**
+                isRecurring      // **MỚI**
+        );
+        if (sourceKeyIndex >= 0) {
+            expense.setSourceKey(cursor.getString(sourceKeyIndex));
+        }
+        return expense;
+    }
+
+    /**
+     * @param idColumn Column holding the rule ID (KEY_RULE_ID_ALIAS when joined with expenses)
+     */
+    private RecurrenceRule cursorToRecurrenceRule(Cursor cursor, String idColumn) {
+        int createdAtIndex = cursor.getColumnIndex(KEY_CREATED_AT);
+        return new RecurrenceRule(
+                cursor.getInt(cursor.getColumnIndexOrThrow(idColumn)),
+                cursor.getInt(cursor.getColumnIndexOrThrow(KEY_RULE_USER_ID)),
+                cursor.getInt(cursor.getColumnIndexOrThrow(KEY_RULE_EXPENSE_ID)),
+                cursor.getInt(cursor.getColumnIndexOrThrow(KEY_RULE_UNIT)),
+                cursor.getInt(cursor.getColumnIndexOrThrow(KEY_RULE_INTERVAL)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(KEY_RULE_ANCHOR_DATE)),
+                cursor.getInt(cursor.getColumnIndexOrThrow(KEY_RULE_NEXT_INDEX)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(KEY_RULE_NEXT_DUE)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(KEY_RULE_END_DATE)),
+                cursor.getInt(cursor.getColumnIndexOrThrow(KEY_RULE_MAX_OCCURRENCES)),
+                (createdAtIndex >= 0) ? cursor.getLong(createdAtIndex) : 0
         );
     }
 
@@ -751,19 +2723,64 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 cursor.getInt(cursor.getColumnIndexOrThrow(KEY_ID)),
                 cursor.getInt(cursor.getColumnIndexOrThrow(KEY_BUDGET_USER_ID)),
                 cursor.getInt(cursor.getColumnIndexOrThrow(KEY_BUDGET_CATEGORY_ID)),
-                cursor.getDouble(cursor.getColumnIndexOrThrow(KEY_BUDGET_AMOUNT)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(KEY_BUDGET_AMOUNT)),
                 cursor.getLong(cursor.getColumnIndexOrThrow(KEY_BUDGET_PERIOD_START)),
                 cursor.getLong(cursor.getColumnIndexOrThrow(KEY_BUDGET_PERIOD_END)),
                 cursor.getLong(cursor.getColumnIndexOrThrow(KEY_CREATED_AT))
         );
     }
 
+    /**
+     * Read rows of (type, category_id, total_vnd, count), sorted by total descending
+     */
+    private TransactionSummary cursorToSummary(Cursor cursor) {
+        long totalIncome = 0;
+        long totalExpense = 0;
+        int incomeCount = 0;
+        int expenseCount = 0;
+        int categoryCount = 0;
+        int[] categoryIds = new int[0];
+        long[] categoryTotals = new long[0];
+        int[] categoryCounts = new int[0];
+
+        if (cursor != null) {
+            int rows = cursor.getCount();
+            categoryIds = new int[rows];
+            categoryTotals = new long[rows];
+            categoryCounts = new int[rows];
+
+            while (cursor.moveToNext()) {
+                long total = cursor.getLong(2);
+                int count = cursor.getInt(3);
+                if (cursor.getInt(0) == Expense.TYPE_INCOME) {
+                    totalIncome += total;
+                    incomeCount += count;
+                } else {
+                    totalExpense += total;
+                    expenseCount += count;
+                    // Rows arrive sorted by total, so categories stay sorted
+                    categoryIds[categoryCount] = cursor.getInt(1);
+                    categoryTotals[categoryCount] = total;
+                    categoryCounts[categoryCount] = count;
+                    categoryCount++;
+                }
+            }
+            cursor.close();
+        }
+
+        return new TransactionSummary(totalIncome, totalExpense, incomeCount, expenseCount,
+                Arrays.copyOf(categoryIds, categoryCount),
+                Arrays.copyOf(categoryTotals, categoryCount),
+                Arrays.copyOf(categoryCounts, categoryCount));
+    }
+
     // **SPRINT 6: Thêm cursorToCurrency**
     private Currency cursorToCurrency(Cursor cursor) {
         return new Currency(
                 cursor.getInt(cursor.getColumnIndexOrThrow(KEY_ID)),
                 cursor.getString(cursor.getColumnIndexOrThrow(KEY_CURRENCY_CODE)),
-                cursor.getDouble(cursor.getColumnIndexOrThrow(KEY_CURRENCY_RATE)),
+                cursor.getInt(cursor.getColumnIndexOrThrow(KEY_CURRENCY_MINOR_SCALE)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(KEY_CURRENCY_RATE)),
                 cursor.getString(cursor.getColumnIndexOrThrow(KEY_CURRENCY_SYMBOL))
         );
     }
@@ -0,0 +1,188 @@
+package com.example.campusexpensemanager.utils;
+
+import com.example.campusexpensemanager.models.Expense;
+
+import java.util.Arrays;
+
+/**
+ * Tổng VND và số giao dịch theo ngày, dạng Fenwick tree (binary indexed tree), cho ExpenseColumns.
+ * One tree per type and one per (type, category), over epoch days from baseDay, so the total of
+ * any run of whole days is two prefix sums: O(log days) whatever the history length, and a
+ * changed expense is a point update of the same cost.
+ * Days use the time zone's raw offset (no DST), so dayOf is monotonic in time; only whole days
+ * are answered here, partial days at the ends of a range are summed by the caller.
+ */
+final class DayTotalsIndex {
+
+    static final long DAY_MS = 86_400_000L;
+
+    // Chừa chỗ mỗi phía để thêm expense mới (hoặc cũ hơn một chút) không phải dựng lại
+    private static final int MARGIN_DAYS = 366;
+
+    // Slot 0/1: tổng theo type; 2 + 2 * categoryId + type: theo (type, category)
+    private static final int TYPE_SLOTS = 2;
+
+    private final long offsetMs;
+    private final int baseDay;
+    private final int days;
+
+    // Cây theo slot, chỉ cấp phát khi slot có dữ liệu; phần tử 0 không dùng (Fenwick đếm từ 1)
+    private long[][] sums = new long[TYPE_SLOTS][];
+    private int[][] counts = new int[TYPE_SLOTS][];
+
+    /**
+     * @param firstDay First day holding data (see dayOf)
+     * @param lastDay Last day holding data
+     * @param offsetMs Offset added to UTC millis before dividing into days
+     */
+    DayTotalsIndex(int firstDay, int lastDay, long offsetMs) {
+        this.offsetMs = offsetMs;
+        this.baseDay = firstDay - MARGIN_DAYS;
+        this.days = lastDay - firstDay + 1 + 2 * MARGIN_DAYS;
+    }
+
+    int dayOf(long millis) {
+        return (int) Math.floorDiv(millis + offsetMs, DAY_MS);
+    }
+
+    /**
+     * Whether a day can be updated in place (otherwise the index must be rebuilt)
+     */
+    boolean covers(int day) {
+        return day >= baseDay && day < baseDay + days;
+    }
+
+    static int typeSlot(int type) {
+        return type == Expense.TYPE_INCOME ? 1 : 0;
+    }
+
+    /**
+     * @return Slot of a (type, category) pair, or -1 for a negative category ID
+     */
+    static int categorySlot(int type, int categoryId) {
+        return categoryId < 0 ? -1 : TYPE_SLOTS + 2 * categoryId + typeSlot(type);
+    }
+
+    int slotCount() {
+        return sums.length;
+    }
+
+    /**
+     * Add one transaction while loading; call build() once all rows are added
+     */
+    void addPoint(int day, int type, int categoryId, long vnd) {
+        int position = day - baseDay + 1;
+        addPoint(typeSlot(type), position, vnd);
+        int slot = categorySlot(type, categoryId);
+        if (slot >= 0) {
+            addPoint(slot, position, vnd);
+        }
+    }
+
+    private void addPoint(int slot, int position, long vnd) {
+        ensureSlot(slot);
+        sums[slot][position] += vnd;
+        counts[slot][position]++;
+    }
+
+    /**
+     * Turn the per-day values added with addPoint into Fenwick trees, O(days) per slot
+     */
+    void build() {
+        for (int slot = 0; slot < sums.length; slot++) {
+            long[] sum = sums[slot];
+            int[] count = counts[slot];
+            if (sum == null) {
+                continue;
+            }
+            for (int i = 1; i <= days; i++) {
+                int parent = i + (i & -i);
+                if (parent <= days) {
+                    sum[parent] += sum[i];
+                    count[parent] += count[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Add (count = 1) or remove (vnd negated, count = -1) one transaction after build()
+     * @param day Day inside the index (see covers)
+     */
+    void update(int day, int type, int categoryId, long vnd, int count) {
+        int position = day - baseDay + 1;
+        update(typeSlot(type), position, vnd, count);
+        int slot = categorySlot(type, categoryId);
+        if (slot >= 0) {
+            update(slot, position, vnd, count);
+        }
+    }
+
+    private void update(int slot, int position, long vnd, int count) {
+        ensureSlot(slot);
+        long[] sum = sums[slot];
+        int[] cnt = counts[slot];
+        for (int i = position; i <= days; i += i & -i) {
+            sum[i] += vnd;
+            cnt[i] += count;
+        }
+    }
+
+    /**
+     * Total VND of a slot over whole days fromDay..toDay (inclusive)
+     */
+    long sum(int slot, int fromDay, int toDay) {
+        if (slot < 0 || slot >= sums.length || sums[slot] == null) {
+            return 0;
+        }
+        int from = Math.max(fromDay - baseDay + 1, 1);
+        int to = Math.min(toDay - baseDay + 1, days);
+        if (from > to) {
+            return 0;
+        }
+        return prefixSum(sums[slot], to) - prefixSum(sums[slot], from - 1);
+    }
+
+    /**
+     * Number of transactions of a slot over whole days fromDay..toDay (inclusive)
+     */
+    int count(int slot, int fromDay, int toDay) {
+        if (slot < 0 || slot >= counts.length || counts[slot] == null) {
+            return 0;
+        }
+        int from = Math.max(fromDay - baseDay + 1, 1);
+        int to = Math.min(toDay - baseDay + 1, days);
+        if (from > to) {
+            return 0;
+        }
+        return prefixCount(counts[slot], to) - prefixCount(counts[slot], from - 1);
+    }
+
+    private static long prefixSum(long[] tree, int position) {
+        long total = 0;
+        for (int i = position; i > 0; i -= i & -i) {
+            total += tree[i];
+        }
+        return total;
+    }
+
+    private static int prefixCount(int[] tree, int position) {
+        int total = 0;
+        for (int i = position; i > 0; i -= i & -i) {
+            total += tree[i];
+        }
+        return total;
+    }
+
+    private void ensureSlot(int slot) {
+        if (slot >= sums.length) {
+            sums = Arrays.copyOf(sums, slot + 1);
+            counts = Arrays.copyOf(counts, slot + 1);
+        }
+        if (sums[slot] == null) {
+            // Slot mới sau build(): cây toàn 0 vẫn là Fenwick hợp lệ
+            sums[slot] = new long[days + 1];
+            counts[slot] = new int[days + 1];
+        }
+    }
+}
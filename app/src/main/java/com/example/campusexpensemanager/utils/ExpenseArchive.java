@@ -0,0 +1,436 @@
+package com.example.campusexpensemanager.utils;
+
+import com.example.campusexpensemanager.models.Expense;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Định dạng nhị phân dạng cột (.cemx) để xuất và sao lưu / khôi phục giao dịch.
+ * Rows are written in blocks of up to BLOCK_ROWS; inside a block each column is stored on its own:
+ * types as a bitset, categories and currencies as indices into dictionaries that grow block by
+ * block, amounts as zigzag varints, dates as zigzag varint deltas from the previous row, and
+ * descriptions as length-prefixed UTF-8. Only one block is held in memory on either side.
+ * Grouping values by column is what makes the deflate pass after it effective.
+ * Layout: "CEMX", version byte, then deflated: blocks (varint row count first), a 0 row count,
+ * CRC32 of the blocks and end marker (4 bytes, big-endian).
+ */
+public final class ExpenseArchive {
+
+    public static final String FILE_EXTENSION = ".cemx";
+    public static final String MIME_TYPE = "application/octet-stream";
+
+    static final int VERSION = 1;
+    static final int BLOCK_ROWS = 4096;
+
+    private static final byte[] MAGIC = {'C', 'E', 'M', 'X'};
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Giới hạn khi đọc để file hỏng không làm cấp phát quá lớn
+    private static final int MAX_STRING_BYTES = 1 << 20;
+
+    private ExpenseArchive() {
+    }
+
+    /**
+     * Streaming writer; call add() per row and close() to finish the file
+     */
+    public static final class Writer implements Closeable {
+        private final OutputStream out;
+        private final CheckedOutputStream checked;
+
+        private final Map<String, Integer> categoryIndex = new HashMap<>();
+        private final Map<String, Integer> currencyIndex = new HashMap<>();
+
+        // Cột của block hiện tại
+        private final ByteArrayOutputStream newCategoryEntries = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream newCurrencyEntries = new ByteArrayOutputStream();
+        private final byte[] types = new byte[BLOCK_ROWS / 8];
+        private final ByteArrayOutputStream categories = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream currencies = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream amounts = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream dates = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream descriptions = new ByteArrayOutputStream();
+        private int newCategories;
+        private int newCurrencies;
+        private int blockRows;
+
+        private long previousDate;
+        private int rowCount;
+        private boolean closed;
+
+        public Writer(OutputStream stream) throws IOException {
+            OutputStream buffered = new BufferedOutputStream(stream, BUFFER_SIZE);
+            buffered.write(MAGIC);
+            buffered.write(VERSION);
+            out = new DeflaterOutputStream(buffered);
+            checked = new CheckedOutputStream(out, new CRC32());
+        }
+
+        /**
+         * Append one transaction
+         * @param type Expense.TYPE_EXPENSE or Expense.TYPE_INCOME
+         * @param category Category name, not null (dictionary key)
+         * @param amount Minor units of the currency
+         * @param currencyCode Currency code, not null (dictionary key, stored once with minorScale)
+         * @param description May be null
+         */
+        public void add(int type, String category, long amount, String currencyCode, int minorScale,
+                        long date, String description) throws IOException {
+            Integer categoryId = categoryIndex.get(category);
+            if (categoryId == null) {
+                categoryId = categoryIndex.size();
+                categoryIndex.put(category, categoryId);
+                // Mục từ điển mới: ghi cùng block đầu tiên dùng đến nó
+                writeString(newCategoryEntries, category);
+                newCategories++;
+            }
+            Integer currencyId = currencyIndex.get(currencyCode);
+            if (currencyId == null) {
+                currencyId = currencyIndex.size();
+                currencyIndex.put(currencyCode, currencyId);
+                writeString(newCurrencyEntries, currencyCode);
+                writeVarLong(newCurrencyEntries, minorScale);
+                newCurrencies++;
+            }
+
+            if (type == Expense.TYPE_INCOME) {
+                types[blockRows >> 3] |= (byte) (1 << (blockRows & 7));
+            }
+            writeVarLong(categories, categoryId);
+            writeVarLong(currencies, currencyId);
+            writeVarLong(amounts, zigzag(amount));
+            writeVarLong(dates, zigzag(date - previousDate));
+            previousDate = date;
+            if (description == null) {
+                descriptions.write(0);
+            } else {
+                byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(descriptions, bytes.length + 1L);
+                descriptions.write(bytes, 0, bytes.length);
+            }
+
+            rowCount++;
+            if (++blockRows == BLOCK_ROWS) {
+                flushBlock();
+            }
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        private void flushBlock() throws IOException {
+            if (blockRows == 0) {
+                return;
+            }
+            writeVarLong(checked, blockRows);
+            writeVarLong(checked, newCategories);
+            writeVarLong(checked, newCurrencies);
+            newCategoryEntries.writeTo(checked);
+            newCurrencyEntries.writeTo(checked);
+            checked.write(types, 0, (blockRows + 7) >> 3);
+            categories.writeTo(checked);
+            currencies.writeTo(checked);
+            amounts.writeTo(checked);
+            dates.writeTo(checked);
+            descriptions.writeTo(checked);
+
+            newCategoryEntries.reset();
+            newCurrencyEntries.reset();
+            Arrays.fill(types, (byte) 0);
+            categories.reset();
+            currencies.reset();
+            amounts.reset();
+            dates.reset();
+            descriptions.reset();
+            newCategories = 0;
+            newCurrencies = 0;
+            blockRows = 0;
+        }
+
+        /**
+         * Write the last block, end marker and checksum, then close the stream
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                flushBlock();
+                writeVarLong(checked, 0);
+                int crc = (int) checked.getChecksum().getValue();
+                out.write(crc >>> 24);
+                out.write(crc >>> 16);
+                out.write(crc >>> 8);
+                out.write(crc);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Streaming reader, used like a cursor: while (reader.next()) { reader.getAmount() ... }
+     * The checksum is verified when next() reaches the end, so a restore should only be
+     * committed once next() has returned false.
+     */
+    public static final class Reader implements Closeable {
+        private final InputStream in;
+        private final CheckedInputStream checked;
+
+        // Từ điển tích luỹ qua các block
+        private final List<String> categoryNames = new ArrayList<>();
+        private final List<String> currencyCodes = new ArrayList<>();
+        private final List<Integer> currencyScales = new ArrayList<>();
+
+        // Block hiện tại đã giải mã
+        private final byte[] types = new byte[BLOCK_ROWS / 8];
+        private final int[] categories = new int[BLOCK_ROWS];
+        private final int[] currencies = new int[BLOCK_ROWS];
+        private final long[] amounts = new long[BLOCK_ROWS];
+        private final long[] dates = new long[BLOCK_ROWS];
+        private final String[] descriptions = new String[BLOCK_ROWS];
+        private int blockRows;
+        private int position;
+
+        private long previousDate;
+        private boolean finished;
+
+        /**
+         * @throws IOException If the stream is not a .cemx file of a supported version
+         */
+        public Reader(InputStream stream) throws IOException {
+            InputStream buffered = new BufferedInputStream(stream, BUFFER_SIZE);
+            byte[] magic = new byte[MAGIC.length];
+            readFully(buffered, magic, magic.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not an expense archive");
+            }
+            int version = buffered.read();
+            if (version != VERSION) {
+                throw new IOException("Unsupported archive version: " + version);
+            }
+            in = new InflaterInputStream(buffered);
+            checked = new CheckedInputStream(in, new CRC32());
+        }
+
+        /**
+         * Move to the next row
+         * @return false at the end of the archive (checksum verified)
+         * @throws IOException If the file is truncated or corrupt
+         */
+        public boolean next() throws IOException {
+            if (position + 1 < blockRows) {
+                position++;
+                return true;
+            }
+            if (finished || !readBlock()) {
+                return false;
+            }
+            position = 0;
+            return true;
+        }
+
+        public int getType() {
+            return (types[position >> 3] & (1 << (position & 7))) != 0
+                    ? Expense.TYPE_INCOME
+                    : Expense.TYPE_EXPENSE;
+        }
+
+        public String getCategory() {
+            return categoryNames.get(categories[position]);
+        }
+
+        public long getAmount() {
+            return amounts[position];
+        }
+
+        public String getCurrencyCode() {
+            return currencyCodes.get(currencies[position]);
+        }
+
+        /**
+         * Minor units per major unit the amount was written with
+         */
+        public int getMinorScale() {
+            return currencyScales.get(currencies[position]);
+        }
+
+        public long getDate() {
+            return dates[position];
+        }
+
+        /**
+         * @return Description, or null if none was stored
+         */
+        public String getDescription() {
+            return descriptions[position];
+        }
+
+        private boolean readBlock() throws IOException {
+            blockRows = 0;
+            int rows = readCount(BLOCK_ROWS);
+            if (rows == 0) {
+                finished = true;
+                verifyChecksum();
+                return false;
+            }
+
+            int newCategories = readCount(Integer.MAX_VALUE);
+            int newCurrencies = readCount(Integer.MAX_VALUE);
+            for (int i = 0; i < newCategories; i++) {
+                categoryNames.add(readString());
+            }
+            for (int i = 0; i < newCurrencies; i++) {
+                currencyCodes.add(readString());
+                currencyScales.add(readCount(Integer.MAX_VALUE));
+            }
+
+            Arrays.fill(types, (byte) 0);
+            readFully(checked, types, (rows + 7) >> 3);
+            for (int i = 0; i < rows; i++) {
+                categories[i] = readIndex(categoryNames.size());
+            }
+            for (int i = 0; i < rows; i++) {
+                currencies[i] = readIndex(currencyCodes.size());
+            }
+            for (int i = 0; i < rows; i++) {
+                amounts[i] = unzigzag(readVarLong(checked));
+            }
+            for (int i = 0; i < rows; i++) {
+                previousDate += unzigzag(readVarLong(checked));
+                dates[i] = previousDate;
+            }
+            for (int i = 0; i < rows; i++) {
+                long length = readVarLong(checked);
+                descriptions[i] = length == 0 ? null : readString((int) checkRange(length - 1, MAX_STRING_BYTES));
+            }
+            blockRows = rows;
+            return true;
+        }
+
+        private void verifyChecksum() throws IOException {
+            int expected = (int) checked.getChecksum().getValue();
+            int stored = 0;
+            for (int i = 0; i < 4; i++) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new EOFException("Archive truncated");
+                }
+                stored = (stored << 8) | b;
+            }
+            if (stored != expected) {
+                throw new IOException("Archive checksum mismatch");
+            }
+        }
+
+        private int readCount(int max) throws IOException {
+            return (int) checkRange(readVarLong(checked), max);
+        }
+
+        private int readIndex(int dictionarySize) throws IOException {
+            return (int) checkRange(readVarLong(checked), dictionarySize - 1);
+        }
+
+        private String readString() throws IOException {
+            return readString(readCount(MAX_STRING_BYTES));
+        }
+
+        private String readString(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            readFully(checked, bytes, length);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Whether the first bytes of a file are those of an archive
+     */
+    static boolean hasMagic(byte[] header, int length) {
+        return length >= MAGIC.length && Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC);
+    }
+
+    // =============== ENCODING ===============
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Unsigned LEB128: 7 bits per byte, high bit set on all but the last byte
+     */
+    static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Archive truncated");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static void writeString(OutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static long checkRange(long value, long max) throws IOException {
+        if (value < 0 || value > max) {
+            throw new IOException("Corrupt archive");
+        }
+        return value;
+    }
+
+    private static void readFully(InputStream in, byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(buffer, offset, length - offset);
+            if (read < 0) {
+                throw new EOFException("Archive truncated");
+            }
+            offset += read;
+        }
+    }
+}
@@ -0,0 +1,472 @@
+package com.example.campusexpensemanager.utils;
+
+import com.example.campusexpensemanager.models.Expense;
+import com.example.campusexpensemanager.models.TransactionSummary;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * Bảng expenses của một user dưới dạng cột nguyên thuỷ, sắp theo date, dùng cho báo cáo.
+ * Loaded once by DatabaseHelper.getExpenseColumns from a narrow projection and patched in place
+ * by every expense write. Range sums, counts and category breakdowns binary-search the range,
+ * add the rows of its first and last day one by one, and take the whole days in between from a
+ * DayTotalsIndex, so any date window costs O(log n + log days), with no Expense objects or queries.
+ * Amounts stay in minor units of their currency and are converted to VND row by row with the
+ * same rounding as the SQL aggregates (Money.toVnd), so totals match getTransactionSummary.
+ * All methods are synchronized: reads come from ExpenseRepository's read threads, patches
+ * from whichever thread wrote.
+ */
+public final class ExpenseColumns {
+
+    private int size;
+    private int[] ids;
+    private long[] dates;
+    private long[] amounts;
+    private int[] categoryIds;
+    private short[] currencyIds;
+    private byte[] types;
+
+    // Tỷ giá theo currency ID (DatabaseHelper nạp lại khi currencies đổi version)
+    private int ratesVersion = -1;
+    private long[] rateById = new long[0];
+    private int[] scaleById = new int[0];
+
+    // Fenwick theo ngày, dựng khi cần và cập nhật cùng mỗi patch; null = cần dựng lại
+    private DayTotalsIndex dayIndex;
+
+    // Bộ đệm theo category ID cho summarize, dùng lại giữa các lần gọi
+    private long[] scratchTotals = new long[0];
+    private int[] scratchCounts = new int[0];
+
+    ExpenseColumns(int capacity) {
+        capacity = Math.max(capacity, 16);
+        ids = new int[capacity];
+        dates = new long[capacity];
+        amounts = new long[capacity];
+        categoryIds = new int[capacity];
+        currencyIds = new short[capacity];
+        types = new byte[capacity];
+    }
+
+    // =============== LOAD & PATCH (DatabaseHelper) ===============
+
+    /**
+     * Add a row while loading; rows must arrive ordered by date, then id
+     */
+    synchronized void append(int id, long date, long amount, int categoryId, int currencyId, int type) {
+        ensureCapacity(size + 1);
+        set(size++, id, date, amount, categoryId, currencyId, type);
+    }
+
+    /**
+     * Add a new row at its date position (after rows with the same date)
+     */
+    synchronized void insert(int id, long date, long amount, int categoryId, int currencyId, int type) {
+        ensureCapacity(size + 1);
+        int index = upperBound(date);
+        int moved = size - index;
+        System.arraycopy(ids, index, ids, index + 1, moved);
+        System.arraycopy(dates, index, dates, index + 1, moved);
+        System.arraycopy(amounts, index, amounts, index + 1, moved);
+        System.arraycopy(categoryIds, index, categoryIds, index + 1, moved);
+        System.arraycopy(currencyIds, index, currencyIds, index + 1, moved);
+        System.arraycopy(types, index, types, index + 1, moved);
+        set(index, id, date, amount, categoryId, currencyId, type);
+        size++;
+        indexRow(index, 1);
+    }
+
+    /**
+     * Replace a row; a row not present yet is inserted
+     */
+    synchronized void update(int id, long date, long amount, int categoryId, int currencyId, int type) {
+        int index = indexOf(id);
+        if (index >= 0 && dates[index] == date) {
+            // Ngày không đổi -> vị trí không đổi, ghi đè tại chỗ
+            indexRow(index, -1);
+            set(index, id, date, amount, categoryId, currencyId, type);
+            indexRow(index, 1);
+            return;
+        }
+        if (index >= 0) {
+            removeAt(index);
+        }
+        insert(id, date, amount, categoryId, currencyId, type);
+    }
+
+    /**
+     * @return false if the row was not present
+     */
+    synchronized boolean remove(int id) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    synchronized int getRatesVersion() {
+        return ratesVersion;
+    }
+
+    /**
+     * @param rateById VND per major unit times Money.RATE_SCALE, indexed by currency ID
+     * @param scaleById Minor units per major unit, indexed by currency ID (0 = unknown currency)
+     */
+    synchronized void setRates(int version, long[] rateById, int[] scaleById) {
+        this.ratesVersion = version;
+        this.rateById = rateById;
+        this.scaleById = scaleById;
+        this.dayIndex = null; // Tổng VND trong index tính theo tỷ giá cũ
+    }
+
+    // =============== QUERIES ===============
+
+    /**
+     * Number of transactions held (all dates, both types)
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Count transactions in a date range
+     * @param startDate Range start (inclusive, Unix ms)
+     * @param endDate Range end (inclusive, Unix ms)
+     * @param type Expense.TYPE_EXPENSE, Expense.TYPE_INCOME or DatabaseHelper.FILTER_ANY
+     */
+    public synchronized int count(long startDate, long endDate, int type) {
+        int from = lowerBound(startDate);
+        int to = upperBound(endDate);
+        if (from >= to || type == DatabaseHelper.FILTER_ANY) {
+            return Math.max(0, to - from);
+        }
+        DayTotalsIndex index = dayIndex();
+        int startDay = index.dayOf(dates[from]);
+        int endDay = index.dayOf(dates[to - 1]);
+        int innerFrom = skipDay(from, to, startDay, index);
+        int innerTo = skipDayBackwards(innerFrom, to, endDay, index);
+
+        return scanCount(from, innerFrom, type) + scanCount(innerTo, to, type)
+                + index.count(DayTotalsIndex.typeSlot(type), startDay + 1, endDay - 1);
+    }
+
+    /**
+     * Sum transactions (converted to VND) in a date range
+     * @param type Expense.TYPE_EXPENSE, Expense.TYPE_INCOME or DatabaseHelper.FILTER_ANY
+     * @param categoryId Category ID or DatabaseHelper.FILTER_ANY
+     * @return Total in VND, equal to DatabaseHelper.getTotalInVND for the same filter
+     */
+    public synchronized long sumVnd(long startDate, long endDate, int type, int categoryId) {
+        int from = lowerBound(startDate);
+        int to = upperBound(endDate);
+        if (from >= to) {
+            return 0;
+        }
+        DayTotalsIndex index = dayIndex();
+        int startDay = index.dayOf(dates[from]);
+        int endDay = index.dayOf(dates[to - 1]);
+        int innerFrom = skipDay(from, to, startDay, index);
+        int innerTo = skipDayBackwards(innerFrom, to, endDay, index);
+
+        long total = scanSum(from, innerFrom, type, categoryId) + scanSum(innerTo, to, type, categoryId);
+        for (int t = Expense.TYPE_EXPENSE; t <= Expense.TYPE_INCOME; t++) {
+            if (type != DatabaseHelper.FILTER_ANY && type != t) {
+                continue;
+            }
+            int slot = categoryId == DatabaseHelper.FILTER_ANY
+                    ? DayTotalsIndex.typeSlot(t) : DayTotalsIndex.categorySlot(t, categoryId);
+            total += index.sum(slot, startDay + 1, endDay - 1);
+        }
+        return total;
+    }
+
+    /**
+     * Add per-category totals (VND) and counts of one type in a date range to arrays indexed by category ID
+     * Categories with an ID outside the arrays are skipped; size them with maxCategoryId() + 1
+     * @param totals Receives the VND total of each category (added to, not cleared)
+     * @param counts Receives the transaction count of each category, or null
+     */
+    public synchronized void addCategoryTotals(long startDate, long endDate, int type, long[] totals, int[] counts) {
+        int from = lowerBound(startDate);
+        int to = upperBound(endDate);
+        if (from >= to) {
+            return;
+        }
+        DayTotalsIndex index = dayIndex();
+        int startDay = index.dayOf(dates[from]);
+        int endDay = index.dayOf(dates[to - 1]);
+        int innerFrom = skipDay(from, to, startDay, index);
+        int innerTo = skipDayBackwards(innerFrom, to, endDay, index);
+
+        scanCategoryTotals(from, innerFrom, type, totals, counts);
+        scanCategoryTotals(innerTo, to, type, totals, counts);
+        for (int categoryId = 0; categoryId < totals.length; categoryId++) {
+            int slot = DayTotalsIndex.categorySlot(type, categoryId);
+            totals[categoryId] += index.sum(slot, startDay + 1, endDay - 1);
+            if (counts != null) {
+                counts[categoryId] += index.count(slot, startDay + 1, endDay - 1);
+            }
+        }
+    }
+
+    /**
+     * Highest category ID of any row (0 if empty)
+     */
+    public synchronized int maxCategoryId() {
+        int max = 0;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, categoryIds[i]);
+        }
+        return max;
+    }
+
+    /**
+     * Same result as DatabaseHelper.getTransactionSummary for any date range
+     * Only the returned summary is allocated; categories are sorted by total descending
+     */
+    public synchronized TransactionSummary summarize(long startDate, long endDate) {
+        int from = lowerBound(startDate);
+        int to = upperBound(endDate);
+        if (from >= to) {
+            return new TransactionSummary(0, 0, 0, 0, new int[0], new long[0], new int[0]);
+        }
+        DayTotalsIndex index = dayIndex();
+        int startDay = index.dayOf(dates[from]);
+        int endDay = index.dayOf(dates[to - 1]);
+        int innerFrom = skipDay(from, to, startDay, index);
+        int innerTo = skipDayBackwards(innerFrom, to, endDay, index);
+
+        // Ngày đầu/cuối có thể chỉ nằm một phần trong khoảng -> cộng từng dòng; các ngày giữa -> Fenwick
+        // Mọi dòng đều có trong index, nên số slot của index bao hết category ID
+        int slots = (index.slotCount() - 1) / 2;
+        if (scratchTotals.length < slots) {
+            scratchTotals = new long[slots];
+            scratchCounts = new int[slots];
+        }
+        scanCategoryTotals(from, innerFrom, Expense.TYPE_EXPENSE, scratchTotals, scratchCounts);
+        scanCategoryTotals(innerTo, to, Expense.TYPE_EXPENSE, scratchTotals, scratchCounts);
+
+        int incomeSlot = DayTotalsIndex.typeSlot(Expense.TYPE_INCOME);
+        int expenseSlot = DayTotalsIndex.typeSlot(Expense.TYPE_EXPENSE);
+        long totalIncome = scanSum(from, innerFrom, Expense.TYPE_INCOME, DatabaseHelper.FILTER_ANY)
+                + scanSum(innerTo, to, Expense.TYPE_INCOME, DatabaseHelper.FILTER_ANY)
+                + index.sum(incomeSlot, startDay + 1, endDay - 1);
+        int incomeCount = scanCount(from, innerFrom, Expense.TYPE_INCOME) + scanCount(innerTo, to, Expense.TYPE_INCOME)
+                + index.count(incomeSlot, startDay + 1, endDay - 1);
+        long totalExpense = scanSum(from, innerFrom, Expense.TYPE_EXPENSE, DatabaseHelper.FILTER_ANY)
+                + scanSum(innerTo, to, Expense.TYPE_EXPENSE, DatabaseHelper.FILTER_ANY)
+                + index.sum(expenseSlot, startDay + 1, endDay - 1);
+        int expenseCount = scanCount(from, innerFrom, Expense.TYPE_EXPENSE) + scanCount(innerTo, to, Expense.TYPE_EXPENSE)
+                + index.count(expenseSlot, startDay + 1, endDay - 1);
+
+        int categoryCount = 0;
+        for (int categoryId = 0; categoryId < slots; categoryId++) {
+            int slot = DayTotalsIndex.categorySlot(Expense.TYPE_EXPENSE, categoryId);
+            scratchTotals[categoryId] += index.sum(slot, startDay + 1, endDay - 1);
+            scratchCounts[categoryId] += index.count(slot, startDay + 1, endDay - 1);
+            if (scratchCounts[categoryId] > 0) {
+                categoryCount++;
+            }
+        }
+
+        int[] topIds = new int[categoryCount];
+        long[] topTotals = new long[categoryCount];
+        int[] topCounts = new int[categoryCount];
+        int n = 0;
+        for (int categoryId = 0; categoryId < slots; categoryId++) {
+            if (scratchCounts[categoryId] == 0) {
+                continue;
+            }
+            // Chèn theo tổng giảm dần (chỉ vài chục category)
+            long total = scratchTotals[categoryId];
+            int j = n++;
+            while (j > 0 && topTotals[j - 1] < total) {
+                topIds[j] = topIds[j - 1];
+                topTotals[j] = topTotals[j - 1];
+                topCounts[j] = topCounts[j - 1];
+                j--;
+            }
+            topIds[j] = categoryId;
+            topTotals[j] = total;
+            topCounts[j] = scratchCounts[categoryId];
+            scratchTotals[categoryId] = 0;
+            scratchCounts[categoryId] = 0;
+        }
+
+        return new TransactionSummary(totalIncome, totalExpense, incomeCount, expenseCount, topIds, topTotals, topCounts);
+    }
+
+    // =============== DAY INDEX ===============
+
+    // Dựng index theo ngày lần đầu cần (hoặc sau khi tỷ giá đổi / có ngày ngoài phạm vi)
+    private DayTotalsIndex dayIndex() {
+        if (dayIndex != null) {
+            return dayIndex;
+        }
+        long offsetMs = TimeZone.getDefault().getRawOffset();
+        long first = size > 0 ? dates[0] : System.currentTimeMillis();
+        long last = size > 0 ? dates[size - 1] : first;
+        DayTotalsIndex index = new DayTotalsIndex(
+                (int) Math.floorDiv(first + offsetMs, DayTotalsIndex.DAY_MS),
+                (int) Math.floorDiv(last + offsetMs, DayTotalsIndex.DAY_MS), offsetMs);
+        for (int i = 0; i < size; i++) {
+            index.addPoint(index.dayOf(dates[i]), types[i], categoryIds[i], toVnd(i));
+        }
+        index.build();
+        dayIndex = index;
+        return index;
+    }
+
+    // Cập nhật index cho dòng i (sign = 1: thêm, -1: bỏ)
+    private void indexRow(int i, int sign) {
+        if (dayIndex == null) {
+            return;
+        }
+        int day = dayIndex.dayOf(dates[i]);
+        if (!dayIndex.covers(day)) {
+            dayIndex = null; // Dựng lại với phạm vi rộng hơn ở lần query sau
+            return;
+        }
+        dayIndex.update(day, types[i], categoryIds[i], sign * toVnd(i), sign);
+    }
+
+    // Vị trí đầu tiên trong [from, to) không thuộc ngày day
+    private int skipDay(int from, int to, int day, DayTotalsIndex index) {
+        int i = from;
+        while (i < to && index.dayOf(dates[i]) == day) {
+            i++;
+        }
+        return i;
+    }
+
+    // Vị trí sau dòng cuối trong [from, to) không thuộc ngày day
+    private int skipDayBackwards(int from, int to, int day, DayTotalsIndex index) {
+        int i = to;
+        while (i > from && index.dayOf(dates[i - 1]) == day) {
+            i--;
+        }
+        return i;
+    }
+
+    private int scanCount(int from, int to, int type) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (DayTotalsIndex.typeSlot(types[i]) == DayTotalsIndex.typeSlot(type)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long scanSum(int from, int to, int type, int categoryId) {
+        long total = 0;
+        for (int i = from; i < to; i++) {
+            if ((type == DatabaseHelper.FILTER_ANY || DayTotalsIndex.typeSlot(types[i]) == DayTotalsIndex.typeSlot(type))
+                    && (categoryId == DatabaseHelper.FILTER_ANY || categoryIds[i] == categoryId)) {
+                total += toVnd(i);
+            }
+        }
+        return total;
+    }
+
+    private void scanCategoryTotals(int from, int to, int type, long[] totals, int[] counts) {
+        for (int i = from; i < to; i++) {
+            int categoryId = categoryIds[i];
+            if (DayTotalsIndex.typeSlot(types[i]) != DayTotalsIndex.typeSlot(type)
+                    || categoryId < 0 || categoryId >= totals.length) {
+                continue;
+            }
+            totals[categoryId] += toVnd(i);
+            if (counts != null) {
+                counts[categoryId]++;
+            }
+        }
+    }
+
+    // =============== HELPERS ===============
+
+    // Số tiền dòng i quy ra VND; currency không biết -> coi là VND (như IFNULL trong SQL)
+    private long toVnd(int i) {
+        int currencyId = currencyIds[i];
+        if (currencyId < 0 || currencyId >= scaleById.length || scaleById[currencyId] == 0) {
+            return amounts[i];
+        }
+        return Money.toVnd(amounts[i], scaleById[currencyId], rateById[currencyId]);
+    }
+
+    // Vị trí đầu tiên có date >= value
+    private int lowerBound(long value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (dates[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Vị trí đầu tiên có date > value
+    private int upperBound(long value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (dates[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int indexOf(int id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeAt(int index) {
+        indexRow(index, -1);
+        int moved = size - index - 1;
+        System.arraycopy(ids, index + 1, ids, index, moved);
+        System.arraycopy(dates, index + 1, dates, index, moved);
+        System.arraycopy(amounts, index + 1, amounts, index, moved);
+        System.arraycopy(categoryIds, index + 1, categoryIds, index, moved);
+        System.arraycopy(currencyIds, index + 1, currencyIds, index, moved);
+        System.arraycopy(types, index + 1, types, index, moved);
+        size--;
+    }
+
+    private void set(int index, int id, long date, long amount, int categoryId, int currencyId, int type) {
+        ids[index] = id;
+        dates[index] = date;
+        amounts[index] = amount;
+        categoryIds[index] = categoryId;
+        currencyIds[index] = (short) currencyId;
+        types[index] = (byte) type;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int grown = Math.max(capacity, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, grown);
+        dates = Arrays.copyOf(dates, grown);
+        amounts = Arrays.copyOf(amounts, grown);
+        categoryIds = Arrays.copyOf(categoryIds, grown);
+        currencyIds = Arrays.copyOf(currencyIds, grown);
+        types = Arrays.copyOf(types, grown);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.campusexpensemanager.utils;
+
+import com.example.campusexpensemanager.models.Expense;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Khoá nhận diện giao dịch trùng khi import sao kê ngân hàng.
+ * A 64-bit FNV-1a hash of the local calendar day, the signed amount (income positive, expense
+ * negative) with its currency, and the normalized description. Stored in expenses.fingerprint
+ * with an index on (user_id, fingerprint), so "is this statement line already here?" is one
+ * index lookup. The day uses the device time zone at write time.
+ */
+public final class ExpenseFingerprint {
+
+    private static final long DAY_MS = 86_400_000L;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ExpenseFingerprint() {
+    }
+
+    public static long of(Expense expense) {
+        return of(expense.getDate(), expense.getType(), expense.getAmount(), expense.getCurrencyId(),
+                expense.getDescription());
+    }
+
+    /**
+     * @param date Unix ms; only the local day is used
+     * @param amount Minor units, as stored (not negative)
+     * @param description May be null
+     */
+    public static long of(long date, int type, long amount, int currencyId, String description) {
+        long day = Math.floorDiv(date + TimeZone.getDefault().getOffset(date), DAY_MS);
+        long hash = FNV_OFFSET;
+        hash = mix(hash, day);
+        hash = mix(hash, type == Expense.TYPE_INCOME ? amount : -amount);
+        hash = mix(hash, currencyId);
+        String normalized = normalize(description);
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Lowercase, accents removed (đ -> d), runs of anything but letters and digits collapsed to
+     * one space, trimmed: "  Cà phê - HIGHLANDS #12 " -> "ca phe highlands 12"
+     */
+    static String normalize(String description) {
+        if (description == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(description.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (c == 'đ') {
+                c = 'd';
+            }
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (space && out.length() > 0) {
+                    out.append(' ');
+                }
+                out.append(c);
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return out.toString();
+    }
+
+    private static long mix(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash = (hash ^ (value & 0xFF)) * FNV_PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,442 @@
+package com.example.campusexpensemanager.utils;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+
+import com.example.campusexpensemanager.models.Category;
+import com.example.campusexpensemanager.models.Currency;
+import com.example.campusexpensemanager.models.Expense;
+import com.example.campusexpensemanager.models.User;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Singleton nhập giao dịch từ file, chạy trên background thread.
+ * Accepts CSV in the export's column layout (plain or gzip), ExpenseArchive backups and bank
+ * statements (OFX, QIF); the format is detected from the first bytes. Statement lines that are
+ * already in the database are skipped by ExpenseFingerprint. Rows are parsed as a stream and
+ * written BATCH_SIZE at a time
+ * with DatabaseHelper.insertExpenses (one compiled INSERT, one transaction per batch); category,
+ * currency and date lookups come from in-memory caches, never a query per row.
+ */
+public class ExpenseImporter {
+
+    public static final int BATCH_SIZE = 500;
+
+    // Cột bắt buộc của file CSV (Amount(VND) và cột lạ bị bỏ qua)
+    private static final String COLUMN_TYPE = "Type";
+    private static final String COLUMN_CATEGORY = "Category";
+    private static final String COLUMN_AMOUNT = "OriginalAmount";
+    private static final String COLUMN_CURRENCY = "Currency";
+    private static final String COLUMN_DATE = "Date";
+    private static final String COLUMN_DESCRIPTION = "Description";
+
+    // Số byte đầu file dùng để nhận dạng định dạng
+    private static final int SNIFF_LENGTH = 512;
+
+    // Category dùng khi tên trong file không có trong DB
+    private static final String FALLBACK_CATEGORY = "Others";
+
+    private static ExpenseImporter instance;
+
+    private final DatabaseHelper dbHelper;
+    private final CategoryRegistry categoryRegistry;
+    private final CurrencyHelper currencyHelper;
+
+    /**
+     * Tiến độ import, gọi trên background thread sau mỗi batch
+     */
+    public interface ProgressListener {
+        void onProgress(int rowsImported);
+    }
+
+    /**
+     * Nguồn file; có thể được mở nhiều lần (backup được kiểm tra trọn vẹn trước khi ghi)
+     */
+    public interface InputSource {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Kết quả import
+     */
+    public static final class Result {
+        private final int imported;
+        private final int skipped;
+        private final int duplicates;
+
+        Result(int imported, int skipped, int duplicates) {
+            this.imported = imported;
+            this.skipped = skipped;
+            this.duplicates = duplicates;
+        }
+
+        public int getImported() { return imported; }
+
+        /**
+         * Rows that could not be read (bad type, amount, date or unknown currency)
+         */
+        public int getSkipped() { return skipped; }
+
+        /**
+         * Statement lines left out because they were already imported (always 0 for CSV and backups)
+         */
+        public int getDuplicates() { return duplicates; }
+    }
+
+    private ExpenseImporter(Context context) {
+        dbHelper = DatabaseHelper.getInstance(context);
+        categoryRegistry = CategoryRegistry.getInstance(context);
+        currencyHelper = CurrencyHelper.getInstance(context);
+    }
+
+    public static synchronized ExpenseImporter getInstance(Context context) {
+        if (instance == null) {
+            instance = new ExpenseImporter(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Import a CSV, gzip CSV, ExpenseArchive, OFX or QIF file into a user's transactions
+     * Must run on a background thread. A CSV or statement is imported batch by batch: on cancel or
+     * error the batches already written stay, and importing the same statement again only adds
+     * what is missing. A backup is read through once to verify its checksum and only then written,
+     * so a corrupt backup imports nothing.
+     * @param listener Progress callback, or null
+     * @param signal Checked between batches; when cancelled an OperationCanceledException is thrown
+     * @throws IOException If the file cannot be read or is not in a supported format
+     */
+    public Result importFile(int userId, InputSource source, ProgressListener listener,
+                             CancellationSignal signal) throws IOException {
+        byte[] head = new byte[SNIFF_LENGTH];
+        int length = 0;
+        try (InputStream in = source.open()) {
+            int read;
+            while (length < head.length && (read = in.read(head, length, head.length - length)) > 0) {
+                length += read;
+            }
+        }
+
+        if (ExpenseArchive.hasMagic(head, length)) {
+            verifyArchive(source, signal);
+            return importArchive(userId, source, listener, signal);
+        }
+        boolean gzip = length >= 2 && (head[0] & 0xFF) == 0x1F && (head[1] & 0xFF) == 0x8B;
+        if (!gzip) {
+            // Chỉ cần ASCII để nhận dạng; BOM và khoảng trắng đầu file bị bỏ qua
+            String text = new String(head, 0, length, StandardCharsets.ISO_8859_1)
+                    .replace("\u00EF\u00BB\u00BF", "").trim();
+            if (text.startsWith("OFXHEADER") || text.startsWith("<?xml") && text.contains("<OFX")
+                    || text.startsWith("<OFX")) {
+                // OFX 1.x mặc định Windows-1252; XML và header ENCODING:UTF-8 là UTF-8
+                Charset charset = text.startsWith("<") || text.contains("ENCODING:UTF-8")
+                        ? StandardCharsets.UTF_8 : Charset.forName("windows-1252");
+                return importStatement(userId,
+                        new OfxReader(new InputStreamReader(new BufferedInputStream(source.open()), charset)),
+                        listener, signal);
+            }
+            if (text.startsWith("!")) {
+                return importStatement(userId, new QifReader(new InputStreamReader(
+                        new BufferedInputStream(source.open()), StandardCharsets.UTF_8)), listener, signal);
+            }
+        }
+        return importCsv(userId, source, gzip, listener, signal);
+    }
+
+    private Result importCsv(int userId, InputSource source, boolean gzip, ProgressListener listener,
+                             CancellationSignal signal) throws IOException {
+        InputStream stream = new BufferedInputStream(source.open());
+        if (gzip) {
+            try {
+                stream = new GZIPInputStream(stream);
+            } catch (IOException e) {
+                stream.close();
+                throw e;
+            }
+        }
+
+        try (CsvReader reader = new CsvReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            List<String> fields = new ArrayList<>();
+            if (!reader.readRecord(fields)) {
+                return new Result(0, 0, 0);
+            }
+            int typeColumn = findColumn(fields, COLUMN_TYPE, true);
+            int categoryColumn = findColumn(fields, COLUMN_CATEGORY, true);
+            int amountColumn = findColumn(fields, COLUMN_AMOUNT, true);
+            int currencyColumn = findColumn(fields, COLUMN_CURRENCY, true);
+            int dateColumn = findColumn(fields, COLUMN_DATE, true);
+            int descriptionColumn = findColumn(fields, COLUMN_DESCRIPTION, false);
+
+            DateParser dateParser = new DateParser();
+            Batch batch = new Batch(listener, signal);
+            int skipped = 0;
+            long now = System.currentTimeMillis();
+
+            while (reader.readRecord(fields)) {
+                int type = parseType(field(fields, typeColumn));
+                Currency currency = currencyHelper.getCurrencyByCode(field(fields, currencyColumn));
+                long date = dateParser.parse(field(fields, dateColumn));
+                if (type < 0 || currency == null || date == Long.MIN_VALUE) {
+                    skipped++;
+                    continue;
+                }
+                long amount;
+                try {
+                    amount = Money.parse(field(fields, amountColumn), currency.getMinorScale());
+                } catch (NumberFormatException e) {
+                    skipped++;
+                    continue;
+                }
+                String description = descriptionColumn >= 0 ? field(fields, descriptionColumn) : "";
+
+                batch.add(new Expense(0, userId, categoryId(field(fields, categoryColumn)), currency.getId(),
+                        amount, date, description, null, now, type));
+            }
+            batch.flush();
+            return new Result(batch.imported, skipped, 0);
+        }
+    }
+
+    /**
+     * Read a backup to the end without writing, so its checksum is checked before anything is imported
+     */
+    private void verifyArchive(InputSource source, CancellationSignal signal) throws IOException {
+        try (ExpenseArchive.Reader reader = new ExpenseArchive.Reader(source.open())) {
+            int rows = 0;
+            while (reader.next()) {
+                if (++rows % BATCH_SIZE == 0 && signal != null) {
+                    signal.throwIfCanceled();
+                }
+            }
+        }
+    }
+
+    private Result importArchive(int userId, InputSource source, ProgressListener listener,
+                                 CancellationSignal signal) throws IOException {
+        try (ExpenseArchive.Reader reader = new ExpenseArchive.Reader(source.open())) {
+            Batch batch = new Batch(listener, signal);
+            int skipped = 0;
+            long now = System.currentTimeMillis();
+
+            while (reader.next()) {
+                Currency currency = currencyHelper.getCurrencyByCode(reader.getCurrencyCode());
+                if (currency == null) {
+                    skipped++;
+                    continue;
+                }
+                // Backup ghi theo minor scale lúc xuất; quy đổi nếu currency đã đổi scale
+                long amount = reader.getAmount();
+                if (reader.getMinorScale() != currency.getMinorScale()) {
+                    amount = Money.divideRounded(amount * currency.getMinorScale(), reader.getMinorScale());
+                }
+
+                batch.add(new Expense(0, userId, categoryId(reader.getCategory()), currency.getId(),
+                        amount, reader.getDate(), reader.getDescription(), null, now, reader.getType()));
+            }
+            batch.flush();
+            return new Result(batch.imported, skipped, 0);
+        }
+    }
+
+    /**
+     * Import a bank statement; the sign of each amount gives its type (negative = expense)
+     * A line is a duplicate when its ExpenseFingerprint is already stored for the user. The
+     * stored count is read once per distinct fingerprint, before this import writes any row
+     * with it, so the k-th identical line in the file (two coffees on one day) is only skipped
+     * if the database already had k of them: re-importing a statement, or one that overlaps an
+     * earlier one, adds nothing twice and drops nothing real.
+     */
+    private Result importStatement(int userId, StatementReader reader, ProgressListener listener,
+                                   CancellationSignal signal) throws IOException {
+        try (StatementReader statement = reader) {
+            Batch batch = new Batch(listener, signal);
+            Map<Long, int[]> seen = new HashMap<>(); // fingerprint -> {đã có trong DB, đã gặp trong file}
+            Currency defaultCurrency = null;
+            int skipped = 0;
+            int duplicates = 0;
+            long now = System.currentTimeMillis();
+
+            while (statement.next()) {
+                Currency currency = null;
+                if (statement.getCurrencyCode() != null) {
+                    currency = currencyHelper.getCurrencyByCode(statement.getCurrencyCode());
+                }
+                if (currency == null) {
+                    if (defaultCurrency == null) {
+                        defaultCurrency = defaultCurrency(userId);
+                    }
+                    currency = defaultCurrency;
+                }
+                String text = StatementReader.normalizeAmount(statement.getAmount(), currency.getMinorScale());
+                long date = statement.getDate();
+                if (text == null || date == StatementReader.INVALID_DATE) {
+                    skipped++;
+                    continue;
+                }
+                boolean negative = text.startsWith("-");
+                long amount;
+                try {
+                    // Không làm tròn: "50.5" VND là dòng đọc sai, không phải 51 đ
+                    amount = Money.parseExact(negative ? text.substring(1) : text, currency.getMinorScale());
+                } catch (NumberFormatException e) {
+                    skipped++;
+                    continue;
+                }
+                int type = negative ? Expense.TYPE_EXPENSE : Expense.TYPE_INCOME;
+                String description = statement.getDescription();
+
+                long fingerprint = ExpenseFingerprint.of(date, type, amount, currency.getId(), description);
+                int[] counts = seen.get(fingerprint);
+                if (counts == null) {
+                    counts = new int[]{dbHelper.countExpensesWithFingerprint(userId, fingerprint), 0};
+                    seen.put(fingerprint, counts);
+                }
+                if (++counts[1] <= counts[0]) {
+                    duplicates++;
+                    continue;
+                }
+
+                batch.add(new Expense(0, userId, categoryId(statement.getCategory()), currency.getId(),
+                        amount, date, description, null, now, type));
+            }
+            batch.flush();
+            return new Result(batch.imported, skipped, duplicates);
+        }
+    }
+
+    /**
+     * Currency for statements that do not name one: the user's default
+     */
+    private Currency defaultCurrency(int userId) {
+        User user = dbHelper.getUserById(userId);
+        return currencyHelper.getCurrencyById(user != null ? user.getDefaultCurrencyId() : 1);
+    }
+
+    /**
+     * Category ID by name, falling back to FALLBACK_CATEGORY (0 if even that is missing)
+     */
+    private int categoryId(String name) {
+        Category category = categoryRegistry.findByName(name);
+        if (category == null) {
+            category = categoryRegistry.findByName(FALLBACK_CATEGORY);
+        }
+        return category != null ? category.getId() : 0;
+    }
+
+    private static int parseType(String value) {
+        if (value.equalsIgnoreCase("Income")) {
+            return Expense.TYPE_INCOME;
+        }
+        if (value.equalsIgnoreCase("Expense")) {
+            return Expense.TYPE_EXPENSE;
+        }
+        return -1;
+    }
+
+    private static int findColumn(List<String> header, String name, boolean required) throws IOException {
+        for (int i = 0; i < header.size(); i++) {
+            if (header.get(i).trim().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        if (required) {
+            throw new IOException("Not an expense CSV: missing column " + name);
+        }
+        return -1;
+    }
+
+    /**
+     * Field of a record, "" if the record is shorter
+     */
+    private static String field(List<String> fields, int column) {
+        return column < fields.size() ? fields.get(column).trim() : "";
+    }
+
+    /**
+     * Rows waiting to be written; each full batch is one insertExpenses transaction
+     */
+    private final class Batch {
+        private final List<Expense> rows = new ArrayList<>(BATCH_SIZE);
+        private final ProgressListener listener;
+        private final CancellationSignal signal;
+        int imported;
+
+        Batch(ProgressListener listener, CancellationSignal signal) {
+            this.listener = listener;
+            this.signal = signal;
+        }
+
+        void add(Expense expense) {
+            rows.add(expense);
+            if (rows.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (signal != null) {
+                signal.throwIfCanceled();
+            }
+            if (rows.isEmpty()) {
+                return;
+            }
+            dbHelper.insertExpenses(rows);
+            imported += rows.size();
+            rows.clear();
+            if (listener != null) {
+                listener.onProgress(imported);
+            }
+        }
+    }
+
+    /**
+     * Parses the export's "dd MMM yyyy" dates (device locale, then English) to local midnight
+     * A file has few distinct dates, so results are cached by text.
+     */
+    private static final class DateParser {
+        private final SimpleDateFormat localFormat = new SimpleDateFormat("dd MMM yyyy", Locale.getDefault());
+        private final SimpleDateFormat englishFormat = new SimpleDateFormat("dd MMM yyyy", Locale.US);
+        private final Map<String, Long> cache = new HashMap<>();
+
+        DateParser() {
+            localFormat.setLenient(false);
+            englishFormat.setLenient(false);
+        }
+
+        /**
+         * @return Unix ms, or Long.MIN_VALUE if the text is not a date
+         */
+        long parse(String text) {
+            Long cached = cache.get(text);
+            if (cached != null) {
+                return cached;
+            }
+            long millis;
+            try {
+                millis = localFormat.parse(text).getTime();
+            } catch (ParseException e) {
+                try {
+                    millis = englishFormat.parse(text).getTime();
+                } catch (ParseException e2) {
+                    millis = Long.MIN_VALUE;
+                }
+            }
+            cache.put(text, millis);
+            return millis;
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package com.example.campusexpensemanager.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.campusexpensemanager.models.Expense;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Paged data source for the transaction lists (newest first)
+ * Pages are read with DatabaseHelper.getExpensePage using (date, id) keyset cursors,
+ * so page N never re-reads the rows before it. Only the most recently used pages are kept
+ * in memory; any other position is null (placeholder) and is loaded in the background.
+ * Every change is published as an immutable snapshot list, so the adapter can diff it against
+ * the previous one off the main thread (AsyncListDiffer) and rebind only the rows that changed.
+ * All public methods must be called from the main thread.
+ */
+public class ExpensePager {
+
+    public static final int DEFAULT_PAGE_SIZE = 30;
+    private static final int DEFAULT_MAX_RESIDENT_PAGES = 5;
+
+    /**
+     * Nhận kết quả trên main thread (thường là Adapter)
+     */
+    public interface Callback {
+        /**
+         * Danh sách mới (page tải xong, refresh, dòng bị sửa...)
+         * @param snapshot Immutable list of size() rows; null entries are placeholders
+         */
+        void onSnapshot(List<Expense> snapshot);
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final int userId;
+    private final int pageSize;
+    private final int prefetchDistance;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Callback callback;
+
+    // Filter hiện tại
+    private int type = DatabaseHelper.FILTER_ANY;
+    private int categoryId = DatabaseHelper.FILTER_ANY;
+    private String searchQuery;
+
+    // Tăng mỗi lần refresh: kết quả của lần tải cũ sẽ bị bỏ qua
+    private int generation;
+    private int totalCount;
+
+    // Page index -> rows, theo thứ tự truy cập (LRU)
+    private final LinkedHashMap<Integer, List<Expense>> pages;
+    private final Set<Integer> loadingPages = new HashSet<>();
+    private boolean reloading;
+    private int lastAccessedPosition;
+
+    // Keyset của dòng cuối mỗi page đã từng tải: anchor[k] = (date, id) cuối page k
+    private long[] anchorDates = new long[16];
+    private int[] anchorIds = new int[16];
+    private int anchorCount;
+
+    public ExpensePager(DatabaseHelper dbHelper, int userId) {
+        this(dbHelper, userId, DEFAULT_PAGE_SIZE, DEFAULT_MAX_RESIDENT_PAGES);
+    }
+
+    /**
+     * @param pageSize Rows per query
+     * @param maxResidentPages Pages kept in memory; must cover more than one screen of rows
+     */
+    public ExpensePager(DatabaseHelper dbHelper, int userId, int pageSize, int maxResidentPages) {
+        this.dbHelper = dbHelper;
+        this.userId = userId;
+        this.pageSize = pageSize;
+        this.prefetchDistance = Math.max(1, pageSize / 3);
+        this.pages = new LinkedHashMap<Integer, List<Expense>>(maxResidentPages + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Expense>> eldest) {
+                return size() > maxResidentPages;
+            }
+        };
+    }
+
+    public void setCallback(Callback callback) {
+        this.callback = callback;
+    }
+
+    // =============== FILTERS ===============
+
+    /**
+     * @param type Expense.TYPE_* or DatabaseHelper.FILTER_ANY
+     */
+    public void setType(int type) {
+        if (this.type != type) {
+            this.type = type;
+            reload(false);
+        }
+    }
+
+    /**
+     * @param categoryId Category ID or DatabaseHelper.FILTER_ANY
+     */
+    public void setCategory(int categoryId) {
+        if (this.categoryId != categoryId) {
+            this.categoryId = categoryId;
+            reload(false);
+        }
+    }
+
+    /**
+     * @param searchQuery Full-text search text, null or empty to show all
+     */
+    public void setSearchQuery(String searchQuery) {
+        String query = (searchQuery == null || searchQuery.trim().isEmpty()) ? null : searchQuery.trim();
+        if (query == null ? this.searchQuery != null : !query.equals(this.searchQuery)) {
+            this.searchQuery = query;
+            reload(false);
+        }
+    }
+
+    // =============== DATA ACCESS ===============
+
+    /**
+     * Number of rows matching the current filter (as of the last refresh)
+     */
+    public int size() {
+        return totalCount;
+    }
+
+    /**
+     * Schedule loads for the page around a bound position (call from onBindViewHolder)
+     * Rows themselves are read from the last published snapshot.
+     */
+    public void loadAround(int position) {
+        lastAccessedPosition = position;
+        if (reloading) {
+            return; // Anchor đang được tính lại, sẽ gọi lại khi reload xong
+        }
+        int page = position / pageSize;
+        int offset = position % pageSize;
+
+        requestPage(page);
+        // Prefetch khi gần cuối (hoặc đầu) page đang xem
+        if (offset >= pageSize - prefetchDistance) {
+            requestPage(page + 1);
+        } else if (offset < prefetchDistance && page > 0) {
+            requestPage(page - 1);
+        }
+    }
+
+    /**
+     * Re-count and re-read the pages currently in memory (after add/delete)
+     * The old rows stay visible until the new ones arrive, so the list does not flash placeholders.
+     */
+    public void refresh() {
+        reload(true);
+    }
+
+    /**
+     * @param keepPosition true to reload the resident pages, false to start again from the top
+     *                     (filter changed, old positions mean nothing)
+     */
+    private void reload(boolean keepPosition) {
+        final int gen = ++generation;
+        loadingPages.clear();
+        reloading = true;
+
+        final Set<Integer> wanted = new HashSet<>();
+        if (keepPosition) {
+            wanted.addAll(pages.keySet());
+        }
+        if (wanted.isEmpty()) {
+            wanted.add(0);
+            lastAccessedPosition = 0;
+        }
+        int maxPage = 0;
+        for (int page : wanted) {
+            maxPage = Math.max(maxPage, page);
+        }
+
+        final int lastPage = maxPage;
+        final int qType = type;
+        final int qCategory = categoryId;
+        final String qSearch = searchQuery;
+        executor.execute(() -> {
+            int count = dbHelper.countExpenses(userId, qType, qCategory, qSearch);
+
+            // Đi lại từ đầu bằng keyset để có anchor mới; chỉ giữ rows của các page cần hiển thị
+            Map<Integer, List<Expense>> loaded = new HashMap<>();
+            long[] dates = new long[lastPage + 1];
+            int[] ids = new int[lastPage + 1];
+            int found = 0;
+            long beforeDate = Long.MAX_VALUE;
+            int beforeId = Integer.MAX_VALUE;
+            for (int p = 0; p <= lastPage; p++) {
+                List<Expense> rows = dbHelper.getExpensePage(userId, qType, qCategory, qSearch,
+                        beforeDate, beforeId, pageSize);
+                if (rows.isEmpty()) {
+                    break;
+                }
+                if (wanted.contains(p)) {
+                    loaded.put(p, rows);
+                }
+                Expense last = rows.get(rows.size() - 1);
+                beforeDate = last.getDate();
+                beforeId = last.getId();
+                dates[found] = beforeDate;
+                ids[found] = beforeId;
+                found++;
+            }
+
+            final int anchorsFound = found;
+            mainHandler.post(() -> onReloaded(gen, count, loaded, dates, ids, anchorsFound));
+        });
+    }
+
+    private void onReloaded(int gen, int count, Map<Integer, List<Expense>> loaded,
+                            long[] dates, int[] ids, int anchorsFound) {
+        if (gen != generation) return;
+        reloading = false;
+        totalCount = count;
+
+        pages.clear();
+        pages.putAll(loaded);
+        anchorDates = Arrays.copyOf(dates, Math.max(16, dates.length));
+        anchorIds = Arrays.copyOf(ids, Math.max(16, ids.length));
+        anchorCount = anchorsFound;
+
+        publish();
+        // Placeholder không đổi sẽ không được bind lại -> tự tải tiếp quanh vị trí đang xem
+        if (count > 0) {
+            loadAround(Math.min(lastAccessedPosition, count - 1));
+        }
+    }
+
+    /**
+     * Apply a change reported by InvalidationTracker
+     * Inserts/deletes shift positions, so they refresh; plain updates of loaded rows are
+     * re-read by ID and replaced in place as long as their sort key and filter match are unchanged.
+     */
+    public void applyChange(InvalidationTracker.Change change) {
+        // Search filter không kiểm tra lại được ở client -> tải lại
+        if (change.isStructural() || searchQuery != null) {
+            refresh();
+            return;
+        }
+
+        // Vị trí các dòng bị sửa trong những page đang giữ
+        List<Integer> positions = new ArrayList<>();
+        List<Expense> oldRows = new ArrayList<>();
+        for (Map.Entry<Integer, List<Expense>> entry : pages.entrySet()) {
+            List<Expense> rows = entry.getValue();
+            for (int i = 0; i < rows.size(); i++) {
+                if (change.containsRow(rows.get(i).getId())) {
+                    positions.add(entry.getKey() * pageSize + i);
+                    oldRows.add(rows.get(i));
+                }
+            }
+        }
+        // Dòng sửa nằm ngoài cửa sổ đang giữ: có thể làm lệch anchor -> tải lại
+        if (positions.size() != change.getRowIds().length) {
+            refresh();
+            return;
+        }
+
+        final int gen = generation;
+        executor.execute(() -> {
+            List<Expense> newRows = new ArrayList<>(oldRows.size());
+            for (Expense old : oldRows) {
+                newRows.add(dbHelper.getExpenseById(old.getId()));
+            }
+            mainHandler.post(() -> onRowsReloaded(gen, positions, oldRows, newRows));
+        });
+    }
+
+    private void onRowsReloaded(int gen, List<Integer> positions, List<Expense> oldRows, List<Expense> newRows) {
+        if (gen != generation) return;
+
+        for (int i = 0; i < newRows.size(); i++) {
+            Expense old = oldRows.get(i);
+            Expense row = newRows.get(i);
+            // Đổi ngày (thứ tự) hoặc không còn khớp filter -> vị trí thay đổi
+            if (row == null || row.getDate() != old.getDate()
+                    || (type != DatabaseHelper.FILTER_ANY && row.getType() != type)
+                    || (categoryId != DatabaseHelper.FILTER_ANY && row.getCategoryId() != categoryId)) {
+                refresh();
+                return;
+            }
+        }
+
+        // Page đã publish là bất biến -> thay bằng bản sao
+        for (int i = 0; i < newRows.size(); i++) {
+            int position = positions.get(i);
+            List<Expense> rows = pages.get(position / pageSize);
+            if (rows != null) {
+                List<Expense> copy = new ArrayList<>(rows);
+                copy.set(position % pageSize, newRows.get(i));
+                pages.put(position / pageSize, copy);
+            }
+        }
+        publish();
+    }
+
+    /**
+     * Stop the background thread; the pager cannot be used afterwards
+     */
+    public void close() {
+        generation++;
+        executor.shutdownNow();
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+
+    // =============== LOADING ===============
+
+    private void requestPage(int page) {
+        if (executor.isShutdown() || pages.containsKey(page) || loadingPages.contains(page)) {
+            return;
+        }
+        // Page 0 luôn được thử (totalCount có thể chưa có); các page khác phải nằm trong totalCount
+        if (page > 0 && page * pageSize >= totalCount) {
+            return;
+        }
+        loadingPages.add(page);
+
+        // Bắt đầu từ page xa nhất có anchor đã biết; nếu người dùng kéo quá nhanh
+        // thì đi tuần tự qua các page ở giữa (chỉ giữ lại anchor, không giữ rows)
+        final int gen = generation;
+        final int fromPage = Math.min(page, anchorCount);
+        final long fromDate = fromPage == 0 ? Long.MAX_VALUE : anchorDates[fromPage - 1];
+        final int fromId = fromPage == 0 ? Integer.MAX_VALUE : anchorIds[fromPage - 1];
+        final int qType = type;
+        final int qCategory = categoryId;
+        final String qSearch = searchQuery;
+
+        executor.execute(() -> {
+            int steps = page - fromPage + 1;
+            long[] dates = new long[steps];
+            int[] ids = new int[steps];
+            int found = 0;
+
+            long beforeDate = fromDate;
+            int beforeId = fromId;
+            List<Expense> rows = null;
+            for (int p = fromPage; p <= page; p++) {
+                rows = dbHelper.getExpensePage(userId, qType, qCategory, qSearch,
+                        beforeDate, beforeId, pageSize);
+                if (rows.isEmpty()) {
+                    break;
+                }
+                Expense last = rows.get(rows.size() - 1);
+                beforeDate = last.getDate();
+                beforeId = last.getId();
+                dates[found] = beforeDate;
+                ids[found] = beforeId;
+                found++;
+            }
+
+            final List<Expense> result = (found == steps) ? rows : null;
+            final int anchorsFound = found;
+            mainHandler.post(() -> onPageLoaded(gen, page, fromPage, dates, ids, anchorsFound, result));
+        });
+    }
+
+    private void onPageLoaded(int gen, int page, int fromPage, long[] dates, int[] ids,
+                              int anchorsFound, List<Expense> rows) {
+        if (gen != generation) return;
+        loadingPages.remove(page);
+
+        // Ghi nhận các anchor mới (chỉ nối tiếp, anchor cũ vẫn đúng cho tới lần refresh sau)
+        for (int i = 0; i < anchorsFound; i++) {
+            int p = fromPage + i;
+            if (p == anchorCount) {
+                if (anchorCount == anchorDates.length) {
+                    anchorDates = Arrays.copyOf(anchorDates, anchorCount * 2);
+                    anchorIds = Arrays.copyOf(anchorIds, anchorCount * 2);
+                }
+                anchorDates[anchorCount] = dates[i];
+                anchorIds[anchorCount] = ids[i];
+                anchorCount++;
+            }
+        }
+
+        if (rows == null) {
+            return; // Hết dữ liệu trước khi tới page này
+        }
+        pages.put(page, rows);
+        publish();
+    }
+
+    private void publish() {
+        if (callback != null) {
+            callback.onSnapshot(new Snapshot(totalCount, pageSize, new HashMap<>(pages)));
+        }
+    }
+
+    /**
+     * Immutable view of the pager at one moment: the resident pages plus placeholders.
+     * Safe to read from the differ's background thread.
+     */
+    private static final class Snapshot extends AbstractList<Expense> {
+        private final int size;
+        private final int pageSize;
+        private final Map<Integer, List<Expense>> pages;
+
+        Snapshot(int size, int pageSize, Map<Integer, List<Expense>> pages) {
+            this.size = size;
+            this.pageSize = pageSize;
+            this.pages = pages;
+        }
+
+        @Override
+        public Expense get(int position) {
+            List<Expense> rows = pages.get(position / pageSize);
+            int offset = position % pageSize;
+            return (rows != null && offset < rows.size()) ? rows.get(offset) : null;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.campusexpensemanager.utils;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.campusexpensemanager.models.Expense;
+import com.example.campusexpensemanager.models.TransactionSummary;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Singleton data layer chạy DatabaseHelper ngoài main thread.
+ * Reads run on a small thread pool, writes on a single thread (SQLite allows one writer),
+ * and every result is delivered back on the main thread.
+ */
+public class ExpenseRepository {
+
+    private static final String TAG = "ExpenseRepository";
+    private static final int READ_THREADS = 2;
+
+    private static ExpenseRepository instance;
+
+    private final DatabaseHelper dbHelper;
+    private final ExecutorService readExecutor;
+    private final ExecutorService writeExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Kết quả trả về trên main thread
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+
+        default void onError(Exception e) {
+            Log.e(TAG, "Database task failed", e);
+        }
+    }
+
+    /**
+     * Công việc chạy trên background thread với DatabaseHelper
+     */
+    public interface Task<T> {
+        T run(DatabaseHelper db) throws Exception;
+    }
+
+    private ExpenseRepository(Context context) {
+        dbHelper = DatabaseHelper.getInstance(context);
+        readExecutor = Executors.newFixedThreadPool(READ_THREADS, namedThreads("db-read"));
+        writeExecutor = Executors.newSingleThreadExecutor(namedThreads("db-write"));
+    }
+
+    public static synchronized ExpenseRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new ExpenseRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // =============== GENERIC ===============
+
+    /**
+     * Run a read-only task in the background
+     */
+    public <T> void read(Task<T> task, Callback<T> callback) {
+        submit(readExecutor, task, callback);
+    }
+
+    /**
+     * Run a task that writes to the database; writes are executed one at a time, in order
+     */
+    public <T> void write(Task<T> task, Callback<T> callback) {
+        submit(writeExecutor, task, callback);
+    }
+
+    private <T> void submit(ExecutorService executor, Task<T> task, Callback<T> callback) {
+        executor.execute(() -> {
+            try {
+                T result = task.run(dbHelper);
+                if (callback != null) {
+                    mainHandler.post(() -> callback.onResult(result));
+                }
+            } catch (Exception e) {
+                if (callback != null) {
+                    mainHandler.post(() -> callback.onError(e));
+                } else {
+                    Log.e(TAG, "Database task failed", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Run a read now and again whenever one of the tables changes for this user
+     * @param userId User whose changes re-run the query (InvalidationTracker.ALL_USERS for any)
+     * @param tables InvalidationTracker.TABLE_* constants the query depends on
+     * @return Handle to close in onDestroy
+     */
+    public <T> LiveQuery<T> observe(int userId, String[] tables, Task<T> task, Callback<T> callback) {
+        return observe(userId, tables, true, task, callback);
+    }
+
+    /**
+     * Same as observe, but the first run can be skipped when the caller already shows current data
+     * @param runNow false to wait for the first change (or LiveQuery.refresh)
+     */
+    public <T> LiveQuery<T> observe(int userId, String[] tables, boolean runNow, Task<T> task,
+                                    Callback<T> callback) {
+        LiveQuery<T> query = new LiveQuery<>(this, dbHelper.getInvalidationTracker(), task, callback);
+        query.start(userId, runNow, tables);
+        return query;
+    }
+
+    public InvalidationTracker getInvalidationTracker() {
+        return dbHelper.getInvalidationTracker();
+    }
+
+    // =============== EXPENSES ===============
+
+    public void insertExpense(Expense expense, Callback<Long> callback) {
+        write(db -> db.insertExpense(expense), callback);
+    }
+
+    public void updateExpense(Expense expense, Callback<Integer> callback) {
+        write(db -> db.updateExpense(expense), callback);
+    }
+
+    public void deleteExpense(int expenseId, Callback<Integer> callback) {
+        write(db -> db.deleteExpense(expenseId), callback);
+    }
+
+    // Thao tác trên nhiều dòng đã chọn: một transaction, câu lệnh compile một lần
+
+    public void insertExpenses(List<Expense> expenses, Callback<int[]> callback) {
+        write(db -> db.insertExpenses(expenses), callback);
+    }
+
+    public void updateExpenses(List<Expense> expenses, Callback<Integer> callback) {
+        write(db -> db.updateExpenses(expenses), callback);
+    }
+
+    public void deleteExpenses(int[] expenseIds, Callback<Integer> callback) {
+        write(db -> db.deleteExpenses(expenseIds), callback);
+    }
+
+    public void getExpensesByDateRange(int userId, long startDate, long endDate,
+                                       Callback<List<Expense>> callback) {
+        read(db -> db.getExpensesByDateRange(userId, startDate, endDate), callback);
+    }
+
+    public void getExpensesByFilter(int userId, long startDate, long endDate, int type,
+                                    int categoryId, int currencyId, Callback<List<Expense>> callback) {
+        read(db -> db.getExpensesByFilter(userId, startDate, endDate, type, categoryId, currencyId), callback);
+    }
+
+    public void countExpenses(int userId, int type, int categoryId, String searchQuery,
+                              Callback<Integer> callback) {
+        read(db -> db.countExpenses(userId, type, categoryId, searchQuery), callback);
+    }
+
+    // =============== SUMMARIES ===============
+
+    public void getMonthlySummary(int userId, int fromYearMonth, int toYearMonth,
+                                  Callback<TransactionSummary> callback) {
+        read(db -> db.getMonthlySummary(userId, fromYearMonth, toYearMonth), callback);
+    }
+
+    public void getTransactionSummary(int userId, long startDate, long endDate,
+                                      Callback<TransactionSummary> callback) {
+        read(db -> db.getTransactionSummary(userId, startDate, endDate), callback);
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.campusexpensemanager.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Ghi nhận mọi lần ghi qua DatabaseHelper (table, user, row IDs) và báo cho các màn hình đang theo dõi.
+ * Changes made in quick succession are merged per (table, user) and delivered once on the main thread,
+ * so a screen re-queries only when data it shows actually changed.
+ */
+public class InvalidationTracker {
+
+    public static final String TABLE_EXPENSES = "expenses";
+    public static final String TABLE_BUDGETS = "budgets";
+    public static final String TABLE_CATEGORIES = "categories";
+    public static final String TABLE_CURRENCIES = "currencies";
+    public static final String TABLE_RECURRENCE_RULES = "recurrence_rules";
+
+    // Dùng cho bảng dùng chung (categories, currencies) hoặc observer muốn nhận mọi user
+    public static final int ALL_USERS = -1;
+
+    public static final int KIND_INSERT = 1;
+    public static final int KIND_UPDATE = 2;
+    public static final int KIND_DELETE = 4;
+
+    /**
+     * Tóm tắt các thay đổi trên một bảng của một user
+     */
+    public static final class Change {
+        private final String table;
+        private final int userId;
+        private final int kinds;
+        private final int[] rowIds;
+
+        Change(String table, int userId, int kinds, int[] rowIds) {
+            this.table = table;
+            this.userId = userId;
+            this.kinds = kinds;
+            this.rowIds = rowIds;
+        }
+
+        public String getTable() { return table; }
+        public int getUserId() { return userId; }
+
+        /**
+         * @return Sorted IDs of the changed rows, or null if unknown (treat as "everything changed")
+         */
+        public int[] getRowIds() { return rowIds; }
+
+        /**
+         * Rows were inserted or deleted, so list positions may have shifted
+         */
+        public boolean isStructural() {
+            return rowIds == null || (kinds & (KIND_INSERT | KIND_DELETE)) != 0;
+        }
+
+        public boolean containsRow(int rowId) {
+            return rowIds == null || Arrays.binarySearch(rowIds, rowId) >= 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Change{" + table + ", user=" + userId + ", kinds=" + kinds
+                    + ", rows=" + (rowIds == null ? "all" : Arrays.toString(rowIds)) + '}';
+        }
+    }
+
+    /**
+     * Nhận thay đổi trên main thread
+     */
+    public interface Observer {
+        void onChanged(Change change);
+    }
+
+    private static final class Registration {
+        final String table;
+        final int userId;
+        final Observer observer;
+
+        Registration(String table, int userId, Observer observer) {
+            this.table = table;
+            this.userId = userId;
+            this.observer = observer;
+        }
+
+        boolean matches(Change change) {
+            return table.equals(change.table)
+                    && (userId == ALL_USERS || change.userId == ALL_USERS || userId == change.userId);
+        }
+    }
+
+    /**
+     * Các thay đổi chưa gửi của một (table, user)
+     */
+    private static final class Pending {
+        final String table;
+        final int userId;
+        int kinds;
+        int[] rowIds = new int[4];
+        int rowCount;
+        boolean allRows;
+
+        Pending(String table, int userId) {
+            this.table = table;
+            this.userId = userId;
+        }
+
+        void add(int kind, int[] ids) {
+            kinds |= kind;
+            if (ids == null || ids.length == 0) {
+                allRows = true;
+                return;
+            }
+            if (allRows) return;
+            if (rowCount + ids.length > rowIds.length) {
+                rowIds = Arrays.copyOf(rowIds, Math.max(rowIds.length * 2, rowCount + ids.length));
+            }
+            System.arraycopy(ids, 0, rowIds, rowCount, ids.length);
+            rowCount += ids.length;
+        }
+
+        Change toChange() {
+            if (allRows) {
+                return new Change(table, userId, kinds, null);
+            }
+            int[] ids = Arrays.copyOf(rowIds, rowCount);
+            Arrays.sort(ids);
+            return new Change(table, userId, kinds, ids);
+        }
+    }
+
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Key = table + ":" + userId, giữ thứ tự xảy ra
+    private final Map<String, Pending> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    InvalidationTracker() {
+    }
+
+    /**
+     * Theo dõi một bảng
+     * @param table One of the TABLE_* constants
+     * @param userId User to watch, or ALL_USERS
+     */
+    public void addObserver(String table, int userId, Observer observer) {
+        registrations.add(new Registration(table, userId, observer));
+    }
+
+    /**
+     * Huỷ mọi đăng ký của observer (gọi trong onDestroy)
+     */
+    public void removeObserver(Observer observer) {
+        for (Registration registration : registrations) {
+            if (registration.observer == observer) {
+                registrations.remove(registration);
+            }
+        }
+    }
+
+    /**
+     * Record a write; called by DatabaseHelper from any thread after the write succeeded
+     * @param rowIds Changed row IDs, or none if unknown
+     */
+    void notifyChanged(String table, int userId, int kind, int... rowIds) {
+        synchronized (pending) {
+            String key = table + ":" + userId;
+            Pending p = pending.get(key);
+            if (p == null) {
+                p = new Pending(table, userId);
+                pending.put(key, p);
+            }
+            p.add(kind, rowIds);
+
+            if (!flushScheduled) {
+                flushScheduled = true;
+                mainHandler.post(this::flush);
+            }
+        }
+    }
+
+    private void flush() {
+        List<Change> changes;
+        synchronized (pending) {
+            changes = new ArrayList<>(pending.size());
+            for (Pending p : pending.values()) {
+                changes.add(p.toChange());
+            }
+            pending.clear();
+            flushScheduled = false;
+        }
+
+        for (Change change : changes) {
+            for (Registration registration : registrations) {
+                if (registration.matches(change)) {
+                    registration.observer.onChanged(change);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.campusexpensemanager.utils;
+
+/**
+ * Kết quả query tự cập nhật: chạy một lần khi tạo, sau đó chạy lại mỗi khi
+ * InvalidationTracker báo một trong các bảng đang theo dõi thay đổi.
+ * If changes arrive while the query is running, it re-runs once afterwards instead of queueing.
+ * Created by ExpenseRepository.observe; call close() when the screen is destroyed.
+ */
+public class LiveQuery<T> implements InvalidationTracker.Observer {
+
+    private final ExpenseRepository repository;
+    private final InvalidationTracker tracker;
+    private final ExpenseRepository.Task<T> task;
+    private final ExpenseRepository.Callback<T> callback;
+
+    // Chỉ truy cập trên main thread
+    private boolean running;
+    private boolean dirty;
+    private boolean closed;
+
+    LiveQuery(ExpenseRepository repository, InvalidationTracker tracker,
+              ExpenseRepository.Task<T> task, ExpenseRepository.Callback<T> callback) {
+        this.repository = repository;
+        this.tracker = tracker;
+        this.task = task;
+        this.callback = callback;
+    }
+
+    void start(int userId, boolean runNow, String... tables) {
+        for (String table : tables) {
+            tracker.addObserver(table, userId, this);
+        }
+        if (runNow) {
+            run();
+        }
+    }
+
+    @Override
+    public void onChanged(InvalidationTracker.Change change) {
+        refresh();
+    }
+
+    /**
+     * Re-run the query now (e.g. when the date changes and "this month" moves)
+     */
+    public void refresh() {
+        if (closed) return;
+        if (running) {
+            dirty = true;
+        } else {
+            run();
+        }
+    }
+
+    /**
+     * Stop observing; pending results are dropped
+     */
+    public void close() {
+        closed = true;
+        tracker.removeObserver(this);
+    }
+
+    private void run() {
+        running = true;
+        dirty = false;
+        repository.read(task, new ExpenseRepository.Callback<T>() {
+            @Override
+            public void onResult(T result) {
+                running = false;
+                if (closed) return;
+                callback.onResult(result);
+                if (dirty) {
+                    run();
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                running = false;
+                if (closed) return;
+                callback.onError(e);
+                if (dirty) {
+                    run();
+                }
+            }
+        });
+    }
+}
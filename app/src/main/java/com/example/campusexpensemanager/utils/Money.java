@@ -0,0 +1,105 @@
+package com.example.campusexpensemanager.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money arithmetic on long minor units.
+ * Amounts are whole minor units of their currency (VND: đồng, scale 1; USD: cents, scale 100);
+ * exchange rates are VND per major unit times RATE_SCALE. Each amount is rounded once when
+ * converted to VND, so totals are exact integer sums and never drift.
+ * Only parse/toPlainString allocate; everything used in aggregation loops works on primitives.
+ */
+public final class Money {
+
+    // Tỷ giá lưu với 4 chữ số thập phân (VD: 25000 VND/USD -> 250_000_000)
+    public static final long RATE_SCALE = 10_000;
+    public static final long VND_RATE = RATE_SCALE;
+    public static final int VND_SCALE = 1;
+
+    private Money() {
+    }
+
+    /**
+     * Convert an amount to VND, rounding half away from zero.
+     * Same formula as the SQL in DatabaseHelper (amountInVndSql), so Java and SQLite totals agree.
+     * @param minor Amount in minor units of its currency
+     * @param minorScale Minor units per major unit of that currency (1, 100, ...)
+     * @param rate VND per major unit, times RATE_SCALE
+     */
+    public static long toVnd(long minor, int minorScale, long rate) {
+        return divideRounded(minor * rate, minorScale * RATE_SCALE);
+    }
+
+    /**
+     * value / divisor rounded half away from zero (divisor > 0)
+     */
+    public static long divideRounded(long value, long divisor) {
+        long half = divisor / 2;
+        return value >= 0 ? (value + half) / divisor : -((-value + half) / divisor);
+    }
+
+    /**
+     * Fixed-point rate from a decimal rate (e.g. typed by the user or read from v10 data)
+     */
+    public static long rateOf(double rateToVnd) {
+        return Math.round(rateToVnd * RATE_SCALE);
+    }
+
+    /**
+     * Parse a decimal amount typed by the user into minor units ("12.345" USD -> 1235)
+     * @throws NumberFormatException If the text is not a number or does not fit in a long
+     */
+    public static long parse(String text, int minorScale) {
+        try {
+            return new BigDecimal(text.trim())
+                    .movePointRight(fractionDigits(minorScale))
+                    .setScale(0, RoundingMode.HALF_UP)
+                    .longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+
+    /**
+     * Parse a decimal amount read from a file into minor units, refusing to round
+     * ("12.50" USD -> 1250, "50000.00" VND -> 50000, "50.5" VND -> error)
+     * @throws NumberFormatException If the text is not a number, does not fit in a long, or has
+     * more non-zero fraction digits than the currency keeps
+     */
+    public static long parseExact(String text, int minorScale) {
+        try {
+            return new BigDecimal(text.trim())
+                    .movePointRight(fractionDigits(minorScale))
+                    .setScale(0, RoundingMode.UNNECESSARY)
+                    .longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount not exact in minor units: " + text);
+        }
+    }
+
+    /**
+     * Amount as plain decimal text for an input field (1235, 100 -> "12.35"; 50000, 1 -> "50000")
+     */
+    public static String toPlainString(long minor, int minorScale) {
+        return BigDecimal.valueOf(minor, fractionDigits(minorScale)).toPlainString();
+    }
+
+    /**
+     * Amount in major units, for NumberFormat and ratios only (never sum these)
+     */
+    public static double toMajor(long minor, int minorScale) {
+        return (double) minor / minorScale;
+    }
+
+    /**
+     * Number of decimal places of a minor-unit scale (1 -> 0, 100 -> 2)
+     */
+    public static int fractionDigits(int minorScale) {
+        int digits = 0;
+        for (int scale = minorScale; scale > 1; scale /= 10) {
+            digits++;
+        }
+        return digits;
+    }
+}
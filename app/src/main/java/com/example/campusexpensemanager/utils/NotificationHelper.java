@@ -0,0 +1,96 @@
+package com.example.campusexpensemanager.utils;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+
+import androidx.core.app.NotificationCompat;
+
+import com.example.campusexpensemanager.R;
+
+import java.util.List;
+
+/**
+ * Kênh thông báo và thông báo tổng hợp cho các worker nền.
+ * Channels are created once by MainApplication; workers post at most one summary per run,
+ * listing a few lines in an inbox-style expansion and counting the rest.
+ */
+public final class NotificationHelper {
+
+    public static final String CHANNEL_RECURRING = "RecurringExpenseChannel";
+    public static final String CHANNEL_BUDGET_ALERTS = "budget_alerts";
+
+    // InboxStyle chỉ hiện khoảng 5 dòng; caller chỉ cần định dạng chừng này dòng
+    public static final int MAX_LINES = 5;
+
+    private NotificationHelper() {
+    }
+
+    /**
+     * Register all channels (no-op before Android 8.0, and when a channel already exists)
+     */
+    public static void createChannels(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            return;
+        }
+        NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
+        if (notificationManager == null) {
+            return;
+        }
+
+        NotificationChannel recurring = new NotificationChannel(CHANNEL_RECURRING, "Recurring Expenses",
+                NotificationManager.IMPORTANCE_DEFAULT);
+        recurring.setDescription("Thông báo khi chi phí lặp lại được tự động thêm");
+        notificationManager.createNotificationChannel(recurring);
+
+        NotificationChannel budget = new NotificationChannel(CHANNEL_BUDGET_ALERTS, "Budget Alerts",
+                NotificationManager.IMPORTANCE_HIGH);
+        budget.setDescription("Notifications for low budget warnings");
+        notificationManager.createNotificationChannel(budget);
+    }
+
+    /**
+     * Post (or replace) one summary notification
+     * @param tag With id, identifies the notification; a later summary with the same pair replaces it
+     * @param title Title, already worded for the total count
+     * @param lines Up to MAX_LINES lines; one line is shown as plain text, several as an inbox list
+     * @param total Number of items summarised (may exceed lines.size())
+     */
+    public static void postSummary(Context context, String channelId, String tag, int id,
+                                   Intent intent, String title, List<String> lines, int total) {
+        NotificationManager notificationManager =
+                (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        if (notificationManager == null || lines.isEmpty()) {
+            return;
+        }
+
+        PendingIntent pendingIntent = PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_IMMUTABLE);
+        int priority = CHANNEL_BUDGET_ALERTS.equals(channelId)
+                ? NotificationCompat.PRIORITY_HIGH : NotificationCompat.PRIORITY_DEFAULT;
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, channelId)
+                .setSmallIcon(R.drawable.ic_wallet)
+                .setContentTitle(title)
+                .setContentText(lines.get(0))
+                .setPriority(priority)
+                .setContentIntent(pendingIntent)
+                .setAutoCancel(true);
+
+        if (total > 1) {
+            NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle().setBigContentTitle(title);
+            int shown = Math.min(lines.size(), MAX_LINES);
+            for (int i = 0; i < shown; i++) {
+                style.addLine(lines.get(i));
+            }
+            if (total > shown) {
+                style.setSummaryText("+" + (total - shown) + " more");
+            }
+            builder.setNumber(total).setStyle(style);
+        }
+
+        notificationManager.notify(tag, id, builder.build());
+    }
+}
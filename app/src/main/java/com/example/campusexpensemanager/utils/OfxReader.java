@@ -0,0 +1,194 @@
+package com.example.campusexpensemanager.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+
+/**
+ * Đọc giao dịch từ file OFX (sao kê ngân hàng), theo luồng.
+ * Works on both OFX 1.x (SGML, leaf elements without end tags) and 2.x (XML): every start tag
+ * is followed by its text up to the next '<'. Only STMTTRN aggregates and CURDEF are used;
+ * everything else, including the header block, is skipped.
+ */
+final class OfxReader implements StatementReader {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int NONE = -2;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private int pushback = NONE;
+
+    private final StringBuilder token = new StringBuilder();
+
+    private String currencyCode;
+
+    // Giao dịch hiện tại
+    private long date;
+    private String amount;
+    private String name;
+    private String memo;
+
+    OfxReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        boolean inTransaction = false;
+        String tag;
+        while ((tag = readTag()) != null) {
+            if (tag.equals("STMTTRN")) {
+                inTransaction = true;
+                date = INVALID_DATE;
+                amount = null;
+                name = null;
+                memo = null;
+            } else if (tag.equals("/STMTTRN")) {
+                if (inTransaction) {
+                    return true;
+                }
+            } else if (tag.equals("CURDEF")) {
+                currencyCode = readText();
+            } else if (inTransaction) {
+                switch (tag) {
+                    case "DTPOSTED":
+                        date = parseDate(readText());
+                        break;
+                    case "TRNAMT":
+                        amount = readText();
+                        break;
+                    case "NAME":
+                    case "PAYEE":
+                        name = readText();
+                        break;
+                    case "MEMO":
+                        memo = readText();
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long getDate() {
+        return date;
+    }
+
+    @Override
+    public String getAmount() {
+        return amount;
+    }
+
+    @Override
+    public String getDescription() {
+        return StatementReader.describe(name, memo);
+    }
+
+    @Override
+    public String getCategory() {
+        return null;
+    }
+
+    @Override
+    public String getCurrencyCode() {
+        return currencyCode == null || currencyCode.isEmpty() ? null : currencyCode;
+    }
+
+    /**
+     * "20240115", "20240115120000.000[-7:MST]" -> local midnight of that day
+     */
+    static long parseDate(String text) {
+        if (text.length() < 8) {
+            return INVALID_DATE;
+        }
+        for (int i = 0; i < 8; i++) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return INVALID_DATE;
+            }
+        }
+        return StatementReader.localDate(Integer.parseInt(text.substring(0, 4)),
+                Integer.parseInt(text.substring(4, 6)), Integer.parseInt(text.substring(6, 8)));
+    }
+
+    /**
+     * Skip to the next tag and return its name in upper case ("/NAME" for end tags),
+     * or null at the end of the input; processing instructions and comments are skipped
+     */
+    private String readTag() throws IOException {
+        while (true) {
+            int c;
+            do {
+                c = read();
+            } while (c >= 0 && c != '<');
+            if (c < 0) {
+                return null;
+            }
+
+            token.setLength(0);
+            while ((c = read()) >= 0 && c != '>') {
+                token.append((char) c);
+            }
+            if (token.length() == 0 || token.charAt(0) == '?' || token.charAt(0) == '!') {
+                continue;
+            }
+            // Bỏ thuộc tính (nếu có) và dấu '/' của thẻ tự đóng
+            int end = 0;
+            while (end < token.length() && !Character.isWhitespace(token.charAt(end))
+                    && !(end > 0 && token.charAt(end) == '/')) {
+                end++;
+            }
+            return token.substring(0, end).toUpperCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Text after the current tag, up to (not including) the next '<', trimmed and unescaped
+     */
+    private String readText() throws IOException {
+        token.setLength(0);
+        int c;
+        while ((c = read()) >= 0 && c != '<') {
+            token.append((char) c);
+        }
+        if (c == '<') {
+            pushback = c;
+        }
+        return unescape(token.toString().trim());
+    }
+
+    private static String unescape(String text) {
+        if (text.indexOf('&') < 0) {
+            return text;
+        }
+        return text.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&nbsp;", " ").replace("&amp;", "&");
+    }
+
+    private int read() throws IOException {
+        if (pushback != NONE) {
+            int c = pushback;
+            pushback = NONE;
+            return c;
+        }
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
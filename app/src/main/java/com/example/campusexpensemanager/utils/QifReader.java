@@ -0,0 +1,188 @@
+package com.example.campusexpensemanager.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Đọc giao dịch từ file QIF (Quicken Interchange Format), theo từng dòng.
+ * A record is a run of lines keyed by their first character (D date, T/U amount, P payee,
+ * M memo, L category) ended by '^'. Only Bank, Cash, CCard and other asset/liability sections
+ * are read; account lists, category lists and investment sections are skipped.
+ */
+final class QifReader implements StatementReader {
+
+    private final BufferedReader reader;
+
+    // Đang ở section không phải giao dịch (!Account, !Type:Cat, ...)
+    private boolean skipping;
+
+    private long date;
+    private String amount;
+    private String payee;
+    private String memo;
+    private String category;
+
+    QifReader(Reader reader) {
+        this.reader = new BufferedReader(reader);
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        clear();
+        boolean hasFields = false;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            char code = line.charAt(0);
+            String value = line.substring(1).trim();
+
+            if (code == '!') {
+                startSection(value);
+                clear();
+                hasFields = false;
+            } else if (code == '^') {
+                if (hasFields && !skipping) {
+                    return true;
+                }
+                clear();
+                hasFields = false;
+            } else if (!skipping) {
+                hasFields = true;
+                switch (code) {
+                    case 'D':
+                        date = parseDate(value);
+                        break;
+                    case 'T':
+                    case 'U':
+                        amount = value;
+                        break;
+                    case 'P':
+                        payee = value;
+                        break;
+                    case 'M':
+                        memo = value;
+                        break;
+                    case 'L':
+                        // "[Tài khoản]" là chuyển khoản, không phải category
+                        category = value.startsWith("[") ? null : value;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        // Record cuối thiếu '^'
+        return hasFields && !skipping;
+    }
+
+    private void startSection(String header) {
+        if (header.regionMatches(true, 0, "Type:", 0, 5)) {
+            String type = header.substring(5).trim();
+            skipping = !(type.equalsIgnoreCase("Bank") || type.equalsIgnoreCase("Cash")
+                    || type.equalsIgnoreCase("CCard") || type.equalsIgnoreCase("Oth A")
+                    || type.equalsIgnoreCase("Oth L"));
+        } else if (header.equalsIgnoreCase("Account")) {
+            skipping = true;
+        }
+        // !Option, !Clear: giữ nguyên trạng thái
+    }
+
+    private void clear() {
+        date = INVALID_DATE;
+        amount = null;
+        payee = null;
+        memo = null;
+        category = null;
+    }
+
+    @Override
+    public long getDate() {
+        return date;
+    }
+
+    @Override
+    public String getAmount() {
+        return amount;
+    }
+
+    @Override
+    public String getDescription() {
+        return StatementReader.describe(payee, memo);
+    }
+
+    @Override
+    public String getCategory() {
+        if (category == null || category.isEmpty()) {
+            return null;
+        }
+        // "Food:Groceries" -> "Food"
+        int sub = category.indexOf(':');
+        return sub > 0 ? category.substring(0, sub) : category;
+    }
+
+    @Override
+    public String getCurrencyCode() {
+        return null;
+    }
+
+    /**
+     * "01/15/2024", "1/15'24", "1/15/24", "15.01.2024", "2024-01-15" -> local midnight.
+     * Slashes are month first (as Quicken writes them) unless the first number is over 12;
+     * dots are day first.
+     */
+    static long parseDate(String text) {
+        int[] parts = new int[3];
+        int[] lengths = new int[3];
+        int count = 0;
+        boolean apostrophe = false;
+        boolean dots = false;
+        for (int i = 0; i < text.length() && count < 3; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                parts[count] = parts[count] * 10 + (c - '0');
+                lengths[count]++;
+            } else if (lengths[count] > 0) {
+                apostrophe |= c == '\'';
+                dots |= c == '.';
+                count++;
+            }
+        }
+        if (count < 3 && lengths[Math.min(count, 2)] > 0) {
+            count++;
+        }
+        if (count < 3) {
+            return INVALID_DATE;
+        }
+
+        int year;
+        int month;
+        int day;
+        if (lengths[0] == 4) {
+            year = parts[0];
+            month = parts[1];
+            day = parts[2];
+        } else {
+            year = parts[2];
+            if (dots || parts[0] > 12) {
+                day = parts[0];
+                month = parts[1];
+            } else {
+                month = parts[0];
+                day = parts[1];
+            }
+            if (lengths[2] <= 2) {
+                // Quicken: dấu ' trước năm 2 chữ số nghĩa là 20xx
+                year += apostrophe || year < 70 ? 2000 : 1900;
+            }
+        }
+        return StatementReader.localDate(year, month, day);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.campusexpensemanager.utils;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.CancellationSignal;
+
+import com.example.campusexpensemanager.models.Category;
+import com.example.campusexpensemanager.models.Currency;
+import com.example.campusexpensemanager.models.Expense;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Singleton xuất báo cáo giao dịch ra file (CSV, CSV gzip, ExpenseArchive), chạy trên background thread.
+ * Rows are streamed from a narrow DatabaseHelper cursor straight into a buffered writer,
+ * so memory use does not grow with the history length; category and currency names come from
+ * the in-memory caches (CategoryRegistry, CurrencyHelper), never from a query per row.
+ */
+public class ReportExporter {
+
+    public static final int FORMAT_CSV = 0;
+    public static final int FORMAT_CSV_GZIP = 1;
+    public static final int FORMAT_ARCHIVE = 2;
+
+    public static final String CSV_HEADER = "Type,Category,OriginalAmount,Currency,Amount(VND),Date,Description";
+
+    // RFC 4180: dòng kết thúc bằng CRLF
+    private static final String CSV_LINE_END = "\r\n";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Báo tiến độ và kiểm tra huỷ sau mỗi chừng này dòng
+    private static final int PROGRESS_STEP = 500;
+
+    // Cột của DatabaseHelper.queryExpensesForExport
+    private static final int COL_TYPE = 0;
+    private static final int COL_CATEGORY_ID = 1;
+    private static final int COL_AMOUNT = 2;
+    private static final int COL_CURRENCY_ID = 3;
+    private static final int COL_DATE = 4;
+    private static final int COL_DESCRIPTION = 5;
+
+    private static ReportExporter instance;
+
+    private final DatabaseHelper dbHelper;
+    private final CategoryRegistry categoryRegistry;
+    private final CurrencyHelper currencyHelper;
+
+    /**
+     * Tiến độ export, gọi trên background thread
+     */
+    public interface ProgressListener {
+        void onProgress(int rowsWritten, int totalRows);
+    }
+
+    /**
+     * Nơi ghi file; chỉ được mở khi có ít nhất một dòng để ghi
+     */
+    public interface OutputTarget {
+        OutputStream open() throws IOException;
+    }
+
+    private ReportExporter(Context context) {
+        dbHelper = DatabaseHelper.getInstance(context);
+        categoryRegistry = CategoryRegistry.getInstance(context);
+        currencyHelper = CurrencyHelper.getInstance(context);
+    }
+
+    public static synchronized ReportExporter getInstance(Context context) {
+        if (instance == null) {
+            instance = new ReportExporter(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Write a user's transactions in a date range to a file
+     * Must run on a background thread; the target is closed before returning.
+     * @param format FORMAT_CSV (same columns as before, RFC 4180 quoting), FORMAT_CSV_GZIP (the same CSV,
+     *               gzip-compressed) or FORMAT_ARCHIVE (ExpenseArchive, readable back for restore)
+     * @param listener Progress callback, or null
+     * @param signal Checked between rows; when cancelled an OperationCanceledException is thrown
+     *               and the output is incomplete (the caller should discard it)
+     * @return Number of rows written; 0 means nothing matched and the target was never opened
+     */
+    public int export(int format, int userId, long startDate, long endDate, OutputTarget target,
+                      ProgressListener listener, CancellationSignal signal) throws IOException {
+        Cursor cursor = dbHelper.queryExpensesForExport(userId, startDate, endDate, signal);
+        try {
+            int total = cursor.getCount();
+            if (total == 0) {
+                return 0;
+            }
+
+            int written;
+            if (format == FORMAT_ARCHIVE) {
+                written = writeArchive(cursor, target.open(), total, listener, signal);
+            } else {
+                OutputStream stream = target.open();
+                if (format == FORMAT_CSV_GZIP) {
+                    try {
+                        stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+                    } catch (IOException e) {
+                        stream.close();
+                        throw e;
+                    }
+                }
+                written = writeCsv(cursor, stream, total, listener, signal);
+            }
+
+            if (listener != null) {
+                listener.onProgress(written, total);
+            }
+            return written;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * File name extension of a format, including the dot
+     */
+    public static String getFileExtension(int format) {
+        switch (format) {
+            case FORMAT_CSV_GZIP:
+                return ".csv.gz";
+            case FORMAT_ARCHIVE:
+                return ExpenseArchive.FILE_EXTENSION;
+            default:
+                return ".csv";
+        }
+    }
+
+    public static String getMimeType(int format) {
+        switch (format) {
+            case FORMAT_CSV_GZIP:
+                return "application/gzip";
+            case FORMAT_ARCHIVE:
+                return ExpenseArchive.MIME_TYPE;
+            default:
+                return "text/csv";
+        }
+    }
+
+    private int writeCsv(Cursor cursor, OutputStream stream, int total,
+                         ProgressListener listener, CancellationSignal signal) throws IOException {
+        // SimpleDateFormat không thread-safe -> tạo riêng cho mỗi lần export; Date dùng lại cho mọi dòng
+        SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM yyyy", Locale.getDefault());
+        Date date = new Date();
+        int written = 0;
+
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            writer.write(CSV_HEADER);
+            writer.write(CSV_LINE_END);
+
+            while (cursor.moveToNext()) {
+                int categoryId = cursor.getInt(COL_CATEGORY_ID);
+                long amount = cursor.getLong(COL_AMOUNT);
+                Currency currency = currencyHelper.getCurrencyById(cursor.getInt(COL_CURRENCY_ID));
+                Category category = categoryRegistry.get(categoryId);
+                date.setTime(cursor.getLong(COL_DATE));
+
+                writer.write(cursor.getInt(COL_TYPE) == Expense.TYPE_INCOME ? "Income" : "Expense");
+                writer.write(',');
+                writeCsvField(writer, category != null ? category.getName() : "Unknown");
+                writer.write(',');
+                writer.write(Money.toPlainString(amount, currency.getMinorScale()));
+                writer.write(',');
+                writeCsvField(writer, currency.getCode());
+                writer.write(',');
+                writer.write(Long.toString(Money.toVnd(amount, currency.getMinorScale(), currency.getRateToVND())));
+                writer.write(',');
+                writer.write(dateFormat.format(date));
+                writer.write(',');
+                writeCsvField(writer, cursor.isNull(COL_DESCRIPTION) ? "" : cursor.getString(COL_DESCRIPTION));
+                writer.write(CSV_LINE_END);
+
+                onRowWritten(++written, total, listener, signal);
+            }
+        }
+        return written;
+    }
+
+    private int writeArchive(Cursor cursor, OutputStream stream, int total,
+                             ProgressListener listener, CancellationSignal signal) throws IOException {
+        try (ExpenseArchive.Writer writer = new ExpenseArchive.Writer(stream)) {
+            while (cursor.moveToNext()) {
+                Currency currency = currencyHelper.getCurrencyById(cursor.getInt(COL_CURRENCY_ID));
+                Category category = categoryRegistry.get(cursor.getInt(COL_CATEGORY_ID));
+
+                writer.add(cursor.getInt(COL_TYPE),
+                        category != null ? category.getName() : "Unknown",
+                        cursor.getLong(COL_AMOUNT),
+                        currency.getCode(),
+                        currency.getMinorScale(),
+                        cursor.getLong(COL_DATE),
+                        cursor.isNull(COL_DESCRIPTION) ? null : cursor.getString(COL_DESCRIPTION));
+
+                onRowWritten(writer.getRowCount(), total, listener, signal);
+            }
+            return writer.getRowCount();
+        }
+    }
+
+    /**
+     * Check for cancellation and report progress every PROGRESS_STEP rows
+     */
+    private static void onRowWritten(int written, int total, ProgressListener listener,
+                                     CancellationSignal signal) {
+        if (written % PROGRESS_STEP != 0) {
+            return;
+        }
+        if (signal != null) {
+            signal.throwIfCanceled();
+        }
+        if (listener != null) {
+            listener.onProgress(written, total);
+        }
+    }
+
+    /**
+     * Write one CSV field, quoted (with quotes doubled) only if it contains a comma, quote or line break
+     */
+    static void writeCsvField(Writer writer, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+
+        writer.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                writer.write(value, start, i + 1 - start);
+                writer.write('"');
+                start = i + 1;
+            }
+        }
+        writer.write(value, start, value.length() - start);
+        writer.write('"');
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.campusexpensemanager.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Calendar;
+
+/**
+ * Đọc tuần tự các giao dịch trong file sao kê ngân hàng (OfxReader, QifReader).
+ * Used like a cursor: while (reader.next()) { reader.getAmount() ... }; one transaction is held
+ * at a time. Amounts stay as written in the file until the importer knows the currency, since
+ * whether "12.345" means twelve or twelve thousand depends on it (see normalizeAmount).
+ */
+interface StatementReader extends Closeable {
+
+    long INVALID_DATE = Long.MIN_VALUE;
+
+    /**
+     * Move to the next transaction
+     * @return false at the end of the statement
+     */
+    boolean next() throws IOException;
+
+    /**
+     * @return Local midnight of the posting day (Unix ms), or INVALID_DATE if unreadable
+     */
+    long getDate();
+
+    /**
+     * @return Amount text as written in the file (negative = money out), or null if missing
+     */
+    String getAmount();
+
+    /**
+     * @return Payee and memo, never null
+     */
+    String getDescription();
+
+    /**
+     * @return Category name from the file, or null if it has none
+     */
+    String getCategory();
+
+    /**
+     * @return ISO currency code of the statement, or null if the file does not say
+     */
+    String getCurrencyCode();
+
+    /**
+     * Normalize a bank amount: "1,234.56", "1.234,56", "-12,5", "(12.00)", "+ 3 000", "1.234.567"
+     * -> "1234.56", "1234.56", "-12.5", "-12.00", "3000", "1234567"
+     * For a currency without minor units (VND, minorScale 1) a lone separator followed by exactly
+     * three digits is a thousands separator ("-50.000" -> "-50000"); for any other currency it is
+     * the decimal point ("-12.345" stays "-12.345" and is refused by Money.parseExact if the
+     * currency has fewer decimals).
+     * @param minorScale Minor units per major unit of the statement's currency
+     * @return Signed decimal with '.' as separator, or null if there are no digits
+     */
+    static String normalizeAmount(String text, int minorScale) {
+        if (text == null) {
+            return null;
+        }
+        boolean negative = false;
+        int lastDot = -1;
+        int lastComma = -1;
+        int dots = 0;
+        int commas = 0;
+        StringBuilder digits = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if (c == '-' || c == '(') {
+                negative = true;
+            } else if (c == '.') {
+                lastDot = digits.length();
+                dots++;
+                digits.append('.');
+            } else if (c == ',') {
+                lastComma = digits.length();
+                commas++;
+                digits.append(',');
+            }
+        }
+
+        // Dấu thập phân: dấu xuất hiện sau cùng khi có cả hai; chỉ có một loại thì dấu lặp lại
+        // là phân cách hàng nghìn, và với VND dấu đơn lẻ có đúng 3 chữ số phía sau cũng vậy ("50.000")
+        boolean noMinorUnits = minorScale == 1;
+        int decimal = Math.max(lastDot, lastComma);
+        if (lastComma < 0 && lastDot >= 0 && (dots > 1 || noMinorUnits && digits.length() - lastDot - 1 == 3)
+                || lastDot < 0 && lastComma >= 0
+                && (commas > 1 || noMinorUnits && digits.length() - lastComma - 1 == 3)) {
+            decimal = -1;
+        }
+        StringBuilder out = new StringBuilder(digits.length() + 1);
+        if (negative) {
+            out.append('-');
+        }
+        boolean hasDigit = false;
+        for (int i = 0; i < digits.length(); i++) {
+            char c = digits.charAt(i);
+            if (c >= '0' && c <= '9') {
+                out.append(c);
+                hasDigit = true;
+            } else if (i == decimal) {
+                out.append('.');
+            }
+        }
+        return hasDigit ? out.toString() : null;
+    }
+
+    /**
+     * Join payee and memo, leaving out a memo that repeats the payee
+     */
+    static String describe(String payee, String memo) {
+        payee = payee != null ? payee.trim() : "";
+        memo = memo != null ? memo.trim() : "";
+        if (memo.isEmpty() || payee.contains(memo)) {
+            return payee;
+        }
+        if (payee.isEmpty() || memo.contains(payee)) {
+            return memo;
+        }
+        return payee + " - " + memo;
+    }
+
+    /**
+     * Local midnight of a calendar date
+     * @param month 1-12
+     * @return Unix ms, or INVALID_DATE if the date does not exist
+     */
+    static long localDate(int year, int month, int day) {
+        if (month < 1 || month > 12 || day < 1 || year < 1900 || year > 9999) {
+            return INVALID_DATE;
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, 1);
+        if (day > calendar.getActualMaximum(Calendar.DAY_OF_MONTH)) {
+            return INVALID_DATE;
+        }
+        calendar.set(Calendar.DAY_OF_MONTH, day);
+        return calendar.getTimeInMillis();
+    }
+}
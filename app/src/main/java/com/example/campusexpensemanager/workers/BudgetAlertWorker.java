@@ -0,0 +1,139 @@
+package com.example.campusexpensemanager.workers;
+
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.campusexpensemanager.activities.BudgetDashboardActivity;
+import com.example.campusexpensemanager.models.Budget;
+import com.example.campusexpensemanager.models.BudgetStatus;
+import com.example.campusexpensemanager.models.Category;
+import com.example.campusexpensemanager.utils.CategoryRegistry;
+import com.example.campusexpensemanager.utils.DatabaseHelper;
+import com.example.campusexpensemanager.utils.InvalidationTracker;
+import com.example.campusexpensemanager.utils.NotificationHelper;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kiểm tra ngưỡng budget (50/80/100%) sau khi expenses/budgets thay đổi và gửi cảnh báo.
+ * Only budgets whose threshold differs from the stored alert_level are read, each threshold is
+ * notified once per budget, and the alerts of one run are merged into a single notification per
+ * user (a run for ALL_USERS, after a rate change, posts one for each user it affects).
+ * Enqueued by MainApplication from InvalidationTracker, never from UI rendering.
+ */
+public class BudgetAlertWorker extends Worker {
+
+    private static final String TAG = "BudgetAlertWorker";
+    private static final int NOTIFICATION_ID = 1001;
+
+    private static final String KEY_USER_ID = "user_id";
+    // Gom các lần ghi liên tiếp (VD: thêm nhiều expense) thành một lần kiểm tra
+    private static final long DEBOUNCE_SECONDS = 5;
+
+    private final DatabaseHelper dbHelper;
+    private final CategoryRegistry categoryRegistry;
+    private final Context context;
+
+    public BudgetAlertWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+        this.context = context;
+        this.dbHelper = DatabaseHelper.getInstance(context);
+        this.categoryRegistry = CategoryRegistry.getInstance(context);
+    }
+
+    /**
+     * Schedule a check for one user; a check already waiting for that user is replaced
+     * @param userId User whose data changed, or InvalidationTracker.ALL_USERS
+     */
+    public static void enqueue(Context context, int userId) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(BudgetAlertWorker.class)
+                .setInitialDelay(DEBOUNCE_SECONDS, TimeUnit.SECONDS)
+                .setInputData(new Data.Builder().putInt(KEY_USER_ID, userId).build())
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniqueWork(
+                "BudgetAlertJob-" + userId,
+                ExistingWorkPolicy.REPLACE,
+                request
+        );
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        int userId = getInputData().getInt(KEY_USER_ID, InvalidationTracker.ALL_USERS);
+        try {
+            List<BudgetStatus> changed = dbHelper.getBudgetAlertChanges(userId, System.currentTimeMillis());
+            Log.d(TAG, changed.size() + " budget(s) changed alert level");
+
+            // ALL_USERS (VD: đổi tỉ giá) trả về budget của mọi user: gom theo từng user
+            Map<Integer, List<BudgetStatus>> alertsByUser = new LinkedHashMap<>();
+            for (BudgetStatus status : changed) {
+                int level = status.getCurrentLevel();
+                // Ghi trạng thái trước (compare-and-set): job khác đã xử lý thì bỏ qua
+                boolean updated = dbHelper.updateBudgetAlertLevel(status.getBudget().getId(),
+                        status.getAlertLevel(), level);
+                // Chỉ báo khi vượt ngưỡng cao hơn; chi tiêu giảm thì chỉ hạ trạng thái
+                if (updated && level > status.getAlertLevel()) {
+                    alertsByUser.computeIfAbsent(status.getBudget().getUserId(), id -> new ArrayList<>())
+                            .add(status);
+                }
+            }
+
+            for (Map.Entry<Integer, List<BudgetStatus>> entry : alertsByUser.entrySet()) {
+                sendAlerts(entry.getKey(), entry.getValue());
+            }
+            return Result.success();
+        } catch (Exception e) {
+            Log.e(TAG, "Lỗi trong BudgetAlertWorker", e);
+            return Result.failure();
+        }
+    }
+
+    /**
+     * One notification per user: a single alert is shown as is, several as an inbox list
+     */
+    private void sendAlerts(int userId, List<BudgetStatus> alerts) {
+        NumberFormat currencyFormat = NumberFormat.getInstance(new Locale("vi", "VN"));
+        int shown = Math.min(alerts.size(), NotificationHelper.MAX_LINES);
+        List<String> lines = new ArrayList<>(shown);
+        for (int i = 0; i < shown; i++) {
+            BudgetStatus status = alerts.get(i);
+            lines.add(getBudgetName(status.getBudget()) + ": " + status.getCurrentLevel() + "% used, "
+                    + currencyFormat.format(Math.max(0, status.getRemaining())) + "đ remaining");
+        }
+
+        String title = alerts.size() == 1
+                ? "Budget Alert: " + getBudgetName(alerts.get(0).getBudget())
+                : alerts.size() + " budget alerts";
+        // Tag theo user: cảnh báo mới thay cho cảnh báo cũ của cùng user
+        NotificationHelper.postSummary(context, NotificationHelper.CHANNEL_BUDGET_ALERTS,
+                "budget_alerts_" + userId, NOTIFICATION_ID,
+                new Intent(context, BudgetDashboardActivity.class), title, lines, alerts.size());
+    }
+
+    private String getBudgetName(Budget budget) {
+        if (budget.getCategoryId() > 0) {
+            Category category = categoryRegistry.get(budget.getCategoryId());
+            if (category != null) {
+                return category.getName();
+            }
+        }
+        return "Total Budget";
+    }
+}
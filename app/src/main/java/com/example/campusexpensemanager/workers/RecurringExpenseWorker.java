@@ -1,40 +1,70 @@
 package com.example.campusexpensemanager.workers;
 
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
-import android.os.Build;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
-import androidx.core.app.NotificationCompat;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
-import com.example.campusexpensemanager.R;
 import com.example.campusexpensemanager.activities.MainActivity;
 import com.example.campusexpensemanager.models.Category;
 import com.example.campusexpensemanager.models.Expense;
+import com.example.campusexpensemanager.models.RecurrenceRule;
+import com.example.campusexpensemanager.utils.CategoryRegistry;
+import com.example.campusexpensemanager.utils.CurrencyHelper;
 import com.example.campusexpensemanager.utils.DatabaseHelper;
+import com.example.campusexpensemanager.utils.NotificationHelper;
 
 import java.text.NumberFormat;
-import java.util.Calendar;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 public class RecurringExpenseWorker extends Worker {
 
     private static final String TAG = "RecurringExpenseWorker";
-    private static final String CHANNEL_ID = "RecurringExpenseChannel";
+    private static final int NOTIFICATION_ID = 1002;
+    // Ví dụ: rule hàng tuần bị lỡ ~20 năm
+    static final int MAX_OCCURRENCES_PER_RULE = 1000;
+    private static final String UNIQUE_WORK_NAME = "RecurringExpenseNextDue";
     private final DatabaseHelper dbHelper;
+    private final CategoryRegistry categoryRegistry;
+    private final CurrencyHelper currencyHelper;
     private final Context context;
 
     public RecurringExpenseWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
         super(context, workerParams);
         this.context = context;
         this.dbHelper = DatabaseHelper.getInstance(context);
+        this.categoryRegistry = CategoryRegistry.getInstance(context);
+        this.currencyHelper = CurrencyHelper.getInstance(context);
+    }
+
+    /**
+     * Run the worker at the earliest next_due, replacing any run already scheduled
+     * @param nextDue DatabaseHelper.getNextRecurrenceDue(); 0 cancels the scheduled run
+     */
+    public static void schedule(Context context, long nextDue) {
+        if (nextDue <= 0) {
+            WorkManager.getInstance(context).cancelUniqueWork(UNIQUE_WORK_NAME);
+            return;
+        }
+        enqueue(context, nextDue, ExistingWorkPolicy.REPLACE);
+    }
+
+    private static void enqueue(Context context, long nextDue, ExistingWorkPolicy policy) {
+        long delay = Math.max(0, nextDue - System.currentTimeMillis());
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(RecurringExpenseWorker.class)
+                .setInitialDelay(delay, TimeUnit.MILLISECONDS)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniqueWork(UNIQUE_WORK_NAME, policy, request);
     }
 
     @NonNull
@@ -42,53 +72,32 @@ public class RecurringExpenseWorker extends Worker {
     public Result doWork() {
         Log.d(TAG, "RecurringExpenseWorker: Tác vụ bắt đầu...");
         try {
-            // 1. Lấy danh sách chi phí lặp lại đã đến hạn
-            List<Expense> dueExpenses = dbHelper.getDueRecurringExpenses();
-            Log.d(TAG, "Tìm thấy " + dueExpenses.size() + " chi phí lặp lại đến hạn.");
-
-            for (Expense originalExpense : dueExpenses) {
-                // 2. Clone chi phí gốc
-                Expense newExpense = new Expense(
-                        originalExpense.getUserId(),
-                        originalExpense.getCategoryId(),
-                        originalExpense.getCurrencyId(),
-                        originalExpense.getAmount(),
-                        System.currentTimeMillis(), // Ngày hiện tại
-                        originalExpense.getDescription(),
-                        null, // Không sao chép biên lai
-                        System.currentTimeMillis(),
-                        originalExpense.getType()
-                );
-                // Đảm bảo chi phí mới không phải là chi phí lặp lại
-                newExpense.setRecurring(false);
-
-                // 3. Thêm chi phí mới vào DB
-                long newExpenseId = dbHelper.insertExpense(newExpense);
-
-                if (newExpenseId != -1) {
-                    Log.d(TAG, "Đã thêm chi phí mới: " + newExpenseId);
-
-                    // 4. Cập nhật ngày lặp lại tiếp theo cho chi phí gốc
-                    Calendar c = Calendar.getInstance();
-                    c.setTimeInMillis(originalExpense.getNextOccurrenceDate());
-
-                    switch (originalExpense.getRecurrencePeriod()) {
-                        case "Weekly":
-                            c.add(Calendar.DAY_OF_YEAR, 7);
-                            break;
-                        case "Monthly":
-                            c.add(Calendar.MONTH, 1);
-                            break;
-                        case "Yearly":
-                            c.add(Calendar.YEAR, 1);
-                            break;
-                    }
-                    originalExpense.setNextOccurrenceDate(c.getTimeInMillis());
-                    dbHelper.updateExpense(originalExpense);
-
-                    // 5. Gửi thông báo
-                    sendNotification(newExpense);
-                }
+            long now = System.currentTimeMillis();
+
+            // 1. Lấy các expense mẫu có rule đã đến hạn
+            List<Expense> templates = dbHelper.getDueRecurrences(now);
+            Log.d(TAG, "Tìm thấy " + templates.size() + " rule lặp lại đến hạn.");
+
+            // 2. Sinh mọi lần lặp bị lỡ tới thời điểm hiện tại (rule được dời tới lần kế tiếp)
+            List<Expense> occurrences = expandOccurrences(templates, now);
+            List<RecurrenceRule> rules = new ArrayList<>(templates.size());
+            for (Expense template : templates) {
+                rules.add(template.getRecurrence());
+            }
+
+            // 3. Ghi tất cả trong một transaction (trùng source_key thì bỏ qua)
+            List<Expense> inserted = dbHelper.insertRecurringOccurrences(occurrences, rules);
+            Log.d(TAG, "Đã thêm " + inserted.size() + " chi phí mới.");
+
+            // 4. Gửi một thông báo tổng hợp cho cả lượt chạy
+            if (!inserted.isEmpty()) {
+                sendSummary(inserted);
+            }
+
+            // 5. Hẹn lần chạy kế tiếp; APPEND để không huỷ chính lần chạy này
+            long nextDue = dbHelper.getNextRecurrenceDue();
+            if (nextDue > 0) {
+                enqueue(context, nextDue, ExistingWorkPolicy.APPEND_OR_REPLACE);
             }
             return Result.success();
         } catch (Exception e) {
@@ -97,39 +106,63 @@ public class RecurringExpenseWorker extends Worker {
         }
     }
 
-    private void sendNotification(Expense expense) {
-        NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-
-        // Tạo Channel cho Android 8.0+
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            CharSequence name = "Recurring Expenses";
-            String description = "Thông báo khi chi phí lặp lại được tự động thêm";
-            int importance = NotificationManager.IMPORTANCE_DEFAULT;
-            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, name, importance);
-            channel.setDescription(description);
-            notificationManager.createNotificationChannel(channel);
+    /**
+     * Build one expense per missed occurrence of each template's rule, dated at its scheduled time,
+     * and move each rule past now (rules are modified in place)
+     * @param templates Due templates with their rule attached (DatabaseHelper.getDueRecurrences)
+     * @param now Current time
+     * @return Occurrences to insert, each with an idempotency key (see occurrenceKey)
+     */
+    static List<Expense> expandOccurrences(List<Expense> templates, long now) {
+        List<Expense> occurrences = new ArrayList<>();
+
+        for (Expense template : templates) {
+            RecurrenceRule rule = template.getRecurrence();
+            int count = 0;
+            // Giới hạn số lần sinh mỗi lượt; phần còn lại được xử lý ở lượt sau
+            while (!rule.isFinished() && rule.getNextDue() <= now && count < MAX_OCCURRENCES_PER_RULE) {
+                long due = rule.getNextDue();
+                Expense occurrence = new Expense(0, template.getUserId(), template.getCategoryId(),
+                        template.getCurrencyId(), template.getAmount(), due, template.getDescription(),
+                        null, // Không sao chép biên lai
+                        now, template.getType());
+                occurrence.setSourceKey(occurrenceKey(template.getId(), due));
+                occurrences.add(occurrence);
+
+                rule.moveTo(rule.getNextIndex() + 1);
+                count++;
+            }
         }
+        return occurrences;
+    }
 
-        // Lấy tên Category
-        Category category = dbHelper.getCategoryById(expense.getCategoryId());
-        String categoryName = (category != null) ? category.getName() : "Unknown";
+    /**
+     * Idempotency key of one occurrence: the same template and scheduled time always give the same key
+     */
+    static String occurrenceKey(int templateId, long occurrenceTime) {
+        return "recurring:" + templateId + ":" + occurrenceTime;
+    }
 
-        // Định dạng tiền tệ
+    /**
+     * One notification per run, whatever the number of occurrences: only the first
+     * NotificationHelper.MAX_LINES are formatted, category names come from the in-memory registry
+     */
+    private void sendSummary(List<Expense> inserted) {
         NumberFormat currencyFormat = NumberFormat.getInstance(new Locale("vi", "VN"));
-        String amount = currencyFormat.format(expense.getAmount()) + "đ";
-
-        // Intent để mở app
-        Intent intent = new Intent(context, MainActivity.class);
-        PendingIntent pendingIntent = PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_IMMUTABLE);
-
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
-                .setSmallIcon(R.drawable.ic_wallet) // Bạn đã có icon này
-                .setContentTitle("Chi phí lặp lại đã được thêm")
-                .setContentText(categoryName + ": " + amount)
-                .setPriority(NotificationCompat.PRIORITY_DEFAULT)
-                .setContentIntent(pendingIntent)
-                .setAutoCancel(true);
+        int shown = Math.min(inserted.size(), NotificationHelper.MAX_LINES);
+        List<String> lines = new ArrayList<>(shown);
+        for (int i = 0; i < shown; i++) {
+            Expense expense = inserted.get(i);
+            Category category = categoryRegistry.get(expense.getCategoryId());
+            String categoryName = (category != null) ? category.getName() : "Unknown";
+            long amountVnd = currencyHelper.convertToVND(expense.getAmount(), expense.getCurrencyId());
+            lines.add(categoryName + ": " + currencyFormat.format(amountVnd) + "đ");
+        }
 
-        notificationManager.notify((int) expense.getId(), builder.build());
+        String title = inserted.size() == 1
+                ? "Chi phí lặp lại đã được thêm"
+                : inserted.size() + " chi phí lặp lại đã được thêm";
+        NotificationHelper.postSummary(context, NotificationHelper.CHANNEL_RECURRING, null, NOTIFICATION_ID,
+                new Intent(context, MainActivity.class), title, lines, inserted.size());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,88 @@
+package com.example.campusexpensemanager.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks CsvReader on RFC 4180 edge cases and that it reads back whatever
+ * ReportExporter.writeCsvField writes, across buffer boundaries.
+ */
+public class CsvReaderTest {
+
+    @Test
+    public void quotedFields_andLineEnds() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader(
+                "\uFEFFType,Description\r\n"
+                        + "Expense,\"Bus, line 5\"\n"
+                        + "\n"
+                        + "Income,\"He said \"\"hi\"\"\"\r"
+                        + "Expense,\"two\r\nlines\"\r\n"
+                        + "Expense,"));
+        List<String> fields = new ArrayList<>();
+
+        assertTrue(reader.readRecord(fields));
+        assertEquals(Arrays.asList("Type", "Description"), fields);
+        assertTrue(reader.readRecord(fields));
+        assertEquals(Arrays.asList("Expense", "Bus, line 5"), fields);
+        assertTrue(reader.readRecord(fields));
+        assertEquals(Arrays.asList("Income", "He said \"hi\""), fields);
+        assertEquals(4, reader.getLineNumber());
+        assertTrue(reader.readRecord(fields));
+        assertEquals(Arrays.asList("Expense", "two\r\nlines"), fields);
+        assertTrue(reader.readRecord(fields));
+        assertEquals(Arrays.asList("Expense", ""), fields);
+        assertFalse(reader.readRecord(fields));
+        assertEquals(0, fields.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void unterminatedQuote_fails() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("Expense,\"never closed\n"));
+        reader.readRecord(new ArrayList<>());
+    }
+
+    @Test
+    public void readsBackExportedFields() throws IOException {
+        Random random = new Random(5);
+        String alphabet = "ab, \"\r\nđươ";
+        List<List<String>> records = new ArrayList<>();
+        StringWriter writer = new StringWriter();
+        // Đủ dài để vượt qua buffer 64K của CsvReader nhiều lần
+        for (int i = 0; i < 20_000; i++) {
+            List<String> record = new ArrayList<>();
+            for (int f = 0; f < 4; f++) {
+                StringBuilder value = new StringBuilder();
+                int length = random.nextInt(12);
+                for (int c = 0; c < length; c++) {
+                    value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                record.add(value.toString());
+                if (f > 0) {
+                    writer.write(',');
+                }
+                ReportExporter.writeCsvField(writer, value.toString());
+            }
+            records.add(record);
+            writer.write("\r\n");
+        }
+
+        CsvReader reader = new CsvReader(new StringReader(writer.toString()));
+        List<String> fields = new ArrayList<>();
+        for (List<String> record : records) {
+            assertTrue(reader.readRecord(fields));
+            assertEquals(record, fields);
+        }
+        assertFalse(reader.readRecord(fields));
+    }
+}
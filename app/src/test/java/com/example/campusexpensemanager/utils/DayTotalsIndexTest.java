@@ -0,0 +1,82 @@
+package com.example.campusexpensemanager.utils;
+
+import com.example.campusexpensemanager.models.Expense;
+import com.example.campusexpensemanager.models.TransactionSummary;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that ExpenseColumns.summarize (DayTotalsIndex for whole days, rows for partial days)
+ * gives the same totals as summing every transaction in the range, over random ranges.
+ * The timed version over 10 years of data is DayTotalsIndexBenchmarkTest (androidTest).
+ */
+public class DayTotalsIndexTest {
+
+    private static final long DAY = 86_400_000L;
+    private static final int DAYS = 400;
+    private static final int PER_DAY = 5;
+    private static final int CATEGORIES = 6;
+    private static final int QUERIES = 300;
+
+    private static final long[] RATES = {0, Money.VND_RATE, Money.rateOf(25_431.5)};
+    private static final int[] SCALES = {0, 1, 100};
+
+    @Test
+    public void randomRanges_matchPerRowTotals() {
+        Random random = new Random(3);
+        int rows = DAYS * PER_DAY;
+        long[] dates = new long[rows];
+        long[] amounts = new long[rows];
+        int[] categoryIds = new int[rows];
+        int[] currencyIds = new int[rows];
+        int[] types = new int[rows];
+
+        ExpenseColumns columns = new ExpenseColumns(rows);
+        columns.setRates(1, RATES, SCALES);
+        long start = 1_400_000_000_000L;
+        for (int i = 0; i < rows; i++) {
+            dates[i] = start + (i / PER_DAY) * DAY + (i % PER_DAY) * (DAY / PER_DAY);
+            currencyIds[i] = random.nextInt(5) == 0 ? 2 : 1;
+            amounts[i] = currencyIds[i] == 2 ? 1 + random.nextInt(9_999) : 1_000 + random.nextInt(500_000);
+            categoryIds[i] = random.nextInt(CATEGORIES);
+            types[i] = random.nextInt(5) == 0 ? Expense.TYPE_INCOME : Expense.TYPE_EXPENSE;
+            columns.append(i + 1, dates[i], amounts[i], categoryIds[i], currencyIds[i], types[i]);
+        }
+
+        for (int q = 0; q < QUERIES; q++) {
+            long a = start + (long) (random.nextDouble() * DAYS * DAY);
+            long b = start + (long) (random.nextDouble() * DAYS * DAY);
+            long from = Math.min(a, b);
+            long to = Math.max(a, b);
+
+            long income = 0;
+            long expense = 0;
+            long[] categoryTotals = new long[CATEGORIES];
+            for (int i = 0; i < rows; i++) {
+                if (dates[i] < from || dates[i] > to) {
+                    continue;
+                }
+                long vnd = Money.toVnd(amounts[i], SCALES[currencyIds[i]], RATES[currencyIds[i]]);
+                if (types[i] == Expense.TYPE_INCOME) {
+                    income += vnd;
+                } else {
+                    expense += vnd;
+                    categoryTotals[categoryIds[i]] += vnd;
+                }
+            }
+            long top = 0;
+            for (long total : categoryTotals) {
+                top = Math.max(top, total);
+            }
+
+            TransactionSummary summary = columns.summarize(from, to);
+            assertEquals(expense, summary.getTotalExpense());
+            assertEquals(income, summary.getTotalIncome());
+            assertEquals(top, summary.getTopCategoryTotal());
+        }
+    }
+}
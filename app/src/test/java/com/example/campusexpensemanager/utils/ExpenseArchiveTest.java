@@ -0,0 +1,158 @@
+package com.example.campusexpensemanager.utils;
+
+import com.example.campusexpensemanager.models.Expense;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round-trips rows through ExpenseArchive (several blocks, dictionaries growing between blocks,
+ * dates in any order, null and non-ASCII descriptions), checks corrupt and truncated files are
+ * rejected, and checks it is smaller than the same rows as gzip CSV.
+ */
+public class ExpenseArchiveTest {
+
+    private static final int ROWS = ExpenseArchive.BLOCK_ROWS * 3 + 17;
+    private static final String[] CATEGORIES = {"Food", "Transport", "Study", "Ăn uống", "Other, misc"};
+    private static final String[] CURRENCIES = {"VND", "USD", "EUR"};
+    private static final int[] SCALES = {1, 100, 100};
+
+    private final Random random = new Random(11);
+
+    private final int[] types = new int[ROWS];
+    private final int[] categories = new int[ROWS];
+    private final int[] currencies = new int[ROWS];
+    private final long[] amounts = new long[ROWS];
+    private final long[] dates = new long[ROWS];
+    private final String[] descriptions = new String[ROWS];
+
+    @Test
+    public void roundTrip_keepsEveryRow() throws IOException {
+        fillRows();
+        byte[] archive = writeArchive();
+
+        ExpenseArchive.Reader reader = new ExpenseArchive.Reader(new ByteArrayInputStream(archive));
+        for (int i = 0; i < ROWS; i++) {
+            assertTrue(reader.next());
+            assertEquals(types[i], reader.getType());
+            assertEquals(CATEGORIES[categories[i]], reader.getCategory());
+            assertEquals(CURRENCIES[currencies[i]], reader.getCurrencyCode());
+            assertEquals(SCALES[currencies[i]], reader.getMinorScale());
+            assertEquals(amounts[i], reader.getAmount());
+            assertEquals(dates[i], reader.getDate());
+            assertEquals(descriptions[i], reader.getDescription());
+        }
+        assertFalse(reader.next());
+        assertFalse(reader.next());
+        reader.close();
+
+        assertTrue(archive.length < writeGzipCsv().length);
+    }
+
+    @Test
+    public void emptyArchive_hasNoRows() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ExpenseArchive.Writer(out).close();
+        ExpenseArchive.Reader reader = new ExpenseArchive.Reader(new ByteArrayInputStream(out.toByteArray()));
+        assertFalse(reader.next());
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptByte_isRejected() throws IOException {
+        fillRows();
+        byte[] archive = writeArchive();
+        // Lỗi giải nén hoặc sai CRC, tuỳ byte bị hỏng
+        archive[archive.length / 3] ^= 0x01;
+        readAll(archive);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFile_fails() throws IOException {
+        fillRows();
+        byte[] archive = writeArchive();
+        readAll(Arrays.copyOf(archive, archive.length / 2));
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFile_isRejected() throws IOException {
+        readAll(ReportExporter.CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void varints_roundTrip() throws IOException {
+        long[] values = {0, 1, -1, 63, -64, 64, 127, 128, Integer.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long value : values) {
+            ExpenseArchive.writeVarLong(out, ExpenseArchive.zigzag(value));
+        }
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        for (long value : values) {
+            assertEquals(value, ExpenseArchive.unzigzag(ExpenseArchive.readVarLong(in)));
+        }
+        assertEquals(-1, in.read());
+    }
+
+    private void fillRows() {
+        long date = 1_700_000_000_000L;
+        for (int i = 0; i < ROWS; i++) {
+            types[i] = random.nextInt(5) == 0 ? Expense.TYPE_INCOME : Expense.TYPE_EXPENSE;
+            // Category/currency cuối chỉ xuất hiện từ block thứ hai
+            int pool = i < ExpenseArchive.BLOCK_ROWS ? 1 : 0;
+            categories[i] = random.nextInt(CATEGORIES.length - pool);
+            currencies[i] = random.nextInt(CURRENCIES.length - pool);
+            amounts[i] = currencies[i] == 0 ? 1_000 + random.nextInt(2_000_000) : random.nextInt(50_000);
+            // Như query export: mới nhất trước, thỉnh thoảng nhảy ngược
+            date -= random.nextInt(8) == 0 ? -random.nextInt(3_600_000) : random.nextInt(20_000_000);
+            dates[i] = date;
+            int kind = random.nextInt(4);
+            descriptions[i] = kind == 0 ? null : kind == 1 ? "" : kind == 2 ? "Cơm trưa #" + i : "Bus \"line\", " + i;
+        }
+    }
+
+    private byte[] writeArchive() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ExpenseArchive.Writer writer = new ExpenseArchive.Writer(out)) {
+            for (int i = 0; i < ROWS; i++) {
+                writer.add(types[i], CATEGORIES[categories[i]], amounts[i], CURRENCIES[currencies[i]],
+                        SCALES[currencies[i]], dates[i], descriptions[i]);
+            }
+            assertEquals(ROWS, writer.getRowCount());
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] writeGzipCsv() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(out), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < ROWS; i++) {
+                writer.write(types[i] == Expense.TYPE_INCOME ? "Income," : "Expense,");
+                ReportExporter.writeCsvField(writer, CATEGORIES[categories[i]]);
+                writer.write("," + Money.toPlainString(amounts[i], SCALES[currencies[i]]) + ","
+                        + CURRENCIES[currencies[i]] + "," + amounts[i] + ",01 Jan 2024,");
+                ReportExporter.writeCsvField(writer, descriptions[i] == null ? "" : descriptions[i]);
+                writer.write("\r\n");
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void readAll(byte[] archive) throws IOException {
+        ExpenseArchive.Reader reader = new ExpenseArchive.Reader(new ByteArrayInputStream(archive));
+        while (reader.next()) {
+            reader.getAmount();
+        }
+    }
+}
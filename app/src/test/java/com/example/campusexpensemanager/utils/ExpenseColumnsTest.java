@@ -0,0 +1,184 @@
+package com.example.campusexpensemanager.utils;
+
+import com.example.campusexpensemanager.models.Expense;
+import com.example.campusexpensemanager.models.TransactionSummary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks ExpenseColumns range queries (partial days plus the DayTotalsIndex) against a
+ * brute-force scan, after loading, after random inserts, updates and deletes, and after a rate change.
+ */
+public class ExpenseColumnsTest {
+
+    private static final int ROWS = 5_000;
+    private static final int CATEGORIES = 9;
+    private static final long DAY = 86_400_000L;
+
+    // 1: VND, 2: USD (25 000 VND/USD); currency 3 không có trong bảng -> coi là VND
+    private static final int[] SCALES = {0, 1, 100};
+    private long[] rates = {0, Money.VND_RATE, Money.rateOf(25_000)};
+
+    private final Random random = new Random(7);
+
+    // Bản sao theo ID để đối chiếu (dates[id] < 0 = đã xoá)
+    private long[] dates;
+    private long[] amounts;
+    private int[] categoryIds;
+    private int[] currencyIds;
+    private int[] types;
+    private int nextId;
+
+    private ExpenseColumns columns;
+
+    @Before
+    public void setUp() {
+        dates = new long[ROWS * 2];
+        amounts = new long[ROWS * 2];
+        categoryIds = new int[ROWS * 2];
+        currencyIds = new int[ROWS * 2];
+        types = new int[ROWS * 2];
+
+        // Nạp theo thứ tự (date, id) như query của DatabaseHelper
+        columns = new ExpenseColumns(ROWS);
+        columns.setRates(1, rates, SCALES);
+        long date = 0;
+        for (nextId = 1; nextId <= ROWS; nextId++) {
+            // Trung bình vài giao dịch mỗi ngày, giờ bất kỳ
+            date += random.nextInt((int) (DAY / 2));
+            randomRow(nextId, date);
+            columns.append(nextId, date, amounts[nextId], categoryIds[nextId], currencyIds[nextId], types[nextId]);
+        }
+    }
+
+    @Test
+    public void loadedColumns_matchScan() {
+        assertEquals(ROWS, columns.size());
+        checkRandomRanges();
+    }
+
+    @Test
+    public void patchedColumns_matchScan() {
+        // Query trước để index theo ngày đã được dựng và phải được patch
+        checkRandomRanges();
+        long lastDate = dates[ROWS];
+        for (int i = 0; i < 2_000; i++) {
+            int op = random.nextInt(3);
+            int id = 1 + random.nextInt(nextId - 1);
+            if (op == 0) {
+                int newId = nextId++;
+                randomRow(newId, random.nextLong() % lastDate);
+                columns.insert(newId, dates[newId], amounts[newId], categoryIds[newId], currencyIds[newId], types[newId]);
+            } else if (op == 1 && dates[id] >= 0) {
+                // Nửa số lần giữ nguyên ngày (ghi đè tại chỗ)
+                randomRow(id, random.nextBoolean() ? dates[id] : Math.abs(random.nextLong() % lastDate));
+                columns.update(id, dates[id], amounts[id], categoryIds[id], currencyIds[id], types[id]);
+            } else if (op == 2) {
+                assertEquals(dates[id] >= 0, columns.remove(id));
+                dates[id] = -1;
+            }
+        }
+        assertFalse(columns.remove(Integer.MAX_VALUE));
+        checkRandomRanges();
+
+        // Ngày ngoài phạm vi index -> dựng lại
+        int oldId = nextId++;
+        randomRow(oldId, lastDate + 5_000 * DAY);
+        columns.insert(oldId, dates[oldId], amounts[oldId], categoryIds[oldId], currencyIds[oldId], types[oldId]);
+        assertEquals(scanSum(Long.MIN_VALUE, Long.MAX_VALUE, DatabaseHelper.FILTER_ANY, DatabaseHelper.FILTER_ANY),
+                columns.sumVnd(Long.MIN_VALUE, Long.MAX_VALUE, DatabaseHelper.FILTER_ANY, DatabaseHelper.FILTER_ANY));
+        checkRandomRanges();
+    }
+
+    @Test
+    public void rateChange_updatesTotals() {
+        checkRandomRanges();
+        rates = new long[]{0, Money.VND_RATE, Money.rateOf(26_000)};
+        columns.setRates(2, rates, SCALES);
+        checkRandomRanges();
+    }
+
+    @Test
+    public void summarize_sortsCategoriesByTotal() {
+        TransactionSummary summary = columns.summarize(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertTrue(summary.getCategoryCount() > 1);
+        for (int i = 1; i < summary.getCategoryCount(); i++) {
+            assertTrue(summary.getCategoryTotal(i - 1) >= summary.getCategoryTotal(i));
+        }
+        assertEquals(columns.count(Long.MIN_VALUE, Long.MAX_VALUE, DatabaseHelper.FILTER_ANY),
+                summary.getIncomeCount() + summary.getExpenseCount());
+    }
+
+    private void checkRandomRanges() {
+        long lastDate = dates[ROWS];
+        for (int i = 0; i < 200; i++) {
+            long a = random.nextLong() % (lastDate + DAY);
+            long b = random.nextLong() % (lastDate + DAY);
+            long start = Math.min(a, b);
+            long end = Math.max(a, b);
+            int category = random.nextBoolean() ? DatabaseHelper.FILTER_ANY : random.nextInt(CATEGORIES);
+
+            for (int type : new int[]{DatabaseHelper.FILTER_ANY, Expense.TYPE_EXPENSE, Expense.TYPE_INCOME}) {
+                assertEquals(scanSum(start, end, type, category), columns.sumVnd(start, end, type, category));
+                assertEquals(scanCount(start, end, type), columns.count(start, end, type));
+            }
+
+            TransactionSummary summary = columns.summarize(start, end);
+            assertEquals(scanSum(start, end, Expense.TYPE_INCOME, DatabaseHelper.FILTER_ANY), summary.getTotalIncome());
+            assertEquals(scanSum(start, end, Expense.TYPE_EXPENSE, DatabaseHelper.FILTER_ANY), summary.getTotalExpense());
+            assertEquals(scanCount(start, end, Expense.TYPE_EXPENSE), summary.getExpenseCount());
+
+            long[] totals = new long[columns.maxCategoryId() + 1];
+            int[] counts = new int[totals.length];
+            columns.addCategoryTotals(start, end, Expense.TYPE_EXPENSE, totals, counts);
+            for (int c = 0; c < summary.getCategoryCount(); c++) {
+                int categoryId = summary.getCategoryId(c);
+                assertEquals(scanSum(start, end, Expense.TYPE_EXPENSE, categoryId), summary.getCategoryTotal(c));
+                assertEquals(totals[categoryId], summary.getCategoryTotal(c));
+                assertEquals(counts[categoryId], summary.getCategoryTransactionCount(c));
+            }
+        }
+    }
+
+    private void randomRow(int id, long date) {
+        dates[id] = Math.max(0, date);
+        currencyIds[id] = 1 + random.nextInt(3);
+        amounts[id] = currencyIds[id] == 2 ? random.nextInt(100_000) : random.nextInt(2_000_000);
+        categoryIds[id] = random.nextInt(CATEGORIES);
+        types[id] = random.nextInt(4) == 0 ? Expense.TYPE_INCOME : Expense.TYPE_EXPENSE;
+    }
+
+    private long scanSum(long start, long end, int type, int category) {
+        long total = 0;
+        for (int id = 1; id < nextId; id++) {
+            if (matches(id, start, end, type) && (category == DatabaseHelper.FILTER_ANY || categoryIds[id] == category)) {
+                int currency = currencyIds[id];
+                total += currency < SCALES.length
+                        ? Money.toVnd(amounts[id], SCALES[currency], rates[currency]) : amounts[id];
+            }
+        }
+        return total;
+    }
+
+    private int scanCount(long start, long end, int type) {
+        int count = 0;
+        for (int id = 1; id < nextId; id++) {
+            if (matches(id, start, end, type)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean matches(int id, long start, long end, int type) {
+        return dates[id] >= 0 && dates[id] >= start && dates[id] <= end
+                && (type == DatabaseHelper.FILTER_ANY || types[id] == type);
+    }
+}
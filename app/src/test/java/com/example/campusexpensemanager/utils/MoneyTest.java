@@ -0,0 +1,46 @@
+package com.example.campusexpensemanager.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks Money parsing, formatting and VND conversion round half up in minor units.
+ * The timed comparison against double totals is MoneyAggregationBenchmarkTest (androidTest).
+ */
+public class MoneyTest {
+
+    // 25 431.5 VND/USD
+    private static final long USD_RATE = Money.rateOf(25_431.5);
+
+    @Test
+    public void parseAndConvert_roundHalfUp() {
+        assertEquals(1235, Money.parse("12.345", 100));
+        assertEquals(50_000, Money.parse("50000.4", 1));
+        assertEquals(50_001, Money.parse(" 50000.5 ", 1));
+        assertEquals("12.35", Money.toPlainString(1235, 100));
+        assertEquals("50000", Money.toPlainString(50_000, 1));
+        // 0.01 $ * 25 431.5 = 254.315 đ -> 254 đ
+        assertEquals(254, Money.toVnd(1, 100, USD_RATE));
+        assertEquals(-3, Money.divideRounded(-5, 2));
+        assertEquals(3, Money.divideRounded(5, 2));
+    }
+
+    @Test
+    public void parseExact_refusesToRound() {
+        assertEquals(1250, Money.parseExact("12.50", 100));
+        assertEquals(50_000, Money.parseExact("50000.00", 1));
+        try {
+            Money.parseExact("50.5", 1);
+            fail("Fraction of a VND accepted");
+        } catch (NumberFormatException expected) {
+            // Dòng sao kê đọc sai phải bị bỏ qua, không được làm tròn
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parse_rejectsOverflow() {
+        Money.parse("99999999999999999999", 1);
+    }
+}
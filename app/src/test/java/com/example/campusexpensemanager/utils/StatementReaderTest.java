@@ -0,0 +1,174 @@
+package com.example.campusexpensemanager.utils;
+
+import com.example.campusexpensemanager.models.Expense;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks OfxReader and QifReader on the shapes banks actually produce (SGML and XML OFX,
+ * QIF with several date styles and non-transaction sections), and the amount and description
+ * normalization that ExpenseFingerprint relies on for duplicate detection.
+ */
+public class StatementReaderTest {
+
+    @Test
+    public void ofxSgml_readsTransactions() throws IOException {
+        OfxReader reader = new OfxReader(new StringReader(
+                "OFXHEADER:100\nDATA:OFXSGML\nVERSION:102\nENCODING:USASCII\n\n"
+                        + "<OFX><BANKMSGSRSV1><STMTTRNRS><STMTRS><CURDEF>USD\n"
+                        + "<BANKTRANLIST><DTSTART>20240101\n"
+                        + "<STMTTRN><TRNTYPE>DEBIT\n<DTPOSTED>20240115120000.000[-5:EST]\n"
+                        + "<TRNAMT>-12.50\n<FITID>1\n<NAME>COFFEE &amp; CO\n<MEMO>Card 1234\n</STMTTRN>\n"
+                        + "<STMTTRN><TRNTYPE>CREDIT\n<DTPOSTED>20240131\n<TRNAMT>1500.00\n"
+                        + "<NAME>PAYROLL\n</STMTTRN>\n"
+                        + "</BANKTRANLIST><LEDGERBAL><BALAMT>1487.50\n<DTASOF>20240131\n</LEDGERBAL>"
+                        + "</STMTRS></STMTTRNRS></BANKMSGSRSV1></OFX>"));
+
+        assertTrue(reader.next());
+        assertEquals(StatementReader.localDate(2024, 1, 15), reader.getDate());
+        assertEquals("-12.50", reader.getAmount());
+        assertEquals("COFFEE & CO - Card 1234", reader.getDescription());
+        assertEquals("USD", reader.getCurrencyCode());
+        assertNull(reader.getCategory());
+
+        assertTrue(reader.next());
+        assertEquals(StatementReader.localDate(2024, 1, 31), reader.getDate());
+        assertEquals("1500.00", reader.getAmount());
+        assertEquals("PAYROLL", reader.getDescription());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void ofxXml_readsTransactions() throws IOException {
+        OfxReader reader = new OfxReader(new StringReader(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<?OFX OFXHEADER=\"200\" VERSION=\"220\"?>\n"
+                        + "<OFX><!-- export --><CREDITCARDMSGSRSV1><CCSTMTTRNRS><CCSTMTRS>"
+                        + "<CURDEF>VND</CURDEF><BANKTRANLIST>"
+                        + "<STMTTRN><DTPOSTED>20240302</DTPOSTED><TRNAMT>-45000</TRNAMT>"
+                        + "<NAME>Cà phê</NAME><MEMO/></STMTTRN>"
+                        + "</BANKTRANLIST></CCSTMTRS></CCSTMTTRNRS></CREDITCARDMSGSRSV1></OFX>"));
+
+        assertTrue(reader.next());
+        assertEquals(StatementReader.localDate(2024, 3, 2), reader.getDate());
+        assertEquals("-45000", reader.getAmount());
+        assertEquals("Cà phê", reader.getDescription());
+        assertEquals("VND", reader.getCurrencyCode());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void qif_readsBankSectionsOnly() throws IOException {
+        QifReader reader = new QifReader(new StringReader(
+                "!Account\nNChecking\nTBank\n^\n"
+                        + "!Type:Bank\n"
+                        + "D01/15/2024\nT-1,234.56\nPRent\nMJanuary\nLHousing:Rent\n^\n"
+                        + "D1/16'24\nU200.00\nPTransfer in\nL[Savings]\n^\n"
+                        + "!Type:Cat\nNFood\nE\n^\n"
+                        + "!Type:CCard\n"
+                        + "D25.12.2023\nT-9,5\nPBakery\n"));
+
+        assertTrue(reader.next());
+        assertEquals(StatementReader.localDate(2024, 1, 15), reader.getDate());
+        assertEquals("-1,234.56", reader.getAmount());
+        assertEquals("-1234.56", StatementReader.normalizeAmount(reader.getAmount(), 100));
+        assertEquals("Rent - January", reader.getDescription());
+        assertEquals("Housing", reader.getCategory());
+        assertNull(reader.getCurrencyCode());
+
+        assertTrue(reader.next());
+        assertEquals(StatementReader.localDate(2024, 1, 16), reader.getDate());
+        assertEquals("200.00", reader.getAmount());
+        assertNull(reader.getCategory());
+
+        // Record cuối không có '^'
+        assertTrue(reader.next());
+        assertEquals(StatementReader.localDate(2023, 12, 25), reader.getDate());
+        assertEquals("-9,5", reader.getAmount());
+        assertEquals("-9.5", StatementReader.normalizeAmount(reader.getAmount(), 100));
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void qifDates() {
+        assertEquals(StatementReader.localDate(2024, 2, 29), QifReader.parseDate("2/29/2024"));
+        assertEquals(StatementReader.localDate(2024, 2, 3), QifReader.parseDate(" 2/ 3/24"));
+        assertEquals(StatementReader.localDate(1999, 12, 31), QifReader.parseDate("12/31/99"));
+        assertEquals(StatementReader.localDate(2024, 5, 31), QifReader.parseDate("31/05/2024"));
+        assertEquals(StatementReader.localDate(2024, 1, 5), QifReader.parseDate("2024-01-05"));
+        assertEquals(StatementReader.INVALID_DATE, QifReader.parseDate("2/30/2024"));
+        assertEquals(StatementReader.INVALID_DATE, QifReader.parseDate("yesterday"));
+        assertEquals(StatementReader.INVALID_DATE, QifReader.parseDate("1/2"));
+    }
+
+    @Test
+    public void normalizeAmount() {
+        assertEquals("1234.56", StatementReader.normalizeAmount("1,234.56", 100));
+        assertEquals("1234.56", StatementReader.normalizeAmount("1.234,56", 100));
+        assertEquals("-12.5", StatementReader.normalizeAmount("-12,5", 100));
+        assertEquals("-12.00", StatementReader.normalizeAmount("(12.00)", 100));
+        assertEquals("3000", StatementReader.normalizeAmount("+ 3 000", 1));
+        assertEquals("1234567", StatementReader.normalizeAmount("1.234.567", 1));
+        assertEquals("1234567", StatementReader.normalizeAmount("1,234,567", 100));
+        assertEquals("-12.3400", StatementReader.normalizeAmount("-12.3400", 1));
+        assertNull(StatementReader.normalizeAmount("n/a", 1));
+        assertNull(StatementReader.normalizeAmount(null, 1));
+    }
+
+    @Test
+    public void normalizeAmount_vndThousands() {
+        assertEquals("45000", StatementReader.normalizeAmount("45,000", 1));
+        assertEquals("-50000", StatementReader.normalizeAmount("-50.000", 1));
+        assertEquals("1234", StatementReader.normalizeAmount("1.234", 1));
+    }
+
+    @Test
+    public void normalizeAmount_threeDecimalsOutsideVnd() throws IOException {
+        // OFX luôn dùng dấu chấm thập phân: -12.345 USD không được thành 12345
+        OfxReader reader = new OfxReader(new StringReader("<OFX><CURDEF>USD<BANKTRANLIST>"
+                + "<STMTTRN><DTPOSTED>20240302<TRNAMT>-12.345<NAME>FX fee</STMTTRN></BANKTRANLIST></OFX>"));
+        assertTrue(reader.next());
+        assertEquals("-12.345", reader.getAmount());
+        String usd = StatementReader.normalizeAmount(reader.getAmount(), 100);
+        assertEquals("-12.345", usd);
+        try {
+            Money.parseExact(usd.substring(1), 100);
+            fail("12.345 USD is not a whole number of cents");
+        } catch (NumberFormatException expected) {
+            // Nhiều chữ số lẻ hơn đơn vị nhỏ của USD -> importer bỏ qua dòng, không làm tròn
+        }
+
+        assertEquals("-12.345", StatementReader.normalizeAmount("-12.345", 1000));
+        assertEquals("12.345", StatementReader.normalizeAmount("12,345", 100));
+    }
+
+    @Test
+    public void fingerprint_ignoresTimeOfDayCaseAndAccents() {
+        Calendar morning = Calendar.getInstance();
+        morning.clear();
+        morning.set(2024, Calendar.MARCH, 2, 8, 30);
+        long midnight = StatementReader.localDate(2024, 3, 2);
+
+        assertEquals("ca phe highlands 12", ExpenseFingerprint.normalize("  Cà phê - HIGHLANDS #12 "));
+        assertEquals("duong pho", ExpenseFingerprint.normalize("Đường phố"));
+        assertEquals(ExpenseFingerprint.of(midnight, Expense.TYPE_EXPENSE, 45000, 1, "Cà phê"),
+                ExpenseFingerprint.of(morning.getTimeInMillis(), Expense.TYPE_EXPENSE, 45000, 1, "CA PHE"));
+
+        long coffee = ExpenseFingerprint.of(midnight, Expense.TYPE_EXPENSE, 45000, 1, "Cà phê");
+        assertNotEquals(coffee, ExpenseFingerprint.of(midnight, Expense.TYPE_INCOME, 45000, 1, "Cà phê"));
+        assertNotEquals(coffee, ExpenseFingerprint.of(midnight, Expense.TYPE_EXPENSE, 45000, 2, "Cà phê"));
+        assertNotEquals(coffee, ExpenseFingerprint.of(midnight + 86_400_000L, Expense.TYPE_EXPENSE, 45000, 1,
+                "Cà phê"));
+        assertNotEquals(coffee, ExpenseFingerprint.of(midnight, Expense.TYPE_EXPENSE, 45001, 1, "Cà phê"));
+    }
+}